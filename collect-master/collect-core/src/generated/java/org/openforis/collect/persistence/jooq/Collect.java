@@ -31,7 +31,10 @@ import org.openforis.collect.persistence.jooq.tables.OfcLogo;
 import org.openforis.collect.persistence.jooq.tables.OfcMessage;
 import org.openforis.collect.persistence.jooq.tables.OfcMessageProcessing;
 import org.openforis.collect.persistence.jooq.tables.OfcRecord;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinate;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinateSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcRecordData;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordDataJournal;
 import org.openforis.collect.persistence.jooq.tables.OfcSamplingDesign;
 import org.openforis.collect.persistence.jooq.tables.OfcSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcSurveyFile;
@@ -124,7 +127,10 @@ public class Collect extends SchemaImpl {
 			OfcMessage.OFC_MESSAGE,
 			OfcMessageProcessing.OFC_MESSAGE_PROCESSING,
 			OfcRecord.OFC_RECORD,
+			OfcRecordCoordinate.OFC_RECORD_COORDINATE,
+			OfcRecordCoordinateSurvey.OFC_RECORD_COORDINATE_SURVEY,
 			OfcRecordData.OFC_RECORD_DATA,
+			OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL,
 			OfcSamplingDesign.OFC_SAMPLING_DESIGN,
 			OfcSurvey.OFC_SURVEY,
 			OfcSurveyFile.OFC_SURVEY_FILE,
@@ -25,7 +25,10 @@ import org.openforis.collect.persistence.jooq.tables.OfcImagery;
 import org.openforis.collect.persistence.jooq.tables.OfcLogo;
 import org.openforis.collect.persistence.jooq.tables.OfcMessage;
 import org.openforis.collect.persistence.jooq.tables.OfcRecord;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinate;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinateSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcRecordData;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordDataJournal;
 import org.openforis.collect.persistence.jooq.tables.OfcSamplingDesign;
 import org.openforis.collect.persistence.jooq.tables.OfcSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcSurveyFile;
@@ -52,6 +55,9 @@ import org.openforis.collect.persistence.jooq.tables.records.OfcDataReportRecord
 import org.openforis.collect.persistence.jooq.tables.records.OfcImageryRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcLogoRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcMessageRecord;
+import org.openforis.collect.persistence.jooq.tables.records.OfcRecordCoordinateRecord;
+import org.openforis.collect.persistence.jooq.tables.records.OfcRecordCoordinateSurveyRecord;
+import org.openforis.collect.persistence.jooq.tables.records.OfcRecordDataJournalRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcRecordDataRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcRecordRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcSamplingDesignRecord;
@@ -99,7 +105,9 @@ public class Keys {
 	public static final UniqueKey<OfcLogoRecord> OFC_LOGO_PKEY = UniqueKeys0.OFC_LOGO_PKEY;
 	public static final UniqueKey<OfcMessageRecord> PK_OFC_MESSAGE = UniqueKeys0.PK_OFC_MESSAGE;
 	public static final UniqueKey<OfcRecordRecord> OFC_RECORD_PKEY = UniqueKeys0.OFC_RECORD_PKEY;
+	public static final UniqueKey<OfcRecordCoordinateSurveyRecord> OFC_RECORD_COORDINATE_SURVEY_PKEY = UniqueKeys0.OFC_RECORD_COORDINATE_SURVEY_PKEY;
 	public static final UniqueKey<OfcRecordDataRecord> OFC_RECORD_DATA_PKEY = UniqueKeys0.OFC_RECORD_DATA_PKEY;
+	public static final UniqueKey<OfcRecordDataJournalRecord> OFC_RECORD_DATA_JOURNAL_PKEY = UniqueKeys0.OFC_RECORD_DATA_JOURNAL_PKEY;
 	public static final UniqueKey<OfcSamplingDesignRecord> PK_OFC_SAMPLING_DESIGN = UniqueKeys0.PK_OFC_SAMPLING_DESIGN;
 	public static final UniqueKey<OfcSurveyRecord> OFC_SURVEY_PKEY = UniqueKeys0.OFC_SURVEY_PKEY;
 	public static final UniqueKey<OfcSurveyRecord> OFC_SURVEY_NAME_KEY = UniqueKeys0.OFC_SURVEY_NAME_KEY;
@@ -140,7 +148,9 @@ public class Keys {
 	public static final ForeignKey<OfcDataReportItemRecord, OfcDataQueryRecord> OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_QUERY_FKEY = ForeignKeys0.OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_QUERY_FKEY;
 	public static final ForeignKey<OfcDataReportItemRecord, OfcRecordRecord> OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_RECORD_FKEY = ForeignKeys0.OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_RECORD_FKEY;
 	public static final ForeignKey<OfcRecordRecord, OfcSurveyRecord> OFC_RECORD__OFC_RECORD_SURVEY_FKEY = ForeignKeys0.OFC_RECORD__OFC_RECORD_SURVEY_FKEY;
+	public static final ForeignKey<OfcRecordCoordinateRecord, OfcRecordRecord> OFC_RECORD_COORDINATE__OFC_RECORD_COORDINATE_RECORD_FKEY = ForeignKeys0.OFC_RECORD_COORDINATE__OFC_RECORD_COORDINATE_RECORD_FKEY;
 	public static final ForeignKey<OfcRecordDataRecord, OfcRecordRecord> OFC_RECORD_DATA__OFC_RECORD_DATA_RECORD_FKEY = ForeignKeys0.OFC_RECORD_DATA__OFC_RECORD_DATA_RECORD_FKEY;
+	public static final ForeignKey<OfcRecordDataJournalRecord, OfcRecordRecord> OFC_RECORD_DATA_JOURNAL__OFC_RECORD_DATA_JOURNAL_RECORD_FKEY = ForeignKeys0.OFC_RECORD_DATA_JOURNAL__OFC_RECORD_DATA_JOURNAL_RECORD_FKEY;
 	public static final ForeignKey<OfcSamplingDesignRecord, OfcSurveyRecord> OFC_SAMPLING_DESIGN__OFC_SAMPLING_DESIGN_SURVEY_FKEY = ForeignKeys0.OFC_SAMPLING_DESIGN__OFC_SAMPLING_DESIGN_SURVEY_FKEY;
 	public static final ForeignKey<OfcSurveyRecord, OfcUsergroupRecord> OFC_SURVEY__OFC_SURVEY_USERGROUP_FKEY = ForeignKeys0.OFC_SURVEY__OFC_SURVEY_USERGROUP_FKEY;
 	public static final ForeignKey<OfcSurveyFileRecord, OfcSurveyRecord> OFC_SURVEY_FILE__OFC_SURVEY_FILE_SURVEY_FKEY = ForeignKeys0.OFC_SURVEY_FILE__OFC_SURVEY_FILE_SURVEY_FKEY;
@@ -179,7 +189,9 @@ public class Keys {
 		public static final UniqueKey<OfcLogoRecord> OFC_LOGO_PKEY = createUniqueKey(OfcLogo.OFC_LOGO, OfcLogo.OFC_LOGO.POS);
 		public static final UniqueKey<OfcMessageRecord> PK_OFC_MESSAGE = createUniqueKey(OfcMessage.OFC_MESSAGE, OfcMessage.OFC_MESSAGE.SEQUENCE_NO);
 		public static final UniqueKey<OfcRecordRecord> OFC_RECORD_PKEY = createUniqueKey(OfcRecord.OFC_RECORD, OfcRecord.OFC_RECORD.ID);
+		public static final UniqueKey<OfcRecordCoordinateSurveyRecord> OFC_RECORD_COORDINATE_SURVEY_PKEY = createUniqueKey(OfcRecordCoordinateSurvey.OFC_RECORD_COORDINATE_SURVEY, OfcRecordCoordinateSurvey.OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID);
 		public static final UniqueKey<OfcRecordDataRecord> OFC_RECORD_DATA_PKEY = createUniqueKey(OfcRecordData.OFC_RECORD_DATA, OfcRecordData.OFC_RECORD_DATA.RECORD_ID, OfcRecordData.OFC_RECORD_DATA.SEQ_NUM);
+		public static final UniqueKey<OfcRecordDataJournalRecord> OFC_RECORD_DATA_JOURNAL_PKEY = createUniqueKey(OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL, OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL.RECORD_ID, OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL.SEQ_NUM, OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL.ENTRY_NUM);
 		public static final UniqueKey<OfcSamplingDesignRecord> PK_OFC_SAMPLING_DESIGN = createUniqueKey(OfcSamplingDesign.OFC_SAMPLING_DESIGN, OfcSamplingDesign.OFC_SAMPLING_DESIGN.ID);
 		public static final UniqueKey<OfcSurveyRecord> OFC_SURVEY_PKEY = createUniqueKey(OfcSurvey.OFC_SURVEY, OfcSurvey.OFC_SURVEY.ID);
 		public static final UniqueKey<OfcSurveyRecord> OFC_SURVEY_NAME_KEY = createUniqueKey(OfcSurvey.OFC_SURVEY, OfcSurvey.OFC_SURVEY.NAME, OfcSurvey.OFC_SURVEY.TEMPORARY);
@@ -218,7 +230,9 @@ public class Keys {
 		public static final ForeignKey<OfcDataReportItemRecord, OfcDataQueryRecord> OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_QUERY_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_DATA_QUERY_PKEY, OfcDataReportItem.OFC_DATA_REPORT_ITEM, OfcDataReportItem.OFC_DATA_REPORT_ITEM.QUERY_ID);
 		public static final ForeignKey<OfcDataReportItemRecord, OfcRecordRecord> OFC_DATA_REPORT_ITEM__OFC_DATA_REPORT_ITEM_RECORD_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_RECORD_PKEY, OfcDataReportItem.OFC_DATA_REPORT_ITEM, OfcDataReportItem.OFC_DATA_REPORT_ITEM.RECORD_ID);
 		public static final ForeignKey<OfcRecordRecord, OfcSurveyRecord> OFC_RECORD__OFC_RECORD_SURVEY_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_SURVEY_PKEY, OfcRecord.OFC_RECORD, OfcRecord.OFC_RECORD.SURVEY_ID);
+		public static final ForeignKey<OfcRecordCoordinateRecord, OfcRecordRecord> OFC_RECORD_COORDINATE__OFC_RECORD_COORDINATE_RECORD_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_RECORD_PKEY, OfcRecordCoordinate.OFC_RECORD_COORDINATE, OfcRecordCoordinate.OFC_RECORD_COORDINATE.RECORD_ID);
 		public static final ForeignKey<OfcRecordDataRecord, OfcRecordRecord> OFC_RECORD_DATA__OFC_RECORD_DATA_RECORD_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_RECORD_PKEY, OfcRecordData.OFC_RECORD_DATA, OfcRecordData.OFC_RECORD_DATA.RECORD_ID);
+		public static final ForeignKey<OfcRecordDataJournalRecord, OfcRecordRecord> OFC_RECORD_DATA_JOURNAL__OFC_RECORD_DATA_JOURNAL_RECORD_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_RECORD_PKEY, OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL, OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL.RECORD_ID);
 		public static final ForeignKey<OfcSamplingDesignRecord, OfcSurveyRecord> OFC_SAMPLING_DESIGN__OFC_SAMPLING_DESIGN_SURVEY_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_SURVEY_PKEY, OfcSamplingDesign.OFC_SAMPLING_DESIGN, OfcSamplingDesign.OFC_SAMPLING_DESIGN.SURVEY_ID);
 		public static final ForeignKey<OfcSurveyRecord, OfcUsergroupRecord> OFC_SURVEY__OFC_SURVEY_USERGROUP_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_USERGROUP_PKEY, OfcSurvey.OFC_SURVEY, OfcSurvey.OFC_SURVEY.USERGROUP_ID);
 		public static final ForeignKey<OfcSurveyFileRecord, OfcSurveyRecord> OFC_SURVEY_FILE__OFC_SURVEY_FILE_SURVEY_FKEY = createForeignKey(org.openforis.collect.persistence.jooq.Keys.OFC_SURVEY_PKEY, OfcSurveyFile.OFC_SURVEY_FILE, OfcSurveyFile.OFC_SURVEY_FILE.SURVEY_ID);
@@ -23,7 +23,10 @@ import org.openforis.collect.persistence.jooq.tables.OfcLogo;
 import org.openforis.collect.persistence.jooq.tables.OfcMessage;
 import org.openforis.collect.persistence.jooq.tables.OfcMessageProcessing;
 import org.openforis.collect.persistence.jooq.tables.OfcRecord;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinate;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinateSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcRecordData;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordDataJournal;
 import org.openforis.collect.persistence.jooq.tables.OfcSamplingDesign;
 import org.openforis.collect.persistence.jooq.tables.OfcSurvey;
 import org.openforis.collect.persistence.jooq.tables.OfcSurveyFile;
@@ -137,11 +140,26 @@ public class Tables {
 	 */
 	public static final OfcRecord OFC_RECORD = org.openforis.collect.persistence.jooq.tables.OfcRecord.OFC_RECORD;
 
+	/**
+	 * The table collect.ofc_record_coordinate
+	 */
+	public static final OfcRecordCoordinate OFC_RECORD_COORDINATE = org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinate.OFC_RECORD_COORDINATE;
+
+	/**
+	 * The table collect.ofc_record_coordinate_survey
+	 */
+	public static final OfcRecordCoordinateSurvey OFC_RECORD_COORDINATE_SURVEY = org.openforis.collect.persistence.jooq.tables.OfcRecordCoordinateSurvey.OFC_RECORD_COORDINATE_SURVEY;
+
 	/**
 	 * The table collect.ofc_record_data
 	 */
 	public static final OfcRecordData OFC_RECORD_DATA = org.openforis.collect.persistence.jooq.tables.OfcRecordData.OFC_RECORD_DATA;
 
+	/**
+	 * The table collect.ofc_record_data_journal
+	 */
+	public static final OfcRecordDataJournal OFC_RECORD_DATA_JOURNAL = org.openforis.collect.persistence.jooq.tables.OfcRecordDataJournal.OFC_RECORD_DATA_JOURNAL;
+
 	/**
 	 * The table collect.ofc_sampling_design
 	 */
@@ -0,0 +1,166 @@
+package org.openforis.collect.io.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.RecordBuilder.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.CollectIntegrationTest;
+import org.openforis.collect.concurrency.CollectJobManager;
+import org.openforis.collect.io.data.csv.CSVDataExportParameters;
+import org.openforis.collect.io.data.csv.CSVDataExportParametersBase.OutputFormat;
+import org.openforis.collect.manager.RecordManager;
+import org.openforis.collect.manager.UserManager;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectRecord.Step;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordFilter;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.collect.model.User;
+import org.openforis.idm.metamodel.EntityDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.metamodel.NodeDefinitionVisitor;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author S. Ricci
+ */
+public class CSVDataExportJobIntegrationTest extends CollectIntegrationTest {
+
+	private static final int RECORDS = 5;
+
+	@Autowired
+	private CollectJobManager jobManager;
+	@Autowired
+	private RecordManager recordManager;
+	@Autowired
+	private UserManager userManager;
+
+	private CollectSurvey survey;
+	private EntityDefinition clusterDefn;
+	private File outputFile;
+
+	@Before
+	public void init() throws Exception {
+		survey = importModel();
+		clusterDefn = survey.getSchema().getRootEntityDefinition("cluster");
+		for (int i = 1; i <= RECORDS; i++) {
+			saveRecord("10_" + (100 + i));
+		}
+		outputFile = File.createTempFile("collect-csv-data-export-test", ".zip");
+	}
+
+	@After
+	public void destroy() {
+		FileUtils.deleteQuietly(outputFile);
+	}
+
+	@Test
+	public void testCSVExport() throws Exception {
+		export(OutputFormat.CSV, false);
+		ZipFile zipFile = new ZipFile(outputFile);
+		try {
+			assertEquals(countMultipleEntities(), zipFile.size());
+			InputStream is = zipFile.getInputStream(getEntry(zipFile, "cluster.csv"));
+			try {
+				//headers + one row per record
+				assertEquals(RECORDS + 1, IOUtils.readLines(is, "UTF-8").size());
+			} finally {
+				is.close();
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	@Test
+	public void testExcelStreamingExport() throws Exception {
+		export(OutputFormat.XLSX, false);
+		verifyExcelExport();
+	}
+
+	@Test
+	public void testExcelWithImagesExport() throws Exception {
+		export(OutputFormat.XLSX, true);
+		verifyExcelExport();
+	}
+
+	private void verifyExcelExport() throws IOException {
+		ZipFile zipFile = new ZipFile(outputFile);
+		try {
+			assertEquals(countMultipleEntities(), zipFile.size());
+			InputStream is = zipFile.getInputStream(getEntry(zipFile, "cluster.xlsx"));
+			try {
+				XSSFWorkbook workbook = new XSSFWorkbook(is);
+				//headers + one row per record
+				assertEquals(RECORDS + 1, workbook.getSheetAt(0).getPhysicalNumberOfRows());
+			} finally {
+				is.close();
+			}
+		} finally {
+			zipFile.close();
+		}
+	}
+
+	private void export(OutputFormat outputFormat, boolean includeImages) {
+		CSVDataExportJob job = jobManager.createJob(CSVDataExportJob.class);
+		job.setSurvey(survey);
+		CSVDataExportParameters parameters = new CSVDataExportParameters();
+		RecordFilter recordFilter = new RecordFilter(survey);
+		recordFilter.setRootEntityId(clusterDefn.getId());
+		recordFilter.setStepGreaterOrEqual(Step.ENTRY);
+		parameters.setRecordFilter(recordFilter);
+		parameters.setAlwaysGenerateZipFile(true);
+		parameters.setOutputFormat(outputFormat);
+		parameters.setIncludeImages(includeImages);
+		job.setParameters(parameters);
+		job.setOutputFile(outputFile);
+		jobManager.start(job, false);
+		assertTrue(job.isCompleted());
+	}
+
+	private ZipEntry getEntry(ZipFile zipFile, String name) {
+		ZipEntry entry = zipFile.getEntry(name);
+		assertNotNull(name, entry);
+		return entry;
+	}
+
+	private int countMultipleEntities() {
+		final int[] count = {0};
+		clusterDefn.traverse(new NodeDefinitionVisitor() {
+			public void visit(NodeDefinition def) {
+				if (def instanceof EntityDefinition && def.isMultiple()) {
+					count[0]++;
+				}
+			}
+		});
+		return count[0];
+	}
+
+	private void saveRecord(String id) {
+		CollectRecord record = (CollectRecord) record(
+				attribute("id", id),
+				attribute("region", "001"),
+				attribute("district", "002")
+			).build(survey, "cluster", "2.0");
+		new RecordUpdater().initializeNewRecord(record);
+		User user = userManager.loadAdminUser();
+		record.setCreatedBy(user);
+		record.setModifiedBy(user);
+		recordManager.save(record);
+	}
+
+}
@@ -2,6 +2,7 @@ package org.openforis.collect.io.metadata;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -24,6 +25,7 @@ import org.openforis.collect.manager.exception.SurveyValidationException;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.SamplingDesignItem;
 import org.openforis.collect.model.SamplingDesignSummaries;
+import org.openforis.collect.persistence.SamplingDesignDao;
 import org.openforis.collect.persistence.SurveyStoreException;
 import org.openforis.concurrency.JobManager;
 import org.openforis.idm.metamodel.xml.IdmlParseException;
@@ -37,6 +39,7 @@ public class SamplingPointDataImportJobIntegrationTest extends CollectIntegratio
 	private static final String VALID_TEST_CSV = "sampling-design-test.csv";
 	private static final String VALID_FLAT_TEST_CSV = "sampling-design-flat-test.csv";
 	private static final String INVALID_TEST_CSV = "sampling-design-invalid-test.csv";
+	private static final String VALID_FLAT_UPDATED_TEST_CSV = "sampling-design-flat-updated-test.csv";
 
 	@Autowired
 	private JobManager jobManager;
@@ -44,6 +47,8 @@ public class SamplingPointDataImportJobIntegrationTest extends CollectIntegratio
 	private SamplingDesignManager samplingDesignManager;
 	@Autowired
 	private SurveyManager surveyManager;
+	@Autowired
+	private SamplingDesignDao samplingDesignDao;
 	
 	private CollectSurvey survey;
 	
@@ -113,6 +118,26 @@ public class SamplingPointDataImportJobIntegrationTest extends CollectIntegratio
 		assertNotNull(findItem(items, 80.1234d, -6.908d, "10_115"));
 	}
 	
+	@Test
+	public void testReimportClearsCachedItems() throws Exception {
+		assertTrue(importCSVFile(VALID_FLAT_TEST_CSV).isCompleted());
+		{
+			SamplingDesignItem item = samplingDesignDao.loadCachedItem(survey.getId(), "1_01");
+			assertEquals(Double.valueOf(-10000d), item.getX());
+			assertEquals(Arrays.asList("001", "002"), item.getInfoAttributes().subList(0, 2));
+		}
+		assertNotNull(samplingDesignDao.loadCachedItem(survey.getId(), "1_02"));
+		
+		assertTrue(importCSVFile(VALID_FLAT_UPDATED_TEST_CSV).isCompleted());
+		{
+			SamplingDesignItem item = samplingDesignDao.loadCachedItem(survey.getId(), "1_01");
+			assertEquals(Double.valueOf(-20000d), item.getX());
+			assertEquals(Arrays.asList("001", "003"), item.getInfoAttributes().subList(0, 2));
+		}
+		//items not in the new sampling design are not found anymore
+		assertNull(samplingDesignDao.loadCachedItem(survey.getId(), "1_02"));
+	}
+	
 	@Test
 	public void testInvalidData() throws Exception {
 		SamplingPointDataImportJob job = importCSVFile(INVALID_TEST_CSV);
@@ -0,0 +1,104 @@
+package org.openforis.collect.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.RecordBuilder.record;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.CollectIntegrationTest;
+import org.openforis.collect.manager.exception.SurveyValidationException;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordCoordinate;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.collect.model.User;
+import org.openforis.collect.persistence.RecordCoordinateDao;
+import org.openforis.collect.persistence.SurveyImportException;
+import org.openforis.idm.metamodel.SpatialReferenceSystem;
+import org.openforis.idm.metamodel.xml.IdmlParseException;
+import org.openforis.idm.model.Coordinate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class RecordCoordinateManagerIntegrationTest extends CollectIntegrationTest {
+
+	@Autowired
+	private RecordCoordinateManager recordCoordinateManager;
+	@Autowired
+	private RecordCoordinateDao recordCoordinateDao;
+	@Autowired
+	private RecordManager recordManager;
+	@Autowired
+	private UserManager userManager;
+
+	private CollectSurvey survey;
+	private int vehicleLocationDefId;
+
+	@Before
+	public void init() throws SurveyImportException, IdmlParseException, SurveyValidationException {
+		survey = importModel();
+		vehicleLocationDefId = survey.getSchema().getDefinitionByPath("/cluster/vehicle_location").getId();
+	}
+
+	@Test
+	public void testRecordsStoredBeforeIndexingBackfilled() {
+		CollectRecord oldRecord = saveRecord("10_111", 10, 10);
+		//simulate a record stored before the coordinates table existed
+		recordCoordinateDao.deleteBySurvey(survey.getId());
+		//a record saved afterwards stores its coordinates but doesn't make the survey indexed
+		saveRecord("10_112", 20, 20);
+		assertFalse(recordCoordinateDao.isSurveyIndexed(survey.getId()));
+
+		int count = recordCoordinateManager.countCoordinates(survey, vehicleLocationDefId, -180, -90, 180, 90);
+
+		assertEquals(2, count);
+		assertTrue(recordCoordinateDao.isSurveyIndexed(survey.getId()));
+		List<RecordCoordinate> coordinates = recordCoordinateManager.loadCoordinates(survey, vehicleLocationDefId, 5, 5, 15, 15, 10);
+		assertEquals(1, coordinates.size());
+		assertEquals((int) oldRecord.getId(), coordinates.get(0).getRecordId());
+	}
+
+	@Test
+	public void testBoundingBoxQuery() {
+		CollectRecord record1 = saveRecord("10_111", 10, 10);
+		CollectRecord record2 = saveRecord("10_112", 20, -20);
+		CollectRecord record3 = saveRecord("10_113", 179, 0);
+		saveRecord("10_114", -179, 0);
+
+		List<RecordCoordinate> coordinates = recordCoordinateManager.loadCoordinates(survey, vehicleLocationDefId, 0, -30, 30, 30, 10);
+		assertEquals(2, coordinates.size());
+		assertEquals((int) record1.getId(), coordinates.get(0).getRecordId());
+		assertEquals(10, coordinates.get(0).getX(), 0);
+		assertEquals(10, coordinates.get(0).getY(), 0);
+		assertEquals((int) record2.getId(), coordinates.get(1).getRecordId());
+
+		assertEquals(1, recordCoordinateManager.countCoordinates(survey, vehicleLocationDefId, 15, -30, 30, 0));
+		assertEquals(0, recordCoordinateManager.countCoordinates(survey, vehicleLocationDefId, 0, 11, 30, 30));
+
+		//bounding box crossing the antimeridian
+		assertEquals(2, recordCoordinateManager.countCoordinates(survey, vehicleLocationDefId, 170, -10, -170, 10));
+		coordinates = recordCoordinateManager.loadCoordinates(survey, vehicleLocationDefId, 170, -10, 180, 10, 10);
+		assertEquals(1, coordinates.size());
+		assertEquals((int) record3.getId(), coordinates.get(0).getRecordId());
+	}
+
+	private CollectRecord saveRecord(String id, double x, double y) {
+		CollectRecord record = (CollectRecord) record(
+			attribute("id", id),
+			attribute("region", "001"),
+			attribute("district", "002"),
+			attribute("vehicle_location", new Coordinate(x, y, SpatialReferenceSystem.LAT_LON_SRS_ID))
+		).build(survey, "cluster", "2.0");
+		new RecordUpdater().initializeNewRecord(record);
+		User user = userManager.loadAdminUser();
+		record.setCreatedBy(user);
+		record.setModifiedBy(user);
+		recordManager.save(record);
+		return record;
+	}
+
+}
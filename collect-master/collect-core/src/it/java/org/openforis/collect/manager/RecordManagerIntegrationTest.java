@@ -1,13 +1,18 @@
 package org.openforis.collect.manager;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.openforis.idm.testfixture.NodeBuilder.attribute;
 import static org.openforis.idm.testfixture.NodeBuilder.entity;
 import static org.openforis.idm.testfixture.RecordBuilder.record;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.openforis.collect.CollectIntegrationTest;
@@ -16,12 +21,15 @@ import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectRecordSummary;
 import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.NodeChangeSet;
 import org.openforis.collect.model.RecordFilter;
 import org.openforis.collect.model.RecordUpdater;
 import org.openforis.collect.model.User;
 import org.openforis.collect.persistence.MissingRecordKeyException;
 import org.openforis.collect.persistence.RecordDao;
+import org.openforis.collect.persistence.RecordPersistenceException;
 import org.openforis.collect.persistence.SurveyImportException;
+import org.openforis.commons.collection.Visitor;
 import org.openforis.idm.metamodel.xml.IdmlParseException;
 import org.openforis.idm.model.Attribute;
 import org.openforis.idm.model.Code;
@@ -38,12 +46,20 @@ public class RecordManagerIntegrationTest extends CollectIntegrationTest {
 	private UserManager userManager;
 	
 	private CollectSurvey survey;
+	private WriteBehindRecordSaver recordSaver;
 
 	@Before
 	public void init() throws SurveyImportException, IdmlParseException, SurveyValidationException { 
 		this.survey = importModel();
 	}
 	
+	@After
+	public void destroy() {
+		if (recordSaver != null) {
+			recordSaver.destroy();
+		}
+	}
+	
 	@Test
 	public void testNewRecordInsert() {
 		CollectRecord record = (CollectRecord) record(
@@ -244,4 +260,121 @@ public class RecordManagerIntegrationTest extends CollectIntegrationTest {
 		int cleansingTreesCountInSummary = recordSummary.getSummaryByStep(Step.CLEANSING).getEntityCounts().get(1);
 		assertEquals(1, cleansingTreesCountInSummary);
 	}
+	
+	@Test
+	public void testValidateAndSaveChanged() {
+		User user = userManager.loadAdminUser();
+		List<CollectRecord> records = new ArrayList<CollectRecord>();
+		for (String id : new String[] {"10_111", "10_112", "10_113"}) {
+			CollectRecord record = (CollectRecord) record(
+				attribute("id", id),
+				attribute("region", "001"),
+				attribute("district", "002")
+			).build(survey, "cluster", "2.0");
+			new RecordUpdater().initializeNewRecord(record);
+			record.setCreatedBy(user);
+			record.setModifiedBy(user);
+			recordManager.save(record);
+			records.add(record);
+		}
+		CollectRecord changedRecord = records.get(1);
+		int expectedErrors = changedRecord.getErrors();
+		//simulate a record whose stored validation summary is out of date
+		changedRecord.setErrors(expectedErrors + 10);
+		recordDao.updateSummary(changedRecord);
+		
+		final List<Integer> validatedRecordIds = new ArrayList<Integer>();
+		int updatedCount = recordManager.validateAndSaveChanged(new RecordFilter(survey), 2, new Visitor<CollectRecord>() {
+			public void visit(CollectRecord record) {
+				validatedRecordIds.add(record.getId());
+			}
+		}, null);
+		
+		assertEquals(1, updatedCount);
+		assertEquals(Arrays.asList(records.get(0).getId(), records.get(1).getId(), records.get(2).getId()), validatedRecordIds);
+		CollectRecord reloaded = recordDao.load(survey, changedRecord.getId(), Step.ENTRY, false);
+		assertEquals(expectedErrors, reloaded.getErrors());
+		
+		//nothing changed since the last validation: no record is updated
+		assertEquals(0, recordManager.validateAndSaveChanged(new RecordFilter(survey), 2, null, null));
+	}
+	
+	@Test
+	public void testPendingChangesSavedBeforeSave() {
+		int recordId = saveNewRecord("10_117");
+		enableWriteBehind();
+		updateDistrictWithCommand(recordId, "001");
+		
+		//record modified outside of the command API (e.g. data cleansing)
+		CollectRecord record = recordManager.load(survey, recordId);
+		Attribute<?, Code> region = record.findNodeByPath("/cluster/region");
+		new RecordUpdater().updateAttribute(region, new Code("003"));
+		recordManager.save(record);
+		assertFalse(recordSaver.isDirty(recordId));
+		
+		//pending changes saved before: they don't overwrite the new ones
+		recordSaver.destroy();
+		CollectRecord reloaded = recordManager.load(survey, recordId);
+		assertEquals(new Code("003"), ((Attribute<?, ?>) reloaded.findNodeByPath("/cluster/region")).getValue());
+	}
+	
+	@Test
+	public void testPendingChangesDiscardedBeforeDelete() throws RecordPersistenceException {
+		int recordId = saveNewRecord("10_117");
+		enableWriteBehind();
+		updateDistrictWithCommand(recordId, "001");
+		
+		recordManager.delete(recordId);
+		assertFalse(recordSaver.isDirty(recordId));
+		
+		//deleted record not saved again
+		recordSaver.destroy();
+		assertEquals(0, recordManager.countRecords(new RecordFilter(survey)));
+	}
+	
+	@Test
+	public void testPendingChangesSavedBeforeValidation() {
+		int recordId = saveNewRecord("10_117");
+		enableWriteBehind();
+		updateDistrictWithCommand(recordId, "001");
+		
+		recordManager.validateAndSaveChanged(new RecordFilter(survey), 2, null, null);
+		assertFalse(recordSaver.isDirty(recordId));
+		
+		CollectRecord reloaded = recordManager.load(survey, recordId);
+		assertEquals(new Code("001"), ((Attribute<?, ?>) reloaded.findNodeByPath("/cluster/district")).getValue());
+	}
+	
+	private void enableWriteBehind() {
+		recordSaver = new WriteBehindRecordSaver(recordManager);
+		recordSaver.setWriteBehindEnabled(true);
+		recordSaver.setFlushDelay(60000);
+		recordSaver.init();
+	}
+	
+	/**
+	 * Updates the district of the specified record like the command API does: 
+	 * the record is kept in memory by the record saver
+	 */
+	private void updateDistrictWithCommand(int recordId, String district) {
+		CollectRecord record = recordManager.load(survey, recordId);
+		Attribute<?, Code> districtAttr = record.findNodeByPath("/cluster/district");
+		NodeChangeSet changeSet = new RecordUpdater().updateAttribute(districtAttr, new Code(district));
+		recordSaver.save(record, changeSet);
+		assertTrue(recordSaver.isDirty(recordId));
+	}
+	
+	private int saveNewRecord(String id) {
+		CollectRecord record = (CollectRecord) record(
+			attribute("id", id),
+			attribute("region", "001"),
+			attribute("district", "002")
+		).build(survey, "cluster", "2.0");
+		new RecordUpdater().initializeNewRecord(record);
+		User user = userManager.loadAdminUser();
+		record.setCreatedBy(user);
+		record.setModifiedBy(user);
+		recordManager.save(record);
+		return record.getId();
+	}
 }
@@ -0,0 +1,130 @@
+package org.openforis.collect.persistence;
+
+import static org.junit.Assert.assertEquals;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.RecordBuilder.record;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.CollectIntegrationTest;
+import org.openforis.collect.manager.RecordManager;
+import org.openforis.collect.manager.UserManager;
+import org.openforis.collect.manager.exception.SurveyValidationException;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectRecordSummary;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordFilter;
+import org.openforis.collect.model.RecordSummarySortField;
+import org.openforis.collect.model.RecordSummarySortField.Sortable;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.collect.model.User;
+import org.openforis.idm.metamodel.xml.IdmlParseException;
+import org.openforis.idm.testfixture.NodeBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class RecordDaoIntegrationTest extends CollectIntegrationTest {
+
+	@Autowired
+	private RecordDao recordDao;
+	@Autowired
+	private RecordManager recordManager;
+	@Autowired
+	private UserManager userManager;
+
+	private CollectSurvey survey;
+	private int nullKey1;
+	private int nullKey2;
+	private int key111a;
+	private int key111b;
+	private int key112;
+
+	@Before
+	public void init() throws SurveyImportException, IdmlParseException, SurveyValidationException {
+		survey = importModel();
+		//records with the same key (or without key) are ordered by id
+		nullKey1 = saveRecord(null);
+		key111a = saveRecord("10_111");
+		key112 = saveRecord("10_112");
+		nullKey2 = saveRecord(null);
+		key111b = saveRecord("10_111");
+	}
+
+	@Test
+	public void testSeekAscendingWithNullsFirst() {
+		List<Integer> expected = Arrays.asList(nullKey1, nullKey2, key111a, key111b, key112);
+		RecordSummarySortField sortField = new RecordSummarySortField(Sortable.KEY1, false);
+		assertEquals(expected, loadSummaryIds(sortField, null));
+		for (int pageSize = 1; pageSize <= 3; pageSize++) {
+			assertEquals("page size " + pageSize, expected, loadSummaryIdsByPage(sortField, pageSize));
+		}
+	}
+
+	@Test
+	public void testSeekDescendingWithNullsLast() {
+		List<Integer> expected = Arrays.asList(key112, key111a, key111b, nullKey1, nullKey2);
+		RecordSummarySortField sortField = new RecordSummarySortField(Sortable.KEY1, true);
+		assertEquals(expected, loadSummaryIds(sortField, null));
+		for (int pageSize = 1; pageSize <= 3; pageSize++) {
+			assertEquals("page size " + pageSize, expected, loadSummaryIdsByPage(sortField, pageSize));
+		}
+	}
+
+	@Test
+	public void testSeekAfterDeletedRecord() {
+		recordDao.delete(key111a);
+		//sort values of a deleted record are not known: only the record id is considered
+		List<Integer> ids = loadSummaryIds(new RecordSummarySortField(Sortable.KEY1, false), key111a);
+		assertEquals(Arrays.asList(nullKey2, key111b, key112), ids);
+	}
+
+	private List<Integer> loadSummaryIdsByPage(RecordSummarySortField sortField, int pageSize) {
+		List<Integer> result = new ArrayList<Integer>();
+		Integer afterRecordId = null;
+		while (true) {
+			List<Integer> page = loadSummaryIds(sortField, afterRecordId, pageSize);
+			result.addAll(page);
+			if (page.size() < pageSize) {
+				return result;
+			}
+			afterRecordId = page.get(page.size() - 1);
+		}
+	}
+
+	private List<Integer> loadSummaryIds(RecordSummarySortField sortField, Integer afterRecordId) {
+		return loadSummaryIds(sortField, afterRecordId, null);
+	}
+
+	private List<Integer> loadSummaryIds(RecordSummarySortField sortField, Integer afterRecordId, Integer maxNumberOfRecords) {
+		RecordFilter filter = new RecordFilter(survey);
+		filter.setAfterRecordId(afterRecordId);
+		filter.setMaxNumberOfRecords(maxNumberOfRecords);
+		List<CollectRecordSummary> summaries = recordDao.loadSummaries(filter, Arrays.asList(sortField));
+		List<Integer> ids = new ArrayList<Integer>(summaries.size());
+		for (CollectRecordSummary summary : summaries) {
+			ids.add(summary.getId());
+		}
+		return ids;
+	}
+
+	private int saveRecord(String id) {
+		List<NodeBuilder> attributes = new ArrayList<NodeBuilder>();
+		if (id != null) {
+			attributes.add(attribute("id", id));
+		}
+		attributes.add(attribute("region", "001"));
+		attributes.add(attribute("district", "002"));
+		CollectRecord record = (CollectRecord) record(attributes.toArray(new NodeBuilder[attributes.size()]))
+				.build(survey, "cluster", "2.0");
+		new RecordUpdater().initializeNewRecord(record);
+		User user = userManager.loadAdminUser();
+		record.setCreatedBy(user);
+		record.setModifiedBy(user);
+		recordManager.save(record);
+		return record.getId();
+	}
+
+}
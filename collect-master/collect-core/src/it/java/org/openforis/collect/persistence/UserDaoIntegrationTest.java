@@ -3,6 +3,12 @@ package org.openforis.collect.persistence;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import org.junit.Test;
 import org.openforis.collect.CollectTest;
@@ -43,4 +49,40 @@ public class UserDaoIntegrationTest extends CollectTest {
 		assertNull(reloaded);
 	}
 	
+	@Test
+	public void testLoadByIds() {
+		Integer id1 = insertUser("user1").getId();
+		Integer id2 = insertUser("user2").getId();
+		Integer id3 = insertUser("user3").getId();
+		Integer missingId = Collections.max(Arrays.asList(id1, id2, id3)) + 100;
+		
+		//users are sorted by id, whatever the order of the requested ids
+		List<User> users = userDao.loadByIds(Arrays.asList(id3, missingId, id1, id2));
+		assertEquals(Arrays.asList(id1, id2, id3), extractIds(users));
+		assertEquals("user1", users.get(0).getUsername());
+		
+		//missing ids are ignored
+		assertEquals(Arrays.asList(id2), extractIds(userDao.loadByIds(Arrays.asList(missingId, id2))));
+		assertTrue(userDao.loadByIds(Arrays.asList(missingId)).isEmpty());
+		assertTrue(userDao.loadByIds(Collections.<Integer>emptyList()).isEmpty());
+	}
+	
+	private User insertUser(String username) {
+		User user = new User();
+		user.setEnabled(Boolean.TRUE);
+		user.setUsername(username);
+		user.setPassword("pass");
+		user.addRole(UserRole.ENTRY);
+		userDao.insert(user);
+		return user;
+	}
+	
+	private List<Integer> extractIds(List<User> users) {
+		List<Integer> ids = new ArrayList<Integer>(users.size());
+		for (User user : users) {
+			ids.add(user.getId());
+		}
+		return ids;
+	}
+	
 }
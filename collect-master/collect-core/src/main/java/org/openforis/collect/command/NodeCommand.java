@@ -5,7 +5,9 @@ public abstract class NodeCommand extends RecordCommand {
 	private static final long serialVersionUID = 1L;
 
 	private int nodeDefId;
+	private Integer parentEntityId;
 	private String parentEntityPath;
+	private Integer nodeId;
 	private String nodePath;
 
 	public int getNodeDefId() {
@@ -16,6 +18,18 @@ public abstract class NodeCommand extends RecordCommand {
 		this.nodeDefId = nodeDefId;
 	}
 	
+	/**
+	 * Internal id of the parent entity (see {@link org.openforis.collect.event.RecordEvent#getParentEntityId()}):
+	 * if specified, the parent entity is found by id and the path is used only to verify it
+	 */
+	public Integer getParentEntityId() {
+		return parentEntityId;
+	}
+	
+	public void setParentEntityId(Integer parentEntityId) {
+		this.parentEntityId = parentEntityId;
+	}
+	
 	public String getParentEntityPath() {
 		return parentEntityPath;
 	}
@@ -24,6 +38,18 @@ public abstract class NodeCommand extends RecordCommand {
 		this.parentEntityPath = parentEntityPath;
 	}
 	
+	/**
+	 * Internal id of the node (see {@link org.openforis.collect.event.RecordEvent#getNodeId()}):
+	 * if specified, the node is found by id and the path is used only to verify it
+	 */
+	public Integer getNodeId() {
+		return nodeId;
+	}
+	
+	public void setNodeId(Integer nodeId) {
+		this.nodeId = nodeId;
+	}
+	
 	public String getNodePath() {
 		return nodePath;
 	}
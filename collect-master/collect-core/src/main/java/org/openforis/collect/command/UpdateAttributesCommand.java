@@ -0,0 +1,23 @@
+package org.openforis.collect.command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Updates several attributes of the same record at once: dependent nodes are updated and validated
+ * only once for all the attributes and the record is saved only once
+ */
+public class UpdateAttributesCommand extends RecordCommand {
+
+	private static final long serialVersionUID = 1L;
+
+	private List<UpdateAttributeCommand<?>> commands = new ArrayList<UpdateAttributeCommand<?>>();
+
+	public List<UpdateAttributeCommand<?>> getCommands() {
+		return commands;
+	}
+
+	public void setCommands(List<UpdateAttributeCommand<?>> commands) {
+		this.commands = commands;
+	}
+}
@@ -11,7 +11,7 @@ public class AddNodeCommandHandler<C extends AddNodeCommand> extends NodeCommand
 	@Override
 	public RecordCommandResult executeForResult(C command) {
 		CollectRecord record = findRecord(command);
-		Entity parentEntity = record.findNodeByPath(command.getParentEntityPath());
+		Entity parentEntity = findParentEntity(command, record);
 		NodeDefinition nodeDef = parentEntity.getDefinition().getChildDefinition(command.getNodeDefId());
 		NodeChangeSet changeSet = recordUpdater.addNode(parentEntity, nodeDef);
 		
@@ -17,7 +17,7 @@ public class DeleteNodeCommandHandler<C extends DeleteNodeCommand> extends NodeC
 	@Override
 	public RecordCommandResult executeForResult(C command) {
 		final CollectRecord record = findRecord(command);
-		Node<?> node = findNode(command, record);
+		Node<?> node = findNode(command, record, Node.class);
 
 		if (node instanceof Entity) {
 			deleteDescendantFiles(record, (Entity) node);
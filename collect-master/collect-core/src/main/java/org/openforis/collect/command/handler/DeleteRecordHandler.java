@@ -4,6 +4,7 @@ import java.util.Date;
 
 import org.openforis.collect.command.DeleteRecordCommand;
 import org.openforis.collect.event.RecordDeletedEvent;
+import org.openforis.collect.manager.CachedRecordProvider;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.persistence.RecordPersistenceException;
 
@@ -13,7 +14,13 @@ public class DeleteRecordHandler extends RecordCommandHandler<DeleteRecordComman
 	protected RecordCommandResult executeForResult(DeleteRecordCommand command) {
 		try {
 			CollectSurvey survey = surveyManager.getById(command.getSurveyId());
+			if (recordSaver != null) {
+				recordSaver.discard(command.getRecordId());
+			}
 			recordManager.delete(command.getRecordId());
+			if (recordProvider instanceof CachedRecordProvider) {
+				((CachedRecordProvider) recordProvider).removeRecord(command.getRecordId());
+			}
 
 			RecordCommandResult result = new RecordCommandResult();
 			result.setEvent(
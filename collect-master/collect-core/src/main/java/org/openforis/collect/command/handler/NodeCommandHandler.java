@@ -3,6 +3,7 @@ package org.openforis.collect.command.handler;
 import org.openforis.collect.command.NodeCommand;
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.RecordUpdater;
+import org.openforis.idm.metamodel.NodeDefinition;
 import org.openforis.idm.model.Entity;
 import org.openforis.idm.model.Node;
 
@@ -10,18 +11,33 @@ public abstract class NodeCommandHandler<C extends NodeCommand> extends RecordCo
 
 	protected RecordUpdater recordUpdater = new RecordUpdater();
 
-	protected  <N extends Node<?>> N findNode(NodeCommand command) {
+	protected  <N extends Node<?>> N findNode(NodeCommand command, Class<N> type) {
 		CollectRecord record = findRecord(command);
-		return findNode(command, record);
+		return findNode(command, record, type);
 	}
 
-	protected  <N extends Node<?>> N findNode(NodeCommand command, CollectRecord record) {
-		return record.findNodeByPath(command.getNodePath());
+	protected static <N extends Node<?>> N findNode(NodeCommand command, CollectRecord record, Class<N> type) {
+		N node = record.findNodeByInternalIdOrPath(command.getNodeId(), command.getNodePath(), command.getNodeDefId(), type);
+		if (node == null) {
+			throw new IllegalArgumentException(String.format("Node not found: id %d path %s",
+					command.getNodeId(), command.getNodePath()));
+		}
+		return node;
 	}
 
 	protected Entity findParentEntity(NodeCommand command) {
 		CollectRecord record = findRecord(command);
-		Entity parentEntity = record.findNodeByPath(command.getParentEntityPath());
+		return findParentEntity(command, record);
+	}
+
+	protected static Entity findParentEntity(NodeCommand command, CollectRecord record) {
+		NodeDefinition nodeDef = record.getSurvey().getSchema().getDefinitionById(command.getNodeDefId());
+		Entity parentEntity = record.findNodeByInternalIdOrPath(command.getParentEntityId(), command.getParentEntityPath(),
+				nodeDef.getParentDefinition().getId(), Entity.class);
+		if (parentEntity == null) {
+			throw new IllegalArgumentException(String.format("Parent entity not found: id %d path %s",
+					command.getParentEntityId(), command.getParentEntityPath()));
+		}
 		return parentEntity;
 	}
 
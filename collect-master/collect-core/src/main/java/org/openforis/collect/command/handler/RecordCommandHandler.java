@@ -1,19 +1,21 @@
 package org.openforis.collect.command.handler;
 
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-import org.openforis.collect.command.NodeCommand;
 import org.openforis.collect.command.RecordCommand;
 import org.openforis.collect.event.EventListener;
 import org.openforis.collect.event.EventListenerToList;
 import org.openforis.collect.event.EventProducer;
 import org.openforis.collect.event.EventProducer.EventProducerContext;
 import org.openforis.collect.event.RecordEvent;
+import org.openforis.collect.manager.CachedRecordProvider;
 import org.openforis.collect.manager.MessageSource;
 import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.manager.RecordProvider;
 import org.openforis.collect.manager.SurveyManager;
 import org.openforis.collect.manager.UserManager;
+import org.openforis.collect.manager.WriteBehindRecordSaver;
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectSurvey;
@@ -32,8 +34,9 @@ public abstract class RecordCommandHandler<C extends RecordCommand> implements C
 	protected RecordManager recordManager;
 	protected UserManager userManager;
 	protected MessageSource messageSource;
+	protected WriteBehindRecordSaver recordSaver;
 
-	protected CollectRecord findRecord(NodeCommand command) {
+	protected CollectRecord findRecord(RecordCommand command) {
 		CollectSurvey survey = surveyManager.getOrLoadSurveyById(command.getSurveyId());
 		return recordProvider.provide(survey, command.getRecordId(), Step.fromRecordStep(command.getRecordStep()));
 	}
@@ -43,7 +46,42 @@ public abstract class RecordCommandHandler<C extends RecordCommand> implements C
 	protected void persistRecord(RecordCommandResult result) {
 		CollectRecord record = result.getRecord();
 		if (!record.isPreview()) {
-			recordManager.save(record);
+			if (recordSaver == null) {
+				recordManager.saveChanges(record, result.getChangeSet());
+			} else {
+				recordSaver.save(record, result.getChangeSet());
+			}
+		}
+	}
+
+	/**
+	 * Executes the command and persists the record holding the lock of the record in the shared cache (if any), 
+	 * so that the commands for the same record are applied one at a time, in order of arrival;
+	 * when a record saver is used, the record is locked so that it cannot be saved (asynchronously) while it's being modified
+	 */
+	private RecordCommandResult executeAndPersist(C command) {
+		if (!(recordProvider instanceof CachedRecordProvider)) {
+			return executeAndPersistInternal(command);
+		}
+		Lock lock = ((CachedRecordProvider) recordProvider).getLock(command.getRecordId());
+		lock.lock();
+		try {
+			return executeAndPersistInternal(command);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private RecordCommandResult executeAndPersistInternal(C command) {
+		if (recordSaver == null) {
+			RecordCommandResult result = executeForResult(command);
+			persistRecord(result);
+			return result;
+		}
+		synchronized (recordSaver.getLock(command.getRecordId())) {
+			RecordCommandResult result = executeForResult(command);
+			persistRecord(result);
+			return result;
 		}
 	}
 
@@ -53,8 +91,7 @@ public abstract class RecordCommandHandler<C extends RecordCommand> implements C
 
 	@Override
 	public List<RecordEvent> executeSync(C command) {
-		RecordCommandResult result = executeForResult(command);
-		persistRecord(result);
+		RecordCommandResult result = executeAndPersist(command);
 		EventListenerToList eventListener = new EventListenerToList();
 		notifyEvents(result, command, eventListener);
 		return eventListener.getList();
@@ -69,8 +106,7 @@ public abstract class RecordCommandHandler<C extends RecordCommand> implements C
 			protected void buildTasks() throws Throwable {
 				addTask(new Task() {
 					protected void execute() throws Throwable {
-						result = executeForResult(command);
-						persistRecord(result);
+						result = executeAndPersist(command);
 					}
 				});
 			}
@@ -130,6 +166,10 @@ public abstract class RecordCommandHandler<C extends RecordCommand> implements C
 		this.messageSource = messageSource;
 	}
 
+	public void setRecordSaver(WriteBehindRecordSaver recordSaver) {
+		this.recordSaver = recordSaver;
+	}
+
 	public static class RecordCommandResult {
 		private CollectRecord record;
 		private NodeChangeSet changeSet;
@@ -11,7 +11,8 @@ public class UpdateAttributeCommandHandler<C extends UpdateAttributeCommand<?>>
 	@Override
 	public RecordCommandResult executeForResult(C command) {
 		CollectRecord record = findRecord(command);
-		Attribute<?, Value> attribute = findNode(command, record);
+		@SuppressWarnings("unchecked")
+		Attribute<?, Value> attribute = findNode(command, record, Attribute.class);
 		NodeChangeSet nodeChangeSet = recordUpdater.updateAttribute(attribute, command.getValue());
 		return new RecordCommandResult(record, nodeChangeSet);
 	}
@@ -0,0 +1,62 @@
+package org.openforis.collect.command.handler;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openforis.collect.command.UpdateAttributeCommand;
+import org.openforis.collect.command.UpdateAttributesCommand;
+import org.openforis.collect.command.UpdateMultipleAttributeCommand;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.idm.metamodel.AttributeDefinition;
+import org.openforis.idm.model.Attribute;
+import org.openforis.idm.model.Entity;
+import org.openforis.idm.model.NodePointer;
+import org.openforis.idm.model.Value;
+
+public class UpdateAttributesCommandHandler extends RecordCommandHandler<UpdateAttributesCommand> {
+
+	private RecordUpdater recordUpdater = new RecordUpdater();
+
+	@Override
+	public RecordCommandResult executeForResult(UpdateAttributesCommand command) {
+		CollectRecord record = findRecord(command);
+		Map<Attribute<?, ?>, Value> valuesByAttribute = new LinkedHashMap<Attribute<?, ?>, Value>();
+		Map<NodePointer, List<Value>> valuesByMultipleAttributePointer = new LinkedHashMap<NodePointer, List<Value>>();
+		for (UpdateAttributeCommand<?> attributeCommand : command.getCommands()) {
+			if (attributeCommand.getRecordId() != null && !attributeCommand.getRecordId().equals(command.getRecordId())) {
+				throw new IllegalArgumentException(String.format("Attribute %s belongs to a different record: %d",
+						attributeCommand.getNodePath(), attributeCommand.getRecordId()));
+			}
+			if (attributeCommand instanceof UpdateMultipleAttributeCommand) {
+				// same as UpdateMultipleAttributeCommandHandler
+				UpdateMultipleAttributeCommand<?> multipleAttributeCommand = (UpdateMultipleAttributeCommand<?>) attributeCommand;
+				Entity parentEntity = NodeCommandHandler.findParentEntity(multipleAttributeCommand, record);
+				AttributeDefinition attrDef = record.getSurvey().getSchema()
+						.getDefinitionById(multipleAttributeCommand.getNodeDefId());
+				@SuppressWarnings("unchecked")
+				List<Value> values = (List<Value>) multipleAttributeCommand.getValues();
+				if (attrDef.isMultiple()) {
+					valuesByMultipleAttributePointer.put(new NodePointer(parentEntity, attrDef),
+							values == null ? Collections.<Value>emptyList() : values);
+				} else {
+					Attribute<?, ?> attribute = parentEntity.getChild(attrDef);
+					if (attribute == null) {
+						throw new IllegalArgumentException(String.format("Attribute %s not found in entity %s",
+								attrDef.getName(), parentEntity.getPath()));
+					}
+					Value value = values == null || values.isEmpty() ? multipleAttributeCommand.getValue() : values.get(0);
+					valuesByAttribute.put(attribute, value);
+				}
+			} else {
+				Attribute<?, ?> attribute = NodeCommandHandler.findNode(attributeCommand, record, Attribute.class);
+				valuesByAttribute.put(attribute, attributeCommand.getValue());
+			}
+		}
+		NodeChangeSet nodeChangeSet = recordUpdater.updateAttributes(valuesByAttribute, valuesByMultipleAttributePointer);
+		return new RecordCommandResult(record, nodeChangeSet);
+	}
+}
@@ -16,7 +16,7 @@ public class UpdateMultipleAttributeCommandHandler<C extends UpdateMultipleAttri
 	@Override
 	public RecordCommandResult executeForResult(C command) {
 		CollectRecord record = findRecord(command);
-		Entity parentEntity = record.findNodeByPath(command.getParentEntityPath());
+		Entity parentEntity = findParentEntity(command, record);
 		AttributeDefinition attrDef = record.getSurvey().getSchema().getDefinitionById(command.getNodeDefId());
 		@SuppressWarnings("unchecked")
 		List<Value> values = (List<Value>) command.getValues();
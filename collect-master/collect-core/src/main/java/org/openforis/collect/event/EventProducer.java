@@ -109,7 +109,7 @@ public class EventProducer {
 
 		String parentEntityPath = change instanceof NodeDeleteChange ? ((NodeDeleteChange) change).getParentEntityPath()
 				: node.getParent() == null ? null : node.getParent().getPath();
-		EventFactory factory = new EventFactory(recordId, recordStep, ancestorIds, parentEntityPath, node);
+		EventFactory factory = new EventFactory(recordId, recordStep, ancestorIds, change.getParentId(), parentEntityPath, node);
 
 		if (change instanceof EntityChange) {
 			EntityChange entityChange = (EntityChange) change;
@@ -174,18 +174,20 @@ public class EventProducer {
 		Integer recordId;
 		RecordStep recordStep;
 		List<String> ancestorIds;
+		Integer parentEntityId;
 		String parentEntityPath;
 		Node<?> node;
 
 		EventFactory(Integer recordId, RecordStep recordStep, List<String> ancestorIds, Node<?> node) {
-			this(recordId, recordStep, ancestorIds, node.getParent().getPath(), node);
+			this(recordId, recordStep, ancestorIds, node.getParent().getInternalId(), node.getParent().getPath(), node);
 		}
 
-		EventFactory(Integer recordId, RecordStep recordStep, List<String> ancestorIds, String parentEntityPath,
-				Node<?> node) {
+		EventFactory(Integer recordId, RecordStep recordStep, List<String> ancestorIds, Integer parentEntityId, 
+				String parentEntityPath, Node<?> node) {
 			this.recordId = recordId;
 			this.recordStep = recordStep;
 			this.ancestorIds = ancestorIds;
+			this.parentEntityId = parentEntityId;
 			this.parentEntityPath = parentEntityPath;
 			this.node = node;
 		}
@@ -385,6 +387,7 @@ public class EventProducer {
 			event.setAncestorIds(ancestorIds);
 			event.setNodeId(String.valueOf(node.getInternalId()));
 			event.setNodePath(node.getPath());
+			event.setParentEntityId(parentEntityId);
 			event.setParentEntityPath(parentEntityPath);
 			event.setUserName(context.userName);
 			return event;
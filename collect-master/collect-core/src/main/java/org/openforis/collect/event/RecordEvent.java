@@ -18,6 +18,7 @@ public abstract class RecordEvent {
 	private List<String> ancestorIds;
 	private String nodeId;
 	private String nodePath;
+	private Integer parentEntityId;
 	private String parentEntityPath;
 	private Date timestamp = new Date();
 	private String userName;
@@ -90,6 +91,14 @@ public abstract class RecordEvent {
 		this.nodePath = nodePath;
 	}
 	
+	public Integer getParentEntityId() {
+		return parentEntityId;
+	}
+	
+	public void setParentEntityId(Integer parentEntityId) {
+		this.parentEntityId = parentEntityId;
+	}
+	
 	public String getParentEntityPath() {
 		return parentEntityPath;
 	}
@@ -1,6 +1,9 @@
 package org.openforis.collect.event;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 
@@ -34,4 +37,40 @@ public class RecordTransaction extends SurveyEvent {
 		return events;
 	}
 
+	/**
+	 * Returns the events in the specified transactions, in the same order, 
+	 * skipping the attribute value updates overwritten by a following update of the same attribute
+	 * (only if no other node in the same record has been created or deleted in the meantime)
+	 */
+	public static List<RecordEvent> coalesceEvents(List<RecordTransaction> transactions) {
+		List<RecordEvent> events = new ArrayList<RecordEvent>();
+		Map<Integer, Map<String, Integer>> lastUpdateIndexByNodeIdByRecordId = new HashMap<Integer, Map<String, Integer>>();
+		for (RecordTransaction transaction : transactions) {
+			for (RecordEvent event : transaction.getEvents()) {
+				Integer recordId = event.getRecordId() == null ? transaction.getRecordId() : event.getRecordId();
+				if (event instanceof AttributeValueUpdatedEvent) {
+					Map<String, Integer> lastUpdateIndexByNodeId = lastUpdateIndexByNodeIdByRecordId.get(recordId);
+					if (lastUpdateIndexByNodeId == null) {
+						lastUpdateIndexByNodeId = new HashMap<String, Integer>();
+						lastUpdateIndexByNodeIdByRecordId.put(recordId, lastUpdateIndexByNodeId);
+					}
+					Integer previousUpdateIndex = lastUpdateIndexByNodeId.put(event.getNodeId(), events.size());
+					if (previousUpdateIndex != null) {
+						events.set(previousUpdateIndex, null);
+					}
+				} else {
+					lastUpdateIndexByNodeIdByRecordId.remove(recordId);
+				}
+				events.add(event);
+			}
+		}
+		List<RecordEvent> result = new ArrayList<RecordEvent>(events.size());
+		for (RecordEvent event : events) {
+			if (event != null) {
+				result.add(event);
+			}
+		}
+		return result;
+	}
+
 }
@@ -1,23 +1,26 @@
 package org.openforis.collect.io.data;
 
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.openforis.collect.concurrency.SurveyLockingJob;
 import org.openforis.collect.io.data.csv.CSVDataExportParameters;
@@ -28,10 +31,11 @@ import org.openforis.collect.io.data.csv.ModelExcelWriter;
 import org.openforis.collect.io.data.csv.ModelWriter;
 import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.model.CollectRecord;
-import org.openforis.collect.model.CollectRecordSummary;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.RecordFilter;
 import org.openforis.collect.persistence.RecordPersistenceException;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.commons.collection.Visitor;
 import org.openforis.concurrency.Task;
 import org.openforis.idm.metamodel.EntityDefinition;
 import org.openforis.idm.metamodel.NodeDefinition;
@@ -88,9 +92,14 @@ public class CSVDataExportJob extends SurveyLockingJob {
 		
 		@Override
 		protected long countTotalItems() {
-			int totalRecords = recordManager.countRecords(parameters.getRecordFilter());
-			Collection<EntityDefinition> entitiesToExport = getEntitiesToExport();
-			return totalRecords * entitiesToExport.size();
+			int recordsCount = recordManager.countRecords(parameters.getRecordFilter());
+			if (isExcelWithImages()) {
+				//records are loaded once per entity
+				return (long) recordsCount * getEntitiesToExport().size();
+			} else {
+				//every record is loaded only once and printed by all the entity writers
+				return recordsCount;
+			}
 		}
 		
 		@Override
@@ -107,25 +116,126 @@ public class CSVDataExportJob extends SurveyLockingJob {
 				if ( entities.size() == 1 && ! parameters.isAlwaysGenerateZipFile() ) {
 					//export entity into a single csv file 
 					EntityDefinition entity = entities.iterator().next();
-					exportData(bufferedOutputStream, entity.getId());
+					ModelWriter modelWriter = createModelWriter(bufferedOutputStream, entity.getId());
+					exportData(Arrays.asList(modelWriter));
+					if (modelWriter instanceof ModelExcelWriter) {
+						modelWriter.close();
+					} else {
+						//closing modelWriter will close referenced output stream
+						modelWriter.flush();
+					}
 				} else {
 					//export entities into a zip file containing different csv files
 					zipOS = new ZipOutputStream(bufferedOutputStream);
-					EntryNameGenerator entryNameGenerator = new EntryNameGenerator(parameters.getOutputFormat());
-					for (EntityDefinition entity : entities) {
+					exportDataIntoZipFile(zipOS, entities);
+				}
+			} finally {
+				IOUtils.closeQuietly(zipOS);
+				IOUtils.closeQuietly(bufferedOutputStream);
+				IOUtils.closeQuietly(fileOutputStream);
+			}
+		}
+		
+		/**
+		 * Writes every entity in a single pass over the records, then copies the written data into the zip file entries.
+		 * CSV data is written into temporary files; Excel data in streaming mode is kept by the writers 
+		 * (with bounded memory) and written straight into the zip entries.
+		 * Excel workbooks with embedded images are kept entirely in memory, so they are written one at a time 
+		 * (one pass over the records for each entity).
+		 */
+		private void exportDataIntoZipFile(ZipOutputStream zipOS, Collection<EntityDefinition> entities) 
+				throws InvalidExpressionException, IOException, RecordPersistenceException {
+			EntryNameGenerator entryNameGenerator = new EntryNameGenerator(parameters.getOutputFormat());
+			if (isExcelWithImages()) {
+				for (EntityDefinition entity : entities) {
+					if (! isRunning()) {
+						return;
+					}
+					//workbook will be written into the current zip entry when closing the writer
+					ModelWriter modelWriter = createModelWriter(new CloseShieldOutputStream(zipOS), entity.getId());
+					boolean closed = false;
+					try {
+						exportData(Arrays.asList(modelWriter));
 						if (isRunning()) {
-							String entryName = entryNameGenerator.generateEntryName(entity);
-							ZipEntry entry = new ZipEntry(entryName);
-							zipOS.putNextEntry(entry);
-							exportData(zipOS, entity.getId());
+							zipOS.putNextEntry(new ZipEntry(entryNameGenerator.generateEntryName(entity)));
+							closed = true;
+							modelWriter.close();
+							zipOS.closeEntry();
+						}
+					} finally {
+						if (! closed) {
+							IOUtils.closeQuietly(modelWriter);
+						}
+					}
+				}
+				return;
+			}
+			boolean streamingExcel = isExcelStreamingMode();
+			List<String> entryNames = new ArrayList<String>(entities.size());
+			Map<String, File> tempFileByEntryName = new LinkedHashMap<String, File>();
+			List<ModelWriter> modelWriters = new ArrayList<ModelWriter>(entities.size());
+			try {
+				for (EntityDefinition entity : entities) {
+					String entryName = entryNameGenerator.generateEntryName(entity);
+					entryNames.add(entryName);
+					OutputStream writerOutputStream;
+					if (streamingExcel) {
+						//workbook will be written into the current zip entry when closing the writer
+						writerOutputStream = new CloseShieldOutputStream(zipOS);
+					} else {
+						File tempFile = File.createTempFile("collect_data_export_" + entity.getName(), 
+								"." + entryNameGenerator.getEntryExtension());
+						tempFileByEntryName.put(entryName, tempFile);
+						writerOutputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+					}
+					modelWriters.add(createModelWriter(writerOutputStream, entity.getId()));
+				}
+				exportData(modelWriters);
+				
+				if (streamingExcel) {
+					if (isRunning()) {
+						for (int i = 0; i < modelWriters.size(); i++) {
+							zipOS.putNextEntry(new ZipEntry(entryNames.get(i)));
+							modelWriters.get(i).close();
+							zipOS.closeEntry();
+						}
+						modelWriters.clear();
+					}
+				} else {
+					//closing model writers will close the temporary files output streams
+					closeModelWriters(modelWriters);
+					modelWriters.clear();
+					
+					if (isRunning()) {
+						for (Entry<String, File> entry : tempFileByEntryName.entrySet()) {
+							zipOS.putNextEntry(new ZipEntry(entry.getKey()));
+							FileUtils.copyFile(entry.getValue(), zipOS);
 							zipOS.closeEntry();
 						}
 					}
 				}
 			} finally {
-				IOUtils.closeQuietly(zipOS);
-				IOUtils.closeQuietly(bufferedOutputStream);
-				IOUtils.closeQuietly(fileOutputStream);
+				closeModelWriters(modelWriters);
+				for (File tempFile : tempFileByEntryName.values()) {
+					FileUtils.deleteQuietly(tempFile);
+				}
+			}
+		}
+		
+		/**
+		 * Excel files are written in streaming mode (bounded memory usage) unless images have to be embedded into them
+		 */
+		private boolean isExcelStreamingMode() {
+			return parameters.getOutputFormat() == OutputFormat.XLSX && ! parameters.isIncludeImages();
+		}
+		
+		private boolean isExcelWithImages() {
+			return parameters.getOutputFormat() == OutputFormat.XLSX && parameters.isIncludeImages();
+		}
+		
+		private void closeModelWriters(List<ModelWriter> modelWriters) {
+			for (ModelWriter modelWriter : modelWriters) {
+				IOUtils.closeQuietly(modelWriter);
 			}
 		}
 		
@@ -139,45 +249,48 @@ public class CSVDataExportJob extends SurveyLockingJob {
 			}
 		}
 		
-		private void exportData(OutputStream outputStream, int entityDefId) throws InvalidExpressionException, IOException, RecordPersistenceException {
+		private ModelWriter createModelWriter(OutputStream outputStream, int entityDefId) throws InvalidExpressionException, IOException {
 			RecordFilter recordFilter = parameters.getRecordFilter();
 			CSVDataExportColumnProviderGenerator csvDataExportColumnProviderGenerator = new CSVDataExportColumnProviderGenerator(recordFilter.getSurvey(), parameters);
 			DataTransformation transform = csvDataExportColumnProviderGenerator.generateDataTransformation(entityDefId);
 			
-			ByteArrayOutputStream tempOutputStream = null;
 			ModelWriter modelWriter;
 			switch(parameters.getOutputFormat()) {
 			case XLSX:
-				tempOutputStream = new ByteArrayOutputStream();
-				modelWriter = new ModelExcelWriter(tempOutputStream, transform, parameters.getNodeFilter());
+				modelWriter = new ModelExcelWriter(outputStream, transform, parameters.getNodeFilter(), isExcelStreamingMode());
 				break;
 			case CSV:
 			default:
 				modelWriter = new ModelCsvWriter(outputStream, transform, parameters.getNodeFilter());
 			}
 			modelWriter.printColumnHeadings();
-			
-			CollectSurvey survey = recordFilter.getSurvey();
-			List<CollectRecordSummary> summaries = recordManager.loadSummaries(recordFilter);
-			for (CollectRecordSummary s : summaries) {
-				if ( isRunning() ) {
-					CollectRecord record = recordManager.load(survey, s.getId(), recordFilter.getStepGreaterOrEqual(), 
-							false, parameters.isAlwaysEvaluateCalculatedAttributes());
+			return modelWriter;
+		}
+		
+		/**
+		 * Loads every record matching the record filter only once and prints it using all the specified model writers
+		 */
+		private void exportData(final List<ModelWriter> modelWriters) throws InvalidExpressionException, IOException, RecordPersistenceException {
+			final RecordFilter recordFilter = parameters.getRecordFilter();
+			recordManager.visitRecords(recordFilter, recordFilter.getStepGreaterOrEqual(), false, 
+					parameters.isAlwaysEvaluateCalculatedAttributes(), new Visitor<CollectRecord>() {
+				public void visit(CollectRecord record) {
 					if (isFilterExpressionVerified(record, recordFilter.getFilterExpression())) {
-						modelWriter.printData(record);
-						incrementProcessedItems();
+						for (ModelWriter modelWriter : modelWriters) {
+							try {
+								modelWriter.printData(record);
+							} catch (InvalidExpressionException e) {
+								throw new RuntimeException(e);
+							}
+						}
 					}
-				} else {
-					break;
+					incrementProcessedItems();
 				}
-			}
-			if (modelWriter instanceof ModelExcelWriter) {
-				modelWriter.close();
-				tempOutputStream.writeTo(outputStream);
-			} else {
-				//closing modelWriter will close referenced output stream
-				modelWriter.flush();
-			}
+			}, new Predicate<CollectRecord>() {
+				public boolean evaluate(CollectRecord record) {
+					return ! isRunning();
+				}
+			});
 		}
 		
 		private Collection<EntityDefinition> getEntitiesToExport() {
@@ -428,7 +428,7 @@ public class XMLDataImportProcess implements Callable<Void>, Closeable {
 							if (step.after(originalRecordStep)) {
 								queries = Arrays.asList(recordManager.createDataInsertQuery(parsedRecord, oldRecordSummary.getId(), step, newWorkflowSequenceNumber));
 							} else {
-								queries = Arrays.asList(recordManager.createDataUpdateQuery(parsedRecord, oldRecordSummary.getId(), step, newWorkflowSequenceNumber));
+								queries = recordManager.createDataUpdateQueries(parsedRecord, oldRecordSummary.getId(), step, newWorkflowSequenceNumber);
 							}
 						} else {
 							parsedRecord.setId(nextRecordId ++);
@@ -442,7 +442,7 @@ public class XMLDataImportProcess implements Callable<Void>, Closeable {
 						if (step.after(originalRecordStep)) {
 							queries = Arrays.asList(recordManager.createDataInsertQuery(lastProcessedRecord, lastProcessedRecord.getId(), step, sequenceNumber));
 						} else {
-							queries = Arrays.asList(recordManager.createDataUpdateQuery(lastProcessedRecord, lastProcessedRecord.getId(), step, sequenceNumber));
+							queries = recordManager.createDataUpdateQueries(lastProcessedRecord, lastProcessedRecord.getId(), step, sequenceNumber);
 						}
 					}
 					appendQueries(queries);
@@ -3,6 +3,7 @@ package org.openforis.collect.io.data.csv;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
 
 import org.openforis.collect.io.data.NodeFilter;
 import org.openforis.commons.io.excel.ExcelFlatValuesWriter;
@@ -13,21 +14,81 @@ import org.openforis.idm.model.expression.InvalidExpressionException;
  */
 public class ModelExcelWriter extends ModelWriter {
 
+	private OutputStream output;
+	/**
+	 * If specified, only the rows in the row access window are kept in memory (see {@link StreamingExcelValuesWriter})
+	 */
+	private StreamingExcelValuesWriter streamingWriter;
+
 	public ModelExcelWriter(OutputStream output, DataTransformation xform) throws IOException, InvalidExpressionException {
 		this(output, xform, null);
 	}
 	
 	public ModelExcelWriter(OutputStream output, DataTransformation xform, NodeFilter nodeFilter) throws IOException, InvalidExpressionException {
+		this(output, xform, nodeFilter, false);
+	}
+	
+	/**
+	 * Creates an Excel writer; if streaming is true, memory usage will be bounded by the row access window size,
+	 * no matter how many rows are written.
+	 */
+	public ModelExcelWriter(OutputStream output, DataTransformation xform, NodeFilter nodeFilter, boolean streaming) throws IOException, InvalidExpressionException {
 		super(output, xform, nodeFilter);
+		this.output = output;
+		if (streaming) {
+			streamingWriter = new StreamingExcelValuesWriter(this.output);
+		} else {
+			try {
+				flatDataWriter = new ExcelFlatValuesWriter(this.output);
+			} catch (UnsupportedEncodingException e) {
+				throw new RuntimeException(e);
+			}
+		}
 	}
 	
 	@Override
 	protected void initializeFlatDataWriter(OutputStream output) {
-		try {
-			flatDataWriter = new ExcelFlatValuesWriter(output);
-		} catch (UnsupportedEncodingException e) {
-			throw new RuntimeException(e);
+		//writer initialized in constructor, when streaming mode is known
+	}
+	
+	@Override
+	protected void writeHeaders(List<Column> columns) throws IOException {
+		if (streamingWriter == null) {
+			super.writeHeaders(columns);
+		} else {
+			streamingWriter.writeHeaders(columns);
+		}
+	}
+	
+	@Override
+	protected void writeValues(Object[] values) {
+		if (streamingWriter == null) {
+			super.writeValues(values);
+		} else {
+			streamingWriter.writeNext(values);
 		}
 	}
+	
+	@Override
+	public void flush() throws IOException {
+		if (streamingWriter == null) {
+			super.flush();
+		} else {
+			streamingWriter.flush();
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		if (streamingWriter == null) {
+			super.close();
+		} else {
+			streamingWriter.close();
+		}
+	}
+	
+	public boolean isStreaming() {
+		return streamingWriter != null;
+	}
 
-}
\ No newline at end of file
+}
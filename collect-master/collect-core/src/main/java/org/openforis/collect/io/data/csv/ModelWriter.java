@@ -51,6 +51,10 @@ public abstract class ModelWriter implements Closeable {
 
 	public void printColumnHeadings() throws IOException {
 		List<Column> columns = xform.getColumnProvider().getColumns();
+		writeHeaders(columns);
+	}
+
+	protected void writeHeaders(List<Column> columns) throws IOException {
 		List<Field> fields = new ArrayList<Field>(columns.size());
 		List<String> headers = new ArrayList<String>(columns.size());
 		for (Column column : columns) {
@@ -81,7 +85,11 @@ public abstract class ModelWriter implements Closeable {
 
 	public void printRow(Node<?> n) {
 		List<Object> values = xform.getColumnProvider().extractValues(n);
-		flatDataWriter.writeNext(values.toArray(new Object[values.size()]));
+		writeValues(values.toArray(new Object[values.size()]));
+	}
+
+	protected void writeValues(Object[] values) {
+		flatDataWriter.writeNext(values);
 	}
 
 	public int printData(Record record) throws InvalidExpressionException {
@@ -0,0 +1,161 @@
+package org.openforis.collect.io.data.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormat;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openforis.collect.io.data.csv.Column.DataType;
+
+/**
+ * Writes values into an XLSX file keeping in memory only a window of rows:
+ * the rows outside of the window are flushed into a compressed temporary file
+ * and the workbook is written to the output stream when the writer is closed.
+ *
+ * Cells are formatted like in the files generated by ExcelFlatValuesWriter:
+ * bold headers, numeric cells for integer and decimal values and date formatted cells for dates.
+ */
+public class StreamingExcelValuesWriter implements Closeable {
+
+	public static final int DEFAULT_ROW_ACCESS_WINDOW_SIZE = 100;
+	private static final String DEFAULT_SHEET_NAME = "Sheet1";
+	private static final String INTEGER_FORMAT = "0";
+	private static final String DATE_FORMAT = "yyyy-mm-dd";
+
+	private final OutputStream output;
+	private final SXSSFWorkbook workbook;
+	private final SXSSFSheet sheet;
+	private final CellStyle headerStyle;
+	private final CellStyle integerStyle;
+	private final CellStyle dateStyle;
+	private List<DataType> dataTypes;
+	private int nextRowIndex;
+	private boolean closed;
+
+	public StreamingExcelValuesWriter(OutputStream output) {
+		this(output, DEFAULT_ROW_ACCESS_WINDOW_SIZE);
+	}
+
+	public StreamingExcelValuesWriter(OutputStream output, int rowAccessWindowSize) {
+		this.output = output;
+		this.workbook = new SXSSFWorkbook(rowAccessWindowSize);
+		this.workbook.setCompressTempFiles(true);
+		this.sheet = workbook.createSheet(DEFAULT_SHEET_NAME);
+		//styles are shared by all the cells: workbooks support a limited number of them
+		this.headerStyle = createHeaderStyle();
+		this.integerStyle = createDataFormatStyle(INTEGER_FORMAT);
+		this.dateStyle = createDataFormatStyle(DATE_FORMAT);
+		this.dataTypes = new ArrayList<DataType>();
+		this.nextRowIndex = 0;
+		this.closed = false;
+	}
+
+	private CellStyle createHeaderStyle() {
+		Font font = workbook.createFont();
+		font.setBold(true);
+		CellStyle style = workbook.createCellStyle();
+		style.setFont(font);
+		return style;
+	}
+
+	private CellStyle createDataFormatStyle(String format) {
+		DataFormat dataFormat = workbook.createDataFormat();
+		CellStyle style = workbook.createCellStyle();
+		style.setDataFormat(dataFormat.getFormat(format));
+		return style;
+	}
+
+	public void writeHeaders(List<Column> columns) {
+		Row row = sheet.createRow(nextRowIndex ++);
+		dataTypes.clear();
+		for (int i = 0; i < columns.size(); i++) {
+			Column column = columns.get(i);
+			Cell cell = row.createCell(i);
+			cell.setCellValue(column.getHeader());
+			cell.setCellStyle(headerStyle);
+			dataTypes.add(column.getDataType());
+		}
+	}
+
+	public void writeNext(Object[] values) {
+		Row row = sheet.createRow(nextRowIndex ++);
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value != null) {
+				Cell cell = row.createCell(i);
+				DataType dataType = i < dataTypes.size() ? dataTypes.get(i) : DataType.STRING;
+				setCellValue(cell, dataType, value);
+			}
+		}
+	}
+
+	private void setCellValue(Cell cell, DataType dataType, Object value) {
+		switch (dataType) {
+		case INTEGER:
+		case DECIMAL:
+			Double number = toNumber(value);
+			if (number != null) {
+				cell.setCellValue(number);
+				if (dataType == DataType.INTEGER) {
+					cell.setCellStyle(integerStyle);
+				}
+				return;
+			}
+			break;
+		case DATE:
+			if (value instanceof Date) {
+				cell.setCellValue((Date) value);
+				cell.setCellStyle(dateStyle);
+				return;
+			}
+			break;
+		default:
+		}
+		cell.setCellValue(value.toString());
+	}
+
+	private Double toNumber(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		try {
+			return Double.valueOf(value.toString());
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Writes all the rows written so far into the temporary file, releasing the memory used by them
+	 */
+	public void flush() throws IOException {
+		sheet.flushRows();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			workbook.write(output);
+			output.flush();
+		} finally {
+			//delete temporary files
+			workbook.dispose();
+			IOUtils.closeQuietly(output);
+		}
+	}
+
+}
@@ -1,82 +1,247 @@
 package org.openforis.collect.manager;
 
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectSurvey;
 
+/**
+ * Thread safe cache of the records modified through the command API, shared by all the sessions.
+ *
+ * Records are kept in access order: when the estimated size of the cached records (number of nodes)
+ * exceeds the limit (see {@link #setMaxCachedNodes(int)}), the least recently used ones are evicted.
+ * A record not cached yet is loaded only once, even if it's requested concurrently.
+ *
+ * Cached records must be modified only while holding the lock returned by {@link #getLock(Integer)}:
+ * locks are fair, so the changes to the same record are applied in the order they are requested.
+ * If a record saver is specified (see {@link #setRecordSaver(WriteBehindRecordSaver)}), the pending changes
+ * of a record are saved before loading it again, so that the changes made to an evicted record are not lost.
+ */
 public class CachedRecordProvider implements RecordProvider {
 
+	public static final int DEFAULT_MAX_CACHED_NODES = 500000;
+	private static final int LOCK_STRIPES = 64;
+
 	private RecordManager recordManager;
-	private Map<Integer, RecordCache> recordsBySurvey = new HashMap<Integer, RecordCache>();
-	
+	private WriteBehindRecordSaver recordSaver;
+	private final LinkedHashMap<RecordCacheKey, CollectRecord> recordsByKey = new LinkedHashMap<RecordCacheKey, CollectRecord>(16, 0.75f, true);
+	//number of nodes of each cached record, as counted when the record was last put
+	private final Map<RecordCacheKey, Integer> nodeCountsByKey = new HashMap<RecordCacheKey, Integer>();
+	private final Lock[] locks;
+	private volatile int maxCachedNodes = DEFAULT_MAX_CACHED_NODES;
+	private long cachedNodes = 0;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
 	public CachedRecordProvider(RecordManager recordManager) {
 		super();
 		this.recordManager = recordManager;
+		this.locks = new Lock[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new ReentrantLock(true);
+		}
+	}
+
+	/**
+	 * Returns the lock to be held while modifying the record with the specified id
+	 * (the same lock could be shared by other records)
+	 */
+	public Lock getLock(Integer recordId) {
+		int index = recordId == null ? 0 : (recordId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES;
+		return locks[index];
 	}
 
 	@Override
 	public CollectRecord provide(CollectSurvey survey, Integer recordId, Step recordStep) {
-		RecordCache recordCache = getRecordCache(survey.getId());
-		RecordCacheKey key = new RecordCacheKey(recordId, recordStep);
-		CollectRecord record = recordCache.get(key);
-		if (record == null) {
+		RecordCacheKey key = new RecordCacheKey(survey.getId(), recordId, recordStep);
+		CollectRecord record = get(key);
+		if (record != null) {
+			hitCount.incrementAndGet();
+			return record;
+		}
+		Lock lock = getLock(recordId);
+		lock.lock();
+		try {
+			//record could have been loaded by another thread in the meantime
+			record = get(key);
+			if (record != null) {
+				hitCount.incrementAndGet();
+				return record;
+			}
+			missCount.incrementAndGet();
+			if (recordSaver != null && recordId != null) {
+				recordSaver.flush(recordId);
+			}
 			record = recordManager.load(survey, recordId, recordStep);
-			recordCache.put(key, record);
+			put(key, record);
+			return record;
+		} finally {
+			lock.unlock();
 		}
-		return record;
 	}
 
 	public void putRecord(CollectRecord record) {
-		RecordCacheKey key = new RecordCacheKey(record.getId(), record.getDataStep());
-		RecordCache recordCache = getRecordCache(record.getSurvey().getId());
-		recordCache.put(key, record);
+		RecordCacheKey key = new RecordCacheKey(record.getSurvey().getId(), record.getId(), record.getDataStep());
+		put(key, record);
 	}
-	
+
+	/**
+	 * Removes the record with the specified id from the cache (in every step)
+	 */
+	public void removeRecord(int recordId) {
+		synchronized (recordsByKey) {
+			Iterator<Entry<RecordCacheKey, CollectRecord>> it = recordsByKey.entrySet().iterator();
+			while (it.hasNext()) {
+				Entry<RecordCacheKey, CollectRecord> entry = it.next();
+				if (entry.getKey().id != null && entry.getKey().id == recordId) {
+					it.remove();
+					uncountNodes(entry.getKey());
+				}
+			}
+		}
+	}
+
 	public void clearRecords(int surveyId) {
-		recordsBySurvey.remove(surveyId);
-	}
-	
-	private RecordCache getRecordCache(int surveyId) {
-		RecordCache recordCache = recordsBySurvey.get(surveyId);
-		if (recordCache == null) {
-			recordCache = new RecordCache();
-			recordsBySurvey.put(surveyId, recordCache);
+		synchronized (recordsByKey) {
+			Iterator<Entry<RecordCacheKey, CollectRecord>> it = recordsByKey.entrySet().iterator();
+			while (it.hasNext()) {
+				Entry<RecordCacheKey, CollectRecord> entry = it.next();
+				if (entry.getKey().surveyId == surveyId) {
+					it.remove();
+					uncountNodes(entry.getKey());
+				}
+			}
 		}
-		return recordCache;
 	}
-	
-	private static class RecordCache extends LinkedHashMap<RecordCacheKey, CollectRecord> {
 
-		private static final long serialVersionUID = 1L;
+	private CollectRecord get(RecordCacheKey key) {
+		synchronized (recordsByKey) {
+			return recordsByKey.get(key);
+		}
+	}
 
-		private static final int MAX_ENTRIES = 50;
+	/**
+	 * Puts the record into the cache and evicts the least recently used ones if the max number of nodes is exceeded.
+	 * The record just put is never evicted, even if it exceeds the limit by itself.
+	 */
+	private void put(RecordCacheKey key, CollectRecord record) {
+		synchronized (recordsByKey) {
+			recordsByKey.put(key, record);
+			//records change after they have been cached: the number of nodes of a record is counted again every time it's put
+			uncountNodes(key);
+			int nodeCount = record.countNodes();
+			nodeCountsByKey.put(key, nodeCount);
+			cachedNodes += nodeCount;
+			Iterator<Entry<RecordCacheKey, CollectRecord>> it = recordsByKey.entrySet().iterator();
+			while (cachedNodes > maxCachedNodes && it.hasNext()) {
+				Entry<RecordCacheKey, CollectRecord> eldest = it.next();
+				if (eldest.getKey().equals(key)) {
+					continue;
+				}
+				it.remove();
+				uncountNodes(eldest.getKey());
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
 
-		@Override
-		protected boolean removeEldestEntry(Entry<RecordCacheKey, CollectRecord> eldest) {
-			return size() > MAX_ENTRIES;
+	private void uncountNodes(RecordCacheKey key) {
+		Integer nodeCount = nodeCountsByKey.remove(key);
+		if (nodeCount != null) {
+			cachedNodes -= nodeCount;
 		}
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
 
+	public long getHitCount() {
+		return hitCount.get();
 	}
-	
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	public int getSize() {
+		synchronized (recordsByKey) {
+			return recordsByKey.size();
+		}
+	}
+
+	/**
+	 * Returns the estimated size of the cached records (number of nodes)
+	 */
+	public long getCachedNodes() {
+		synchronized (recordsByKey) {
+			return cachedNodes;
+		}
+	}
+
+	public int getMaxCachedNodes() {
+		return maxCachedNodes;
+	}
+
+	/**
+	 * Sets the maximum number of nodes of the cached records.
+	 * The limit is applied the next time a record is put into the cache.
+	 */
+	public void setMaxCachedNodes(int maxCachedNodes) {
+		if (maxCachedNodes <= 0) {
+			throw new IllegalArgumentException("Max cached nodes must be greater than 0");
+		}
+		this.maxCachedNodes = maxCachedNodes;
+	}
+
+	public void setRecordSaver(WriteBehindRecordSaver recordSaver) {
+		this.recordSaver = recordSaver;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("records: %d, nodes: %d, hits: %d, misses: %d, evictions: %d",
+				getSize(), getCachedNodes(), getHitCount(), getMissCount(), getEvictionCount());
+	}
+
 	private static class RecordCacheKey {
+		private int surveyId;
 		private Integer id;
 		private Step step;
-		
-		public RecordCacheKey(Integer id, Step step) {
+
+		public RecordCacheKey(int surveyId, Integer id, Step step) {
 			super();
+			this.surveyId = surveyId;
 			this.id = id;
 			this.step = step;
 		}
-		
+
 		@Override
 		public int hashCode() {
 			final int prime = 31;
 			int result = 1;
+			result = prime * result + surveyId;
 			result = prime * result + ((id == null) ? 0 : id.hashCode());
 			result = prime * result + ((step == null) ? 0 : step.hashCode());
 			return result;
@@ -91,6 +256,8 @@ public class CachedRecordProvider implements RecordProvider {
 			if (getClass() != obj.getClass())
 				return false;
 			RecordCacheKey other = (RecordCacheKey) obj;
+			if (surveyId != other.surveyId)
+				return false;
 			if (id == null) {
 				if (other.id != null)
 					return false;
@@ -100,7 +267,7 @@ public class CachedRecordProvider implements RecordProvider {
 				return false;
 			return true;
 		}
-		
+
 	}
 
 }
@@ -6,6 +6,9 @@ package org.openforis.collect.manager;
 import static org.springframework.transaction.annotation.Propagation.REQUIRED;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,6 +56,27 @@ public class LocalUserManager extends AbstractPersistedObjectManager<User, Integ
 		return user;
 	}
 	
+	@Override
+	public Map<Integer, User> loadByIds(Collection<Integer> ids) {
+		Map<Integer, User> result = new HashMap<Integer, User>(ids.size());
+		List<Integer> notCachedIds = new ArrayList<Integer>();
+		for (Integer id : ids) {
+			User user = userById.get(id);
+			if (user == null) {
+				notCachedIds.add(id);
+			} else {
+				result.put(id, user);
+			}
+		}
+		if (! notCachedIds.isEmpty()) {
+			for (User user : userDao.loadByIds(notCachedIds)) {
+				updateCache(user);
+				result.put(user.getId(), user);
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+	
 	@Override
 	public User loadByUserName(String userName) {
 		return loadByUserName(userName, null);
@@ -28,6 +28,8 @@ public class RecordConverter {
 	public void convertToLatestVersion(CollectRecord record) {
 		if (record.getApplicationVersion().compareTo(UNIT_STORAGE_CHANGE_VERSION, Significance.MINOR) <= 0) {
 			convertToLatestUnitStorage(record);
+			//converted data differs from the stored one: it has to be rewritten entirely
+			record.setPersistedNodeIds(null);
 		}
 		record.setApplicationVersion(Collect.VERSION);
 	}
@@ -0,0 +1,215 @@
+package org.openforis.collect.manager;
+
+import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordCoordinate;
+import org.openforis.collect.model.RecordCoordinateCluster;
+import org.openforis.collect.model.RecordFilter;
+import org.openforis.collect.persistence.RecordCoordinateDao;
+import org.openforis.commons.collection.Visitor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+/**
+ * Queries the coordinate attribute values of the records by position (bounding box or map tile),
+ * optionally grouping them into clusters on a regular grid.
+ *
+ * Coordinates are stored every time a record is saved (see {@link RecordManager#updateCoordinates(CollectRecord)});
+ * records stored before the coordinates table existed are indexed the first time the coordinates of their survey are queried
+ * (the surveys already indexed are tracked in the database, see {@link RecordCoordinateDao#isSurveyIndexed(int)}).
+ */
+@Transactional(readOnly=true, propagation=SUPPORTS)
+public class RecordCoordinateManager {
+
+	private static final Logger LOG = LogManager.getLogger(RecordCoordinateManager.class);
+
+	public static final int DEFAULT_GRID_SIZE = 8;
+	private static final int MAX_GRID_SIZE = 256;
+	private static final double MAX_MERCATOR_LATITUDE = 85.0511287798;
+	private static final int INSERT_BATCH_SIZE = 1000;
+
+	@Autowired
+	private RecordCoordinateDao recordCoordinateDao;
+	@Autowired
+	private RecordManager recordManager;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	public List<RecordCoordinate> loadCoordinates(CollectSurvey survey, int attributeDefinitionId,
+			double minX, double minY, double maxX, double maxY, int maxNumberOfCoordinates) {
+		ensureIndexed(survey);
+		return recordCoordinateDao.load(survey.getId(), attributeDefinitionId, minX, minY, maxX, maxY, maxNumberOfCoordinates);
+	}
+
+	public int countCoordinates(CollectSurvey survey, int attributeDefinitionId,
+			double minX, double minY, double maxX, double maxY) {
+		ensureIndexed(survey);
+		return recordCoordinateDao.count(survey.getId(), attributeDefinitionId, minX, minY, maxX, maxY);
+	}
+
+	/**
+	 * Groups the coordinates falling into the specified bounding box into clusters,
+	 * dividing the bounding box into a grid of gridSize x gridSize cells.
+	 * If minX is greater than maxX, the bounding box is considered to cross the antimeridian.
+	 */
+	public List<RecordCoordinateCluster> loadClusters(CollectSurvey survey, int attributeDefinitionId,
+			final double minX, final double minY, double maxX, double maxY, int gridSize) {
+		ensureIndexed(survey);
+		final int cells = Math.max(1, Math.min(gridSize, MAX_GRID_SIZE));
+		final double width = minX <= maxX ? maxX - minX : maxX - minX + 360;
+		final double height = maxY - minY;
+		final Map<Integer, RecordCoordinateCluster> clustersByCell = new LinkedHashMap<Integer, RecordCoordinateCluster>();
+		recordCoordinateDao.visit(survey.getId(), attributeDefinitionId, minX, minY, maxX, maxY, null, new Visitor<RecordCoordinate>() {
+			public void visit(RecordCoordinate coordinate) {
+				double offsetX = coordinate.getX() - minX;
+				if (offsetX < 0) {
+					offsetX += 360;
+				}
+				int col = toCellIndex(offsetX, width, cells);
+				int row = toCellIndex(coordinate.getY() - minY, height, cells);
+				int cellIndex = row * cells + col;
+				RecordCoordinateCluster cluster = clustersByCell.get(cellIndex);
+				if (cluster == null) {
+					cluster = new RecordCoordinateCluster();
+					clustersByCell.put(cellIndex, cluster);
+				}
+				cluster.add(coordinate);
+			}
+		});
+		return new ArrayList<RecordCoordinateCluster>(clustersByCell.values());
+	}
+
+	/**
+	 * Groups the coordinates falling into the specified map tile (XYZ tiling scheme, as used by web maps)
+	 * into clusters, dividing the tile into a grid of gridSize x gridSize cells
+	 */
+	public List<RecordCoordinateCluster> loadTileClusters(CollectSurvey survey, int attributeDefinitionId,
+			int zoom, int tileX, int tileY, int gridSize) {
+		double[] bbox = tileToBoundingBox(zoom, tileX, tileY);
+		return loadClusters(survey, attributeDefinitionId, bbox[0], bbox[1], bbox[2], bbox[3], gridSize);
+	}
+
+	/**
+	 * Returns the bounding box (minX, minY, maxX, maxY in WGS84) of the specified map tile
+	 */
+	public static double[] tileToBoundingBox(int zoom, int tileX, int tileY) {
+		if (zoom < 0 || zoom > 30) {
+			throw new IllegalArgumentException("Invalid zoom level: " + zoom);
+		}
+		int tilesCount = 1 << zoom;
+		if (tileX < 0 || tileX >= tilesCount || tileY < 0 || tileY >= tilesCount) {
+			throw new IllegalArgumentException(String.format("Invalid tile: %d/%d/%d", zoom, tileX, tileY));
+		}
+		double minX = tileX * 360d / tilesCount - 180;
+		double maxX = (tileX + 1) * 360d / tilesCount - 180;
+		double maxY = tileLatitude(tileY, tilesCount);
+		double minY = tileLatitude(tileY + 1, tilesCount);
+		//include the points beyond the limits of the Web Mercator projection in the first and last rows of tiles
+		if (tileY == 0) {
+			maxY = 90;
+		}
+		if (tileY == tilesCount - 1) {
+			minY = -90;
+		}
+		return new double[] {minX, minY, maxX, maxY};
+	}
+
+	private static double tileLatitude(int tileY, int tilesCount) {
+		double n = Math.PI - 2 * Math.PI * tileY / tilesCount;
+		double lat = Math.toDegrees(Math.atan(Math.sinh(n)));
+		return Math.max(-MAX_MERCATOR_LATITUDE, Math.min(MAX_MERCATOR_LATITUDE, lat));
+	}
+
+	private static int toCellIndex(double offset, double size, int cells) {
+		if (size <= 0) {
+			return 0;
+		}
+		int index = (int) Math.floor(offset / size * cells);
+		return Math.max(0, Math.min(cells - 1, index));
+	}
+
+	/**
+	 * Stores the coordinates of all the records in the survey, if they haven't been indexed yet.
+	 */
+	private void ensureIndexed(CollectSurvey survey) {
+		int surveyId = survey.getId();
+		if (recordCoordinateDao.isSurveyIndexed(surveyId)) {
+			return;
+		}
+		synchronized (this) {
+			if (! recordCoordinateDao.isSurveyIndexed(surveyId)) {
+				rebuildIndex(survey);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the stored coordinates of all the records in the survey and marks the survey as indexed.
+	 * Records are streamed and their coordinates inserted in batches, all in the same transaction
+	 * (it's started programmatically because this method is also invoked internally, bypassing the transactional proxy).
+	 * The coordinates of single records cannot be updated until the transaction completes, 
+	 * otherwise the coordinates of a record saved in the meantime could be stored twice.
+	 */
+	public void rebuildIndex(CollectSurvey survey) {
+		long start = System.currentTimeMillis();
+		ReentrantReadWriteLock coordinatesLock = recordManager.getCoordinatesLock();
+		//the write lock cannot be acquired if the current transaction has already updated the coordinates of a record
+		Lock lock = coordinatesLock.getReadHoldCount() == 0 ? coordinatesLock.writeLock() : null;
+		if (lock != null) {
+			lock.lock();
+		}
+		int count;
+		try {
+			count = doRebuildIndex(survey);
+		} finally {
+			if (lock != null) {
+				lock.unlock();
+			}
+		}
+		LOG.info(String.format("Survey %s: %d record coordinates indexed in %d ms", survey.getName(), count,
+				System.currentTimeMillis() - start));
+	}
+
+	private int doRebuildIndex(CollectSurvey survey) {
+		final int surveyId = survey.getId();
+		final List<RecordCoordinate> batch = new ArrayList<RecordCoordinate>(INSERT_BATCH_SIZE);
+		final int[] count = {0};
+		TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+		try {
+			recordCoordinateDao.deleteBySurvey(surveyId);
+			recordManager.visitRecords(new RecordFilter(survey), null, false, false, new Visitor<CollectRecord>() {
+				public void visit(CollectRecord record) {
+					batch.addAll(RecordCoordinate.extract(record));
+					if (batch.size() >= INSERT_BATCH_SIZE) {
+						count[0] += batch.size();
+						recordCoordinateDao.insert(batch);
+						batch.clear();
+					}
+				}
+			});
+			count[0] += batch.size();
+			recordCoordinateDao.insert(batch);
+			recordCoordinateDao.setSurveyIndexed(surveyId);
+			transactionManager.commit(status);
+		} catch (RuntimeException e) {
+			transactionManager.rollback(status);
+			throw e;
+		}
+		return count[0];
+	}
+
+}
@@ -0,0 +1,107 @@
+package org.openforis.collect.manager;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.persistence.RecordDao;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+
+/**
+ * Compacts the record data journal in background: when the number of journal entries of a record
+ * reaches the compaction threshold, the entries are applied to the stored record data and deleted
+ * (see {@link RecordDao#compactDataJournal(CollectSurvey, int, int)}).
+ */
+public class RecordDataJournalCompactor {
+
+	private static final Logger LOG = LogManager.getLogger(RecordDataJournalCompactor.class);
+	private static final int DEFAULT_COMPACTION_THRESHOLD = 50;
+
+	@Autowired
+	private RecordDao recordDao;
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private int compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+	private ExecutorService executor;
+	private final Set<String> pendingKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	public void init() {
+		executor = Executors.newSingleThreadExecutor();
+	}
+
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+
+	/**
+	 * Schedules the compaction of the journal of the specified record if the number of its entries reached the threshold
+	 */
+	public void onChangesAppended(CollectRecord record) {
+		final CollectSurvey survey = (CollectSurvey) record.getSurvey();
+		final int recordId = record.getId();
+		final int sequenceNumber = record.getDataWorkflowSequenceNumber();
+		if (executor == null || recordDao.countDataJournalEntries(recordId, sequenceNumber) < compactionThreshold) {
+			return;
+		}
+		final String key = recordId + "_" + sequenceNumber;
+		if (! pendingKeys.add(key)) {
+			//compaction already scheduled
+			return;
+		}
+		try {
+			executor.execute(new Runnable() {
+				public void run() {
+					try {
+						compact(survey, recordId, sequenceNumber);
+					} catch (Exception e) {
+						LOG.error(String.format("Error compacting data journal of record with id %d", recordId), e);
+					} finally {
+						pendingKeys.remove(key);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			//shutting down: journal will be compacted later
+			pendingKeys.remove(key);
+		}
+	}
+
+	private void compact(CollectSurvey survey, int recordId, int sequenceNumber) {
+		TransactionStatus status = transactionManager.getTransaction(new DefaultTransactionDefinition());
+		boolean compacted;
+		try {
+			compacted = recordDao.compactDataJournal(survey, recordId, sequenceNumber);
+			transactionManager.commit(status);
+		} catch (RuntimeException e) {
+			transactionManager.rollback(status);
+			throw e;
+		}
+		if (! compacted) {
+			//record modified in the meantime: compaction will be retried when new changes are appended
+			LOG.debug(String.format("Data journal of record with id %d not compacted", recordId));
+		}
+	}
+
+	public int getCompactionThreshold() {
+		return compactionThreshold;
+	}
+
+	public void setCompactionThreshold(int compactionThreshold) {
+		this.compactionThreshold = compactionThreshold;
+	}
+
+}
@@ -104,6 +104,23 @@ public class RecordLockManager {
 		return lock;
 	}
 	
+	/**
+	 * Returns the active locks on the specified records, indexed by record id
+	 */
+	public synchronized Map<Integer, RecordLock> getLocks(Collection<Integer> recordIds) {
+		clearInactiveLocks();
+		Map<Integer, RecordLock> result = new HashMap<Integer, RecordLock>();
+		if (! locks.isEmpty()) {
+			for (Integer recordId : recordIds) {
+				RecordLock lock = locks.get(recordId);
+				if (lock != null) {
+					result.put(recordId, lock);
+				}
+			}
+		}
+		return result;
+	}
+	
 	private synchronized RecordLock getLockBySessionId(String sessionId) {
 		clearInactiveLocks();
 		Collection<RecordLock> lcks = locks.values();
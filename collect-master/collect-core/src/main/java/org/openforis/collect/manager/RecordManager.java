@@ -10,12 +10,18 @@ import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang3.StringUtils;
 import org.openforis.collect.model.CollectRecord;
@@ -27,6 +33,7 @@ import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.FieldSymbol;
 import org.openforis.collect.model.NodeChangeMap;
 import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.collect.model.RecordCoordinate;
 import org.openforis.collect.model.RecordFilter;
 import org.openforis.collect.model.RecordLock;
 import org.openforis.collect.model.RecordSummarySortField;
@@ -36,14 +43,17 @@ import org.openforis.collect.model.UserGroup;
 import org.openforis.collect.model.UserInGroup;
 import org.openforis.collect.persistence.MissingRecordKeyException;
 import org.openforis.collect.persistence.MultipleEditException;
+import org.openforis.collect.persistence.RecordCoordinateDao;
 import org.openforis.collect.persistence.RecordDao;
 import org.openforis.collect.persistence.RecordLockedException;
 import org.openforis.collect.persistence.RecordNotOwnedException;
 import org.openforis.collect.persistence.RecordPersistenceException;
 import org.openforis.collect.persistence.RecordUnlockedException;
 import org.openforis.collect.persistence.RecordValidationInProgressException;
+import org.openforis.collect.persistence.SerializedRecord;
 import org.openforis.collect.persistence.jooq.JooqDaoSupport.CollectStoreQuery;
 import org.openforis.collect.utils.Consumer;
+import org.openforis.collect.utils.OrderedParallelProcessor;
 import org.openforis.commons.collection.Predicate;
 import org.openforis.commons.collection.Visitor;
 import org.openforis.idm.metamodel.AttributeDefinition;
@@ -55,6 +65,8 @@ import org.openforis.idm.model.Node;
 import org.openforis.idm.model.Value;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author M. Togna
@@ -66,10 +78,13 @@ public class RecordManager {
 //	private final Logger log = Logger.getLogger(RecordManager.class);
 	
 	private static final int DEFAULT_LOCK_TIMEOUT_MILLIS = 300000;
+	private static final int VALIDATION_SUMMARY_UPDATE_BATCH_SIZE = 100;
 	
 	@Autowired
 	private RecordDao recordDao;
 	@Autowired
+	private RecordCoordinateDao recordCoordinateDao;
+	@Autowired
 	private CodeListManager codeListManager;
 	@Autowired
 	private SurveyManager surveyManager;
@@ -77,12 +92,23 @@ public class RecordManager {
 	private UserManager userManager;
 	@Autowired
 	private UserGroupManager userGroupManager;
+	@Autowired(required=false)
+	private RecordDataJournalCompactor dataJournalCompactor;
 	
 	private RecordUpdater updater;
 	private RecordConverter recordConverter;
 	private long lockTimeoutMillis;
+	private int bulkLoadThreads;
 	private boolean lockingEnabled;
 	private RecordLockManager lockManager;
+	private WriteBehindRecordSaver recordSaver;
+	/**
+	 * Held (read lock) by the transactions updating the coordinates of single records until they complete
+	 * and (write lock) while the coordinates of all the records in a survey are indexed 
+	 * (see {@link RecordCoordinateManager#rebuildIndex(CollectSurvey)}), so that the stored coordinates
+	 * of a record are never replaced by both at the same time
+	 */
+	private final ReentrantReadWriteLock coordinatesLock = new ReentrantReadWriteLock();
 
 	private RecordAccessControlManager accessControlManager;
 	
@@ -94,6 +120,7 @@ public class RecordManager {
 		super();
 		this.lockingEnabled = lockingEnabled;
 		this.lockTimeoutMillis = DEFAULT_LOCK_TIMEOUT_MILLIS;
+		this.bulkLoadThreads = OrderedParallelProcessor.getDefaultThreads();
 		this.updater = new RecordUpdater();
 		this.recordConverter = new RecordConverter();
 		this.accessControlManager = new RecordAccessControlManager();
@@ -151,8 +178,41 @@ public class RecordManager {
 			if ( sessionId != null && isLockingEnabled() ) {
 				lockManager.checkIsLocked(id, lockingUser, sessionId);
 			}
+			flushPendingChanges(id);
 			recordDao.update(record);
 		}
+		updateCoordinates(record);
+	}
+	
+	/**
+	 * Stores only the specified changes made to an already saved record, appending them to the record data journal,
+	 * instead of rewriting the whole record data.
+	 * The record is saved using {@link #save(CollectRecord)} if the changes cannot be appended to the journal 
+	 * (e.g. journal disabled or record not loaded for update).
+	 */
+	@Transactional(readOnly=false, propagation=REQUIRED)
+	public void saveChanges(CollectRecord record, NodeChangeSet changeSet) {
+		if (changeSet == null || record.getId() == null) {
+			save(record);
+			return;
+		}
+		flushPendingChanges(record.getId());
+		record.updateSummaryFields();
+		
+		Date now = new Date();
+		User user = record.getModifiedBy();
+		record.setModifiedDate(now);
+		record.setDataModifiedDate(now);
+		record.setDataModifiedBy(user);
+		
+		if (recordDao.appendToDataJournal(record, changeSet)) {
+			updateCoordinates(record);
+			if (dataJournalCompactor != null) {
+				dataJournalCompactor.onChangesAppended(record);
+			}
+		} else {
+			save(record);
+		}
 	}
 	
 	public void updateRecordStepData(CollectRecord record, Step step, int workflowSequenceNumber, User modifiedBy, boolean updateDateAndUser) {
@@ -160,7 +220,40 @@ public class RecordManager {
 			record.setDataModifiedDate(new Date());
 			record.setDataModifiedBy(modifiedBy);
 		}
+		flushPendingChanges(record.getId());
 		recordDao.updateRecordData(record, step, workflowSequenceNumber);
+		updateCoordinates(record);
+	}
+	
+	/**
+	 * Updates the stored coordinates of the record (used to query records by position)
+	 * with the values of the coordinate attributes in the specified record
+	 */
+	@Transactional(readOnly=false, propagation=REQUIRED)
+	public void updateCoordinates(CollectRecord record) {
+		if (record.getId() != null) {
+			final Lock lock = coordinatesLock.readLock();
+			lock.lock();
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(int status) {
+						lock.unlock();
+					}
+				});
+				recordCoordinateDao.replaceByRecord(record.getId(), RecordCoordinate.extract(record));
+			} else {
+				try {
+					recordCoordinateDao.replaceByRecord(record.getId(), RecordCoordinate.extract(record));
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+	
+	ReentrantReadWriteLock getCoordinatesLock() {
+		return coordinatesLock;
 	}
 	
 	public void updateRecordStepDataAndRun(CollectRecord record, Step step, int workflowSequenceNumber, User modifiedBy, 
@@ -191,8 +284,8 @@ public class RecordManager {
 		return recordDao.createSummaryUpdateQuery(record);
 	}
 	
-	public CollectStoreQuery createDataUpdateQuery(CollectRecord record, int recordId, Step step, int sequenceNumber) {
-		return recordDao.createRecordDataUpdateQuery(record, recordId, step, sequenceNumber);
+	public List<CollectStoreQuery> createDataUpdateQueries(CollectRecord record, int recordId, Step step, int sequenceNumber) {
+		return recordDao.createRecordDataUpdateQueries(record, recordId, step, sequenceNumber);
 	}
 	
 	@Transactional(readOnly=false, propagation=REQUIRED)
@@ -209,7 +302,9 @@ public class RecordManager {
 	public void executeRecordOperations(List<RecordOperations> operationsForRecords, Consumer<RecordStepOperation> consumer) {
 		Integer nextId = null;
 		List<CollectStoreQuery> queries = new ArrayList<CollectStoreQuery>();
+		List<CollectRecord> latestRecords = new ArrayList<CollectRecord>();
 		for (RecordOperations recordOperations : operationsForRecords) {
+			flushPendingChanges(recordOperations.getRecordId());
 			CollectRecordSummary existingRecordSummary = recordOperations.getRecordId() == null ? null :
 				loadUniqueRecordSummary(recordOperations.getSurvey(), recordOperations.getRecordId());
 			RecordStepOperation lastOperation = null;
@@ -226,7 +321,7 @@ public class RecordManager {
 					queries.add(createDataInsertQuery(record, recordOperations.getRecordId(), 
 							operation.getStep(), operation.getDataStepSequenceNumber()));
 				} else {
-					queries.add(createDataUpdateQuery(record, recordOperations.getRecordId(), 
+					queries.addAll(createDataUpdateQueries(record, recordOperations.getRecordId(), 
 							operation.getStep(), operation.getDataStepSequenceNumber()));
 				}
 				if (consumer != null) {
@@ -240,16 +335,23 @@ public class RecordManager {
 				lastRecord.setDataWorkflowSequenceNumber(lastOperation.getDataStepSequenceNumber());
 				lastRecord.setStep(lastOperation.getStep());
 				queries.add(createSummaryUpdateQuery(lastRecord));
+				latestRecords.add(lastRecord);
 			}
 		}
 		execute(queries);
 		if (nextId != null) {
 			restartIdSequence(nextId);
 		}
+		for (CollectRecord record : latestRecords) {
+			updateCoordinates(record);
+		}
 	}
 	
 	@Transactional(readOnly=false, propagation=REQUIRED)
 	public void deleteByIds(Set<Integer> ids) throws RecordPersistenceException {
+		for (Integer id : ids) {
+			discardPendingChanges(id);
+		}
 		getRecordDao().deleteByIds(ids);
 	}
 	
@@ -260,12 +362,16 @@ public class RecordManager {
 			User lockUser = lock.getUser();
 			throw new RecordLockedException(lockUser.getUsername());
 		} else {
+			discardPendingChanges(recordId);
 			recordDao.delete(recordId);
 		}
 	}
 	
 	@Transactional(readOnly=false, propagation=REQUIRED)
 	public void deleteBySurvey(int surveyId) {
+		if (recordSaver != null) {
+			recordSaver.discardBySurvey(surveyId);
+		}
 		recordDao.deleteBySurvey(surveyId);
 	}
 	
@@ -278,6 +384,7 @@ public class RecordManager {
 			lockManager.lock(recordId, user, sessionId, false);
 		}
 		try {
+			flushPendingChanges(recordId);
 			recordDao.assignOwner(recordId, ownerId);
 		} finally {
 			if ( isLockingEnabled() ) {
@@ -366,37 +473,121 @@ public class RecordManager {
 			throw new NullPointerException(format("Could not load record with id %d in phase %s in survey %s", recordId, step, survey.getName()));
 		}
 		loadDetachedObjects(r);
-		recordConverter.convertToLatestVersion(r);
+		initializeLoadedRecord(r, validate, alwaysEvaluateCalculatedAttributes);
+		return r;
+	}
+	
+	public void visitRecords(RecordFilter filter, Step step, boolean validate, 
+			boolean alwaysEvaluateCalculatedAttributes, Visitor<CollectRecord> visitor) {
+		visitRecords(filter, step, validate, alwaysEvaluateCalculatedAttributes, visitor, null);
+	}
+	
+	/**
+	 * Loads all the records matching the specified filter and passes them to the visitor, ordered by id.
+	 * Records are fetched from the database in batches; their deserialization and initialization 
+	 * (calculated attributes, relevance, validation) is performed in parallel using a bounded pool of threads 
+	 * (see {@link #setBulkLoadThreads(int)}): every record is processed by a single thread and 
+	 * expressions are evaluated using a new context every time, so workers share only survey data.
+	 * The visitor is always invoked in the calling thread.
+	 */
+	public void visitRecords(RecordFilter filter, Step step, final boolean validate, 
+			final boolean alwaysEvaluateCalculatedAttributes, final Visitor<CollectRecord> visitor,
+			final Predicate<CollectRecord> stopWhenPredicate) {
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		final OrderedParallelProcessor<CollectRecord> processor = new OrderedParallelProcessor<CollectRecord>(bulkLoadThreads, 
+				new Visitor<CollectRecord>() {
+			public void visit(CollectRecord record) {
+				if (stopped.get()) {
+					return;
+				}
+				loadDetachedObjects(record);
+				visitor.visit(record);
+				if (stopWhenPredicate != null && stopWhenPredicate.evaluate(record)) {
+					stopped.set(true);
+				}
+			}
+		});
+		try {
+			recordDao.visitSerializedRecords(filter, step, validate, new Visitor<SerializedRecord>() {
+				public void visit(final SerializedRecord serializedRecord) {
+					processor.submit(new Callable<CollectRecord>() {
+						public CollectRecord call() throws Exception {
+							CollectRecord record = serializedRecord.deserialize();
+							initializeLoadedRecord(record, validate, alwaysEvaluateCalculatedAttributes);
+							return record;
+						}
+					});
+				}
+			}, new Predicate<SerializedRecord>() {
+				public boolean evaluate(SerializedRecord item) {
+					return stopped.get();
+				}
+			});
+			processor.finish();
+		} finally {
+			processor.close();
+		}
+	}
+
+	private void initializeLoadedRecord(CollectRecord record, boolean validate, boolean alwaysEvaluateCalculatedAttributes) {
+		recordConverter.convertToLatestVersion(record);
 		RecordUpdater updater = new RecordUpdater();
 		updater.setValidateAfterUpdate(validate);
 		updater.setAlwaysEvaluateCalculatedAttributes(alwaysEvaluateCalculatedAttributes);
-		updater.initializeRecord(r);
-		return r;
+		updater.initializeRecord(record);
 	}
 	
+	/**
+	 * Attaches users and locks to the specified summaries.
+	 * All the users referenced by the summaries are loaded with a single request to the user manager 
+	 * and the locks are read at once, so the cost depends only on the number of summaries.
+	 */
 	private void loadDetachedObjects(List<CollectRecordSummary> summaries) {
-		for (CollectRecordSummary summary : summaries) {
-			loadDetachedObjects(summary);
+		if (summaries.isEmpty()) {
+			return;
 		}
-	}
-	
-	private void loadDetachedObjects(CollectRecordSummary s) {
-		s.setCreatedBy(loadUser(s.getCreatedBy()));
-		s.setModifiedBy(loadUser(s.getModifiedBy()));
-		s.setOwner(loadUser(s.getOwner()));
-		
-		Collection<StepSummary> stepSummaries = s.getStepSummaries().values();
-		for (StepSummary stepSummary : stepSummaries) {
-			stepSummary.setCreatedBy(loadUser(stepSummary.getCreatedBy()));
-			stepSummary.setModifiedBy(loadUser(stepSummary.getModifiedBy()));
+		Set<Integer> userIds = new HashSet<Integer>();
+		List<Integer> recordIds = new ArrayList<Integer>(summaries.size());
+		for (CollectRecordSummary s : summaries) {
+			collectUserIds(userIds, s.getCreatedBy(), s.getModifiedBy(), s.getOwner());
+			for (StepSummary stepSummary : s.getStepSummaries().values()) {
+				collectUserIds(userIds, stepSummary.getCreatedBy(), stepSummary.getModifiedBy());
+			}
+			recordIds.add(s.getId());
 		}
+		Map<Integer, User> usersById = userIds.isEmpty() ? Collections.<Integer, User>emptyMap() : userManager.loadByIds(userIds);
+		Map<Integer, RecordLock> locksByRecordId = lockManager.getLocks(recordIds);
 		
-		RecordLock recordLock = lockManager.getLock(s.getId());
-		if (recordLock != null) {
-			s.setLockedBy(recordLock.getUser().getUsername());
+		for (CollectRecordSummary s : summaries) {
+			s.setCreatedBy(getUser(usersById, s.getCreatedBy()));
+			s.setModifiedBy(getUser(usersById, s.getModifiedBy()));
+			s.setOwner(getUser(usersById, s.getOwner()));
+			
+			Collection<StepSummary> stepSummaries = s.getStepSummaries().values();
+			for (StepSummary stepSummary : stepSummaries) {
+				stepSummary.setCreatedBy(getUser(usersById, stepSummary.getCreatedBy()));
+				stepSummary.setModifiedBy(getUser(usersById, stepSummary.getModifiedBy()));
+			}
+			
+			RecordLock recordLock = locksByRecordId.get(s.getId());
+			if (recordLock != null) {
+				s.setLockedBy(recordLock.getUser().getUsername());
+			}
+		}
+	}
+	
+	private void collectUserIds(Set<Integer> userIds, User... users) {
+		for (User user : users) {
+			if (user != null && user.getId() != null) {
+				userIds.add(user.getId());
+			}
 		}
 	}
 	
+	private User getUser(Map<Integer, User> usersById, User user) {
+		return user == null ? null : usersById.get(user.getId());
+	}
+	
 	private void loadDetachedObjects(CollectRecord r) {
 		r.setCreatedBy(loadUser(r.getCreatedBy()));
 		r.setModifiedBy(loadUser(r.getModifiedBy()));
@@ -483,6 +674,33 @@ public class RecordManager {
 		recordDao.visitSummaries(filter, sortFields, visitor, includeStepDetails, stopWhenPredicate);
 	}
 	
+	/**
+	 * Visits the summaries matching the specified filter, reading them from the database with a cursor.
+	 * Users and locks are attached to the summaries (as in {@link #loadSummaries(RecordFilter, List)}) 
+	 * in batches of the specified size, before passing them to the visitor.
+	 */
+	public void visitSummariesWithUsers(RecordFilter filter, List<RecordSummarySortField> sortFields, 
+			final int batchSize, final Visitor<CollectRecordSummary> visitor) {
+		final List<CollectRecordSummary> batch = new ArrayList<CollectRecordSummary>(batchSize);
+		recordDao.visitSummaries(filter, sortFields, new Visitor<CollectRecordSummary>() {
+			public void visit(CollectRecordSummary summary) {
+				batch.add(summary);
+				if (batch.size() >= batchSize) {
+					flushSummariesBatch(batch, visitor);
+				}
+			}
+		});
+		flushSummariesBatch(batch, visitor);
+	}
+	
+	private void flushSummariesBatch(List<CollectRecordSummary> batch, Visitor<CollectRecordSummary> visitor) {
+		loadDetachedObjects(batch);
+		for (CollectRecordSummary summary : batch) {
+			visitor.visit(summary);
+		}
+		batch.clear();
+	}
+	
 	public Set<User> loadDistinctOwners(RecordFilter recordFilter) {
 		Set<Integer> ownerIds = recordDao.loadDistinctOwnerIds(recordFilter);
 		Set<User> owners = new HashSet<User>(ownerIds.size());
@@ -608,6 +826,7 @@ public class RecordManager {
 
 	@Transactional(readOnly=false, propagation=REQUIRED)
 	public CollectRecord promote(CollectSurvey survey, int recordId, Step currentStep, User user) throws RecordPromoteException, MissingRecordKeyException {
+		flushPendingChanges(recordId);
 		CollectRecord record = load(survey, recordId, currentStep);
 		performPromote(record, user);
 		return record;
@@ -644,8 +863,10 @@ public class RecordManager {
 		if( id == null ) {
 			recordDao.insert( record );
 		} else {
+			flushPendingChanges(id);
 			recordDao.update( record );
 		}
+		updateCoordinates(record);
 		
 		performPromote(record, user);
 	}
@@ -696,6 +917,7 @@ public class RecordManager {
 	@Transactional(readOnly=false, propagation=REQUIRED)
 	public CollectRecord demote(CollectSurvey survey, int recordId, Step currentStep, User user) throws RecordPersistenceException {
 		Step prevStep = currentStep.getPrevious();
+		flushPendingChanges(recordId);
 		recordDao.updateStepDataState(survey, recordId, currentStep, State.REJECTED);
 		Step newStep = recordDao.duplicateLatestNotRejectedStepData(survey, recordId, prevStep);
 		if (newStep != prevStep) {
@@ -711,6 +933,7 @@ public class RecordManager {
 		record.setState( State.REJECTED );
 		validate(record);
 		recordDao.updateSummary(record);
+		updateCoordinates(record);
 		return record;
 	}
 
@@ -723,6 +946,7 @@ public class RecordManager {
 	@Transactional(readOnly=false, propagation=REQUIRED)
 	public void validateAndSave(CollectRecord record) {
 		validate(record);
+		flushPendingChanges(record.getId());
 		recordDao.updateSummary(record);
 	}
 	
@@ -732,6 +956,7 @@ public class RecordManager {
 			lockManager.isLockAllowed(user, recordId, sessionId, true);
 			lockManager.lock(recordId, user, sessionId, true);
 		}
+		flushPendingChanges(recordId);
 		CollectRecord record = recordDao.load(survey, recordId, step);
 
 		validateAndSave(record);
@@ -740,6 +965,85 @@ public class RecordManager {
 			lockManager.releaseLock(recordId);
 		}
 	}
+	
+	/**
+	 * Validates all the records matching the specified filter using the specified number of threads; 
+	 * every record is deserialized, converted, initialized and validated in a single worker thread, using its own record updater
+	 * (see {@link #visitRecords(RecordFilter, Step, boolean, boolean, Visitor, Predicate)}).
+	 * The validation summary (errors, warnings, skipped and missing counts) is stored only for the records 
+	 * whose counts changed, in batches. Records currently locked (being edited) are validated but not updated:
+	 * their validation summary will be stored when they are saved.
+	 * Records modified after being loaded are not updated either, even if they were not locked
+	 * (see {@link RecordDao#createValidationSummaryUpdateQuery(CollectRecord)}), so stale counts never overwrite newer ones.
+	 * The visitor is always invoked in the calling thread, after each record has been validated.
+	 * 
+	 * @return the number of records whose validation summary changed
+	 */
+	@Transactional(readOnly=false, propagation=SUPPORTS)
+	public int validateAndSaveChanged(RecordFilter filter, int threads, final Visitor<CollectRecord> validatedRecordVisitor,
+			final Predicate<CollectRecord> stopWhenPredicate) {
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		final List<CollectStoreQuery> pendingUpdates = new ArrayList<CollectStoreQuery>(VALIDATION_SUMMARY_UPDATE_BATCH_SIZE);
+		final AtomicInteger updatedCount = new AtomicInteger();
+		if (recordSaver != null) {
+			//validate the latest version of the records
+			recordSaver.flushAll();
+		}
+		final OrderedParallelProcessor<ValidatedRecord> processor = new OrderedParallelProcessor<ValidatedRecord>(threads, 
+				new Visitor<ValidatedRecord>() {
+			public void visit(ValidatedRecord validatedRecord) {
+				if (stopped.get()) {
+					return;
+				}
+				CollectRecord record = validatedRecord.record;
+				if (validatedRecord.validationSummaryChanged && ! (isLockingEnabled() && lockManager.isLocked(record.getId()))) {
+					pendingUpdates.add(recordDao.createValidationSummaryUpdateQuery(record));
+					updatedCount.incrementAndGet();
+					if (pendingUpdates.size() >= VALIDATION_SUMMARY_UPDATE_BATCH_SIZE) {
+						recordDao.execute(pendingUpdates);
+						pendingUpdates.clear();
+					}
+				}
+				if (validatedRecordVisitor != null) {
+					validatedRecordVisitor.visit(record);
+				}
+				if (stopWhenPredicate != null && stopWhenPredicate.evaluate(record)) {
+					stopped.set(true);
+				}
+			}
+		});
+		try {
+			recordDao.visitSerializedRecords(filter, null, true, new Visitor<SerializedRecord>() {
+				public void visit(final SerializedRecord serializedRecord) {
+					processor.submit(new Callable<ValidatedRecord>() {
+						public ValidatedRecord call() throws Exception {
+							CollectRecord record = serializedRecord.deserialize();
+							int[] oldValidationSummary = extractValidationSummary(record);
+							initializeLoadedRecord(record, false, false);
+							new RecordUpdater().validate(record);
+							boolean changed = ! Arrays.equals(oldValidationSummary, extractValidationSummary(record));
+							return new ValidatedRecord(record, changed);
+						}
+					});
+				}
+			}, new Predicate<SerializedRecord>() {
+				public boolean evaluate(SerializedRecord item) {
+					return stopped.get();
+				}
+			});
+			processor.finish();
+			if (! pendingUpdates.isEmpty()) {
+				recordDao.execute(pendingUpdates);
+			}
+		} finally {
+			processor.close();
+		}
+		return updatedCount.get();
+	}
+	
+	private int[] extractValidationSummary(CollectRecord record) {
+		return new int[] {record.getErrors(), record.getWarnings(), record.getSkipped(), record.getMissing()};
+	}
 
 	//START OF RECORD UPDATE METHODS
 	/**
@@ -937,6 +1241,22 @@ public class RecordManager {
 		}
 	}
 	
+	/**
+	 * Saves the changes made to the specified record through the command API and not saved yet (see {@link WriteBehindRecordSaver}),
+	 * before the record is modified in any other way: they could be lost otherwise, or overwrite the new changes when saved later
+	 */
+	private void flushPendingChanges(Integer recordId) {
+		if (recordSaver != null && recordId != null) {
+			recordSaver.flush(recordId);
+		}
+	}
+
+	private void discardPendingChanges(int recordId) {
+		if (recordSaver != null) {
+			recordSaver.discard(recordId);
+		}
+	}
+
 	public void releaseLock(Integer recordId) {
 		if ( lockingEnabled ) {
 			lockManager.releaseLock(recordId);
@@ -951,6 +1271,14 @@ public class RecordManager {
 		this.lockTimeoutMillis = timeoutMillis;
 	}
 	
+	public int getBulkLoadThreads() {
+		return bulkLoadThreads;
+	}
+	
+	public void setBulkLoadThreads(int bulkLoadThreads) {
+		this.bulkLoadThreads = bulkLoadThreads;
+	}
+	
 	public boolean isLockingEnabled() {
 		return lockingEnabled;
 	}
@@ -959,6 +1287,17 @@ public class RecordManager {
 		this.lockingEnabled = lockingEnabled;
 	}
 	
+	public WriteBehindRecordSaver getRecordSaver() {
+		return recordSaver;
+	}
+
+	/**
+	 * Sets the record saver whose pending changes must be saved before a record is modified outside of the command API
+	 */
+	public void setRecordSaver(WriteBehindRecordSaver recordSaver) {
+		this.recordSaver = recordSaver;
+	}
+
 	public RecordDao getRecordDao() {
 		return recordDao;
 	}
@@ -1105,5 +1444,16 @@ public class RecordManager {
 		}
 		
 	}
+	
+	private static class ValidatedRecord {
+		
+		private final CollectRecord record;
+		private final boolean validationSummaryChanged;
+		
+		public ValidatedRecord(CollectRecord record, boolean validationSummaryChanged) {
+			this.record = record;
+			this.validationSummaryChanged = validationSummaryChanged;
+		}
+	}
 
 }
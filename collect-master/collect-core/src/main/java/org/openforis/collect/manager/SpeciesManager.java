@@ -10,13 +10,18 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.lang3.ObjectUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.openforis.collect.metamodel.TaxonSummaries;
 import org.openforis.collect.metamodel.TaxonSummary;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.CollectTaxonomy;
+import org.openforis.collect.model.TaxonSearchIndex;
+import org.openforis.collect.model.TaxonSearchIndex.MatchMode;
+import org.openforis.collect.model.TaxonSearchIndex.VernacularNameEntry;
 import org.openforis.collect.model.TaxonTree;
 import org.openforis.collect.model.TaxonTree.Node;
 import org.openforis.collect.persistence.TaxonDao;
@@ -63,7 +68,8 @@ public class SpeciesManager {
 	private ExpressionFactory expressionFactory;
 	
 	private transient Map<TaxonomyByNameCacheKey, CollectTaxonomy> taxonomyByNameCache = new HashMap<TaxonomyByNameCacheKey, CollectTaxonomy>();
-	private transient Map<Integer, TaxonTree> taxonTreeByTaxonomyIdCache = new HashMap<Integer, TaxonTree>();
+	private transient Map<Integer, TaxonTree> taxonTreeByTaxonomyIdCache = new ConcurrentHashMap<Integer, TaxonTree>();
+	private transient Map<Integer, TaxonSearchIndex> taxonSearchIndexByTaxonomyIdCache = new ConcurrentHashMap<Integer, TaxonSearchIndex>();
 
 	public List<CollectTaxonomy> loadTaxonomiesBySurvey(CollectSurvey survey) {
 		return taxonomyDao.loadAllBySurvey(survey);
@@ -85,13 +91,17 @@ public class SpeciesManager {
 
 	public List<TaxonOccurrence> findByCode(CollectTaxonomy taxonomy, String searchString, int maxResults,
 			TaxonSearchParameters parameters) {
-		List<Taxon> list = taxonDao.findByCode(taxonomy, parameters.getHighestRank(), searchString, maxResults);
-		return fromTaxonomiesToTaxonOccurrences(list, parameters);
+		TaxonSearchIndex index = loadTaxonSearchIndex(taxonomy);
+		MatchMode matchMode = ObjectUtils.defaultIfNull(parameters.getMatchMode(), MatchMode.STARTS_WITH);
+		List<Node> nodes = index.findByCode(searchString, parameters.getHighestRank(), matchMode, maxResults);
+		return fromNodesToTaxonOccurrences(nodes, parameters);
 	}
 
 	public List<TaxonOccurrence> findByScientificName(CollectTaxonomy taxonomy, String searchString, int maxResults, TaxonSearchParameters parameters) {
-		List<Taxon> list = taxonDao.findByScientificName(taxonomy, parameters.getHighestRank(), searchString, maxResults);
-		return fromTaxonomiesToTaxonOccurrences(list, parameters);
+		TaxonSearchIndex index = loadTaxonSearchIndex(taxonomy);
+		MatchMode matchMode = ObjectUtils.defaultIfNull(parameters.getMatchMode(), MatchMode.STARTS_WITH);
+		List<Node> nodes = index.findByScientificName(searchString, parameters.getHighestRank(), matchMode, maxResults);
+		return fromNodesToTaxonOccurrences(nodes, parameters);
 	}
 	
 	public List<TaxonOccurrence> findByFamilyCode(CollectTaxonomy taxonomy, String searchString, int maxResults, 
@@ -121,14 +131,17 @@ public class SpeciesManager {
 	}
 	
 	public List<TaxonOccurrence> findByVernacularName(CollectTaxonomy taxonomy, TaxonAttribute attr, String searchString, int maxResults, TaxonSearchParameters parameters) {
-		List<TaxonVernacularName> list = null;
-		if (attr == null){
-			list = taxonVernacularNameDao.findByVernacularName(taxonomy.getId(), searchString, maxResults);
-		} else{
-			String[] qualifierValues = extractQualifierValues(attr);
-			list = taxonVernacularNameDao.findByVernacularName(taxonomy.getId(), searchString, qualifierValues, maxResults);
+		String[] qualifierValues = attr == null ? null : extractQualifierValues(attr);
+		TaxonSearchIndex index = loadTaxonSearchIndex(taxonomy);
+		MatchMode matchMode = ObjectUtils.defaultIfNull(parameters.getMatchMode(), MatchMode.CONTAINS);
+		List<VernacularNameEntry> entries = index.findByVernacularName(searchString, parameters.getHighestRank(), 
+				qualifierValues, parameters.getLanguageCode(), matchMode, maxResults);
+		List<TaxonOccurrence> result = new ArrayList<TaxonOccurrence>(entries.size());
+		for (VernacularNameEntry entry : entries) {
+			Node node = entry.getNode();
+			result.add(node.getTree().createOccurrence(node, entry.getVernacularName(), parameters));
 		}
-		return fromVernacularNamesToTaxonOccurrences(taxonomy, list, parameters);
+		return result;
 	}
 	
 	public TaxonSummaries loadFullTaxonSummariesOld(CollectTaxonomy taxonomy) {
@@ -199,7 +212,7 @@ public class SpeciesManager {
 	public void delete(CollectTaxonomy taxonomy) {
 		deleteTaxonsByTaxonomy(taxonomy);
 		taxonomyDao.delete(taxonomy);
-		taxonTreeByTaxonomyIdCache.remove(taxonomy.getId());
+		invalidateTaxonTreeCache(taxonomy.getId());
 		taxonomyByNameCache.remove(new TaxonomyByNameCacheKey(taxonomy));
 	}
 
@@ -207,7 +220,7 @@ public class SpeciesManager {
 	public void deleteTaxonsByTaxonomy(CollectTaxonomy taxonomy) {
 		taxonVernacularNameDao.deleteByTaxonomy(taxonomy.getId());
 		taxonDao.deleteByTaxonomy(taxonomy);
-		taxonTreeByTaxonomyIdCache.remove(taxonomy.getId());
+		invalidateTaxonTreeCache(taxonomy.getId());
 	}
 	
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
@@ -217,12 +230,13 @@ public class SpeciesManager {
 		} else {
 			taxonDao.update(taxon);
 		}
-		taxonTreeByTaxonomyIdCache.remove(taxon.getTaxonomyId());
+		invalidateTaxonTreeCache(taxon.getTaxonomyId());
 	}
 	
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
 	public void insertVernacularNames(List<TaxonVernacularName> vernacularNames) {
 		taxonVernacularNameDao.insert(vernacularNames);
+		invalidateTaxonTreeCache();
 	}
 	
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
@@ -243,7 +257,7 @@ public class SpeciesManager {
 		flushTaxonInsertBuffer(taxonomy, taxonInsertBuffer);
 		flushTaxonVernacularNameInsertBuffer(taxonVernacularNameInsertBuffer);
 		
-		taxonTreeByTaxonomyIdCache.remove(taxonomy.getId());
+		invalidateTaxonTreeCache(taxonomy.getId());
 	}
 	
 	protected void persistTaxonTreeNode(List<Taxon> taxonInsertBuffer, List<TaxonVernacularName> taxonVernacularNameInsertBuffer, 
@@ -278,6 +292,7 @@ public class SpeciesManager {
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
 	public void delete(Taxon taxon) {
 		taxonDao.delete(taxon);
+		invalidateTaxonTreeCache(taxon.getTaxonomyId());
 	}
 	
 	@Transactional
@@ -287,11 +302,13 @@ public class SpeciesManager {
 		} else {
 			taxonVernacularNameDao.update(vernacularName);
 		}
+		invalidateTaxonTreeCache();
 	}
 	
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
 	public void delete(TaxonVernacularName vernacularName) {
 		taxonVernacularNameDao.delete(vernacularName.getId());
+		invalidateTaxonTreeCache();
 	}
 	
 	@Transactional(readOnly=false, propagation=Propagation.REQUIRED)
@@ -378,11 +395,51 @@ public class SpeciesManager {
 		return tree;
 	}
 
+	/**
+	 * Returns the in memory search index of the taxa in the specified taxonomy,
+	 * built from the taxon tree the first time it's requested and discarded when the taxonomy changes
+	 */
+	public TaxonSearchIndex loadTaxonSearchIndex(CollectTaxonomy taxonomy) {
+		Integer taxonomyId = taxonomy.getId();
+		TaxonSearchIndex index = taxonSearchIndexByTaxonomyIdCache.get(taxonomyId);
+		if (index == null) {
+			index = new TaxonSearchIndex(loadTaxonTree(taxonomy));
+			taxonSearchIndexByTaxonomyIdCache.put(taxonomyId, index);
+		}
+		return index;
+	}
+	
+	private void invalidateTaxonTreeCache(Integer taxonomyId) {
+		if (taxonomyId == null) {
+			invalidateTaxonTreeCache();
+		} else {
+			taxonTreeByTaxonomyIdCache.remove(taxonomyId);
+			taxonSearchIndexByTaxonomyIdCache.remove(taxonomyId);
+		}
+	}
+
+	/**
+	 * Invalidates the cached trees of all the taxonomies 
+	 * (used when the taxonomy of the modified items is not known)
+	 */
+	private void invalidateTaxonTreeCache() {
+		taxonTreeByTaxonomyIdCache.clear();
+		taxonSearchIndexByTaxonomyIdCache.clear();
+	}
+
 	public boolean hasTaxons(CollectTaxonomy taxonomy) {
 		int count = taxonDao.countTaxons(taxonomy);
 		return count > 0;
 	}
 	
+	private List<TaxonOccurrence> fromNodesToTaxonOccurrences(List<Node> nodes, TaxonSearchParameters parameters) {
+		List<TaxonOccurrence> result = new ArrayList<TaxonOccurrence>(nodes.size());
+		for (Node node : nodes) {
+			result.add(node.getTree().createOccurrence(node, null, parameters));
+		}
+		return result;
+	}
+	
 	private List<TaxonOccurrence> fromTaxonomiesToTaxonOccurrences(List<Taxon> list, TaxonSearchParameters parameters) {
 		List<TaxonOccurrence> result = new ArrayList<TaxonOccurrence>(list.size());
 		for (Taxon taxon : list) {
@@ -399,23 +456,6 @@ public class SpeciesManager {
 		return result;
 	}
 	
-	private List<TaxonOccurrence> fromVernacularNamesToTaxonOccurrences(CollectTaxonomy taxonomy,
-			List<TaxonVernacularName> vernacularNames, TaxonSearchParameters parameters) {
-		List<TaxonOccurrence> result = new ArrayList<TaxonOccurrence>();
-		for (TaxonVernacularName vernacularName : vernacularNames) {
-			Taxon taxon = taxonDao.loadById(taxonomy, vernacularName.getTaxonSystemId());
-			TaxonRank highestRank = parameters.getHighestRank();
-			if (highestRank == null || highestRank == taxon.getTaxonRank() || highestRank.isHigherThan(taxon.getTaxonRank())) {
-				TaxonOccurrence o = new TaxonOccurrence(taxon, vernacularName);
-				if (parameters.isIncludeAncestorTaxons()) {
-					loadAncestorTaxons(taxon, o);
-				}
-				result.add(o);
-			}
-		}
-		return result;
-	}
-
 	private void includeUniqueVernacularNameIfAny(long taxonSystemId, TaxonOccurrence o) {
 		List<TaxonVernacularName> vernacularNames = taxonVernacularNameDao.findByTaxon(taxonSystemId);
 		if (vernacularNames.size() == 1) {
@@ -70,6 +70,7 @@ import org.openforis.idm.metamodel.ModelVersion;
 import org.openforis.idm.metamodel.Survey;
 import org.openforis.idm.metamodel.xml.IdmlParseException;
 import org.openforis.idm.metamodel.xml.internal.marshal.SurveyMarshaller.SurveyMarshalParameters;
+import org.openforis.idm.model.expression.ExpressionFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -117,6 +118,7 @@ public class SurveyManager {
 	private Map<Integer, ProcessStatus> recordValidationStatusBySurvey;
 	
 	private SurveyCache publishedSurveyCache = null;
+	private boolean precompileExpressions = true;
 	
 	public SurveyManager() {
 		recordValidationStatusBySurvey = Collections.synchronizedMap(new HashMap<Integer, ProcessStatus>());
@@ -1022,7 +1024,7 @@ public class SurveyManager {
 		}
 	}
 
-	public void validateRecords(int surveyId, User user) {
+	public void validateRecords(int surveyId) {
 		CollectSurvey survey = getPublishedSurveyCache().getById(surveyId);
 		if ( survey == null ) {
 			throw new IllegalStateException("Published survey not found, id="+surveyId);
@@ -1033,9 +1035,6 @@ public class SurveyManager {
 		} else {
 			RecordValidationProcess process = applicationContext.getBean(RecordValidationProcess.class);
 			process.setSurvey(survey);
-			process.setUser(user);
-			UUID sessionId = UUID.randomUUID();
-			process.setSessionId(sessionId.toString());
 			try {
 				process.init();
 				recordValidationStatusBySurvey.put(survey.getId(), process.getStatus());
@@ -1318,6 +1317,17 @@ public class SurveyManager {
 		this.userGroupManager = userGroupManager;
 	}
 	
+	public boolean isPrecompileExpressions() {
+		return precompileExpressions;
+	}
+	
+	/**
+	 * If true, the expressions defined in the published surveys are compiled when the surveys are loaded
+	 */
+	public void setPrecompileExpressions(boolean precompileExpressions) {
+		this.precompileExpressions = precompileExpressions;
+	}
+	
 	private class SurveyCache {
 		
 		private List<CollectSurvey> surveys = new ArrayList<CollectSurvey>();
@@ -1365,6 +1375,10 @@ public class SurveyManager {
 			surveysById.put(survey.getId(), survey);
 			surveysByName.put(survey.getName(), survey);
 			surveysByUri.put(survey.getUri(), survey);
+			if (precompileExpressions) {
+				ExpressionFactory expressionFactory = survey.getContext().getExpressionFactory();
+				expressionFactory.precompileExpressions(survey);
+			}
 		}
 		
 		protected void remove(CollectSurvey survey) {
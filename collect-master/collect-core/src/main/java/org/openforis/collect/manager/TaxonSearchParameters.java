@@ -1,5 +1,6 @@
 package org.openforis.collect.manager;
 
+import org.openforis.collect.model.TaxonSearchIndex.MatchMode;
 import org.openforis.idm.model.species.Taxon.TaxonRank;
 
 public class TaxonSearchParameters {
@@ -7,6 +8,15 @@ public class TaxonSearchParameters {
 	private TaxonRank highestRank = TaxonRank.FAMILY;
 	private boolean includeUniqueVernacularName;
 	private boolean includeAncestorTaxons;
+	/**
+	 * Language code used to filter the vernacular names (all languages if not specified)
+	 */
+	private String languageCode;
+	/**
+	 * How the search string is matched: if not specified, codes and scientific names must start with it,
+	 * vernacular names must contain it
+	 */
+	private MatchMode matchMode;
 	
 	public TaxonRank getHighestRank() {
 		return highestRank;
@@ -30,5 +40,21 @@ public class TaxonSearchParameters {
 	
 	public void setIncludeAncestorTaxons(boolean includeAncestorTaxons) {
 		this.includeAncestorTaxons = includeAncestorTaxons;
-	} 
+	}
+	
+	public String getLanguageCode() {
+		return languageCode;
+	}
+	
+	public void setLanguageCode(String languageCode) {
+		this.languageCode = languageCode;
+	}
+	
+	public MatchMode getMatchMode() {
+		return matchMode;
+	}
+	
+	public void setMatchMode(MatchMode matchMode) {
+		this.matchMode = matchMode;
+	}
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package org.openforis.collect.manager;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import org.openforis.collect.model.User;
 import org.openforis.collect.model.UserRole;
@@ -13,6 +15,12 @@ public interface UserManager extends ItemManager<User, Integer> {
 	
 	boolean verifyPassword(String username, String password);
 
+	/**
+	 * Loads the users with the specified ids at once.
+	 * The returned map is not modifiable and doesn't contain entries for ids of not existing users.
+	 */
+	Map<Integer, User> loadByIds(Collection<Integer> ids);
+
 	User loadByUserName(String userName);
 
 	User loadEnabledUser(String userName);
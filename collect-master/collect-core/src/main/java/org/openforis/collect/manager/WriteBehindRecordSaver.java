@@ -0,0 +1,236 @@
+package org.openforis.collect.manager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.collect.persistence.RecordPersistenceException;
+
+/**
+ * Saves the records modified through the command API.
+ *
+ * By default records are saved synchronously, before the command is acknowledged.
+ *
+ * Write-behind is an opt-in mode (see {@link #setWriteBehindEnabled(boolean)} and {@link #setFlushDelay(long)}):
+ * modified records are kept in memory and saved when the flush delay expires, so that consecutive changes to the same record
+ * result in a single write to the database.
+ * Pending changes are saved also when explicitly requested (see {@link #flush(int)}, e.g. before a record is promoted
+ * or its lock is released), before the record manager modifies or deletes the record in any other way
+ * (e.g. data cleansing, validation, bulk jobs) and on shutdown (see {@link #destroy()}).
+ * If a record cannot be saved, it's kept in memory and saving is retried after the delay.
+ * 
+ * WARNING: pending changes are not persisted anywhere else, so in write-behind mode commands are acknowledged 
+ * before their changes are stored: the changes made in the last flush delay milliseconds are LOST 
+ * if the JVM terminates abnormally (crash, kill, power failure).
+ *
+ * Changes to a record and its saving must be performed while holding the lock returned by {@link #getLock(Integer)}.
+ */
+public class WriteBehindRecordSaver {
+
+	private static final Logger LOG = LogManager.getLogger(WriteBehindRecordSaver.class);
+	private static final int LOCK_STRIPES = 64;
+
+	private RecordManager recordManager;
+	private boolean writeBehindEnabled = false;
+	private long flushDelay = 0;
+
+	private final Map<Integer, CollectRecord> dirtyRecordsById = new ConcurrentHashMap<Integer, CollectRecord>();
+	private final Object[] locks;
+	private ScheduledExecutorService flushExecutor;
+
+	public WriteBehindRecordSaver(RecordManager recordManager) {
+		this.recordManager = recordManager;
+		this.locks = new Object[LOCK_STRIPES];
+		for (int i = 0; i < LOCK_STRIPES; i++) {
+			locks[i] = new Object();
+		}
+	}
+
+	public void init() {
+		if (writeBehindEnabled) {
+			if (flushDelay <= 0) {
+				throw new IllegalStateException("Flush delay must be greater than 0 when write-behind is enabled");
+			}
+			LOG.warn(String.format("Record write-behind enabled: changes made in the last %d ms will be lost "
+					+ "if the application terminates abnormally", flushDelay));
+			flushExecutor = Executors.newSingleThreadScheduledExecutor();
+			recordManager.setRecordSaver(this);
+		}
+	}
+
+	public void destroy() {
+		if (flushExecutor != null) {
+			flushExecutor.shutdownNow();
+			flushExecutor = null;
+		}
+		flushAll();
+		if (recordManager.getRecordSaver() == this) {
+			recordManager.setRecordSaver(null);
+		}
+	}
+
+	/**
+	 * Returns the lock to be held while modifying the record with the specified id
+	 * (the same lock could be shared by other records)
+	 */
+	public Object getLock(Integer recordId) {
+		int index = recordId == null ? 0 : (recordId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES;
+		return locks[index];
+	}
+
+	/**
+	 * Saves the specified record, immediately (write-behind disabled or new record) or after the flush delay
+	 */
+	public void save(CollectRecord record) {
+		save(record, null);
+	}
+
+	/**
+	 * Saves the specified record; when it's saved immediately, only the specified changes are stored, 
+	 * if possible (see {@link RecordManager#saveChanges(CollectRecord, NodeChangeSet)})
+	 */
+	public void save(CollectRecord record, NodeChangeSet changeSet) {
+		Integer recordId = record.getId();
+		if (flushExecutor == null || recordId == null) {
+			//new records are saved immediately: their id is needed to generate the record events
+			synchronized (getLock(recordId)) {
+				if (recordId != null && dirtyRecordsById.remove(recordId) != null) {
+					//pending changes not stored yet: the whole record must be saved
+					changeSet = null;
+				}
+				if (changeSet == null) {
+					saveInternal(record);
+				} else {
+					recordManager.saveChanges(record, changeSet);
+				}
+			}
+			return;
+		}
+		if (dirtyRecordsById.put(recordId, record) == null) {
+			scheduleFlush(recordId);
+		}
+	}
+
+	/**
+	 * Saves the pending changes of the record with the specified id, if any
+	 */
+	public void flush(int recordId) {
+		if (! dirtyRecordsById.containsKey(recordId)) {
+			return;
+		}
+		synchronized (getLock(recordId)) {
+			CollectRecord record = dirtyRecordsById.remove(recordId);
+			if (record != null) {
+				try {
+					saveInternal(record);
+				} catch (RuntimeException e) {
+					//keep pending changes
+					dirtyRecordsById.put(recordId, record);
+					throw e;
+				}
+			}
+		}
+	}
+
+	public void flushAll() {
+		List<Integer> recordIds = new ArrayList<Integer>(dirtyRecordsById.keySet());
+		for (Integer recordId : recordIds) {
+			try {
+				flush(recordId);
+			} catch (Exception e) {
+				LOG.error(String.format("Error saving record with id %d", recordId), e);
+			}
+		}
+	}
+
+	/**
+	 * Discards the pending changes of the record with the specified id (e.g. because it is being deleted)
+	 */
+	public void discard(int recordId) {
+		synchronized (getLock(recordId)) {
+			dirtyRecordsById.remove(recordId);
+		}
+	}
+
+	/**
+	 * Discards the pending changes of all the records of the specified survey (e.g. because they are being deleted)
+	 */
+	public void discardBySurvey(int surveyId) {
+		for (CollectRecord record : new ArrayList<CollectRecord>(dirtyRecordsById.values())) {
+			Integer recordSurveyId = record.getSurvey().getId();
+			if (recordSurveyId != null && recordSurveyId == surveyId) {
+				discard(record.getId());
+			}
+		}
+	}
+
+	public boolean isDirty(int recordId) {
+		return dirtyRecordsById.containsKey(recordId);
+	}
+
+	private void scheduleFlush(final int recordId) {
+		ScheduledExecutorService executor = flushExecutor;
+		if (executor == null) {
+			//shutting down
+			flush(recordId);
+			return;
+		}
+		try {
+			executor.schedule(new Runnable() {
+				public void run() {
+					try {
+						flush(recordId);
+					} catch (Exception e) {
+						LOG.error(String.format("Error saving record with id %d: retrying in %d ms", recordId, flushDelay), e);
+						if (isDirty(recordId)) {
+							scheduleFlush(recordId);
+						}
+					}
+				}
+			}, flushDelay, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			//shutting down
+			flush(recordId);
+		}
+	}
+
+	private void saveInternal(CollectRecord record) {
+		try {
+			recordManager.save(record, null);
+		} catch (RecordPersistenceException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public boolean isWriteBehindEnabled() {
+		return writeBehindEnabled;
+	}
+
+	/**
+	 * Enables the write-behind mode; the changes not saved yet are lost if the JVM terminates abnormally
+	 */
+	public void setWriteBehindEnabled(boolean writeBehindEnabled) {
+		this.writeBehindEnabled = writeBehindEnabled;
+	}
+
+	public long getFlushDelay() {
+		return flushDelay;
+	}
+
+	/**
+	 * Sets the delay (in milliseconds) after which the changes of a record are saved, when write-behind is enabled
+	 */
+	public void setFlushDelay(long flushDelay) {
+		this.flushDelay = flushDelay;
+	}
+
+}
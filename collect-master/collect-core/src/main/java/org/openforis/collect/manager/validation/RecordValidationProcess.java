@@ -1,17 +1,14 @@
 package org.openforis.collect.manager.validation;
 
-import java.util.List;
-
 import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.manager.process.AbstractProcess;
 import org.openforis.collect.manager.process.ProcessStatus;
-import org.openforis.collect.model.CollectRecord.Step;
-import org.openforis.collect.model.CollectRecordSummary;
+import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.RecordFilter;
-import org.openforis.collect.model.User;
-import org.openforis.idm.metamodel.EntityDefinition;
-import org.openforis.idm.metamodel.Schema;
+import org.openforis.collect.utils.OrderedParallelProcessor;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.commons.collection.Visitor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
@@ -34,8 +31,7 @@ public class RecordValidationProcess extends AbstractProcess<Void, ProcessStatus
 	private RecordManager recordManager;
 	
 	private CollectSurvey survey;
-	private User user;
-	private String sessionId;
+	private int threads = OrderedParallelProcessor.getDefaultThreads();
 
 	@Override
 	protected void initStatus() {
@@ -47,33 +43,25 @@ public class RecordValidationProcess extends AbstractProcess<Void, ProcessStatus
 	public void startProcessing() throws Exception {
 		super.startProcessing();
 		validateParameters();
-		status.setTotal(recordManager.countRecords(new RecordFilter(survey)));
-		Schema schema = survey.getSchema();
-		List<EntityDefinition> rootEntities = schema.getRootEntityDefinitions();
-		for (EntityDefinition rootEntityDef : rootEntities) {
-			RecordFilter filter = new RecordFilter(survey, rootEntityDef.getId());
-			List<CollectRecordSummary> summaries = recordManager.loadSummaries(filter);
-			for (CollectRecordSummary summary : summaries) {
-				//long start = System.currentTimeMillis();
-				//print(outputStream, "Start validating record: " + recordKey);
-				if ( status.isRunning() ) {
-					Step step = summary.getStep();
-					Integer recordId = summary.getId();
-					recordManager.validateAndSave(survey, user, sessionId, recordId, step);
-					status.incrementProcessed();
-					//long elapsedMillis = System.currentTimeMillis() - start;
-					//print(outputStream, "Validation of record " + recordKey + " completed in " + elapsedMillis + " millis");
-				}
+		RecordFilter filter = new RecordFilter(survey);
+		status.setTotal(recordManager.countRecords(filter));
+		recordManager.validateAndSaveChanged(filter, threads, new Visitor<CollectRecord>() {
+			public void visit(CollectRecord record) {
+				status.incrementProcessed();
 			}
-		}
+		}, new Predicate<CollectRecord>() {
+			public boolean evaluate(CollectRecord record) {
+				return ! status.isRunning();
+			}
+		});
 		if ( status.isRunning() ) {
 			status.complete();
 		}
 	}
 
 	private void validateParameters() {
-		if ( survey == null || user == null || sessionId == null ) {
-			throw new IllegalStateException("Survey, user and sessionId must be specified before starting the process");
+		if ( survey == null ) {
+			throw new IllegalStateException("Survey must be specified before starting the process");
 		}
 	}
 
@@ -85,20 +73,15 @@ public class RecordValidationProcess extends AbstractProcess<Void, ProcessStatus
 		this.survey = survey;
 	}
 
-	public User getUser() {
-		return user;
-	}
-
-	public void setUser(User user) {
-		this.user = user;
+	public int getThreads() {
+		return threads;
 	}
-
-	public String getSessionId() {
-		return sessionId;
-	}
-
-	public void setSessionId(String sessionId) {
-		this.sessionId = sessionId;
+	
+	/**
+	 * Sets the number of threads used to validate the records
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
 	}
 	
 }
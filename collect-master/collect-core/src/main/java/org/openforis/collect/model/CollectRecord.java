@@ -3,6 +3,7 @@ package org.openforis.collect.model;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import org.openforis.collect.Collect;
 import org.openforis.collect.event.RecordStep;
@@ -205,6 +206,8 @@ public class CollectRecord extends Record {
 	private transient List<String> summaryValues;
 	
 	private RecordValidationCache validationCache;
+	
+	private transient Set<Integer> persistedNodeIds;
 
 	public CollectRecord(CollectSurvey survey, String versionName, String rootEntityName) {
 		this(survey, versionName, rootEntityName, true);
@@ -244,6 +247,7 @@ public class CollectRecord extends Record {
 	public void replaceRootEntity(Entity rootEntity) {
 		super.replaceRootEntity(rootEntity);
 		this.updateSummaryFields();
+		this.persistedNodeIds = null;
 	}
 	
 	@Override
@@ -521,6 +525,19 @@ public class CollectRecord extends Record {
 		return validationCache;
 	}
 	
+	/**
+	 * Internal ids of the nodes stored in the database (record data and data journal),
+	 * used to store only the changes made to the record.
+	 * If null, the stored nodes are not known and the whole record data has to be saved.
+	 */
+	public Set<Integer> getPersistedNodeIds() {
+		return persistedNodeIds;
+	}
+	
+	public void setPersistedNodeIds(Set<Integer> persistedNodeIds) {
+		this.persistedNodeIds = persistedNodeIds;
+	}
+	
 	public boolean isErrorConfirmed(Attribute<?,?> attribute){
 		for (Field<?> field : attribute.getFields()) {
 			if (!field.getState().get(CONFIRMED_ERROR_POSITION)) {
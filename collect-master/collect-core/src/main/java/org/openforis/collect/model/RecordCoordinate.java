@@ -0,0 +1,129 @@
+package org.openforis.collect.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openforis.idm.geospatial.CoordinateOperations;
+import org.openforis.idm.metamodel.CoordinateAttributeDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.model.Coordinate;
+import org.openforis.idm.model.CoordinateAttribute;
+import org.openforis.idm.model.Node;
+import org.openforis.idm.model.NodeVisitor;
+
+/**
+ * Value of a coordinate attribute of a record, converted into WGS84 (x = longitude, y = latitude).
+ * Coordinates are stored in a dedicated table, so that they can be queried by position
+ * without loading the records they belong to.
+ */
+public class RecordCoordinate {
+
+	private int surveyId;
+	private int recordId;
+	private int attributeDefinitionId;
+	private int attributeId;
+	private double x;
+	private double y;
+
+	public RecordCoordinate() {
+	}
+
+	public RecordCoordinate(int surveyId, int recordId, int attributeDefinitionId, int attributeId, double x, double y) {
+		super();
+		this.surveyId = surveyId;
+		this.recordId = recordId;
+		this.attributeDefinitionId = attributeDefinitionId;
+		this.attributeId = attributeId;
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Extracts the values of all the filled coordinate attributes in the specified record.
+	 * Coordinates that cannot be converted into WGS84 (e.g. with an unknown SRS) are skipped.
+	 */
+	public static List<RecordCoordinate> extract(final CollectRecord record) {
+		final List<RecordCoordinate> result = new ArrayList<RecordCoordinate>();
+		if (record.getId() == null || record.getSurvey().getId() == null || record.getRootEntity() == null) {
+			return result;
+		}
+		final int surveyId = record.getSurvey().getId();
+		final CoordinateOperations coordinateOperations = record.getSurveyContext().getCoordinateOperations();
+		record.getRootEntity().traverse(new NodeVisitor() {
+			public void visit(Node<? extends NodeDefinition> node, int idx) {
+				if (node instanceof CoordinateAttribute && ((CoordinateAttribute) node).isFilled()) {
+					Coordinate wgs84Coordinate = toWgs84(coordinateOperations, ((CoordinateAttribute) node).getValue());
+					if (wgs84Coordinate != null) {
+						CoordinateAttributeDefinition def = (CoordinateAttributeDefinition) node.getDefinition();
+						result.add(new RecordCoordinate(surveyId, record.getId(), def.getId(),
+								node.getInternalId(), wgs84Coordinate.getX(), wgs84Coordinate.getY()));
+					}
+				}
+			}
+		});
+		return result;
+	}
+
+	private static Coordinate toWgs84(CoordinateOperations coordinateOperations, Coordinate coordinate) {
+		try {
+			Coordinate result = coordinateOperations.convertToWgs84(coordinate);
+			if (result == null || result.getX() == null || result.getY() == null
+					|| Double.isNaN(result.getX()) || Double.isNaN(result.getY())
+					|| Double.isInfinite(result.getX()) || Double.isInfinite(result.getY())) {
+				return null;
+			}
+			return result;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	public int getSurveyId() {
+		return surveyId;
+	}
+
+	public void setSurveyId(int surveyId) {
+		this.surveyId = surveyId;
+	}
+
+	public int getRecordId() {
+		return recordId;
+	}
+
+	public void setRecordId(int recordId) {
+		this.recordId = recordId;
+	}
+
+	public int getAttributeDefinitionId() {
+		return attributeDefinitionId;
+	}
+
+	public void setAttributeDefinitionId(int attributeDefinitionId) {
+		this.attributeDefinitionId = attributeDefinitionId;
+	}
+
+	public int getAttributeId() {
+		return attributeId;
+	}
+
+	public void setAttributeId(int attributeId) {
+		this.attributeId = attributeId;
+	}
+
+	public double getX() {
+		return x;
+	}
+
+	public void setX(double x) {
+		this.x = x;
+	}
+
+	public double getY() {
+		return y;
+	}
+
+	public void setY(double y) {
+		this.y = y;
+	}
+
+}
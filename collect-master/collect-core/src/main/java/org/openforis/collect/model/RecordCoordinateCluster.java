@@ -0,0 +1,68 @@
+package org.openforis.collect.model;
+
+/**
+ * Group of record coordinates falling into the same cell of a grid.
+ * The position of the cluster is the centroid of the coordinates in it;
+ * record and attribute ids are available only when the cluster contains a single coordinate.
+ */
+public class RecordCoordinateCluster {
+
+	private int count;
+	private double sumX;
+	private double sumY;
+	private double minX = Double.MAX_VALUE;
+	private double minY = Double.MAX_VALUE;
+	private double maxX = -Double.MAX_VALUE;
+	private double maxY = -Double.MAX_VALUE;
+	private RecordCoordinate first;
+
+	public void add(RecordCoordinate coordinate) {
+		if (count == 0) {
+			first = coordinate;
+		}
+		count ++;
+		sumX += coordinate.getX();
+		sumY += coordinate.getY();
+		minX = Math.min(minX, coordinate.getX());
+		minY = Math.min(minY, coordinate.getY());
+		maxX = Math.max(maxX, coordinate.getX());
+		maxY = Math.max(maxY, coordinate.getY());
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getX() {
+		return count == 0 ? 0 : sumX / count;
+	}
+
+	public double getY() {
+		return count == 0 ? 0 : sumY / count;
+	}
+
+	public double getMinX() {
+		return minX;
+	}
+
+	public double getMinY() {
+		return minY;
+	}
+
+	public double getMaxX() {
+		return maxX;
+	}
+
+	public double getMaxY() {
+		return maxY;
+	}
+
+	public Integer getRecordId() {
+		return count == 1 ? first.getRecordId() : null;
+	}
+
+	public Integer getAttributeId() {
+		return count == 1 ? first.getAttributeId() : null;
+	}
+
+}
@@ -21,6 +21,11 @@ public class RecordFilter {
 
 	private Integer offset;
 	private Integer maxNumberOfRecords;
+	/**
+	 * Id of the last record of the previous page: when specified, only the records following it 
+	 * (according to the sort fields) are returned and the offset is ignored (keyset pagination)
+	 */
+	private Integer afterRecordId;
 	private CollectSurvey survey;
 	private int surveyId;
 	private Integer rootEntityId;
@@ -98,6 +103,14 @@ public class RecordFilter {
 		this.maxNumberOfRecords = maxNumberOfRecords;
 	}
 	
+	public Integer getAfterRecordId() {
+		return afterRecordId;
+	}
+	
+	public void setAfterRecordId(Integer afterRecordId) {
+		this.afterRecordId = afterRecordId;
+	}
+	
 	public CollectSurvey getSurvey() {
 		return survey;
 	}
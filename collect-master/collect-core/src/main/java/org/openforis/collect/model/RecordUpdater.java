@@ -10,7 +10,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.lang3.ObjectUtils;
@@ -132,6 +135,69 @@ public class RecordUpdater {
 		return afterAttributeUpdate(attribute);
 	}
 
+	/**
+	 * Updates several attributes of the same record at once: all the new values are applied first,
+	 * then the dependent nodes are updated and validated only once for all the updated attributes
+	 */
+	public NodeChangeSet updateAttributes(Map<Attribute<?, ?>, Value> valuesByAttribute) {
+		return updateAttributes(valuesByAttribute, Collections.<NodePointer, List<Value>>emptyMap());
+	}
+
+	/**
+	 * Updates several attributes of the same record at once (see {@link #updateAttributes(Map)}).
+	 * The attributes of every multiple attribute pointer (parent entity and attribute definition) 
+	 * are replaced by new attributes with the specified values, as in 
+	 * {@link #updateMultipleAttribute(Entity, AttributeDefinition, List)}
+	 */
+	public NodeChangeSet updateAttributes(Map<Attribute<?, ?>, Value> valuesByAttribute,
+			Map<NodePointer, List<Value>> valuesByMultipleAttributePointer) {
+		NodeChangeMap changeMap = new NodeChangeMap();
+		if (valuesByAttribute.isEmpty() && valuesByMultipleAttributePointer.isEmpty()) {
+			return changeMap;
+		}
+		List<Attribute<?, ?>> attributes = new ArrayList<Attribute<?, ?>>();
+		for (Entry<Attribute<?, ?>, Value> entry : valuesByAttribute.entrySet()) {
+			@SuppressWarnings("unchecked")
+			Attribute<?, Value> attribute = (Attribute<?, Value>) entry.getKey();
+			beforeAttributeUpdate(attribute);
+			attribute.setValue(entry.getValue());
+			attribute.updateSummaryInfo();
+			changeMap.addValueChange(attribute);
+			attributes.add(attribute);
+		}
+		Set<NodePointer> valueUpdatedPointers = nodesToPointers(attributes);
+		Set<NodePointer> selfPointers = new HashSet<NodePointer>(valueUpdatedPointers);
+		Set<NodePointer> dependentPointers = new HashSet<NodePointer>();
+		
+		for (Entry<NodePointer, List<Value>> entry : valuesByMultipleAttributePointer.entrySet()) {
+			NodePointer pointer = entry.getKey();
+			Entity parentEntity = pointer.getEntity();
+			AttributeDefinition attrDef = (AttributeDefinition) pointer.getChildDefinition();
+			CollectRecord record = (CollectRecord) parentEntity.getRecord();
+			
+			Set<Node<?>> oldAttributes = new HashSet<Node<?>>(parentEntity.getChildren(attrDef));
+			dependentPointers.addAll(record.determineDependenciesThatRequireUpdates(oldAttributes));
+			
+			// delete old values
+			for (Node<?> child : oldAttributes) {
+				List<Integer> ancestorIds = child.getAncestorIds();
+				performNodeDeletion(child);
+				changeMap.addNodeDeleteChange(record.getId(), record.getStep(), ancestorIds, parentEntity.getPath(), child);
+			}
+			// add new values
+			for (Value value : entry.getValue()) {
+				Attribute<?, ?> a = performAttributeAdd(parentEntity, attrDef, value, null, null);
+				attributes.add(a);
+				changeMap.addAttributeAddChange(a);
+			}
+			selfPointers.add(pointer);
+		}
+		NodePointer firstPointer = selfPointers.iterator().next();
+		CollectRecord record = (CollectRecord) firstPointer.getRecord();
+		return afterAttributesInsertOrUpdate(changeMap, record, attributes, selfPointers, valueUpdatedPointers, 
+				dependentPointers);
+	}
+
 	public NodeChangeSet updateMultipleAttribute(Entity parentEntity, AttributeDefinition attrDef, List<Value> values) {
 		CollectRecord record = (CollectRecord) parentEntity.getRecord();
 		NodePointer selfNodePointer = new NodePointer(parentEntity, attrDef);
@@ -324,6 +390,8 @@ public class RecordUpdater {
 		List<NodePointer> cardinalityPointers = getAncestorPointers(parentEntity);
 		cardinalityPointers.add(new NodePointer(parentEntity, nodeName));
 		NodeChangeMap changeMap = new NodeChangeMap();
+		// child state changed even if the cardinality validation result doesn't
+		changeMap.prepareEntityChange(parentEntity);
 		validateCardinality(parentEntity.getRecord(), cardinalityPointers, changeMap);
 		return changeMap;
 	}
@@ -369,17 +437,34 @@ public class RecordUpdater {
 	}
 
 	private NodeChangeSet afterAttributeInsertOrUpdate(final NodeChangeMap changeMap, Attribute<?, ?> attribute) {
-		CollectRecord record = (CollectRecord) attribute.getRecord();
-		CollectSurvey survey = (CollectSurvey) record.getSurvey();
+		Set<NodePointer> selfPointers = Collections.singleton(new NodePointer(attribute));
+		return afterAttributesInsertOrUpdate(changeMap, (CollectRecord) attribute.getRecord(),
+				Collections.<Attribute<?, ?>>singletonList(attribute), selfPointers, selfPointers,
+				Collections.<NodePointer>emptySet());
+	}
 
-		NodePointer selfPointer = new NodePointer(attribute);
+	/**
+	 * Updates the dependents of the specified attributes and validates them.
+	 * 
+	 * @param attributes Inserted or updated attributes
+	 * @param selfPointers Pointers to the inserted or updated attributes
+	 * @param valueUpdatedPointers Pointers (included in selfPointers) to the attributes whose value has been updated
+	 * @param dependentPointers Other pointers to be updated (e.g. dependents of deleted attributes)
+	 */
+	private NodeChangeSet afterAttributesInsertOrUpdate(final NodeChangeMap changeMap, CollectRecord record,
+			Collection<Attribute<?, ?>> attributes, Set<NodePointer> selfPointers,
+			Set<NodePointer> valueUpdatedPointers, Set<NodePointer> dependentPointers) {
+		CollectSurvey survey = (CollectSurvey) record.getSurvey();
 
+		// dependents of all the attributes are visited in a single pass
+		Set<NodePointer> pointersToUpdate = new LinkedHashSet<NodePointer>(selfPointers);
+		pointersToUpdate.addAll(dependentPointers);
 		RecordDependentsUpdater recordDependentsUpdater = new RecordDependentsUpdater(configuration);
 		RecordDependentsUpdateResult recordDependentsUpdateResult = recordDependentsUpdater.updateDependents(record,
-				selfPointer, true);
+				pointersToUpdate, valueUpdatedPointers);
 
 		List<Attribute<?, ?>> updatedAttributes = new ArrayList<Attribute<?, ?>>();
-		updatedAttributes.add(attribute);
+		updatedAttributes.addAll(attributes);
 		updatedAttributes.addAll(recordDependentsUpdateResult.getUpdatedAttributes());
 		changeMap.addValueChanges(updatedAttributes);
 
@@ -396,14 +481,16 @@ public class RecordUpdater {
 		Set<NodePointer> updatedRelevancePointers = recordDependentsUpdateResult.getUpdatedRelevancePointers();
 		changeMap.addRelevanceChanges(updatedRelevancePointers);
 
-		List<NodePointer> ancestorsAndSelfPointers = getAncestorsAndSelfPointers(selfPointer);
-
 		if (configuration.validateAfterUpdate) {
+			Set<NodePointer> ancestorsAndSelfPointers = new LinkedHashSet<NodePointer>();
+			for (NodePointer selfPointer : selfPointers) {
+				ancestorsAndSelfPointers.addAll(getAncestorsAndSelfPointers(selfPointer));
+			}
 			Set<NodePointer> minCountDependenciesToSelf = new HashSet<NodePointer>();
 			Set<NodePointer> maxCountDependenciesToSelf = new HashSet<NodePointer>();
 			Set<Attribute<?, ?>> validationDependenciesToSelf = new HashSet<Attribute<?, ?>>();
 
-			performValidationAfterUpdate(selfPointer, ancestorsAndSelfPointers, updatedAttributes,
+			performValidationAfterUpdate(selfPointers, ancestorsAndSelfPointers, updatedAttributes,
 					updatedRelevancePointers, minCountDependenciesToSelf, maxCountDependenciesToSelf,
 					validationDependenciesToSelf, changeMap);
 		}
@@ -571,7 +658,17 @@ public class RecordUpdater {
 			List<Attribute<?, ?>> updatedAttributes, Set<NodePointer> updatedRelevancePointers,
 			Set<NodePointer> minCountDependenciesToSelf, Set<NodePointer> maxCountDependenciesToSelf,
 			Set<Attribute<?, ?>> validationDependenciesToSelf, NodeChangeMap changeMap) {
-		Record record = nodePointer.getRecord();
+		performValidationAfterUpdate(Collections.singleton(nodePointer), ancestorsAndSelfPointers, updatedAttributes,
+				updatedRelevancePointers, minCountDependenciesToSelf, maxCountDependenciesToSelf,
+				validationDependenciesToSelf, changeMap);
+	}
+
+	private void performValidationAfterUpdate(Collection<NodePointer> nodePointers,
+			Collection<NodePointer> ancestorsAndSelfPointers, List<Attribute<?, ?>> updatedAttributes,
+			Set<NodePointer> updatedRelevancePointers, Set<NodePointer> minCountDependenciesToSelf,
+			Set<NodePointer> maxCountDependenciesToSelf, Set<Attribute<?, ?>> validationDependenciesToSelf,
+			NodeChangeMap changeMap) {
+		Record record = nodePointers.iterator().next().getRecord();
 
 		Set<NodePointer> updatedAttributePointers = nodesToPointers(updatedAttributes);
 
@@ -605,7 +702,7 @@ public class RecordUpdater {
 		// validate cardinality
 		Set<NodePointer> updatedAttributePointersAndSelf = new HashSet<NodePointer>();
 		updatedAttributePointersAndSelf.addAll(updatedAttributePointers);
-		updatedAttributePointersAndSelf.add(nodePointer);
+		updatedAttributePointersAndSelf.addAll(nodePointers);
 		// determine dependent attributes (hierarchical code attributes with
 		// parent/child relation)
 		Set<NodePointer> dependentCodeAttributesPointers = determineDependentCodeAttributes(
@@ -628,8 +725,10 @@ public class RecordUpdater {
 
 		// validate attributes
 		Set<Node<?>> nodesToCheckValidationFor = new HashSet<Node<?>>();
-		if (nodePointer.getChildDefinition() instanceof AttributeDefinition) {
-			nodesToCheckValidationFor.addAll(nodePointer.getNodes());
+		for (NodePointer nodePointer : nodePointers) {
+			if (nodePointer.getChildDefinition() instanceof AttributeDefinition) {
+				nodesToCheckValidationFor.addAll(nodePointer.getNodes());
+			}
 		}
 		nodesToCheckValidationFor.addAll(updatedAttributes);
 		nodesToCheckValidationFor.addAll(validationDependenciesToSelf);
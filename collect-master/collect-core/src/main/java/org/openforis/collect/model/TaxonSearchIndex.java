@@ -0,0 +1,329 @@
+package org.openforis.collect.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openforis.collect.model.TaxonTree.Node;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.model.species.Taxon;
+import org.openforis.idm.model.species.Taxon.TaxonRank;
+import org.openforis.idm.model.species.TaxonVernacularName;
+
+/**
+ * In memory index of the codes, scientific names and vernacular names of the taxa in a {@link TaxonTree},
+ * used to search taxa without querying the database.
+ *
+ * Every searchable text is normalized (lower case) and stored in a sorted array:
+ * texts starting with a prefix are found using binary search,
+ * texts containing a string are found using an index of the trigrams of every text (created the first time it's needed).
+ */
+public class TaxonSearchIndex {
+
+	public enum MatchMode {
+		STARTS_WITH, CONTAINS
+	}
+
+	private final TextIndex<Node> codeIndex;
+	private final TextIndex<Node> scientificNameIndex;
+	private final TextIndex<VernacularNameEntry> vernacularNameIndex;
+
+	public TaxonSearchIndex(TaxonTree tree) {
+		final List<Node> nodes = new ArrayList<Node>();
+		final List<VernacularNameEntry> vernacularNames = new ArrayList<VernacularNameEntry>();
+		tree.depthFirstVisit(new TaxonTree.NodeVisitor() {
+			public void visit(Node node) {
+				nodes.add(node);
+				for (TaxonVernacularName vernacularName : node.getVernacularNames()) {
+					vernacularNames.add(new VernacularNameEntry(node, vernacularName));
+				}
+			}
+		});
+		codeIndex = new TextIndex<Node>(nodes, new TextExtractor<Node>() {
+			public String extract(Node node) {
+				return node.getTaxon().getCode();
+			}
+		});
+		scientificNameIndex = new TextIndex<Node>(nodes, new TextExtractor<Node>() {
+			public String extract(Node node) {
+				return node.getTaxon().getScientificName();
+			}
+		});
+		vernacularNameIndex = new TextIndex<VernacularNameEntry>(vernacularNames, new TextExtractor<VernacularNameEntry>() {
+			public String extract(VernacularNameEntry entry) {
+				return entry.vernacularName.getVernacularName();
+			}
+		});
+	}
+
+	/**
+	 * Finds the taxa with a code matching the search string, having the specified rank or a lower one (if highestRank is specified),
+	 * sorted by code
+	 */
+	public List<Node> findByCode(String searchString, TaxonRank highestRank, MatchMode matchMode, int maxResults) {
+		return codeIndex.find(searchString, matchMode, new RankPredicate<Node>(highestRank) {
+			protected Taxon getTaxon(Node node) {
+				return node.getTaxon();
+			}
+		}, maxResults);
+	}
+
+	/**
+	 * Finds the taxa with a scientific name matching the search string, having the specified rank or a lower one (if highestRank is specified),
+	 * sorted by scientific name
+	 */
+	public List<Node> findByScientificName(String searchString, TaxonRank highestRank, MatchMode matchMode, int maxResults) {
+		return scientificNameIndex.find(searchString, matchMode, new RankPredicate<Node>(highestRank) {
+			protected Taxon getTaxon(Node node) {
+				return node.getTaxon();
+			}
+		}, maxResults);
+	}
+
+	/**
+	 * Finds the vernacular names matching the search string, associated to taxa with the specified rank or a lower one.
+	 * Qualifier values and language code are used to filter the vernacular names only when specified (not null).
+	 */
+	public List<VernacularNameEntry> findByVernacularName(String searchString, TaxonRank highestRank,
+			final String[] qualifierValues, final String languageCode, MatchMode matchMode, int maxResults) {
+		final RankPredicate<VernacularNameEntry> rankPredicate = new RankPredicate<VernacularNameEntry>(highestRank) {
+			protected Taxon getTaxon(VernacularNameEntry entry) {
+				return entry.node.getTaxon();
+			}
+		};
+		return vernacularNameIndex.find(searchString, matchMode, new Predicate<VernacularNameEntry>() {
+			public boolean evaluate(VernacularNameEntry entry) {
+				TaxonVernacularName vernacularName = entry.vernacularName;
+				if (languageCode != null && ! languageCode.equalsIgnoreCase(vernacularName.getLanguageCode())) {
+					return false;
+				}
+				if (qualifierValues != null) {
+					List<String> qualifiers = vernacularName.getQualifiers();
+					for (int i = 0; i < qualifierValues.length; i++) {
+						String value = qualifierValues[i];
+						if (value != null) {
+							String qualifier = qualifiers == null || i >= qualifiers.size() ? null : qualifiers.get(i);
+							if (! value.equals(qualifier)) {
+								return false;
+							}
+						}
+					}
+				}
+				return rankPredicate.evaluate(entry);
+			}
+		}, maxResults);
+	}
+
+	static String normalize(String text) {
+		return text == null ? null : text.toLowerCase(Locale.ENGLISH);
+	}
+
+	public static class VernacularNameEntry {
+
+		private final Node node;
+		private final TaxonVernacularName vernacularName;
+
+		VernacularNameEntry(Node node, TaxonVernacularName vernacularName) {
+			this.node = node;
+			this.vernacularName = vernacularName;
+		}
+
+		public Node getNode() {
+			return node;
+		}
+
+		public TaxonVernacularName getVernacularName() {
+			return vernacularName;
+		}
+	}
+
+	private static abstract class RankPredicate<T> implements Predicate<T> {
+
+		private final TaxonRank highestRank;
+
+		RankPredicate(TaxonRank highestRank) {
+			this.highestRank = highestRank;
+		}
+
+		protected abstract Taxon getTaxon(T item);
+
+		public boolean evaluate(T item) {
+			if (highestRank == null) {
+				return true;
+			}
+			TaxonRank rank = getTaxon(item).getTaxonRank();
+			return rank == highestRank || rank != null && highestRank.isHigherThan(rank);
+		}
+	}
+
+	private interface TextExtractor<T> {
+
+		String extract(T item);
+	}
+
+	/**
+	 * Sorted array of normalized texts, each one associated to an item
+	 */
+	private static class TextIndex<T> {
+
+		private static final int NGRAM_LENGTH = 3;
+
+		private final String[] texts;
+		private final Object[] items;
+		private volatile Map<String, int[]> positionsByNGram;
+
+		TextIndex(List<T> items, final TextExtractor<T> textExtractor) {
+			List<Object[]> entries = new ArrayList<Object[]>(items.size());
+			for (T item : items) {
+				String text = normalize(textExtractor.extract(item));
+				if (StringUtils.isNotEmpty(text)) {
+					entries.add(new Object[] {text, item});
+				}
+			}
+			//stable sort: items with the same text keep the order of the tree
+			Collections.sort(entries, new Comparator<Object[]>() {
+				public int compare(Object[] e1, Object[] e2) {
+					return ((String) e1[0]).compareTo((String) e2[0]);
+				}
+			});
+			this.texts = new String[entries.size()];
+			this.items = new Object[entries.size()];
+			for (int i = 0; i < entries.size(); i++) {
+				Object[] entry = entries.get(i);
+				this.texts[i] = (String) entry[0];
+				this.items[i] = entry[1];
+			}
+		}
+
+		List<T> find(String searchString, MatchMode matchMode, Predicate<T> predicate, int maxResults) {
+			String normalizedSearchString = ObjectUtils.defaultIfNull(normalize(searchString), "");
+			if (matchMode == MatchMode.CONTAINS) {
+				return findContaining(normalizedSearchString, predicate, maxResults);
+			} else {
+				return findStartingWith(normalizedSearchString, predicate, maxResults);
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		private List<T> findStartingWith(String prefix, Predicate<T> predicate, int maxResults) {
+			List<T> result = new ArrayList<T>();
+			int start = Arrays.binarySearch(texts, prefix);
+			if (start < 0) {
+				start = - start - 1;
+			} else {
+				//find first occurrence of the same text
+				while (start > 0 && texts[start - 1].equals(prefix)) {
+					start --;
+				}
+			}
+			for (int i = start; i < texts.length && result.size() < maxResults && texts[i].startsWith(prefix); i++) {
+				T item = (T) items[i];
+				if (predicate.evaluate(item)) {
+					result.add(item);
+				}
+			}
+			return result;
+		}
+
+		@SuppressWarnings("unchecked")
+		private List<T> findContaining(String searchString, Predicate<T> predicate, int maxResults) {
+			List<T> result = new ArrayList<T>();
+			int[] candidatePositions = findCandidatePositions(searchString);
+			if (candidatePositions == null) {
+				//search string too short to use n-grams: scan all the texts
+				for (int i = 0; i < texts.length && result.size() < maxResults; i++) {
+					T item = (T) items[i];
+					if (texts[i].contains(searchString) && predicate.evaluate(item)) {
+						result.add(item);
+					}
+				}
+			} else {
+				for (int i = 0; i < candidatePositions.length && result.size() < maxResults; i++) {
+					int position = candidatePositions[i];
+					T item = (T) items[position];
+					if (texts[position].contains(searchString) && predicate.evaluate(item)) {
+						result.add(item);
+					}
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the (sorted) positions of the texts containing the least frequent n-gram of the search string,
+		 * or null if the search string is shorter than an n-gram
+		 */
+		private int[] findCandidatePositions(String searchString) {
+			if (searchString.length() < NGRAM_LENGTH) {
+				return null;
+			}
+			Map<String, int[]> positionsByNGram = getPositionsByNGram();
+			int[] result = null;
+			for (int i = 0; i <= searchString.length() - NGRAM_LENGTH; i++) {
+				int[] positions = positionsByNGram.get(searchString.substring(i, i + NGRAM_LENGTH));
+				if (positions == null) {
+					return new int[0];
+				}
+				if (result == null || positions.length < result.length) {
+					result = positions;
+				}
+			}
+			return result;
+		}
+
+		private Map<String, int[]> getPositionsByNGram() {
+			Map<String, int[]> result = positionsByNGram;
+			if (result == null) {
+				synchronized (this) {
+					result = positionsByNGram;
+					if (result == null) {
+						result = createNGramIndex();
+						positionsByNGram = result;
+					}
+				}
+			}
+			return result;
+		}
+
+		private Map<String, int[]> createNGramIndex() {
+			Map<String, List<Integer>> positionsListByNGram = new HashMap<String, List<Integer>>();
+			Set<String> textNGrams = new HashSet<String>();
+			for (int position = 0; position < texts.length; position++) {
+				String text = texts[position];
+				textNGrams.clear();
+				for (int i = 0; i <= text.length() - NGRAM_LENGTH; i++) {
+					textNGrams.add(text.substring(i, i + NGRAM_LENGTH));
+				}
+				for (String nGram : textNGrams) {
+					List<Integer> positions = positionsListByNGram.get(nGram);
+					if (positions == null) {
+						positions = new ArrayList<Integer>();
+						positionsListByNGram.put(nGram, positions);
+					}
+					positions.add(position);
+				}
+			}
+			Map<String, int[]> result = new HashMap<String, int[]>(positionsListByNGram.size());
+			for (Entry<String, List<Integer>> entry : positionsListByNGram.entrySet()) {
+				List<Integer> positionsList = entry.getValue();
+				int[] positions = new int[positionsList.size()];
+				for (int i = 0; i < positions.length; i++) {
+					positions[i] = positionsList.get(i);
+				}
+				result.put(entry.getKey(), positions);
+			}
+			return result;
+		}
+	}
+
+}
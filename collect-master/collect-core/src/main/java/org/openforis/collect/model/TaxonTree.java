@@ -348,8 +348,16 @@ public class TaxonTree {
 	}
 	
 	private TaxonOccurrence createOccurrence(Node node, TaxonSearchParameters parameters) {
-		TaxonOccurrence occurrence = new TaxonOccurrence(node.getTaxon());
-		if (parameters.isIncludeUniqueVernacularName()) {
+		return createOccurrence(node, null, parameters);
+	}
+	
+	/**
+	 * Creates a taxon occurrence for the taxon in the specified node; if a vernacular name is not specified, 
+	 * the unique vernacular name of the taxon (if any) will be included when required by the search parameters.
+	 */
+	public TaxonOccurrence createOccurrence(Node node, TaxonVernacularName vernacularName, TaxonSearchParameters parameters) {
+		TaxonOccurrence occurrence = new TaxonOccurrence(node.getTaxon(), vernacularName);
+		if (vernacularName == null && parameters.isIncludeUniqueVernacularName()) {
 			includeUniqueVernacularNameIfAny(node, occurrence);
 		}
 		if (parameters.isIncludeAncestorTaxons()) {
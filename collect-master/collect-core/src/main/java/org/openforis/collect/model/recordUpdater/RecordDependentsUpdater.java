@@ -3,6 +3,7 @@ package org.openforis.collect.model.recordUpdater;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -87,6 +88,17 @@ public class RecordDependentsUpdater {
 	}
 	
 	public RecordDependentsUpdateResult updateDependents(CollectRecord record, Collection<NodePointer> nodePointers, boolean nodePointerValueUpdated) {
+		return updateDependents(record, nodePointers, 
+				nodePointerValueUpdated ? nodePointers : Collections.<NodePointer>emptySet());
+	}
+	
+	/**
+	 * Updates the dependents of all the specified node pointers in a single pass.
+	 * The attributes of the pointers in valueUpdatedPointers (included in nodePointers) are considered as updated 
+	 * (e.g. their dependent code attributes are cleared)
+	 */
+	public RecordDependentsUpdateResult updateDependents(CollectRecord record, Collection<NodePointer> nodePointers, 
+			Collection<NodePointer> valueUpdatedPointers) {
 		final Queue<NodePointer> queue = new UniqueQueue<NodePointer>();
 		queue.addAll(nodePointers);
 		
@@ -100,11 +112,9 @@ public class RecordDependentsUpdater {
 		final Set<NodePointer> updatedRelevancePointersCurrentIteration = new HashSet<NodePointer>();
 		final List<Attribute<?, ?>> updatedAttributesCurrentIteration = new ArrayList<Attribute<?, ?>>();
 		
-		if (nodePointerValueUpdated) {
-			for (NodePointer nodePointer : nodePointers) {
-				if (nodePointer.getChildDefinition() instanceof AttributeDefinition) {
-					updatedAttributesCurrentIteration.addAll(filterAttributes(nodePointer.getNodes()));
-				}
+		for (NodePointer nodePointer : valueUpdatedPointers) {
+			if (nodePointer.getChildDefinition() instanceof AttributeDefinition) {
+				updatedAttributesCurrentIteration.addAll(filterAttributes(nodePointer.getNodes()));
 			}
 		}
 		
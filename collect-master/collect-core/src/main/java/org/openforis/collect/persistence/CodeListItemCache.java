@@ -1,87 +1,168 @@
 package org.openforis.collect.persistence;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.openforis.idm.metamodel.CodeList;
 import org.openforis.idm.metamodel.ModelVersion;
 import org.openforis.idm.metamodel.PersistedCodeListItem;
 
 /**
- * 
+ * Thread safe cache of code list items, grouped by survey, code list and parent item.
+ * Items are indexed by code, so that the lookup of a single item does not require a scan of all its siblings.
+ * The number of items cached for each survey is limited: when the limit is exceeded,
+ * the least recently used groups of sibling items are evicted.
+ *
  * @author S. Ricci
  *
  */
 public class CodeListItemCache {
-	
-//	private static final int MAX_ITEMS_PER_SURVEY = 10000;
-	
-	private Map<Integer, SurveyCodeListItemCache> cacheBySurveyId = new HashMap<Integer, CodeListItemCache.SurveyCodeListItemCache>();
-	
+
+	public static final int DEFAULT_MAX_ITEMS_PER_SURVEY = 100000;
+
+	private final ConcurrentMap<Integer, SurveyCodeListItemCache> cacheBySurveyId = new ConcurrentHashMap<Integer, SurveyCodeListItemCache>();
+	private volatile int maxItemsPerSurvey = DEFAULT_MAX_ITEMS_PER_SURVEY;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
 	public PersistedCodeListItem getItem(CodeList codeList, Long parentId, String code, ModelVersion version) {
-		List<PersistedCodeListItem> items = getItems(codeList, parentId);
-		if (items == null) {
+		CachedItems cachedItems = getCachedItems(codeList, parentId);
+		if (cachedItems == null) {
 			return null;
 		}
+		List<PersistedCodeListItem> items = cachedItems.getItemsByCode(code);
 		for (PersistedCodeListItem item : items) {
-			if (item.getCode().equals(code) && (version == null || version.isApplicable(item))) {
+			if (version == null || version.isApplicable(item)) {
 				return item;
 			}
 		}
 		return null;
 	}
-	
+
 	public List<PersistedCodeListItem> getItems(CodeList codeList, Long parentId) {
-		int surveyId = codeList.getSurvey().getId();
-		SurveyCodeListItemCache surveyCache = getSurveyCache(surveyId);
-		if (surveyCache == null) {
-			return null;
-		}
-		InternalCodeListItemCache codeListCache = surveyCache.getCodeListCache(codeList.getId());
-		if (codeListCache == null) {
-			return null;
-		}
-		List<PersistedCodeListItem> items = codeListCache.getItemsByParentId(parentId);
-		return items;
+		CachedItems cachedItems = getCachedItems(codeList, parentId);
+		return cachedItems == null ? null : new ArrayList<PersistedCodeListItem>(cachedItems.items);
+	}
+
+	/**
+	 * Returns true if the child items of the specified parent are cached (without affecting the statistics)
+	 */
+	public boolean containsItems(CodeList codeList, Long parentId) {
+		SurveyCodeListItemCache surveyCache = getSurveyCache(codeList.getSurvey().getId());
+		return surveyCache != null && surveyCache.contains(new CacheKey(codeList.getId(), parentId));
 	}
 
 	public void putItems(CodeList codeList, Long parentId, List<PersistedCodeListItem> items) {
 		int surveyId = codeList.getSurvey().getId();
 		SurveyCodeListItemCache surveyCache = getOrCreateSurveyCache(surveyId);
-		InternalCodeListItemCache codeListCache = surveyCache.getOrCreateCodeListCache(codeList.getId());
-		codeListCache.putItems(parentId, items);
+		int evicted = surveyCache.put(new CacheKey(codeList.getId(), parentId), new CachedItems(items), maxItemsPerSurvey);
+		evictionCount.addAndGet(evicted);
 	}
-	
+
 	public void clear() {
 		cacheBySurveyId.clear();
 	}
-	
+
 	public void clearItems(CodeList codeList, Long parentId) {
-		int surveyId = codeList.getSurvey().getId();
-		SurveyCodeListItemCache surveyCache = getOrCreateSurveyCache(surveyId);
-		InternalCodeListItemCache codeListCache = surveyCache.getOrCreateCodeListCache(codeList.getId());
-		codeListCache.clearItems(parentId);
+		SurveyCodeListItemCache surveyCache = getSurveyCache(codeList.getSurvey().getId());
+		if (surveyCache != null) {
+			surveyCache.remove(new CacheKey(codeList.getId(), parentId));
+		}
 	}
 
 	public void clearItemsBySurvey(int surveyId) {
 		cacheBySurveyId.remove(surveyId);
 	}
-	
+
 	public void clearItemsByCodeList(CodeList codeList) {
-		Integer surveyId = codeList.getSurvey().getId();
-		SurveyCodeListItemCache surveyCache = getSurveyCache(surveyId);
+		SurveyCodeListItemCache surveyCache = getSurveyCache(codeList.getSurvey().getId());
 		if (surveyCache != null) {
-			surveyCache.removeCodeListCache(codeList.getId());
+			surveyCache.removeByCodeList(codeList.getId());
+		}
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	/**
+	 * Returns the number of items currently cached for the specified survey
+	 */
+	public int getItemCount(int surveyId) {
+		SurveyCodeListItemCache surveyCache = getSurveyCache(surveyId);
+		return surveyCache == null ? 0 : surveyCache.getItemCount();
+	}
+
+	public int getMaxItemsPerSurvey() {
+		return maxItemsPerSurvey;
+	}
+
+	/**
+	 * Sets the maximum number of items cached for each survey.
+	 * The limit is applied the next time items are put into the cache of a survey.
+	 */
+	public void setMaxItemsPerSurvey(int maxItemsPerSurvey) {
+		if (maxItemsPerSurvey <= 0) {
+			throw new IllegalArgumentException("Max items per survey must be greater than 0");
+		}
+		this.maxItemsPerSurvey = maxItemsPerSurvey;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("surveys: %d, hits: %d, misses: %d, evictions: %d",
+				cacheBySurveyId.size(), getHitCount(), getMissCount(), getEvictionCount());
+	}
+
+	private CachedItems getCachedItems(CodeList codeList, Long parentId) {
+		SurveyCodeListItemCache surveyCache = getSurveyCache(codeList.getSurvey().getId());
+		CachedItems cachedItems = surveyCache == null ? null : surveyCache.get(new CacheKey(codeList.getId(), parentId));
+		if (cachedItems == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
 		}
+		return cachedItems;
 	}
-	
+
 	private SurveyCodeListItemCache getOrCreateSurveyCache(int surveyId) {
 		SurveyCodeListItemCache surveyCache = getSurveyCache(surveyId);
 		if (surveyCache == null) {
-			surveyCache = new SurveyCodeListItemCache();
-			cacheBySurveyId.put(surveyId, surveyCache);
+			SurveyCodeListItemCache newSurveyCache = new SurveyCodeListItemCache();
+			surveyCache = cacheBySurveyId.putIfAbsent(surveyId, newSurveyCache);
+			if (surveyCache == null) {
+				surveyCache = newSurveyCache;
+			}
 		}
 		return surveyCache;
 	}
@@ -89,51 +170,139 @@ public class CodeListItemCache {
 	private SurveyCodeListItemCache getSurveyCache(int surveyId) {
 		return cacheBySurveyId.get(surveyId);
 	}
-	
+
+	/**
+	 * Items of a single survey, kept in access order to evict the least recently used ones first
+	 */
 	private static class SurveyCodeListItemCache {
-		
-		private Map<Integer, InternalCodeListItemCache> cacheByCodeListId = new HashMap<Integer, CodeListItemCache.InternalCodeListItemCache>();
-
-		public InternalCodeListItemCache getCodeListCache(int codeListId) {
-			return cacheByCodeListId.get(codeListId);
-		}
-		
-		public InternalCodeListItemCache getOrCreateCodeListCache(int codeListId) {
-			InternalCodeListItemCache cache = getCodeListCache(codeListId);
-			if (cache == null) {
-				cache = new InternalCodeListItemCache();
-				cacheByCodeListId.put(codeListId, cache);
+
+		private final LinkedHashMap<CacheKey, CachedItems> itemsByKey = new LinkedHashMap<CacheKey, CachedItems>(16, 0.75f, true);
+		private int itemCount = 0;
+
+		public synchronized CachedItems get(CacheKey key) {
+			return itemsByKey.get(key);
+		}
+
+		public synchronized boolean contains(CacheKey key) {
+			return itemsByKey.containsKey(key);
+		}
+
+		/**
+		 * Puts the items into the cache and evicts the least recently used ones if the max number of items is exceeded.
+		 * The items just put are never evicted, even if they exceed the limit by themselves.
+		 *
+		 * @return number of evicted groups of items
+		 */
+		public synchronized int put(CacheKey key, CachedItems cachedItems, int maxItems) {
+			CachedItems oldItems = itemsByKey.put(key, cachedItems);
+			if (oldItems != null) {
+				itemCount -= oldItems.size();
 			}
-			return cache;
+			itemCount += cachedItems.size();
+			int evicted = 0;
+			Iterator<Entry<CacheKey, CachedItems>> it = itemsByKey.entrySet().iterator();
+			while (itemCount > maxItems && it.hasNext()) {
+				Entry<CacheKey, CachedItems> eldest = it.next();
+				if (eldest.getKey().equals(key)) {
+					continue;
+				}
+				itemCount -= eldest.getValue().size();
+				it.remove();
+				evicted ++;
+			}
+			return evicted;
 		}
-		
-		public void removeCodeListCache(int codeListId) {
-			cacheByCodeListId.remove(codeListId);
+
+		public synchronized void remove(CacheKey key) {
+			CachedItems oldItems = itemsByKey.remove(key);
+			if (oldItems != null) {
+				itemCount -= oldItems.size();
+			}
 		}
-		
+
+		public synchronized void removeByCodeList(int codeListId) {
+			Iterator<Entry<CacheKey, CachedItems>> it = itemsByKey.entrySet().iterator();
+			while (it.hasNext()) {
+				Entry<CacheKey, CachedItems> entry = it.next();
+				if (entry.getKey().codeListId == codeListId) {
+					itemCount -= entry.getValue().size();
+					it.remove();
+				}
+			}
+		}
+
+		public synchronized int getItemCount() {
+			return itemCount;
+		}
+
 	}
-	
-	private static class InternalCodeListItemCache {
-		
-		private Map<Long, List<PersistedCodeListItem>> itemsByParentId = new HashMap<Long, List<PersistedCodeListItem>>();
-		
-		public List<PersistedCodeListItem> getItemsByParentId(Long parentId) {
-			 List<PersistedCodeListItem> items = itemsByParentId.get(createMapKeyByParentId(parentId));
-			 return items == null ? null : new ArrayList<PersistedCodeListItem>(items);
+
+	private static class CacheKey {
+
+		private final int codeListId;
+		private final long parentId;
+
+		public CacheKey(int codeListId, Long parentId) {
+			this.codeListId = codeListId;
+			this.parentId = parentId == null ? 0 : parentId;
 		}
-		
-		public void putItems(Long parentId, List<PersistedCodeListItem> items) {
-			itemsByParentId.put(createMapKeyByParentId(parentId), new ArrayList<PersistedCodeListItem>(items));
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + codeListId;
+			result = prime * result + (int) (parentId ^ (parentId >>> 32));
+			return result;
 		}
 
-		public void clearItems(Long parentId) {
-			itemsByParentId.remove(parentId);
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			CacheKey other = (CacheKey) obj;
+			return codeListId == other.codeListId && parentId == other.parentId;
 		}
-		
-		private Long createMapKeyByParentId(Long parentId) {
-			return parentId == null ? 0 : parentId;
+
+	}
+
+	/**
+	 * Immutable list of sibling items, indexed by code
+	 */
+	private static class CachedItems {
+
+		private final List<PersistedCodeListItem> items;
+		private final Map<String, List<PersistedCodeListItem>> itemsByCode;
+
+		public CachedItems(List<PersistedCodeListItem> items) {
+			this.items = new ArrayList<PersistedCodeListItem>(items);
+			this.itemsByCode = new HashMap<String, List<PersistedCodeListItem>>(items.size() * 4 / 3 + 1);
+			for (PersistedCodeListItem item : items) {
+				List<PersistedCodeListItem> itemsWithSameCode = itemsByCode.get(item.getCode());
+				if (itemsWithSameCode == null) {
+					//codes are usually unique among siblings, different items with the same code can exist only in different versions
+					itemsByCode.put(item.getCode(), Collections.singletonList(item));
+				} else {
+					List<PersistedCodeListItem> newItemsWithSameCode = new ArrayList<PersistedCodeListItem>(itemsWithSameCode);
+					newItemsWithSameCode.add(item);
+					itemsByCode.put(item.getCode(), newItemsWithSameCode);
+				}
+			}
 		}
-		
+
+		public List<PersistedCodeListItem> getItemsByCode(String code) {
+			List<PersistedCodeListItem> result = itemsByCode.get(code);
+			return result == null ? Collections.<PersistedCodeListItem>emptyList() : result;
+		}
+
+		public int size() {
+			return items.size();
+		}
+
 	}
 
 }
\ No newline at end of file
@@ -625,12 +625,13 @@ public class CodeListItemDao extends MappingJooqDaoSupport<Long, PersistedCodeLi
 		boolean usingCache = isCacheInUse(codeList);
 		if ( usingCache ) {
 			PersistedCodeListItem item = cache.getItem(codeList, parentItemId, code, version);
-			if (item == null) {
+			if (item == null && ! cache.containsItems(codeList, parentItemId)) {
 				//update cache
 				loadChildItems(codeList, parentItemId, version);
 				item = cache.getItem(codeList, parentItemId, code, version);
 			}
-			if (item != null) {
+			if (item != null || cache.containsItems(codeList, parentItemId)) {
+				//all the sibling items are cached: if the item is not there, it does not exist
 				return item;
 			}
 		}
@@ -713,6 +714,10 @@ public class CodeListItemDao extends MappingJooqDaoSupport<Long, PersistedCodeLi
 		cache.clear();
 	}
 	
+	public CodeListItemCache getCache() {
+		return cache;
+	}
+	
 	protected List<PersistedCodeListItem> filterApplicableItems(List<PersistedCodeListItem> list, ModelVersion version) {
 		if ( version == null ) {
 			return list;
@@ -49,7 +49,7 @@ public class DatabaseLookupProvider implements LookupProvider {
 	
 	@Override
 	public Coordinate lookupSamplingPointCoordinate(Survey survey, String... keys) {
-		SamplingDesignItem samplingDesignItem = samplingDesignDao.loadItem(survey.getId(), keys);
+		SamplingDesignItem samplingDesignItem = samplingDesignDao.loadCachedItem(survey.getId(), keys);
 		return samplingDesignItem == null ? null : samplingDesignItem.getCoordinate();
 	}
 
@@ -57,7 +57,7 @@ public class DatabaseLookupProvider implements LookupProvider {
 	public Object lookupSamplingPointData(Survey survey, String attribute, String... keys) {
 		int attributeIndex = getInfoAttributeIndex(survey, attribute);
 		if (attributeIndex >= 0) {
-			SamplingDesignItem samplingDesignItem = samplingDesignDao.loadItem(survey.getId(), keys);
+			SamplingDesignItem samplingDesignItem = samplingDesignDao.loadCachedItem(survey.getId(), keys);
 			return samplingDesignItem == null ? null : samplingDesignItem.getInfoAttribute(attributeIndex);
 		} else {
 			return null;
@@ -67,7 +67,7 @@ public class DatabaseLookupProvider implements LookupProvider {
 	private Object loadValue(int surveyId, String tableName, String attribute, NameValueEntry[] filters) {
 		if (OfcSamplingDesign.OFC_SAMPLING_DESIGN.getName().equals(tableName)) {
 			String[] parentKeys = toParentKeys(filters);
-			return samplingDesignDao.loadItem(surveyId, parentKeys);
+			return samplingDesignDao.loadCachedItem(surveyId, parentKeys);
 		} else {
 			return dynamicTableDao.loadValue(tableName, attribute, filters);
 		}
@@ -0,0 +1,184 @@
+package org.openforis.collect.persistence;
+
+import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_COORDINATE;
+import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_COORDINATE_SURVEY;
+
+import java.sql.Timestamp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.Query;
+import org.jooq.Record;
+import org.jooq.SelectQuery;
+import org.openforis.collect.model.RecordCoordinate;
+import org.openforis.collect.persistence.jooq.JooqDaoSupport;
+import org.openforis.commons.collection.Visitor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Persists the coordinate attribute values of the records (converted into WGS84)
+ * so that they can be looked up by position without loading the records.
+ * 
+ * Surveys whose records have all been indexed are tracked in a separate table
+ * (see {@link #isSurveyIndexed(int)}) and cached once found indexed.
+ */
+public class RecordCoordinateDao extends JooqDaoSupport {
+
+	private static final int FETCH_SIZE = 1000;
+
+	private final Set<Integer> indexedSurveyIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+	public void insert(List<RecordCoordinate> coordinates) {
+		if (coordinates.isEmpty()) {
+			return;
+		}
+		List<Query> queries = new ArrayList<Query>(coordinates.size());
+		for (RecordCoordinate c : coordinates) {
+			queries.add(dsl().insertInto(OFC_RECORD_COORDINATE,
+						OFC_RECORD_COORDINATE.SURVEY_ID, OFC_RECORD_COORDINATE.RECORD_ID,
+						OFC_RECORD_COORDINATE.ATTRIBUTE_DEF_ID, OFC_RECORD_COORDINATE.ATTRIBUTE_ID,
+						OFC_RECORD_COORDINATE.X, OFC_RECORD_COORDINATE.Y)
+					.values(c.getSurveyId(), c.getRecordId(),
+						c.getAttributeDefinitionId(), c.getAttributeId(),
+						c.getX(), c.getY()));
+		}
+		executeInBatch(queries);
+	}
+
+	/**
+	 * Replaces the coordinates stored for the specified record with the specified ones
+	 */
+	public void replaceByRecord(int recordId, List<RecordCoordinate> coordinates) {
+		deleteByRecord(recordId);
+		insert(coordinates);
+	}
+
+	public void deleteByRecord(int recordId) {
+		dsl().deleteFrom(OFC_RECORD_COORDINATE)
+			.where(OFC_RECORD_COORDINATE.RECORD_ID.eq(recordId))
+			.execute();
+	}
+
+	/**
+	 * Deletes the coordinates of all the records in the specified survey 
+	 * and marks the survey as not indexed
+	 */
+	public void deleteBySurvey(int surveyId) {
+		indexedSurveyIds.remove(surveyId);
+		dsl().deleteFrom(OFC_RECORD_COORDINATE)
+			.where(OFC_RECORD_COORDINATE.SURVEY_ID.eq(surveyId))
+			.execute();
+		dsl().deleteFrom(OFC_RECORD_COORDINATE_SURVEY)
+			.where(OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID.eq(surveyId))
+			.execute();
+	}
+
+	/**
+	 * Returns true if the coordinates of all the records in the specified survey have been indexed
+	 * (see {@link #setSurveyIndexed(int)}).
+	 * A positive result is cached once the current transaction (if any) has been committed.
+	 */
+	public boolean isSurveyIndexed(final int surveyId) {
+		if (indexedSurveyIds.contains(surveyId)) {
+			return true;
+		}
+		boolean indexed = dsl().selectOne()
+				.from(OFC_RECORD_COORDINATE_SURVEY)
+				.where(OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID.eq(surveyId))
+				.fetchOne() != null;
+		if (indexed) {
+			if (TransactionSynchronizationManager.isSynchronizationActive()) {
+				//the survey could have been indexed in the current transaction
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCommit() {
+						indexedSurveyIds.add(surveyId);
+					}
+				});
+			} else {
+				indexedSurveyIds.add(surveyId);
+			}
+		}
+		return indexed;
+	}
+
+	public void setSurveyIndexed(int surveyId) {
+		dsl().deleteFrom(OFC_RECORD_COORDINATE_SURVEY)
+			.where(OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID.eq(surveyId))
+			.execute();
+		dsl().insertInto(OFC_RECORD_COORDINATE_SURVEY, 
+				OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID, OFC_RECORD_COORDINATE_SURVEY.DATE_INDEXED)
+			.values(surveyId, new Timestamp(new Date().getTime()))
+			.execute();
+	}
+
+	public int count(int surveyId, int attributeDefinitionId, double minX, double minY, double maxX, double maxY) {
+		return dsl().selectCount()
+				.from(OFC_RECORD_COORDINATE)
+				.where(createBoundingBoxCondition(surveyId, attributeDefinitionId, minX, minY, maxX, maxY))
+				.fetchOne(0, Integer.class);
+	}
+
+	/**
+	 * Loads the coordinates of the specified attribute falling into the specified bounding box.
+	 * If minX is greater than maxX, the bounding box is considered to cross the antimeridian.
+	 */
+	public List<RecordCoordinate> load(int surveyId, int attributeDefinitionId,
+			double minX, double minY, double maxX, double maxY, Integer maxNumberOfCoordinates) {
+		final List<RecordCoordinate> result = new ArrayList<RecordCoordinate>();
+		visit(surveyId, attributeDefinitionId, minX, minY, maxX, maxY, maxNumberOfCoordinates, new Visitor<RecordCoordinate>() {
+			public void visit(RecordCoordinate coordinate) {
+				result.add(coordinate);
+			}
+		});
+		return result;
+	}
+
+	public void visit(int surveyId, int attributeDefinitionId, double minX, double minY, double maxX, double maxY,
+			Integer maxNumberOfCoordinates, Visitor<RecordCoordinate> visitor) {
+		SelectQuery<Record> q = dsl().selectQuery();
+		q.addSelect(OFC_RECORD_COORDINATE.RECORD_ID, OFC_RECORD_COORDINATE.ATTRIBUTE_ID,
+				OFC_RECORD_COORDINATE.X, OFC_RECORD_COORDINATE.Y);
+		q.addFrom(OFC_RECORD_COORDINATE);
+		q.addConditions(createBoundingBoxCondition(surveyId, attributeDefinitionId, minX, minY, maxX, maxY));
+		if (maxNumberOfCoordinates != null) {
+			q.addOrderBy(OFC_RECORD_COORDINATE.RECORD_ID, OFC_RECORD_COORDINATE.ATTRIBUTE_ID);
+			q.addLimit(maxNumberOfCoordinates);
+		}
+		Cursor<Record> cursor = null;
+		try {
+			cursor = q.fetchSize(FETCH_SIZE).fetchLazy();
+			while (cursor.hasNext()) {
+				Record r = cursor.fetchOne();
+				visitor.visit(new RecordCoordinate(surveyId,
+						r.getValue(OFC_RECORD_COORDINATE.RECORD_ID), attributeDefinitionId,
+						r.getValue(OFC_RECORD_COORDINATE.ATTRIBUTE_ID),
+						r.getValue(OFC_RECORD_COORDINATE.X), r.getValue(OFC_RECORD_COORDINATE.Y)));
+			}
+		} finally {
+			if (cursor != null) {
+				cursor.close();
+			}
+		}
+	}
+
+	private Condition createBoundingBoxCondition(int surveyId, int attributeDefinitionId,
+			double minX, double minY, double maxX, double maxY) {
+		Condition xCondition = minX <= maxX
+				? OFC_RECORD_COORDINATE.X.between(minX, maxX)
+				: OFC_RECORD_COORDINATE.X.ge(minX).or(OFC_RECORD_COORDINATE.X.le(maxX));
+		return OFC_RECORD_COORDINATE.SURVEY_ID.eq(surveyId)
+				.and(OFC_RECORD_COORDINATE.ATTRIBUTE_DEF_ID.eq(attributeDefinitionId))
+				.and(xCondition)
+				.and(OFC_RECORD_COORDINATE.Y.between(minY, maxY));
+	}
+
+}
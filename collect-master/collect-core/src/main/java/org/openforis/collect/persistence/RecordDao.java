@@ -12,12 +12,16 @@ import static org.jooq.impl.DSL.min;
 import static org.jooq.impl.DSL.val;
 import static org.openforis.collect.persistence.jooq.Sequences.OFC_RECORD_ID_SEQ;
 import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD;
+import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_COORDINATE;
+import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_COORDINATE_SURVEY;
 import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_DATA;
+import static org.openforis.collect.persistence.jooq.Tables.OFC_RECORD_DATA_JOURNAL;
 import static org.openforis.collect.persistence.jooq.Tables.OFC_USER;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +47,7 @@ import org.jooq.SelectQuery;
 import org.jooq.StoreQuery;
 import org.jooq.TableField;
 import org.jooq.UpdateQuery;
+import org.jooq.impl.DSL;
 import org.openforis.collect.Collect;
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.State;
@@ -50,10 +55,13 @@ import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectRecordSummary;
 import org.openforis.collect.model.CollectRecordSummary.StepSummary;
 import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.NodeChangeSet;
 import org.openforis.collect.model.RecordFilter;
 import org.openforis.collect.model.RecordSummarySortField;
 import org.openforis.collect.model.User;
 import org.openforis.collect.persistence.jooq.JooqDaoSupport;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordData;
+import org.openforis.collect.persistence.jooq.tables.OfcRecordDataJournal;
 import org.openforis.collect.persistence.jooq.tables.records.OfcRecordDataRecord;
 import org.openforis.collect.persistence.jooq.tables.records.OfcRecordRecord;
 import org.openforis.collect.utils.Numbers;
@@ -66,6 +74,8 @@ import org.openforis.idm.metamodel.ModelVersion;
 import org.openforis.idm.metamodel.Schema;
 import org.openforis.idm.model.Entity;
 import org.openforis.idm.model.ModelSerializer;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author G. Miceli
@@ -138,7 +148,12 @@ public class RecordDao extends JooqDaoSupport {
 	);
 	
 	private static final int SERIALIZATION_BUFFER_SIZE = 50000;
+	private static final int BULK_LOAD_FETCH_SIZE = 100;
+	private static final String JOURNAL_ENTRIES_COUNT_FIELD_NAME = "journal_entries_count";
 
+	private ModelSerializer modelSerializer = new ModelSerializer(SERIALIZATION_BUFFER_SIZE);
+	private RecordDataJournal dataJournal = new RecordDataJournal();
+	private boolean dataJournalEnabled = false;
 	
 	public CollectRecord load(CollectSurvey survey, int id, Step step) {
 		return load(survey, id, step, true);
@@ -159,7 +174,16 @@ public class RecordDao extends JooqDaoSupport {
 	public byte[] loadBinaryData(CollectSurvey survey, int id, Step step) {
 		SelectQuery query = selectRecordQuery(id, false, step, null);
 		Record r = query.fetchOne();
-		return r == null ? null : r.getValue(OFC_RECORD_DATA.DATA);
+		if (r == null) {
+			return null;
+		}
+		SerializedRecord serializedRecord = toSerializedRecord(survey, r, false);
+		if (serializedRecord.isJournaled()) {
+			//stored data is not up to date: apply the data journal entries to it
+			return modelSerializer.toByteArray(serializedRecord.deserialize().getRootEntity());
+		} else {
+			return serializedRecord.getData();
+		}
 	}
 
 	public int loadSurveyId(int recordId) {
@@ -251,6 +275,100 @@ public class RecordDao extends JooqDaoSupport {
 		}
 	}
 
+	/**
+	 * Visits the records matching the specified filter (ordered by id), fetching them in batches 
+	 * (the records following the last one of the previous batch are selected every time).
+	 * For each record, the latest not rejected data in the specified step (or in any step if step is null) is loaded.
+	 * The data journal entries of all the records in a batch are loaded with a single query,
+	 * so no query is executed while a batch is being read and the visitor can access the database.
+	 * Records are passed to the visitor still serialized, so that the deserialization can be performed in parallel.
+	 */
+	public void visitSerializedRecords(RecordFilter filter, Step step, boolean toBeUpdated, 
+			Visitor<SerializedRecord> visitor, Predicate<SerializedRecord> stopWhenPredicate) {
+		Integer lastRecordId = null;
+		while (true) {
+			SelectQuery<Record> q = createSelectRecordsDataQuery(filter, step);
+			if (lastRecordId != null) {
+				q.addConditions(OFC_RECORD.ID.greaterThan(lastRecordId));
+			}
+			q.addLimit(BULK_LOAD_FETCH_SIZE);
+			Result<Record> batch = q.fetch();
+			Map<Integer, List<byte[]>> journalEntriesByRecordId = loadDataJournalEntries(batch);
+			for (Record r : batch) {
+				List<byte[]> journalEntries = journalEntriesByRecordId.get(r.getValue(OFC_RECORD.ID));
+				SerializedRecord serializedRecord = toSerializedRecord(filter.getSurvey(), r, toBeUpdated, 
+						journalEntries == null ? Collections.<byte[]>emptyList() : journalEntries);
+				visitor.visit(serializedRecord);
+				if (stopWhenPredicate != null && stopWhenPredicate.evaluate(serializedRecord)) {
+					return;
+				}
+			}
+			if (batch.size() < BULK_LOAD_FETCH_SIZE) {
+				return;
+			}
+			lastRecordId = batch.get(batch.size() - 1).getValue(OFC_RECORD.ID);
+		}
+	}
+	
+	/**
+	 * Loads the data journal entries of the specified records (only of the ones having any) with a single query
+	 */
+	private Map<Integer, List<byte[]>> loadDataJournalEntries(Result<Record> records) {
+		OfcRecordDataJournal j = OFC_RECORD_DATA_JOURNAL;
+		Condition condition = null;
+		for (Record r : records) {
+			Integer journalEntriesCount = r.getValue(JOURNAL_ENTRIES_COUNT_FIELD_NAME, Integer.class);
+			if (journalEntriesCount != null && journalEntriesCount > 0) {
+				Condition recordCondition = j.RECORD_ID.eq(r.getValue(OFC_RECORD.ID))
+						.and(j.SEQ_NUM.eq(r.getValue(OFC_RECORD_DATA.SEQ_NUM)));
+				condition = condition == null ? recordCondition : condition.or(recordCondition);
+			}
+		}
+		if (condition == null) {
+			return Collections.emptyMap();
+		}
+		Map<Integer, List<byte[]>> result = new HashMap<Integer, List<byte[]>>();
+		Result<Record2<Integer, byte[]>> entries = dsl().select(j.RECORD_ID, j.DATA)
+			.from(j)
+			.where(condition)
+			.orderBy(j.RECORD_ID, j.ENTRY_NUM)
+			.fetch();
+		for (Record2<Integer, byte[]> entry : entries) {
+			List<byte[]> recordEntries = result.get(entry.value1());
+			if (recordEntries == null) {
+				recordEntries = new ArrayList<byte[]>();
+				result.put(entry.value1(), recordEntries);
+			}
+			recordEntries.add(entry.value2());
+		}
+		return result;
+	}
+	
+	private SelectQuery<Record> createSelectRecordsDataQuery(RecordFilter filter, Step step) {
+		OfcRecordData latestData = OFC_RECORD_DATA.as("latest_data");
+		Condition latestDataCondition = latestData.RECORD_ID.eq(OFC_RECORD.ID)
+				.and(latestData.STATE.isNull());
+		if (step != null) {
+			latestDataCondition = latestDataCondition.and(latestData.STEP.eq(step.getStepNumber()));
+		}
+		Field<Integer> latestSequenceNumber = dsl.select(max(latestData.SEQ_NUM))
+				.from(latestData)
+				.where(latestDataCondition)
+				.asField();
+		
+		SelectQuery<Record> q = dsl.selectQuery();
+		q.addSelect(RECORD_DATA_FULL_SUMMARY_FIELDS);
+		q.addSelect(OFC_RECORD_DATA.DATA, OFC_RECORD_DATA.APP_VERSION, createJournalEntriesCountField());
+		q.addFrom(OFC_RECORD);
+		q.addJoin(OFC_RECORD_DATA, 
+			OFC_RECORD_DATA.RECORD_ID.eq(OFC_RECORD.ID)
+			.and(OFC_RECORD_DATA.SEQ_NUM.eq(latestSequenceNumber))
+		);
+		addRecordSummaryFilterConditions(q, filter);
+		q.addOrderBy(OFC_RECORD.ID);
+		return q;
+	}
+
 	private SelectQuery<Record> createSelectSummariesQuery(RecordFilter filter, List<RecordSummarySortField> sortFields) {
 		SelectQuery<Record> q = dsl.selectQuery();
 		
@@ -264,7 +382,12 @@ public class RecordDao extends JooqDaoSupport {
 		addRecordSummaryFilterConditions(q, filter);
 		
 		//add limit
-		if (filter.getOffset() != null && filter.getMaxNumberOfRecords() != null) {
+		if (filter.getAfterRecordId() != null) {
+			q.addConditions(createSeekAfterCondition(filter.getAfterRecordId(), sortFields));
+			if (filter.getMaxNumberOfRecords() != null) {
+				q.addLimit(filter.getMaxNumberOfRecords());
+			}
+		} else if (filter.getOffset() != null && filter.getMaxNumberOfRecords() != null) {
 			q.addLimit(filter.getOffset(), filter.getMaxNumberOfRecords());
 		}
 		
@@ -446,73 +569,108 @@ public class RecordDao extends JooqDaoSupport {
 	}
 
 	private void addOrderBy(SelectQuery<Record> q, RecordSummarySortField sortField, Field<String> ownerNameField) {
-		Field<?> orderBy = null;
-		if(sortField != null) {
-			switch(sortField.getField()) {
-			case KEY1:
-				orderBy = OFC_RECORD.KEY1;
-				break;
-			case KEY2:
-				orderBy = OFC_RECORD.KEY2;
-				break;
-			case KEY3:
-				orderBy = OFC_RECORD.KEY3;
-				break;
-			case COUNT1:
-				orderBy = OFC_RECORD.COUNT1;
-				break;
-			case COUNT2:
-				orderBy = OFC_RECORD.COUNT2;
-				break;
-			case COUNT3:
-				orderBy = OFC_RECORD.COUNT3;
-				break;
-			case SUMMARY1:
-				orderBy = OFC_RECORD.SUMMARY1;
-				break;
-			case SUMMARY2:
-				orderBy = OFC_RECORD.SUMMARY2;
-				break;
-			case SUMMARY3:
-				orderBy = OFC_RECORD.SUMMARY3;
-				break;
-			case DATE_CREATED:
-				orderBy = OFC_RECORD.DATE_CREATED;
-				break;
-			case DATE_MODIFIED:
-				orderBy = OFC_RECORD.DATE_MODIFIED;
-				break;
-			case SKIPPED:
-				orderBy = OFC_RECORD.SKIPPED;
-				break;
-			case MISSING:
-				orderBy = OFC_RECORD.MISSING;
-				break;
-			case ERRORS:
-				orderBy = OFC_RECORD.ERRORS;
-				break;
-			case WARNINGS:
-				orderBy = OFC_RECORD.WARNINGS;
-				break;
-			case STEP:
-				orderBy = OFC_RECORD.STEP;
-				break;
-			case OWNER_NAME:
-				orderBy = ownerNameField;
-				break;
-			}
-		}
+		Field<?> orderBy = sortField == null || sortField.getField() == null ? null : getSortField(sortField.getField(), ownerNameField);
 		if(orderBy != null) {
+			//null values are always considered the lowest ones, in every DBMS (required by keyset pagination)
 			if(sortField.isDescending()) {
-				q.addOrderBy(orderBy.desc());
+				q.addOrderBy(orderBy.desc().nullsLast());
 			} else {
-				q.addOrderBy(orderBy.asc());
+				q.addOrderBy(orderBy.asc().nullsFirst());
 			}
 		}
 	}
+	
+	private Field<?> getSortField(RecordSummarySortField.Sortable sortable, Field<String> ownerNameField) {
+		switch(sortable) {
+		case KEY1:
+			return OFC_RECORD.KEY1;
+		case KEY2:
+			return OFC_RECORD.KEY2;
+		case KEY3:
+			return OFC_RECORD.KEY3;
+		case COUNT1:
+			return OFC_RECORD.COUNT1;
+		case COUNT2:
+			return OFC_RECORD.COUNT2;
+		case COUNT3:
+			return OFC_RECORD.COUNT3;
+		case SUMMARY1:
+			return OFC_RECORD.SUMMARY1;
+		case SUMMARY2:
+			return OFC_RECORD.SUMMARY2;
+		case SUMMARY3:
+			return OFC_RECORD.SUMMARY3;
+		case DATE_CREATED:
+			return OFC_RECORD.DATE_CREATED;
+		case DATE_MODIFIED:
+			return OFC_RECORD.DATE_MODIFIED;
+		case SKIPPED:
+			return OFC_RECORD.SKIPPED;
+		case MISSING:
+			return OFC_RECORD.MISSING;
+		case ERRORS:
+			return OFC_RECORD.ERRORS;
+		case WARNINGS:
+			return OFC_RECORD.WARNINGS;
+		case STEP:
+			return OFC_RECORD.STEP;
+		case OWNER_NAME:
+			return ownerNameField;
+		}
+		return null;
+	}
+	
+	/**
+	 * Creates a condition that selects only the records following the one with the specified id, 
+	 * according to the specified sort fields (and to the record id, always used as last sort field).
+	 * Sort values of the reference record are loaded from the database; if the record doesn't exist anymore, 
+	 * only its id is considered.
+	 */
+	@SuppressWarnings("unchecked")
+	private Condition createSeekAfterCondition(int afterRecordId, List<RecordSummarySortField> sortFields) {
+		Condition idCondition = OFC_RECORD.ID.greaterThan(afterRecordId);
+		List<Field<Object>> fields = new ArrayList<Field<Object>>();
+		List<Boolean> descendingFlags = new ArrayList<Boolean>();
+		if (sortFields != null) {
+			for (RecordSummarySortField sortField : sortFields) {
+				Field<?> field = sortField == null || sortField.getField() == null ? null : getSortField(sortField.getField(), OFC_USER.USERNAME);
+				if (field != null) {
+					fields.add((Field<Object>) field);
+					descendingFlags.add(sortField.isDescending());
+				}
+			}
+		}
+		if (fields.isEmpty()) {
+			return idCondition;
+		}
+		Record afterRecord = dsl.select(fields)
+				.from(OFC_RECORD)
+				.leftOuterJoin(OFC_USER).on(OFC_RECORD.OWNER_ID.equal(OFC_USER.ID))
+				.where(OFC_RECORD.ID.equal(afterRecordId))
+				.fetchOne();
+		if (afterRecord == null) {
+			return idCondition;
+		}
+		Condition result = DSL.falseCondition();
+		Condition previousFieldsEqual = DSL.trueCondition();
+		for (int i = 0; i < fields.size(); i++) {
+			Field<Object> field = fields.get(i);
+			Object value = afterRecord.getValue(i);
+			Condition fieldAfterValue;
+			if (descendingFlags.get(i)) {
+				fieldAfterValue = value == null ? DSL.falseCondition() : field.lessThan(value).or(field.isNull());
+			} else {
+				fieldAfterValue = value == null ? field.isNotNull() : field.greaterThan(value);
+			}
+			result = result.or(previousFieldsEqual.and(fieldAfterValue));
+			previousFieldsEqual = previousFieldsEqual.and(value == null ? field.isNull() : field.equal(value));
+		}
+		return result.or(previousFieldsEqual.and(idCondition));
+	}
 
 	public void insert(CollectRecord record) {
 		execute(createInsertQueries(record));
+		updatePersistedNodeIds(record);
 	}
 	
 	public List<CollectStoreQuery> createInsertQueries(CollectRecord r) {
@@ -534,6 +692,7 @@ public class RecordDao extends JooqDaoSupport {
 	
 	@SuppressWarnings("unchecked")
 	public CollectStoreQuery createRecordDataInsertQuery(CollectRecord r, int recordId, Step step, Integer sequenceNumber) {
+		r.setPersistedNodeIds(null);
 		if (sequenceNumber == null) {
 			List<Field<?>> insertFields = new ArrayList<Field<?>>();
 			
@@ -543,7 +702,7 @@ public class RecordDao extends JooqDaoSupport {
 					val(step.getStepNumber()), 
 					coalesce(max(OFC_RECORD_DATA.SEQ_NUM), val(1)).add(1), 
 					val(null), 
-					val(new ModelSerializer(SERIALIZATION_BUFFER_SIZE).toByteArray(r.getRootEntity())), 
+					val(modelSerializer.toByteArray(r.getRootEntity())), 
 					val(Collect.VERSION.toString()),
 					val(r.getErrors()), val(r.getWarnings()), val(r.getMissing()), val(r.getSkipped())));
 			
@@ -568,6 +727,166 @@ public class RecordDao extends JooqDaoSupport {
 	
 	public void update(CollectRecord record) {
 		execute(createUpdateQueries(record, record.getDataStep()));
+		updatePersistedNodeIds(record);
+	}
+	
+	/**
+	 * Stores only the changes made to the record: the record summary is updated and the changes are appended 
+	 * to the data journal (see {@link RecordDataJournal}) instead of rewriting the whole record data.
+	 * Returns false if the changes cannot be stored in the journal (journal disabled or stored nodes not known): 
+	 * in that case nothing is stored and the record has to be saved using {@link #update(CollectRecord)}.
+	 */
+	public boolean appendToDataJournal(CollectRecord r, NodeChangeSet changeSet) {
+		Integer sequenceNumber = r.getDataWorkflowSequenceNumber();
+		if (! dataJournalEnabled || r.getId() == null || sequenceNumber == null) {
+			return false;
+		}
+		RecordDataJournal.Entry entry = dataJournal.createEntry(r, changeSet);
+		if (entry == null) {
+			return false;
+		}
+		int recordId = r.getId();
+		Step dataStep = r.getDataStep();
+		List<CollectStoreQuery> queries = new ArrayList<CollectStoreQuery>();
+		if (dataStep == r.getStep()) {
+			queries.add(createSummaryUpdateQuery(r));
+		}
+		UpdateQuery<OfcRecordDataRecord> dataSummaryUpdateQuery = dsl.updateQuery(OFC_RECORD_DATA);
+		dataSummaryUpdateQuery.addValues(createRecordDataFieldValueMap(recordId, sequenceNumber, dataStep, r, false));
+		dataSummaryUpdateQuery.addConditions(OFC_RECORD_DATA.RECORD_ID.eq(recordId)
+			.and(OFC_RECORD_DATA.SEQ_NUM.eq(sequenceNumber))
+		);
+		queries.add(new CollectStoreQuery(dataSummaryUpdateQuery));
+		if (! entry.isEmpty()) {
+			queries.add(createDataJournalInsertQuery(r, recordId, sequenceNumber, entry.getData()));
+		}
+		execute(queries);
+		setPersistedNodeIdsOnCommit(r, entry.getStoredNodeIds());
+		return true;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private CollectStoreQuery createDataJournalInsertQuery(CollectRecord r, int recordId, int sequenceNumber, byte[] data) {
+		OfcRecordDataJournal j = OFC_RECORD_DATA_JOURNAL;
+		Date date = defaultIfNull(r.getDataModifiedDate(), new Date());
+		Insert<?> q = dsl.insertInto(j)
+			.columns(j.RECORD_ID, j.SEQ_NUM, j.ENTRY_NUM, j.DATE_CREATED, j.CREATED_BY, j.DATA)
+			.select(dsl.select(val(recordId), val(sequenceNumber), coalesce(max(j.ENTRY_NUM), val(0)).add(1),
+					val(toTimestamp(date)), val(getUserId(r.getDataModifiedBy())), val(data))
+				.from(j)
+				.where(j.RECORD_ID.eq(recordId).and(j.SEQ_NUM.eq(sequenceNumber)))
+			);
+		return new CollectStoreQuery(q);
+	}
+	
+	/**
+	 * Creates a query that deletes the data journal entries of the specified record data
+	 * (to be executed every time the record data is rewritten)
+	 */
+	public CollectStoreQuery createDataJournalDeleteQuery(int recordId, int sequenceNumber) {
+		return new CollectStoreQuery(dsl.deleteFrom(OFC_RECORD_DATA_JOURNAL)
+			.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.eq(recordId)
+				.and(OFC_RECORD_DATA_JOURNAL.SEQ_NUM.eq(sequenceNumber))));
+	}
+	
+	public int countDataJournalEntries(int recordId, int sequenceNumber) {
+		return dsl().selectCount()
+			.from(OFC_RECORD_DATA_JOURNAL)
+			.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.eq(recordId)
+				.and(OFC_RECORD_DATA_JOURNAL.SEQ_NUM.eq(sequenceNumber)))
+			.fetchOne(0, Integer.class);
+	}
+	
+	/**
+	 * Rewrites the specified record data applying the entries of the data journal and deletes them.
+	 * Nothing is done if the record data is modified in the meantime.
+	 * Returns true if the journal has been compacted.
+	 */
+	public boolean compactDataJournal(CollectSurvey survey, int recordId, int sequenceNumber) {
+		Record r = selectRecordQuery(recordId, false, null, sequenceNumber).fetchOne();
+		if (r == null) {
+			return false;
+		}
+		Result<Record2<Integer, byte[]>> entries = selectDataJournalEntries(recordId, sequenceNumber).fetch();
+		if (entries.isEmpty()) {
+			return false;
+		}
+		List<byte[]> entriesData = new ArrayList<byte[]>(entries.size());
+		for (Record2<Integer, byte[]> entry : entries) {
+			entriesData.add(entry.value2());
+		}
+		int lastEntryNumber = entries.get(entries.size() - 1).value1();
+		CollectRecord record = toSerializedRecord(survey, r, false, entriesData).deserialize();
+		
+		OfcRecordDataJournal j = OFC_RECORD_DATA_JOURNAL;
+		Timestamp dateModified = r.getValue(OFC_RECORD_DATA.DATE_MODIFIED);
+		int updatedCount = dsl().update(OFC_RECORD_DATA)
+			.set(OFC_RECORD_DATA.DATA, modelSerializer.toByteArray(record.getRootEntity()))
+			.where(OFC_RECORD_DATA.RECORD_ID.eq(recordId)
+				.and(OFC_RECORD_DATA.SEQ_NUM.eq(sequenceNumber))
+				.and(dateModified == null ? OFC_RECORD_DATA.DATE_MODIFIED.isNull() : OFC_RECORD_DATA.DATE_MODIFIED.eq(dateModified))
+				.and(exists(dsl().selectOne()
+					.from(j)
+					.where(j.RECORD_ID.eq(recordId)
+						.and(j.SEQ_NUM.eq(sequenceNumber))
+						.and(j.ENTRY_NUM.eq(lastEntryNumber)))
+				))
+			).execute();
+		if (updatedCount == 0) {
+			//record data modified in the meantime
+			return false;
+		}
+		dsl().deleteFrom(j)
+			.where(j.RECORD_ID.eq(recordId)
+				.and(j.SEQ_NUM.eq(sequenceNumber))
+				.and(j.ENTRY_NUM.le(lastEntryNumber)))
+			.execute();
+		return true;
+	}
+	
+	private Select<Record2<Integer, byte[]>> selectDataJournalEntries(int recordId, int sequenceNumber) {
+		return dsl().select(OFC_RECORD_DATA_JOURNAL.ENTRY_NUM, OFC_RECORD_DATA_JOURNAL.DATA)
+			.from(OFC_RECORD_DATA_JOURNAL)
+			.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.eq(recordId)
+				.and(OFC_RECORD_DATA_JOURNAL.SEQ_NUM.eq(sequenceNumber)))
+			.orderBy(OFC_RECORD_DATA_JOURNAL.ENTRY_NUM);
+	}
+	
+	private List<byte[]> loadDataJournalEntries(int recordId, int sequenceNumber) {
+		return selectDataJournalEntries(recordId, sequenceNumber).fetch(OFC_RECORD_DATA_JOURNAL.DATA);
+	}
+	
+	private Field<Integer> createJournalEntriesCountField() {
+		return dsl.selectCount()
+			.from(OFC_RECORD_DATA_JOURNAL)
+			.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.eq(OFC_RECORD_DATA.RECORD_ID)
+				.and(OFC_RECORD_DATA_JOURNAL.SEQ_NUM.eq(OFC_RECORD_DATA.SEQ_NUM)))
+			.asField(JOURNAL_ENTRIES_COUNT_FIELD_NAME);
+	}
+	
+	private void updatePersistedNodeIds(CollectRecord record) {
+		if (dataJournalEnabled) {
+			setPersistedNodeIdsOnCommit(record, dataJournal.extractStoredNodeIds(record));
+		}
+	}
+	
+	/**
+	 * The stored nodes are known only when the current transaction (if any) is committed
+	 */
+	private void setPersistedNodeIdsOnCommit(final CollectRecord record, final Set<Integer> nodeIds) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			record.setPersistedNodeIds(null);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED) {
+						record.setPersistedNodeIds(nodeIds);
+					}
+				}
+			});
+		} else {
+			record.setPersistedNodeIds(nodeIds);
+		}
 	}
 	
 	public void updateSummary(CollectRecord record) {
@@ -612,6 +931,16 @@ public class RecordDao extends JooqDaoSupport {
 				)
 			).execute();
 		
+		OfcRecordDataJournal j = OFC_RECORD_DATA_JOURNAL;
+		dsl.insertInto(j)
+			.columns(j.RECORD_ID, j.SEQ_NUM, j.ENTRY_NUM, j.DATE_CREATED, j.CREATED_BY, j.DATA)
+			.select(dsl.select(j.RECORD_ID, seqNumberVal, j.ENTRY_NUM, j.DATE_CREATED, j.CREATED_BY, j.DATA)
+				.from(j)
+				.where(j.RECORD_ID.eq(recordId)
+					.and(j.SEQ_NUM.eq(latestWorkflowSequenceNumber))
+				)
+			).execute();
+		
 		int newStepNumber = dsl.select(OFC_RECORD_DATA.STEP)
 			.from(OFC_RECORD_DATA)
 			.where(OFC_RECORD_DATA.RECORD_ID.eq(recordId)
@@ -668,6 +997,7 @@ public class RecordDao extends JooqDaoSupport {
 		if (dataStep == r.getStep()) {
 			queries.add(createSummaryUpdateQuery(r));
 		}
+		queries.add(createDataJournalDeleteQuery(r.getId(), r.getDataWorkflowSequenceNumber()));
 		queries.add(q);
 		return queries;
 	}
@@ -681,7 +1011,36 @@ public class RecordDao extends JooqDaoSupport {
 		return new CollectStoreQuery(q);
 	}
 	
-	public CollectStoreQuery createRecordDataUpdateQuery(CollectRecord r, int recordId, Step step, int sequenceNumber) {
+	/**
+	 * Creates a query that updates only the validation summary (errors, warnings, skipped and missing counts) 
+	 * of the specified record. The row is updated only if the record hasn't been modified since it was loaded 
+	 * (same modification date and workflow sequence number), otherwise the query has no effect.
+	 */
+	public CollectStoreQuery createValidationSummaryUpdateQuery(CollectRecord r) {
+		Timestamp dateModified = toTimestamp(r.getModifiedDate());
+		Integer sequenceNumber = r.getWorkflowSequenceNumber();
+		UpdateQuery<OfcRecordRecord> q = dsl.updateQuery(OFC_RECORD);
+		q.addValue(OFC_RECORD.SKIPPED, r.getSkipped());
+		q.addValue(OFC_RECORD.MISSING, r.getMissing());
+		q.addValue(OFC_RECORD.ERRORS, r.getErrors());
+		q.addValue(OFC_RECORD.WARNINGS, r.getWarnings());
+		q.addConditions(OFC_RECORD.ID.eq(r.getId())
+			.and(dateModified == null ? OFC_RECORD.DATE_MODIFIED.isNull() : OFC_RECORD.DATE_MODIFIED.eq(dateModified))
+			.and(sequenceNumber == null ? OFC_RECORD.DATA_SEQ_NUM.isNull() : OFC_RECORD.DATA_SEQ_NUM.eq(sequenceNumber))
+		);
+		return new CollectStoreQuery(q);
+	}
+	
+	/**
+	 * Creates the queries that rewrite the specified record data: the data journal entries are deleted too
+	 */
+	public List<CollectStoreQuery> createRecordDataUpdateQueries(CollectRecord r, int recordId, Step step, int sequenceNumber) {
+		return Arrays.asList(createDataJournalDeleteQuery(recordId, sequenceNumber), 
+				createRecordDataUpdateQuery(r, recordId, step, sequenceNumber));
+	}
+	
+	private CollectStoreQuery createRecordDataUpdateQuery(CollectRecord r, int recordId, Step step, int sequenceNumber) {
+		r.setPersistedNodeIds(null);
 		UpdateQuery<OfcRecordDataRecord> q = dsl.updateQuery(OFC_RECORD_DATA);
 
 		fillRecordDataStoreQueryFromObject(q, recordId, sequenceNumber, step, r);
@@ -693,8 +1052,10 @@ public class RecordDao extends JooqDaoSupport {
 	}
 	
 	public void updateRecordData(CollectRecord r, Step step, int sequenceNumber) {
-		CollectStoreQuery q = createRecordDataUpdateQuery(r, r.getId(), step, sequenceNumber);
-		execute(Arrays.asList(q));
+		execute(createRecordDataUpdateQueries(r, r.getId(), step, sequenceNumber));
+		if (sequenceNumber == defaultIfNull(r.getDataWorkflowSequenceNumber(), -1)) {
+			updatePersistedNodeIds(r);
+		}
 	}
 	
 	protected void fillRecordStoreQueryFromObject(StoreQuery<?> q, CollectRecord r) {
@@ -728,10 +1089,11 @@ public class RecordDao extends JooqDaoSupport {
 
 	protected void fillRecordDataStoreQueryFromObject(StoreQuery<?> q, int recordId, 
 			Integer sequenceNumber, Step step, CollectRecord r) {
-		q.addValues(createRecordDataFieldValueMap(recordId, sequenceNumber, step, r));
+		q.addValues(createRecordDataFieldValueMap(recordId, sequenceNumber, step, r, true));
 	}
 	
-	private Map<Field<?>, Object> createRecordDataFieldValueMap(int recordId, Integer sequenceNumber, Step step, CollectRecord r) {
+	private Map<Field<?>, Object> createRecordDataFieldValueMap(int recordId, Integer sequenceNumber, Step step, CollectRecord r, 
+			boolean includeData) {
 		Map<Field<?>, Object> map = new HashMap<Field<?>, Object>();
 		map.put(OFC_RECORD_DATA.RECORD_ID, recordId);
 		if (sequenceNumber != null) {
@@ -747,17 +1109,19 @@ public class RecordDao extends JooqDaoSupport {
 		map.put(OFC_RECORD_DATA.MISSING, r.getMissing());
 		map.put(OFC_RECORD_DATA.ERRORS, r.getErrors());
 		map.put(OFC_RECORD_DATA.WARNINGS, r.getWarnings());
-		map.put(OFC_RECORD_DATA.APP_VERSION, r.getApplicationVersion().toString());
 
 		addValuesToMap(map, RECORD_DATA_KEY_FIELDS, r.getRootEntityKeyValues());
 		addValuesToMap(map, RECORD_DATA_COUNT_FIELDS, r.getEntityCounts());
 		addValuesToMap(map, RECORD_DATA_QUALIFIER_FIELDS, r.getQualifierValues());
 		addValuesToMap(map, RECORD_DATA_SUMMARY_FIELDS, r.getDataSummaryValues());
 		
-		Entity rootEntity = r.getRootEntity();
-		byte[] data = new ModelSerializer(SERIALIZATION_BUFFER_SIZE).toByteArray(rootEntity);
-		map.put(OFC_RECORD_DATA.DATA, data);
-		
+		if (includeData) {
+			//the application version refers to the stored data: it changes only when the data is rewritten
+			map.put(OFC_RECORD_DATA.APP_VERSION, r.getApplicationVersion().toString());
+			Entity rootEntity = r.getRootEntity();
+			byte[] data = modelSerializer.toByteArray(rootEntity);
+			map.put(OFC_RECORD_DATA.DATA, data);
+		}
 		return map;
 	}
 
@@ -765,7 +1129,7 @@ public class RecordDao extends JooqDaoSupport {
 		SelectQuery<Record> query = dsl.selectQuery();
 		query.addSelect(RECORD_DATA_FULL_SUMMARY_FIELDS);
 		if (! onlySummary) {
-			query.addSelect(OFC_RECORD_DATA.DATA, OFC_RECORD_DATA.APP_VERSION);
+			query.addSelect(OFC_RECORD_DATA.DATA, OFC_RECORD_DATA.APP_VERSION, createJournalEntriesCountField());
 		}
 		query.addFrom(OFC_RECORD_DATA);
 		if (workflowSequenceNumber == null) {
@@ -780,6 +1144,19 @@ public class RecordDao extends JooqDaoSupport {
 	}
 	
 	public CollectRecord fromQueryResult(CollectSurvey survey, Record r, boolean recordToBeUpdated) {
+		return toSerializedRecord(survey, r, recordToBeUpdated).deserialize();
+	}
+	
+	private SerializedRecord toSerializedRecord(CollectSurvey survey, Record r, boolean recordToBeUpdated) {
+		Integer journalEntriesCount = r.field(JOURNAL_ENTRIES_COUNT_FIELD_NAME) == null ? null 
+				: r.getValue(JOURNAL_ENTRIES_COUNT_FIELD_NAME, Integer.class);
+		List<byte[]> journalEntries = journalEntriesCount == null || journalEntriesCount == 0 
+				? Collections.<byte[]>emptyList()
+				: loadDataJournalEntries(r.getValue(OFC_RECORD.ID), r.getValue(OFC_RECORD_DATA.SEQ_NUM));
+		return toSerializedRecord(survey, r, recordToBeUpdated, journalEntries);
+	}
+	
+	private SerializedRecord toSerializedRecord(CollectSurvey survey, Record r, boolean recordToBeUpdated, List<byte[]> journalEntries) {
 		int rootEntityId = r.getValue(OFC_RECORD.ROOT_ENTITY_DEFINITION_ID);
 		String version = r.getValue(OFC_RECORD.MODEL_VERSION);
 		Schema schema = survey.getSchema();
@@ -813,16 +1190,14 @@ public class RecordDao extends JooqDaoSupport {
 		c.setState(state == null ? null : State.fromCode(state));
 		
 		c.setApplicationVersion(new Version(r.getValue(OFC_RECORD_DATA.APP_VERSION)));
-		byte[] data = r.getValue(OFC_RECORD_DATA.DATA);
-		ModelSerializer modelSerializer = new ModelSerializer(SERIALIZATION_BUFFER_SIZE);
-		Entity rootEntity = c.getRootEntity();
-		modelSerializer.mergeFrom(data, rootEntity);
 
 		c.setRootEntityKeyValues(getFieldValues(r, rootEntityDefn.getKeyAttributeDefinitions(), RECORD_KEY_FIELDS, String.class));
 		c.setEntityCounts(getFieldValues(r, schema.getCountableEntitiesInRecordList(rootEntityDefn), RECORD_COUNT_FIELDS, Integer.class));
 		c.setQualifierValues(getFieldValues(r, schema.getQualifierAttributeDefinitions(rootEntityDefn), RECORD_QUALIFIER_FIELDS, String.class));
 		c.setSummaryValues(getFieldValues(r, schema.getSummaryAttributeDefinitions(rootEntityDefn), RECORD_SUMMARY_FIELDS, String.class));
-		return c;
+		
+		byte[] data = r.getValue(OFC_RECORD_DATA.DATA);
+		return new SerializedRecord(c, data, modelSerializer, dataJournal, journalEntries, dataJournalEnabled && recordToBeUpdated);
 	}
 
 	public List<CollectRecordSummary> fromSummaryQueryResult(Result<Record> result, CollectSurvey survey) {
@@ -937,6 +1312,12 @@ public class RecordDao extends JooqDaoSupport {
 	}
 	
 	public void delete(int id) {
+		dsl().deleteFrom(OFC_RECORD_COORDINATE)
+			.where(OFC_RECORD_COORDINATE.RECORD_ID.eq(id))
+			.execute();
+		dsl().deleteFrom(OFC_RECORD_DATA_JOURNAL)
+			.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.eq(id))
+			.execute();
 		dsl().deleteFrom(OFC_RECORD_DATA)
 			.where(OFC_RECORD_DATA.RECORD_ID.eq(id))
 			.execute();
@@ -959,6 +1340,20 @@ public class RecordDao extends JooqDaoSupport {
 	}
 
 	public void deleteBySurvey(int id) {
+		dsl().deleteFrom(OFC_RECORD_COORDINATE)
+			.where(OFC_RECORD_COORDINATE.SURVEY_ID.eq(id))
+			.execute();
+		dsl().deleteFrom(OFC_RECORD_COORDINATE_SURVEY)
+			.where(OFC_RECORD_COORDINATE_SURVEY.SURVEY_ID.eq(id))
+			.execute();
+		
+		dsl().deleteFrom(OFC_RECORD_DATA_JOURNAL)
+				.where(OFC_RECORD_DATA_JOURNAL.RECORD_ID.in(
+			dsl().select(OFC_RECORD.ID)
+				.from(OFC_RECORD)
+				.where(OFC_RECORD.SURVEY_ID.eq(id))
+		)).execute();
+		
 		dsl().deleteFrom(OFC_RECORD_DATA)
 				.where(OFC_RECORD_DATA.RECORD_ID.in(
 			dsl().select(OFC_RECORD.ID)
@@ -1023,4 +1418,29 @@ public class RecordDao extends JooqDaoSupport {
 		return params;
 	}
 
+	public boolean isCompactDataFormat() {
+		return modelSerializer.isCompactFormat();
+	}
+	
+	/**
+	 * If true, record data is stored using the compact format (see {@link org.openforis.idm.model.CompactEntitySerializer}).
+	 * Data stored using the previous format can be read in any case.
+	 */
+	public void setCompactDataFormat(boolean compactDataFormat) {
+		this.modelSerializer = new ModelSerializer(SERIALIZATION_BUFFER_SIZE, compactDataFormat);
+	}
+	
+	public boolean isDataJournalEnabled() {
+		return dataJournalEnabled;
+	}
+	
+	/**
+	 * If true, the changes made to a record through {@link #appendToDataJournal(CollectRecord, NodeChangeSet)} 
+	 * are appended to the data journal instead of rewriting the whole record data.
+	 * Journal entries are applied to the record data when it's loaded, even if the journal is disabled.
+	 */
+	public void setDataJournalEnabled(boolean dataJournalEnabled) {
+		this.dataJournalEnabled = dataJournalEnabled;
+	}
+	
 }
@@ -0,0 +1,422 @@
+package org.openforis.collect.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.openforis.collect.model.AttributeChange;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.EntityChange;
+import org.openforis.collect.model.NodeChange;
+import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.collect.model.NodeDeleteChange;
+import org.openforis.idm.metamodel.EntityDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.model.Attribute;
+import org.openforis.idm.model.CompactEntitySerializer;
+import org.openforis.idm.model.Entity;
+import org.openforis.idm.model.Node;
+import org.openforis.idm.model.NodeVisitor;
+import org.openforis.idm.model.State;
+
+/**
+ * Encodes the changes made to a record into data journal entries and applies them to the record data loaded from the database.
+ *
+ * An entry is a list of operations:
+ * <ul>
+ * <li>set attribute: replaces the fields of an attribute</li>
+ * <li>append nodes: adds new nodes (attributes or whole entities) to the children of an entity having the same definition</li>
+ * <li>replace nodes: replaces all the children of an entity having the same definition</li>
+ * <li>set child states: replaces the states of the children of an entity (e.g. missing value approved)</li>
+ * </ul>
+ * Internal node ids are assigned again every time a record is loaded, so the target of an operation is identified
+ * by its position in the stored tree (definition id and index of the node and of every ancestor).
+ * The operations changing the structure of the tree precede the attribute updates and every position
+ * refers to the tree obtained applying the previous operations.
+ * Nodes are serialized using the compact format (see {@link CompactEntitySerializer}).
+ *
+ * The changes are detected comparing the nodes that have to be stored with the ones already stored
+ * (see {@link CollectRecord#getPersistedNodeIds()}): the change set is used only to find the deleted nodes,
+ * the updated attributes and the entities whose child states could have been changed.
+ */
+public class RecordDataJournal {
+
+	private static final byte FORMAT_VERSION = 1;
+
+	private static final byte SET_ATTRIBUTE = 1;
+	private static final byte APPEND_NODES = 2;
+	private static final byte REPLACE_NODES = 3;
+	private static final byte SET_CHILD_STATES = 4;
+
+	private final CompactEntitySerializer serializer = new CompactEntitySerializer();
+
+	/**
+	 * Creates a journal entry containing the changes made to the record since it has been loaded or stored.
+	 * Returns null if the nodes already stored are not known or if the change set contains changes
+	 * that cannot be stored in the journal: the whole record has to be saved.
+	 */
+	public Entry createEntry(CollectRecord record, NodeChangeSet changeSet) {
+		Set<Integer> persistedNodeIds = record.getPersistedNodeIds();
+		if (persistedNodeIds == null) {
+			return null;
+		}
+		Set<String> childrenWithDeletedNodes = new HashSet<String>();
+		Map<Integer, Attribute<?, ?>> updatedAttributesById = new LinkedHashMap<Integer, Attribute<?, ?>>();
+		//child states of the parent entity of an attribute change too (e.g. missing value approval reset)
+		Map<Integer, Entity> entitiesWithChildStatesById = new LinkedHashMap<Integer, Entity>();
+		for (NodeChange<?> change : changeSet.getChanges()) {
+			Node<?> node = change.getNode();
+			if (change instanceof NodeDeleteChange) {
+				if (persistedNodeIds.contains(node.getInternalId()) && change.getParentId() != null) {
+					childrenWithDeletedNodes.add(childrenKey(change.getParentId(), node.getDefinition()));
+				}
+			} else if (change instanceof AttributeChange) {
+				updatedAttributesById.put(node.getInternalId(), (Attribute<?, ?>) node);
+				Entity parent = node.getParent();
+				if (parent != null) {
+					entitiesWithChildStatesById.put(parent.getInternalId(), parent);
+				}
+			} else if (change instanceof EntityChange) {
+				entitiesWithChildStatesById.put(node.getInternalId(), (Entity) node);
+			} else {
+				return null;
+			}
+		}
+		Writer writer = new Writer();
+		Set<Integer> writtenNodeIds = new HashSet<Integer>();
+		writeStructuralChanges(writer, record.getRootEntity(), persistedNodeIds, childrenWithDeletedNodes, writtenNodeIds);
+
+		for (Attribute<?, ?> attribute : updatedAttributesById.values()) {
+			if (! attribute.isDetached() && attribute.getRecord() == record
+					&& persistedNodeIds.contains(attribute.getInternalId())
+					&& serializer.isNodeToBeSaved(attribute)
+					&& ! isInWrittenNode(attribute, writtenNodeIds)) {
+				writer.writeOperation(SET_ATTRIBUTE, attribute);
+				writer.writeData(serializer.toByteArray(attribute));
+			}
+		}
+		for (Entity entity : entitiesWithChildStatesById.values()) {
+			if (! entity.isDetached() && entity.getRecord() == record
+					&& persistedNodeIds.contains(entity.getInternalId())
+					&& (entity.getParent() == null || serializer.isNodeToBeSaved(entity))
+					&& ! isInWrittenNode(entity, writtenNodeIds)) {
+				List<NodeDefinition> childDefs = entity.getDefinition().getChildDefinitions();
+				writer.writeOperation(SET_CHILD_STATES, entity);
+				writer.writeInt(childDefs.size());
+				for (NodeDefinition childDef : childDefs) {
+					writer.writeInt(childDef.getId());
+					writer.writeInt(entity.getChildState(childDef).intValue());
+				}
+			}
+		}
+		return new Entry(writer.toByteArray(), writer.operationsCount, extractStoredNodeIds(record));
+	}
+
+	private void writeStructuralChanges(Writer writer, Entity entity, Set<Integer> persistedNodeIds,
+			Set<String> childrenWithDeletedNodes, Set<Integer> writtenNodeIds) {
+		for (NodeDefinition childDef : entity.getDefinition().getChildDefinitions()) {
+			List<Node<? extends NodeDefinition>> children = entity.getChildren(childDef);
+			boolean nodesDeleted = childrenWithDeletedNodes.contains(childrenKey(entity.getInternalId(), childDef));
+			if (children.isEmpty() && ! nodesDeleted) {
+				continue;
+			}
+			List<Node<?>> nodesToBeSaved = new ArrayList<Node<?>>(children.size());
+			List<Node<?>> newNodes = new ArrayList<Node<?>>();
+			boolean changed = nodesDeleted;
+			boolean onlyAppended = ! nodesDeleted;
+			for (Node<?> child : children) {
+				boolean toBeSaved = serializer.isNodeToBeSaved(child);
+				boolean persisted = persistedNodeIds.contains(child.getInternalId());
+				if (toBeSaved) {
+					nodesToBeSaved.add(child);
+					if (persisted) {
+						//existing nodes must precede the new ones
+						onlyAppended = onlyAppended && newNodes.isEmpty();
+					} else {
+						newNodes.add(child);
+					}
+				}
+				if (toBeSaved != persisted) {
+					changed = true;
+					onlyAppended = onlyAppended && toBeSaved;
+				}
+			}
+			if (changed) {
+				List<Node<?>> writtenNodes = onlyAppended ? newNodes : nodesToBeSaved;
+				writer.writeOperation(onlyAppended ? APPEND_NODES : REPLACE_NODES, entity);
+				writer.writeInt(childDef.getId());
+				writer.writeInt(writtenNodes.size());
+				for (Node<?> node : writtenNodes) {
+					writer.writeData(node instanceof Entity
+							? serializer.toByteArray((Entity) node)
+							: serializer.toByteArray((Attribute<?, ?>) node));
+					writtenNodeIds.add(node.getInternalId());
+				}
+			} else {
+				for (Node<?> child : nodesToBeSaved) {
+					if (child instanceof Entity) {
+						writeStructuralChanges(writer, (Entity) child, persistedNodeIds, childrenWithDeletedNodes, writtenNodeIds);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Applies the changes stored in the specified journal entry to the record
+	 */
+	public void apply(CollectRecord record, byte[] entry) {
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+			int version = in.readByte();
+			if (version > FORMAT_VERSION) {
+				throw new IllegalArgumentException("Unsupported record data journal format version: " + version);
+			}
+			int operationsCount = in.readInt();
+			for (int i = 0; i < operationsCount; i++) {
+				byte type = in.readByte();
+				Node<?> target = readTarget(in, record.getRootEntity());
+				if (type == SET_ATTRIBUTE) {
+					byte[] data = readData(in);
+					if (target != null) {
+						serializer.mergeFrom(data, (Attribute<?, ?>) target);
+					}
+				} else if (type == APPEND_NODES || type == REPLACE_NODES) {
+					int childDefinitionId = in.readInt();
+					Entity parent = (Entity) target;
+					NodeDefinition childDef = parent == null ? null : getChildDefinition(parent.getDefinition(), childDefinitionId);
+					if (type == REPLACE_NODES && childDef != null) {
+						for (int count = parent.getCount(childDef); count > 0; count--) {
+							parent.remove(childDef, count - 1);
+						}
+					}
+					int nodesCount = in.readInt();
+					for (int j = 0; j < nodesCount; j++) {
+						byte[] data = readData(in);
+						if (childDef != null) {
+							Node<?> node = childDef.createNode();
+							parent.add(node);
+							if (node instanceof Entity) {
+								serializer.mergeFrom(data, (Entity) node);
+							} else {
+								serializer.mergeFrom(data, (Attribute<?, ?>) node);
+							}
+						}
+					}
+				} else if (type == SET_CHILD_STATES) {
+					Entity entity = (Entity) target;
+					int statesCount = in.readInt();
+					for (int j = 0; j < statesCount; j++) {
+						int childDefinitionId = in.readInt();
+						int state = in.readInt();
+						NodeDefinition childDef = entity == null ? null : getChildDefinition(entity.getDefinition(), childDefinitionId);
+						if (childDef != null) {
+							entity.setChildState(childDef, State.parseState(state));
+						}
+					}
+				} else {
+					throw new IllegalStateException("Corrupt record data journal: unexpected operation type " + type);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Corrupt record data journal: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Returns the node at the position read from the stream, or null if the definition of the node
+	 * (or of one of its ancestors) has been removed from the survey
+	 */
+	private Node<?> readTarget(DataInputStream in, Entity rootEntity) throws IOException {
+		int depth = in.readInt();
+		Node<?> node = rootEntity;
+		for (int i = 0; i < depth; i++) {
+			int definitionId = in.readInt();
+			int index = in.readInt();
+			if (node != null) {
+				Entity parent = (Entity) node;
+				NodeDefinition childDef = getChildDefinition(parent.getDefinition(), definitionId);
+				if (childDef == null) {
+					node = null;
+				} else if (index < parent.getCount(childDef)) {
+					node = parent.getChild(childDef, index);
+				} else {
+					throw new IllegalStateException(String.format("Corrupt record data journal: node %s[%d] not found in %s",
+							childDef.getName(), index + 1, parent.getPath()));
+				}
+			}
+		}
+		return node;
+	}
+
+	private NodeDefinition getChildDefinition(EntityDefinition entityDefinition, int childDefinitionId) {
+		try {
+			return entityDefinition.getChildDefinition(childDefinitionId);
+		} catch(IllegalArgumentException e) {
+			//child definition removed from the survey
+			return null;
+		}
+	}
+
+	private byte[] readData(DataInputStream in) throws IOException {
+		byte[] data = new byte[in.readInt()];
+		in.readFully(data);
+		return data;
+	}
+
+	/**
+	 * Returns the internal ids of the nodes of the record that are stored when the record is saved
+	 */
+	public Set<Integer> extractStoredNodeIds(CollectRecord record) {
+		Set<Integer> result = new HashSet<Integer>();
+		result.add(record.getRootEntity().getInternalId());
+		addStoredNodeIds(record.getRootEntity(), result);
+		return result;
+	}
+
+	private void addStoredNodeIds(Entity entity, Set<Integer> nodeIds) {
+		for (Node<?> child : entity.getChildren()) {
+			if (serializer.isNodeToBeSaved(child)) {
+				nodeIds.add(child.getInternalId());
+				if (child instanceof Entity) {
+					addStoredNodeIds((Entity) child, nodeIds);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the internal ids of all the nodes of the record (called after the record data has been loaded,
+	 * when the record contains only the stored nodes)
+	 */
+	public static Set<Integer> extractNodeIds(CollectRecord record) {
+		final Set<Integer> result = new HashSet<Integer>();
+		record.getRootEntity().traverse(new NodeVisitor() {
+			public void visit(Node<? extends NodeDefinition> node, int idx) {
+				result.add(node.getInternalId());
+			}
+		});
+		return result;
+	}
+
+	private boolean isInWrittenNode(Node<?> node, Set<Integer> writtenNodeIds) {
+		Node<?> currentNode = node;
+		while (currentNode != null) {
+			if (writtenNodeIds.contains(currentNode.getInternalId())) {
+				return true;
+			}
+			currentNode = currentNode.getParent();
+		}
+		return false;
+	}
+
+	private static String childrenKey(Integer parentId, NodeDefinition childDefinition) {
+		return parentId + "_" + childDefinition.getId();
+	}
+
+	private class Writer {
+
+		private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(content);
+		private int operationsCount = 0;
+
+		void writeOperation(byte type, Node<?> target) {
+			operationsCount ++;
+			List<Node<?>> path = new ArrayList<Node<?>>();
+			for (Node<?> node = target; node.getParent() != null; node = node.getParent()) {
+				path.add(0, node);
+			}
+			try {
+				out.writeByte(type);
+				out.writeInt(path.size());
+				for (Node<?> node : path) {
+					out.writeInt(node.getDefinition().getId());
+					out.writeInt(getStoredIndex(node));
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Index of the node among the siblings with the same definition that are stored
+		 */
+		private int getStoredIndex(Node<?> node) {
+			int index = 0;
+			for (Node<?> sibling : node.getParent().getChildren(node.getDefinition())) {
+				if (sibling == node) {
+					return index;
+				}
+				if (serializer.isNodeToBeSaved(sibling)) {
+					index ++;
+				}
+			}
+			throw new IllegalStateException("Node not found among its siblings: " + node.getPath());
+		}
+
+		void writeInt(int value) {
+			try {
+				out.writeInt(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void writeData(byte[] data) {
+			try {
+				out.writeInt(data.length);
+				out.write(data);
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] toByteArray() {
+			byte[] operations = content.toByteArray();
+			ByteArrayOutputStream result = new ByteArrayOutputStream(operations.length + 5);
+			result.write(FORMAT_VERSION);
+			result.write(operationsCount >>> 24);
+			result.write(operationsCount >>> 16);
+			result.write(operationsCount >>> 8);
+			result.write(operationsCount);
+			result.write(operations, 0, operations.length);
+			return result.toByteArray();
+		}
+	}
+
+	public static class Entry {
+
+		private final byte[] data;
+		private final int operationsCount;
+		private final Set<Integer> storedNodeIds;
+
+		Entry(byte[] data, int operationsCount, Set<Integer> storedNodeIds) {
+			this.data = data;
+			this.operationsCount = operationsCount;
+			this.storedNodeIds = storedNodeIds;
+		}
+
+		public boolean isEmpty() {
+			return operationsCount == 0;
+		}
+
+		public byte[] getData() {
+			return data;
+		}
+
+		/**
+		 * Internal ids of the nodes stored once the entry has been appended to the journal
+		 */
+		public Set<Integer> getStoredNodeIds() {
+			return storedNodeIds;
+		}
+	}
+}
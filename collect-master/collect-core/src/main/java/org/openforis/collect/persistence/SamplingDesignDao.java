@@ -8,8 +8,12 @@ import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -26,12 +30,16 @@ import org.jooq.StoreQuery;
 import org.jooq.TableField;
 import org.jooq.impl.DSL;
 import org.openforis.collect.model.SamplingDesignItem;
+import org.openforis.collect.persistence.SamplingDesignItemCache.CachedItem;
 import org.openforis.collect.persistence.jooq.MappingDSLContext;
 import org.openforis.collect.persistence.jooq.MappingJooqDaoSupport;
 import org.openforis.collect.persistence.jooq.tables.records.OfcSamplingDesignRecord;
 import org.openforis.commons.collection.CollectionUtils;
 import org.openforis.commons.collection.Visitor;
 import org.openforis.idm.model.Coordinate;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @author S. Ricci
@@ -90,8 +98,13 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 	private static final TableField[] FIELDS = org.openforis.commons.collection.ArrayUtils.join(TableField.class, 
 			BASE_FIELDS, LEVEL_CODE_FIELDS, INFO_FIELDS);
 
+	private SamplingDesignItemCache cache;
+	private boolean preloadCachedItems;
+
 	public SamplingDesignDao() {
 		super(SamplingDesignDao.SamplingDesignDSLContext.class);
+		cache = new SamplingDesignItemCache();
+		preloadCachedItems = false;
 	}
 
 	public int countBySurvey(int surveyId) {
@@ -131,6 +144,7 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 		dsl().delete(OFC_SAMPLING_DESIGN)
 			.where(OFC_SAMPLING_DESIGN.SURVEY_ID.equal(surveyId))
 			.execute();
+		clearCachedItemsBySurvey(Collections.singleton(surveyId));
 	}
 	
 	public void visitItems(int surveyId, Integer upToLevel, Visitor<SamplingDesignItem> visitor) {
@@ -242,6 +256,46 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 		return r == null ? null : dsl.fromRecord(r);
 	}
 	
+	/**
+	 * Loads an item by its level codes, like {@link #loadItem(int, String...)}, 
+	 * but using a cache to avoid querying the database for items already looked up.
+	 * If preloading is enabled, all the items of the survey are loaded into the cache the first time.
+	 * 
+	 * Items returned by this method are shared and must not be modified.
+	 */
+	public SamplingDesignItem loadCachedItem(int surveyId, String... parentKeys) {
+		String[] levelCodes = SamplingDesignItemCache.normalizeLevelCodes(parentKeys);
+		if (levelCodes == null) {
+			return loadItem(surveyId, parentKeys);
+		}
+		if (preloadCachedItems && ! cache.isPreloadAttempted(surveyId)) {
+			preloadCachedItems(surveyId);
+		}
+		CachedItem cachedItem = cache.getItem(surveyId, levelCodes);
+		if (cachedItem != null) {
+			return cachedItem.getItem();
+		}
+		SamplingDesignItem item = loadItem(surveyId, levelCodes);
+		cache.putItem(surveyId, levelCodes, item);
+		return item;
+	}
+	
+	private synchronized void preloadCachedItems(int surveyId) {
+		if (cache.isPreloadAttempted(surveyId)) {
+			return;
+		}
+		cache.setPreloadAttempted(surveyId);
+		if (countBySurvey(surveyId) <= cache.getMaxPreloadedItemsPerSurvey()) {
+			final List<SamplingDesignItem> items = new ArrayList<SamplingDesignItem>();
+			visitItems(surveyId, null, new Visitor<SamplingDesignItem>() {
+				public void visit(SamplingDesignItem item) {
+					items.add(item);
+				}
+			});
+			cache.putAllItems(surveyId, items);
+		}
+	}
+	
 	private void addParentKeysConditions(SelectQuery<Record> q, String... parentKeys) {
 		if (parentKeys != null) {
 			for (int levelIdx = 0; levelIdx < parentKeys.length; levelIdx ++) {
@@ -274,9 +328,39 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 			}
 			batch.execute();
 			dsl.restartSequence(OFC_SAMPLING_DESIGN_ID_SEQ, maxId + 1);
+			clearCachedItems(items);
 		}
 	}
 	
+	@Override
+	@Transactional
+	public void insert(SamplingDesignItem item) {
+		super.insert(item);
+		clearCachedItems(Arrays.asList(item));
+	}
+	
+	@Override
+	@Transactional
+	public void update(SamplingDesignItem item) {
+		super.update(item);
+		clearCachedItems(Arrays.asList(item));
+	}
+	
+	@Override
+	@Transactional
+	public void delete(Long id) {
+		super.delete(id);
+		//survey not known: clear the whole cache
+		clearCachedItemsBySurvey(null);
+	}
+	
+	@Override
+	@Transactional
+	public void deleteByIds(Set<Integer> ids) {
+		super.deleteByIds(ids);
+		clearCachedItemsBySurvey(null);
+	}
+	
 	public void copyItems(int oldSurveyId, int newSurveyId) {
 		SamplingDesignDSLContext dsl = dsl();
 		long minId = loadMinId(dsl, oldSurveyId);
@@ -299,6 +383,7 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 		int insertedCount = insert.execute();
 		nextId = nextId + insertedCount;
 		dsl.restartSequence(OFC_SAMPLING_DESIGN_ID_SEQ, nextId);
+		clearCachedItemsBySurvey(Collections.singleton(newSurveyId));
 	}
 	
 	protected long loadMinId(SamplingDesignDSLContext jf, int surveyId) {
@@ -314,6 +399,61 @@ public class SamplingDesignDao extends MappingJooqDaoSupport<Long, SamplingDesig
 			.set(OFC_SAMPLING_DESIGN.SURVEY_ID, toSurveyId)
 			.where(OFC_SAMPLING_DESIGN.SURVEY_ID.equal(fromSurveyId))
 			.execute();
+		clearCachedItemsBySurvey(Arrays.asList(fromSurveyId, toSurveyId));
+	}
+	
+	public void clearCache() {
+		cache.clear();
+	}
+	
+	private void clearCachedItems(List<SamplingDesignItem> items) {
+		Set<Integer> surveyIds = new HashSet<Integer>();
+		for (SamplingDesignItem item : items) {
+			if (item.getSurveyId() != null) {
+				surveyIds.add(item.getSurveyId());
+			}
+		}
+		clearCachedItemsBySurvey(surveyIds);
+	}
+	
+	/**
+	 * Clears the cached items of the specified surveys (or all the cached items if surveyIds is null).
+	 * If a transaction is active, other threads could cache the items committed before the changes:
+	 * the items are cleared again when the transaction completes (if rolled back, the cache could contain
+	 * the changes made in the transaction itself)
+	 */
+	private void clearCachedItemsBySurvey(final Collection<Integer> surveyIds) {
+		doClearCachedItemsBySurvey(surveyIds);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					doClearCachedItemsBySurvey(surveyIds);
+				}
+			});
+		}
+	}
+	
+	private void doClearCachedItemsBySurvey(Collection<Integer> surveyIds) {
+		if (surveyIds == null) {
+			cache.clear();
+		} else {
+			for (Integer surveyId : surveyIds) {
+				cache.clearItemsBySurvey(surveyId);
+			}
+		}
+	}
+	
+	public SamplingDesignItemCache getCache() {
+		return cache;
+	}
+	
+	public boolean isPreloadCachedItems() {
+		return preloadCachedItems;
+	}
+	
+	public void setPreloadCachedItems(boolean preloadCachedItems) {
+		this.preloadCachedItems = preloadCachedItems;
 	}
 
 	private void addLevelKeyNullConditions(SelectQuery<?> q, Integer fromLevelIndex) {
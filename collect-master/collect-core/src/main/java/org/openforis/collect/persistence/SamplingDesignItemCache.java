@@ -0,0 +1,313 @@
+package org.openforis.collect.persistence;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.openforis.collect.model.SamplingDesignItem;
+
+/**
+ * Thread safe cache of sampling design items, used to avoid querying the database every time
+ * a sampling point is looked up by its level codes.
+ *
+ * The items of a survey can be cached in two ways:
+ * <ul>
+ * <li>read-through: the results of the lookups are cached as they are performed,
+ * keeping up to {@link #getMaxItemsPerSurvey()} results (least recently used ones are evicted first);</li>
+ * <li>preloaded: all the items of the survey are loaded at once into a compact key trie,
+ * so that every lookup can be answered without querying the database.</li>
+ * </ul>
+ */
+public class SamplingDesignItemCache {
+
+	public static final int DEFAULT_MAX_ITEMS_PER_SURVEY = 50000;
+	public static final int DEFAULT_MAX_PRELOADED_ITEMS_PER_SURVEY = 500000;
+
+	private final ConcurrentMap<Integer, SurveySamplingDesignCache> cacheBySurveyId = new ConcurrentHashMap<Integer, SurveySamplingDesignCache>();
+	private volatile int maxItemsPerSurvey = DEFAULT_MAX_ITEMS_PER_SURVEY;
+	private volatile int maxPreloadedItemsPerSurvey = DEFAULT_MAX_PRELOADED_ITEMS_PER_SURVEY;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	/**
+	 * Returns the cached result of the lookup of an item by the specified level codes,
+	 * or null if the result of the lookup is not known yet
+	 */
+	public CachedItem getItem(int surveyId, String[] levelCodes) {
+		SurveySamplingDesignCache surveyCache = cacheBySurveyId.get(surveyId);
+		CachedItem result = surveyCache == null ? null : surveyCache.get(levelCodes);
+		if (result == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * Stores the result of the lookup of an item by the specified level codes (item can be null if it does not exist)
+	 */
+	public void putItem(int surveyId, String[] levelCodes, SamplingDesignItem item) {
+		SurveySamplingDesignCache surveyCache = getOrCreateSurveyCache(surveyId);
+		int evicted = surveyCache.put(levelCodes, new CachedItem(item), maxItemsPerSurvey);
+		evictionCount.addAndGet(evicted);
+	}
+
+	/**
+	 * Stores all the items of a survey: lookups of items not in the specified list will return a null item
+	 */
+	public void putAllItems(int surveyId, List<SamplingDesignItem> items) {
+		KeyTrieNode root = new KeyTrieNode();
+		for (SamplingDesignItem item : items) {
+			root.add(item.getLevelCodes(), 0, new CachedItem(item));
+		}
+		root.compact();
+		SurveySamplingDesignCache surveyCache = getOrCreateSurveyCache(surveyId);
+		surveyCache.setPreloadedItems(root);
+	}
+
+	public boolean isPreloaded(int surveyId) {
+		SurveySamplingDesignCache surveyCache = cacheBySurveyId.get(surveyId);
+		return surveyCache != null && surveyCache.isPreloaded();
+	}
+
+	/**
+	 * Returns true if the items of the survey have been preloaded or if they couldn't be preloaded
+	 * (e.g. because they exceed the max number of preloaded items)
+	 */
+	public boolean isPreloadAttempted(int surveyId) {
+		SurveySamplingDesignCache surveyCache = cacheBySurveyId.get(surveyId);
+		return surveyCache != null && surveyCache.preloadAttempted;
+	}
+
+	public void setPreloadAttempted(int surveyId) {
+		getOrCreateSurveyCache(surveyId).preloadAttempted = true;
+	}
+
+	public void clear() {
+		cacheBySurveyId.clear();
+	}
+
+	public void clearItemsBySurvey(int surveyId) {
+		cacheBySurveyId.remove(surveyId);
+	}
+
+	/**
+	 * Returns the level codes without the trailing null values, or null if the level codes
+	 * cannot be used to look up an item in the cache (no level codes specified or gaps between them)
+	 */
+	public static String[] normalizeLevelCodes(String... levelCodes) {
+		if (levelCodes == null) {
+			return null;
+		}
+		int length = levelCodes.length;
+		while (length > 0 && levelCodes[length - 1] == null) {
+			length --;
+		}
+		if (length == 0) {
+			return null;
+		}
+		for (int i = 0; i < length; i++) {
+			if (levelCodes[i] == null) {
+				return null;
+			}
+		}
+		return length == levelCodes.length ? levelCodes : Arrays.copyOf(levelCodes, length);
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	public int getMaxItemsPerSurvey() {
+		return maxItemsPerSurvey;
+	}
+
+	public void setMaxItemsPerSurvey(int maxItemsPerSurvey) {
+		if (maxItemsPerSurvey <= 0) {
+			throw new IllegalArgumentException("Max items per survey must be greater than 0");
+		}
+		this.maxItemsPerSurvey = maxItemsPerSurvey;
+	}
+
+	public int getMaxPreloadedItemsPerSurvey() {
+		return maxPreloadedItemsPerSurvey;
+	}
+
+	/**
+	 * Sets the maximum number of items that can be preloaded for a single survey;
+	 * surveys with more items will be cached in read-through mode only
+	 */
+	public void setMaxPreloadedItemsPerSurvey(int maxPreloadedItemsPerSurvey) {
+		this.maxPreloadedItemsPerSurvey = maxPreloadedItemsPerSurvey;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("surveys: %d, hits: %d, misses: %d, evictions: %d",
+				cacheBySurveyId.size(), getHitCount(), getMissCount(), getEvictionCount());
+	}
+
+	private SurveySamplingDesignCache getOrCreateSurveyCache(int surveyId) {
+		SurveySamplingDesignCache surveyCache = cacheBySurveyId.get(surveyId);
+		if (surveyCache == null) {
+			SurveySamplingDesignCache newSurveyCache = new SurveySamplingDesignCache();
+			surveyCache = cacheBySurveyId.putIfAbsent(surveyId, newSurveyCache);
+			if (surveyCache == null) {
+				surveyCache = newSurveyCache;
+			}
+		}
+		return surveyCache;
+	}
+
+	/**
+	 * Result of the lookup of an item: the item can be null if it does not exist
+	 */
+	public static class CachedItem {
+
+		private final SamplingDesignItem item;
+
+		CachedItem(SamplingDesignItem item) {
+			this.item = item;
+		}
+
+		public SamplingDesignItem getItem() {
+			return item;
+		}
+	}
+
+	private static class SurveySamplingDesignCache {
+
+		private static final CachedItem NOT_FOUND = new CachedItem(null);
+
+		private volatile KeyTrieNode preloadedItems;
+		private volatile boolean preloadAttempted;
+		private final LinkedHashMap<List<String>, CachedItem> itemsByLevelCodes = new LinkedHashMap<List<String>, CachedItem>(16, 0.75f, true);
+
+		public CachedItem get(String[] levelCodes) {
+			KeyTrieNode preloaded = preloadedItems;
+			if (preloaded == null) {
+				synchronized (this) {
+					return itemsByLevelCodes.get(Arrays.asList(levelCodes));
+				}
+			} else {
+				CachedItem result = preloaded.find(levelCodes, 0);
+				return result == null ? NOT_FOUND : result;
+			}
+		}
+
+		public synchronized int put(String[] levelCodes, CachedItem cachedItem, int maxItems) {
+			if (preloadedItems != null) {
+				return 0;
+			}
+			itemsByLevelCodes.put(Arrays.asList(levelCodes.clone()), cachedItem);
+			int evicted = 0;
+			Iterator<Entry<List<String>, CachedItem>> it = itemsByLevelCodes.entrySet().iterator();
+			while (itemsByLevelCodes.size() > maxItems && it.hasNext()) {
+				it.next();
+				it.remove();
+				evicted ++;
+			}
+			return evicted;
+		}
+
+		public boolean isPreloaded() {
+			return preloadedItems != null;
+		}
+
+		public synchronized void setPreloadedItems(KeyTrieNode preloadedItems) {
+			this.preloadedItems = preloadedItems;
+			itemsByLevelCodes.clear();
+		}
+	}
+
+	/**
+	 * Node of a trie of items keyed by level codes.
+	 * Children are stored in a map while the trie is being built,
+	 * then in sorted arrays (searched using binary search) to reduce the memory footprint.
+	 */
+	private static class KeyTrieNode {
+
+		private static final String[] NO_CODES = new String[0];
+		private static final KeyTrieNode[] NO_CHILDREN = new KeyTrieNode[0];
+
+		private CachedItem item;
+		private Map<String, KeyTrieNode> childrenByCode = new HashMap<String, KeyTrieNode>();
+		private String[] childCodes;
+		private KeyTrieNode[] children;
+
+		public void add(List<String> levelCodes, int levelIndex, CachedItem cachedItem) {
+			if (levelIndex == levelCodes.size()) {
+				if (item == null) {
+					item = cachedItem;
+				}
+				return;
+			}
+			String code = levelCodes.get(levelIndex);
+			if (StringUtils.isBlank(code)) {
+				return;
+			}
+			KeyTrieNode child = childrenByCode.get(code);
+			if (child == null) {
+				child = new KeyTrieNode();
+				childrenByCode.put(code, child);
+			}
+			child.add(levelCodes, levelIndex + 1, cachedItem);
+		}
+
+		public void compact() {
+			if (childrenByCode.isEmpty()) {
+				childCodes = NO_CODES;
+				children = NO_CHILDREN;
+				childrenByCode = null;
+				return;
+			}
+			childCodes = childrenByCode.keySet().toArray(new String[childrenByCode.size()]);
+			Arrays.sort(childCodes);
+			children = new KeyTrieNode[childCodes.length];
+			for (int i = 0; i < childCodes.length; i++) {
+				KeyTrieNode child = childrenByCode.get(childCodes[i]);
+				child.compact();
+				children[i] = child;
+			}
+			childrenByCode = null;
+		}
+
+		public CachedItem find(String[] levelCodes, int levelIndex) {
+			if (levelIndex == levelCodes.length) {
+				return item;
+			}
+			int childIndex = Arrays.binarySearch(childCodes, levelCodes[levelIndex]);
+			return childIndex < 0 ? null : children[childIndex].find(levelCodes, levelIndex + 1);
+		}
+	}
+}
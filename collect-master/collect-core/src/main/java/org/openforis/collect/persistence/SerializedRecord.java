@@ -0,0 +1,79 @@
+package org.openforis.collect.persistence;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.model.ModelSerializer;
+
+/**
+ * Record loaded from the database whose data (root entity) has not been deserialized yet.
+ * Deserialization can be performed in a thread different from the one that loaded the record.
+ * The entries of the data journal, if any, are applied to the record data after it has been deserialized.
+ */
+public class SerializedRecord {
+
+	private final CollectRecord record;
+	private final byte[] data;
+	private final ModelSerializer modelSerializer;
+	private final RecordDataJournal dataJournal;
+	private final List<byte[]> journalEntries;
+	private final boolean trackPersistedNodes;
+
+	SerializedRecord(CollectRecord record, byte[] data, ModelSerializer modelSerializer) {
+		this(record, data, modelSerializer, null, Collections.<byte[]>emptyList(), false);
+	}
+
+	SerializedRecord(CollectRecord record, byte[] data, ModelSerializer modelSerializer, 
+			RecordDataJournal dataJournal, List<byte[]> journalEntries, boolean trackPersistedNodes) {
+		this.record = record;
+		this.data = data;
+		this.modelSerializer = modelSerializer;
+		this.dataJournal = dataJournal;
+		this.journalEntries = journalEntries;
+		this.trackPersistedNodes = trackPersistedNodes;
+	}
+
+	/**
+	 * Populates the root entity of the record with the serialized data and returns the record
+	 */
+	public CollectRecord deserialize() {
+		return deserialize(null);
+	}
+	
+	/**
+	 * Populates the root entity of the record decoding only the nodes whose definition satisfies the specified filter.
+	 * Subtrees are skipped only when data has been stored using the compact format
+	 * and there are no data journal entries to be applied.
+	 */
+	public CollectRecord deserialize(Predicate<NodeDefinition> nodeDefinitionFilter) {
+		boolean journaled = ! journalEntries.isEmpty();
+		//journal entries can refer to any node: the whole tree is needed
+		Predicate<NodeDefinition> filter = journaled ? null : nodeDefinitionFilter;
+		modelSerializer.mergeFrom(data, record.getRootEntity(), filter);
+		for (byte[] entry : journalEntries) {
+			dataJournal.apply(record, entry);
+		}
+		if (trackPersistedNodes && filter == null) {
+			record.setPersistedNodeIds(RecordDataJournal.extractNodeIds(record));
+		}
+		return record;
+	}
+
+	public CollectRecord getRecord() {
+		return record;
+	}
+
+	/**
+	 * Record data snapshot (data journal entries not applied)
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	public boolean isJournaled() {
+		return ! journalEntries.isEmpty();
+	}
+}
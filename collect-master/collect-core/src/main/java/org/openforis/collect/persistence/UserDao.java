@@ -7,6 +7,8 @@ import static org.openforis.collect.persistence.jooq.Tables.OFC_USER;
 import static org.openforis.collect.persistence.jooq.Tables.OFC_USER_ROLE;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.jooq.Configuration;
@@ -49,6 +51,23 @@ public class UserDao extends MappingJooqDaoSupport<Integer, User, UserDSLContext
 		return user;
 	}
 	
+	/**
+	 * Loads the users with the specified ids, sorted by id.
+	 * Ids not associated to any user are ignored.
+	 */
+	public List<User> loadByIds(Collection<Integer> ids) {
+		if (ids.isEmpty()) {
+			return Collections.emptyList();
+		}
+		UserDSLContext dsl = dsl();
+		Result<OfcUserRecord> r = 
+				dsl.selectFrom(OFC_USER)
+				.where(OFC_USER.ID.in(ids))
+				.orderBy(OFC_USER.ID)
+				.fetch();
+		return dsl.fromResult(r);
+	}
+	
 	public User loadByUserName(String userName, Boolean enabled){
 		UserDSLContext dsl = dsl();
 		SelectConditionStep<OfcUserRecord> query = 
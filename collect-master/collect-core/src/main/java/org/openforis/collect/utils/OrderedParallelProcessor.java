@@ -0,0 +1,123 @@
+package org.openforis.collect.utils;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.openforis.commons.collection.Visitor;
+
+/**
+ * Executes tasks on a bounded pool of worker threads and passes their results to a visitor
+ * in the same order the tasks have been submitted.
+ *
+ * The visitor is always invoked in the thread submitting the tasks; when the number of pending results
+ * reaches the maximum, the submitting thread waits for the oldest one (back-pressure).
+ *
+ * The first submitted task is executed in the submitting thread, so that shared state lazily initialized
+ * by the tasks is built before the worker threads start.
+ *
+ * If a task fails, its exception is thrown (in the submitting thread) when its result would have been visited;
+ * the results of the tasks following it are never visited. The processor must always be closed:
+ * closing it interrupts the running tasks and waits for the worker threads to stop.
+ */
+public class OrderedParallelProcessor<R> implements Closeable {
+
+	private static final long TERMINATION_TIMEOUT_SECONDS = 60;
+
+	private final Visitor<R> resultVisitor;
+	private final int maxPendingResults;
+	private final ExecutorService executorService;
+	private final Deque<Future<R>> pendingResults;
+	private boolean firstTaskSubmitted;
+
+	public OrderedParallelProcessor(int threads, Visitor<R> resultVisitor) {
+		this(threads, threads * 2, resultVisitor);
+	}
+
+	public OrderedParallelProcessor(int threads, int maxPendingResults, Visitor<R> resultVisitor) {
+		this.resultVisitor = resultVisitor;
+		this.maxPendingResults = Math.max(1, maxPendingResults);
+		this.executorService = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		this.pendingResults = new ArrayDeque<Future<R>>(this.maxPendingResults);
+		this.firstTaskSubmitted = false;
+	}
+
+	public static int getDefaultThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	public void submit(Callable<R> task) {
+		if (executorService == null || ! firstTaskSubmitted) {
+			firstTaskSubmitted = true;
+			consumeAllPendingResults();
+			resultVisitor.visit(callTask(task));
+		} else {
+			while (pendingResults.size() >= maxPendingResults) {
+				consumeNextPendingResult();
+			}
+			pendingResults.add(executorService.submit(task));
+		}
+	}
+
+	/**
+	 * Waits for all the pending tasks to complete and passes their results to the visitor
+	 */
+	public void finish() {
+		consumeAllPendingResults();
+	}
+
+	@Override
+	public void close() {
+		pendingResults.clear();
+		if (executorService != null) {
+			executorService.shutdownNow();
+			try {
+				executorService.awaitTermination(TERMINATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private void consumeAllPendingResults() {
+		while (! pendingResults.isEmpty()) {
+			consumeNextPendingResult();
+		}
+	}
+
+	private void consumeNextPendingResult() {
+		Future<R> future = pendingResults.poll();
+		try {
+			resultVisitor.visit(future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw toRuntimeException(e.getCause());
+		}
+	}
+
+	private R callTask(Callable<R> task) {
+		try {
+			return task.call();
+		} catch (Exception e) {
+			throw toRuntimeException(e);
+		}
+	}
+
+	private RuntimeException toRuntimeException(Throwable t) {
+		if (t instanceof RuntimeException) {
+			return (RuntimeException) t;
+		} else if (t instanceof Error) {
+			throw (Error) t;
+		} else {
+			return new RuntimeException(t);
+		}
+	}
+}
@@ -3,9 +3,12 @@
  */
 package org.openforis.idm.metamodel;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -28,6 +31,8 @@ class StateDependencyMap {
 	private ExpressionEvaluator expressionEvaluator;
 	private Map<NodeDefinition, Set<NodePathPointer>> dependentsBySource;
 	private Map<NodeDefinition, Set<NodePathPointer>> sourcesByDependent;
+	private Map<NodeDefinition, VersionIndexedPointers> versionIndexedDependentsBySource;
+	private Map<NodeDefinition, VersionIndexedPointers> versionIndexedSourcesByDependent;
 
 	StateDependencyMap(ExpressionEvaluator expressionEvaluator) {
 		this.expressionEvaluator = expressionEvaluator;
@@ -37,11 +42,15 @@ class StateDependencyMap {
 	
 	Set<NodePathPointer> getDependents(NodeDefinition source){
 		Set<NodePathPointer> set = dependentsBySource.get(source);
-		if(set == null){
-			set = new HashSet<NodePathPointer>();
-			dependentsBySource.put(source, set);
-		}
-		return set;
+		return set == null ? Collections.<NodePathPointer>emptySet() : set;
+	}
+	
+	/**
+	 * Returns the dependents of the specified source applicable to the specified version.
+	 * If the map has been indexed, the pointers are not filtered again at every invocation.
+	 */
+	Set<NodePathPointer> getDependents(NodeDefinition source, ModelVersion version) {
+		return getPointers(source, version, dependentsBySource, versionIndexedDependentsBySource);
 	}
 	
 	Set<NodeDefinition> getDependentNodeDefinitions(NodeDefinition def) {
@@ -51,11 +60,11 @@ class StateDependencyMap {
 	
 	Set<NodePathPointer> getSources(NodeDefinition dependent) {
 		Set<NodePathPointer> set = sourcesByDependent.get(dependent);
-		if(set == null){
-			set = new HashSet<NodePathPointer>();
-			sourcesByDependent.put(dependent, set);
-		}
-		return set;
+		return set == null ? Collections.<NodePathPointer>emptySet() : set;
+	}
+	
+	Set<NodePathPointer> getSources(NodeDefinition dependent, ModelVersion version) {
+		return getPointers(dependent, version, sourcesByDependent, versionIndexedSourcesByDependent);
 	}
 	
 	Set<NodeDefinition> getSourceNodeDefinitions(NodeDefinition def) {
@@ -64,7 +73,7 @@ class StateDependencyMap {
 	}
 	
 	private void addDependency(NodeDefinition def, NodePathPointer value){
-		Set<NodePathPointer> set = getDependents(def);
+		Set<NodePathPointer> set = getOrCreatePointers(dependentsBySource, def);
 		set.add(value);
 	}
 
@@ -74,9 +83,57 @@ class StateDependencyMap {
 	}
 		
 	void addSource(NodeDefinition context, String dependentParentEntityPath, NodeDefinition dependentNodeDef) {
-		Set<NodePathPointer> set = getSources(context);
+		Set<NodePathPointer> set = getOrCreatePointers(sourcesByDependent, context);
 		set.add(new NodePathPointer(dependentParentEntityPath, dependentNodeDef));
 	}
+	
+	/**
+	 * Prepares the registered pointers to be traversed: the entity path of every pointer is parsed
+	 * and the pointers applicable to each of the specified versions are precalculated.
+	 * It must be invoked once all the dependencies have been registered.
+	 */
+	void index(List<ModelVersion> versions) {
+		this.versionIndexedDependentsBySource = index(dependentsBySource, versions);
+		this.versionIndexedSourcesByDependent = index(sourcesByDependent, versions);
+	}
+	
+	private Map<NodeDefinition, VersionIndexedPointers> index(Map<NodeDefinition, Set<NodePathPointer>> pointersByDef, 
+			List<ModelVersion> versions) {
+		Map<NodeDefinition, VersionIndexedPointers> result = new HashMap<NodeDefinition, VersionIndexedPointers>(pointersByDef.size());
+		for (Entry<NodeDefinition, Set<NodePathPointer>> entry : pointersByDef.entrySet()) {
+			Set<NodePathPointer> pointers = entry.getValue();
+			for (NodePathPointer pointer : pointers) {
+				try {
+					pointer.getEntityPathExpression();
+				} catch (Exception e) {
+					//invalid paths will be reported when the pointer is evaluated
+				}
+			}
+			result.put(entry.getKey(), new VersionIndexedPointers(pointers, versions));
+		}
+		return result;
+	}
+	
+	private Set<NodePathPointer> getPointers(NodeDefinition def, ModelVersion version, 
+			Map<NodeDefinition, Set<NodePathPointer>> pointersByDef, 
+			Map<NodeDefinition, VersionIndexedPointers> versionIndexedPointersByDef) {
+		if (versionIndexedPointersByDef == null) {
+			Set<NodePathPointer> pointers = pointersByDef.get(def);
+			return pointers == null ? Collections.<NodePathPointer>emptySet() : NodePathPointer.filterPointersByVersion(pointers, version);
+		} else {
+			VersionIndexedPointers versionIndexedPointers = versionIndexedPointersByDef.get(def);
+			return versionIndexedPointers == null ? Collections.<NodePathPointer>emptySet() : versionIndexedPointers.get(version);
+		}
+	}
+	
+	private Set<NodePathPointer> getOrCreatePointers(Map<NodeDefinition, Set<NodePathPointer>> pointersByDef, NodeDefinition def) {
+		Set<NodePathPointer> set = pointersByDef.get(def);
+		if(set == null){
+			set = new HashSet<NodePathPointer>();
+			pointersByDef.put(def, set);
+		}
+		return set;
+	}
 
 	void registerDependencies(NodeDefinition nodeDefinition, NodeDefinition dependentDefinition) {
 		NodeDefinition context = nodeDefinition.getParentDefinition();
@@ -180,5 +237,33 @@ class StateDependencyMap {
 		}
 		return result;
 	}
+	
+	/**
+	 * Pointers associated to a node definition, grouped by the id of the version they are applicable to
+	 */
+	private static class VersionIndexedPointers {
+		
+		private final Set<NodePathPointer> pointers;
+		private final Map<Integer, Set<NodePathPointer>> pointersByVersionId;
+		
+		VersionIndexedPointers(Set<NodePathPointer> pointers, List<ModelVersion> versions) {
+			this.pointers = pointers;
+			this.pointersByVersionId = new HashMap<Integer, Set<NodePathPointer>>(versions.size());
+			for (ModelVersion version : versions) {
+				Set<NodePathPointer> pointersInVersion = NodePathPointer.filterPointersByVersion(pointers, version);
+				//reuse the same set when all the pointers are applicable to the version
+				pointersByVersionId.put(version.getId(), pointersInVersion.size() == pointers.size() ? pointers : pointersInVersion);
+			}
+		}
+		
+		Set<NodePathPointer> get(ModelVersion version) {
+			if (version == null) {
+				return pointers;
+			}
+			Set<NodePathPointer> result = pointersByVersionId.get(version.getId());
+			//version added after the index has been built
+			return result == null ? NodePathPointer.filterPointersByVersion(pointers, version) : result;
+		}
+	}
 
 }
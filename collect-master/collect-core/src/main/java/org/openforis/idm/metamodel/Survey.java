@@ -66,7 +66,7 @@ public class Survey implements Serializable, Annotatable, DeepComparable {
 	private Date modifiedDate;
 
 	private transient SurveyContext<?> surveyContext;
-	private transient SurveyDependencies surveyDependencies;
+	private transient volatile SurveyDependencies surveyDependencies;
 	
 	protected Survey(SurveyContext<?> surveyContext) {
 		this.surveyContext = surveyContext;
@@ -700,20 +700,39 @@ public class Survey implements Serializable, Annotatable, DeepComparable {
 		return getSurveyDependencies().getRelatedCodeSources(definition);
 	}
 	
+	/**
+	 * Returns the related code sources of the specified definition applicable to the specified version
+	 * (all the sources if version is null)
+	 */
+	public Set<NodePathPointer> getRelatedCodeSources(CodeAttributeDefinition definition, ModelVersion version) {
+		return getSurveyDependencies().getRelatedCodeSources(definition, version);
+	}
+	
 	public Set<NodePathPointer> getDependencies(NodeDefinition definition, DependencyType dependencyType) {
 		return getSurveyDependencies().getDependencies(definition, dependencyType);
 	}
 	
+	/**
+	 * Returns the dependencies of the specified definition applicable to the specified version
+	 * (all the dependencies if version is null).
+	 * Dependencies are precalculated for every version of the survey, so they are not filtered at every invocation.
+	 */
+	public Set<NodePathPointer> getDependencies(NodeDefinition definition, DependencyType dependencyType, ModelVersion version) {
+		return getSurveyDependencies().getDependencies(definition, dependencyType, version);
+	}
+	
 	public void refreshSurveyDependencies() {
 		surveyDependencies = new SurveyDependencies(this);
 		initCoordinateOperations();
 	}
 
 	private SurveyDependencies getSurveyDependencies() {
-		if(surveyDependencies == null){
-			surveyDependencies = new SurveyDependencies(this);
+		SurveyDependencies result = surveyDependencies;
+		if(result == null){
+			result = new SurveyDependencies(this);
+			surveyDependencies = result;
 		}
-		return surveyDependencies;
+		return result;
 	}
 	
 	@Override
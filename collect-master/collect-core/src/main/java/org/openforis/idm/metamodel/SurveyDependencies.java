@@ -68,6 +68,7 @@ class SurveyDependencies {
 		this.parentCodeDependencies = new StateDependencyMap(expressionEvaluator);
 		
 		registerDependencies();
+		indexDependencies();
 	}
 
 	private void registerDependencies() {
@@ -81,6 +82,14 @@ class SurveyDependencies {
 		}
 	}
 
+	private void indexDependencies() {
+		List<ModelVersion> versions = survey.getVersions();
+		for (StateDependencyMap dependencyMap : new StateDependencyMap[] {defaultValueDependencies, minCountDependencies, 
+				maxCountDependencies, relevanceDependencies, validationDependencies, parentCodeDependencies}) {
+			dependencyMap.index(versions);
+		}
+	}
+
 	private void registerMultipleKeyDependencies(EntityDefinition entityDefn) {
 		List<AttributeDefinition> keyDefns = entityDefn.getKeyAttributeDefinitions();
 		if ( keyDefns.size() > 1 ) {
@@ -223,20 +232,32 @@ class SurveyDependencies {
 		return parentCodeDependencies.getSources(definition);
 	}
 	
+	Set<NodePathPointer> getRelatedCodeSources(CodeAttributeDefinition definition, ModelVersion version) {
+		return parentCodeDependencies.getSources(definition, version);
+	}
+	
 	Set<NodePathPointer> getDependencies(NodeDefinition definition, DependencyType dependencyType) {
+		return getDependencyMap(dependencyType).getDependents(definition);
+	}
+	
+	Set<NodePathPointer> getDependencies(NodeDefinition definition, DependencyType dependencyType, ModelVersion version) {
+		return getDependencyMap(dependencyType).getDependents(definition, version);
+	}
+	
+	private StateDependencyMap getDependencyMap(DependencyType dependencyType) {
 		switch (dependencyType) {
 		case DEFAULT_VALUE:
-			return defaultValueDependencies.getDependents(definition);
+			return defaultValueDependencies;
 		case MAX_COUNT:
-			return maxCountDependencies.getDependents(definition);
+			return maxCountDependencies;
 		case MIN_COUNT:
-			return minCountDependencies.getDependents(definition);
+			return minCountDependencies;
 		case PARENT_CODE:
-			return parentCodeDependencies.getDependents(definition);
+			return parentCodeDependencies;
 		case RELEVANCE:
-			return relevanceDependencies.getDependents(definition);
+			return relevanceDependencies;
 		case VALIDATION:
-			return validationDependencies.getDependents(definition);
+			return validationDependencies;
 		default:
 			throw new IllegalArgumentException("DependencyType not supported: " + dependencyType);
 		}		
@@ -3,14 +3,22 @@
  */
 package org.openforis.idm.metamodel.validation;
 
+import java.util.List;
+import java.util.regex.Pattern;
+
 import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.metamodel.AttributeDefinition;
+import org.openforis.idm.metamodel.EntityDefinition;
 import org.openforis.idm.metamodel.IdmInterpretationError;
+import org.openforis.idm.metamodel.NodeDefinition;
 import org.openforis.idm.metamodel.SurveyContext;
 import org.openforis.idm.model.Attribute;
+import org.openforis.idm.model.Entity;
 import org.openforis.idm.model.Node;
 import org.openforis.idm.model.Value;
 import org.openforis.idm.model.expression.ExpressionEvaluator;
 import org.openforis.idm.model.expression.InvalidExpressionException;
+import org.openforis.idm.path.Path;
 
 /**
  * @author G. Miceli
@@ -19,6 +27,13 @@ import org.openforis.idm.model.expression.InvalidExpressionException;
 public class UniquenessCheck extends Check<Attribute<?, ?>> {
 
 	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Expressions made only of parent steps followed by child names (e.g. parent()/tree/tree_no)
+	 * can be evaluated using the value indexes of the entities, without using the expression evaluator
+	 */
+	private static final Pattern INDEXABLE_EXPRESSION_PATTERN = Pattern.compile(
+			"((parent\\(\\)|\\.\\.)/)*[a-zA-Z_][a-zA-Z0-9_]*(/[a-zA-Z_][a-zA-Z0-9_]*)*");
 
 	private String expression;
 
@@ -38,6 +53,10 @@ public class UniquenessCheck extends Check<Attribute<?, ?>> {
 	
 	@Override
 	public ValidationResultFlag evaluate(final Attribute<?, ?> attribute) {
+		Boolean indexedUnique = evaluateUsingIndexes(attribute);
+		if ( indexedUnique != null ) {
+			return ValidationResultFlag.valueOf(indexedUnique, this.getFlag());
+		}
 		try {
 			SurveyContext recordContext = attribute.getRecord().getSurveyContext();
 			ExpressionEvaluator expressionEvaluator = recordContext.getExpressionEvaluator();
@@ -59,6 +78,44 @@ public class UniquenessCheck extends Check<Attribute<?, ?>> {
 		}
 	}
 
+	/**
+	 * Looks for duplicate values using the value index of the entity the expression refers to
+	 * 
+	 * @return true if the attribute value is unique, false if it's duplicate, null if the expression cannot be evaluated using the indexes
+	 */
+	private Boolean evaluateUsingIndexes(Attribute<?, ?> attribute) {
+		if ( expression == null || ! INDEXABLE_EXPRESSION_PATTERN.matcher(expression.trim()).matches() ) {
+			return null;
+		}
+		String[] steps = expression.trim().split("/");
+		Entity ancestor = attribute.getParent();
+		int stepIndex = 0;
+		while ( stepIndex < steps.length && Path.PARENT_ALIASES.contains(steps[stepIndex]) ) {
+			ancestor = ancestor == null ? null : ancestor.getParent();
+			stepIndex ++;
+		}
+		if ( ancestor == null ) {
+			return null;
+		}
+		NodeDefinition def = ancestor.getDefinition();
+		for (; stepIndex < steps.length; stepIndex++) {
+			if ( ! (def instanceof EntityDefinition) || ! ((EntityDefinition) def).containsChildDefinition(steps[stepIndex]) ) {
+				return null;
+			}
+			def = ((EntityDefinition) def).getChildDefinition(steps[stepIndex]);
+		}
+		if ( ! (def instanceof AttributeDefinition) ) {
+			return null;
+		}
+		List<Attribute<?, ?>> attributesWithSameValue = ancestor.findDescendantAttributesByValue((AttributeDefinition) def, attribute.getValue());
+		for (Attribute<?, ?> otherAttribute : attributesWithSameValue) {
+			if ( otherAttribute != attribute ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public String toString() {
 		return "UNIQUENESS - " + super.toString();
@@ -0,0 +1,503 @@
+package org.openforis.idm.model;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.metamodel.EntityDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+
+/**
+ * Serializes an entity tree using a compact, versioned binary format.
+ *
+ * Layout:
+ * <pre>
+ * header:      0x00 'C' formatVersion
+ * definitions: count, (definitionId, nodeKind)*
+ * strings:     count, (byteLength, utf8Bytes)*
+ * root entity: entity content
+ *
+ * entity content: stateCount, (definitionIndex, state)*, childCount, child*
+ * child:          definitionIndex, (entity: byteLength, entity content | attribute: fieldCount, field*)
+ * field:          flags, [value], [symbolIndex], [remarksIndex], [state]
+ * </pre>
+ * Node definition ids, string values, symbols and remarks are dictionary encoded,
+ * integers are written as variable length values and only non-empty states are stored.
+ * Every child entity is prefixed by its length, so a reader can skip the subtrees it does not need
+ * without decoding them.
+ *
+ * The first byte of the header is never written by the protostuff serialization
+ * (0 is not a valid field tag), so the two formats can be told apart and read side by side.
+ */
+public class CompactEntitySerializer {
+
+	public static final byte FORMAT_VERSION = 1;
+
+	private static final byte[] HEADER = new byte[] {0x00, 'C', FORMAT_VERSION};
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int ATTRIBUTE_KIND = 0;
+	private static final int ENTITY_KIND = 1;
+
+	private static final int NO_VALUE = 0;
+	private static final int FALSE_VALUE = 1;
+	private static final int TRUE_VALUE = 2;
+	private static final int INTEGER_VALUE = 3;
+	private static final int LONG_VALUE = 4;
+	private static final int DOUBLE_VALUE = 5;
+	private static final int STRING_VALUE = 6;
+	private static final int VALUE_TYPE_MASK = 0x07;
+	private static final int SYMBOL_FLAG = 0x08;
+	private static final int REMARKS_FLAG = 0x10;
+	private static final int STATE_FLAG = 0x20;
+
+	private final EntitySchema entitySchema;
+
+	public CompactEntitySerializer() {
+		this.entitySchema = new EntitySchema();
+	}
+
+	public static boolean isCompactFormat(byte[] data) {
+		return data != null && data.length >= HEADER.length
+				&& data[0] == HEADER[0] && data[1] == HEADER[1];
+	}
+
+	public byte[] toByteArray(Entity entity) {
+		Writer writer = new Writer();
+		ByteArrayOutputStream content = writer.writeEntity(entity);
+		return toByteArray(writer, content);
+	}
+
+	/**
+	 * Serializes only the fields of the specified attribute
+	 * (same layout used for entities, the content being the attribute fields)
+	 */
+	public byte[] toByteArray(Attribute<?, ?> attribute) {
+		Writer writer = new Writer();
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		writer.writeAttribute(content, attribute);
+		return toByteArray(writer, content);
+	}
+
+	private byte[] toByteArray(Writer writer, ByteArrayOutputStream content) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.size() + 256);
+		out.write(HEADER, 0, HEADER.length);
+		writeUInt(out, writer.definitionIds.size());
+		for (int i = 0; i < writer.definitionIds.size(); i++) {
+			writeUInt(out, writer.definitionIds.get(i));
+			writeUInt(out, writer.definitionKinds.get(i));
+		}
+		writeUInt(out, writer.strings.size());
+		for (String string : writer.strings) {
+			byte[] bytes = string.getBytes(UTF_8);
+			writeUInt(out, bytes.length);
+			out.write(bytes, 0, bytes.length);
+		}
+		byte[] contentBytes = content.toByteArray();
+		out.write(contentBytes, 0, contentBytes.length);
+		return out.toByteArray();
+	}
+
+	public void mergeFrom(byte[] data, Entity entity) {
+		mergeFrom(data, entity, null);
+	}
+
+	/**
+	 * Populates the entity with the serialized data.
+	 * Only the nodes whose definition satisfies the specified filter are decoded:
+	 * the content of the other entities is skipped (if the filter is null, all the nodes are decoded).
+	 */
+	public void mergeFrom(byte[] data, Entity entity, Predicate<NodeDefinition> nodeDefinitionFilter) {
+		Reader reader = createReader(data, nodeDefinitionFilter);
+		reader.readEntity(entity, data.length);
+	}
+
+	/**
+	 * Replaces the fields of the attribute (values, symbols, remarks and states) with the ones
+	 * serialized using {@link #toByteArray(Attribute)}
+	 */
+	public void mergeFrom(byte[] data, Attribute<?, ?> attribute) {
+		Reader reader = createReader(data, null);
+		attribute.clearFields();
+		attribute.clearFieldStates();
+		reader.readAttribute(attribute);
+		if (reader.position != data.length) {
+			throw new IllegalStateException("Corrupt compact data: unexpected attribute length");
+		}
+	}
+
+	/**
+	 * Returns true if the specified node is stored when serializing its parent entity
+	 * (nodes without data and calculated attributes are not stored)
+	 */
+	public boolean isNodeToBeSaved(Node<?> node) {
+		return entitySchema.isNodeToBeSaved(node);
+	}
+
+	private Reader createReader(byte[] data, Predicate<NodeDefinition> nodeDefinitionFilter) {
+		if (! isCompactFormat(data)) {
+			throw new IllegalArgumentException("Data not serialized using the compact format");
+		}
+		int version = data[2];
+		if (version > FORMAT_VERSION) {
+			throw new IllegalArgumentException("Unsupported compact format version: " + version);
+		}
+		Reader reader = new Reader(data, HEADER.length, nodeDefinitionFilter);
+		reader.readDictionaries();
+		return reader;
+	}
+
+	private class Writer {
+
+		private List<Integer> definitionIds = new ArrayList<Integer>();
+		private List<Integer> definitionKinds = new ArrayList<Integer>();
+		private Map<Integer, Integer> definitionIndexById = new HashMap<Integer, Integer>();
+		private List<String> strings = new ArrayList<String>();
+		private Map<String, Integer> stringIndexByValue = new HashMap<String, Integer>();
+
+		ByteArrayOutputStream writeEntity(Entity entity) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			EntityDefinition definition = entity.getDefinition();
+
+			List<NodeDefinition> statefulChildDefinitions = new ArrayList<NodeDefinition>();
+			List<Integer> childStates = new ArrayList<Integer>();
+			for (NodeDefinition childDefinition : definition.getChildDefinitions()) {
+				int state = entity.getChildState(childDefinition).intValue();
+				if (state != 0) {
+					statefulChildDefinitions.add(childDefinition);
+					childStates.add(state);
+				}
+			}
+			writeUInt(out, statefulChildDefinitions.size());
+			for (int i = 0; i < statefulChildDefinitions.size(); i++) {
+				writeUInt(out, definitionIndex(statefulChildDefinitions.get(i)));
+				writeUInt(out, childStates.get(i));
+			}
+
+			List<Node<?>> children = new ArrayList<Node<?>>();
+			for (Node<?> child : entity.getChildren()) {
+				if (entitySchema.isNodeToBeSaved(child)) {
+					children.add(child);
+				}
+			}
+			writeUInt(out, children.size());
+			for (Node<?> child : children) {
+				writeUInt(out, definitionIndex(child.getDefinition()));
+				if (child instanceof Entity) {
+					byte[] childContent = writeEntity((Entity) child).toByteArray();
+					writeUInt(out, childContent.length);
+					out.write(childContent, 0, childContent.length);
+				} else {
+					writeAttribute(out, (Attribute<?, ?>) child);
+				}
+			}
+			return out;
+		}
+
+		private void writeAttribute(ByteArrayOutputStream out, Attribute<?, ?> attribute) {
+			List<Field<?>> fields = attribute.getFields();
+			writeUInt(out, fields.size());
+			for (Field<?> field : fields) {
+				writeField(out, field);
+			}
+		}
+
+		private void writeField(ByteArrayOutputStream out, Field<?> field) {
+			Object value = field.value;
+			int valueType = getValueType(field);
+			int state = field.state == null ? 0 : field.state.intValue();
+			int flags = valueType
+					| (field.symbol == null ? 0 : SYMBOL_FLAG)
+					| (field.remarks == null ? 0 : REMARKS_FLAG)
+					| (state == 0 ? 0 : STATE_FLAG);
+			out.write(flags);
+			switch (valueType) {
+			case INTEGER_VALUE:
+				writeUInt(out, encodeZigZag((Integer) value));
+				break;
+			case LONG_VALUE:
+				writeULong(out, encodeZigZag((Long) value));
+				break;
+			case DOUBLE_VALUE:
+				long bits = Double.doubleToLongBits((Double) value);
+				for (int i = 56; i >= 0; i -= 8) {
+					out.write((int) (bits >>> i) & 0xFF);
+				}
+				break;
+			case STRING_VALUE:
+				writeUInt(out, stringIndex((String) value));
+				break;
+			default:
+			}
+			if (field.symbol != null) {
+				writeUInt(out, stringIndex(field.symbol.toString()));
+			}
+			if (field.remarks != null) {
+				writeUInt(out, stringIndex(field.remarks));
+			}
+			if (state != 0) {
+				writeUInt(out, state);
+			}
+		}
+
+		private int getValueType(Field<?> field) {
+			Object value = field.value;
+			if (value == null) {
+				return NO_VALUE;
+			} else if (field.valueType == Boolean.class) {
+				return ((Boolean) value) ? TRUE_VALUE : FALSE_VALUE;
+			} else if (field.valueType == Integer.class) {
+				return INTEGER_VALUE;
+			} else if (field.valueType == Long.class) {
+				return LONG_VALUE;
+			} else if (field.valueType == Double.class) {
+				return DOUBLE_VALUE;
+			} else if (field.valueType == String.class) {
+				return STRING_VALUE;
+			} else {
+				throw new UnsupportedOperationException("Cannot serialize " + Field.class.getSimpleName() + "<" + field.valueType.getSimpleName() + ">");
+			}
+		}
+
+		private int definitionIndex(NodeDefinition definition) {
+			Integer index = definitionIndexById.get(definition.getId());
+			if (index == null) {
+				index = definitionIds.size();
+				definitionIds.add(definition.getId());
+				definitionKinds.add(definition instanceof EntityDefinition ? ENTITY_KIND : ATTRIBUTE_KIND);
+				definitionIndexById.put(definition.getId(), index);
+			}
+			return index;
+		}
+
+		private int stringIndex(String value) {
+			Integer index = stringIndexByValue.get(value);
+			if (index == null) {
+				index = strings.size();
+				strings.add(value);
+				stringIndexByValue.put(value, index);
+			}
+			return index;
+		}
+	}
+
+	private class Reader {
+
+		private final byte[] data;
+		private final Predicate<NodeDefinition> nodeDefinitionFilter;
+		private int position;
+		private int[] definitionIds;
+		private int[] definitionKinds;
+		private String[] strings;
+
+		Reader(byte[] data, int position, Predicate<NodeDefinition> nodeDefinitionFilter) {
+			this.data = data;
+			this.position = position;
+			this.nodeDefinitionFilter = nodeDefinitionFilter;
+		}
+
+		void readDictionaries() {
+			int definitionsCount = readUInt();
+			definitionIds = new int[definitionsCount];
+			definitionKinds = new int[definitionsCount];
+			for (int i = 0; i < definitionsCount; i++) {
+				definitionIds[i] = readUInt();
+				definitionKinds[i] = readUInt();
+			}
+			int stringsCount = readUInt();
+			strings = new String[stringsCount];
+			for (int i = 0; i < stringsCount; i++) {
+				int length = readUInt();
+				strings[i] = new String(data, position, length, UTF_8);
+				position += length;
+			}
+		}
+
+		void readEntity(Entity entity, int end) {
+			EntityDefinition entityDefinition = entity.getDefinition();
+			int statesCount = readUInt();
+			for (int i = 0; i < statesCount; i++) {
+				int definitionIndex = readUInt();
+				int state = readUInt();
+				NodeDefinition childDefinition = getChildDefinition(entityDefinition, definitionIndex);
+				if (childDefinition != null) {
+					entity.setChildState(childDefinition, State.parseState(state));
+				}
+			}
+			int childrenCount = readUInt();
+			for (int i = 0; i < childrenCount; i++) {
+				int definitionIndex = readUInt();
+				NodeDefinition childDefinition = getChildDefinition(entityDefinition, definitionIndex);
+				boolean toBeRead = childDefinition != null
+						&& entitySchema.isNodeDefToBeSaved(childDefinition)
+						&& (nodeDefinitionFilter == null || nodeDefinitionFilter.evaluate(childDefinition));
+				if (definitionKinds[definitionIndex] == ENTITY_KIND) {
+					int length = readUInt();
+					int childEnd = position + length;
+					if (toBeRead && childDefinition instanceof EntityDefinition) {
+						Entity childEntity = (Entity) childDefinition.createNode();
+						entity.add(childEntity);
+						readEntity(childEntity, childEnd);
+					}
+					position = childEnd;
+				} else if (toBeRead && ! (childDefinition instanceof EntityDefinition)) {
+					Attribute<?, ?> attribute = (Attribute<?, ?>) childDefinition.createNode();
+					entity.add(attribute);
+					readAttribute(attribute);
+				} else {
+					skipAttribute();
+				}
+			}
+			if (position != end) {
+				throw new IllegalStateException("Corrupt compact data: unexpected entity length");
+			}
+		}
+
+		private NodeDefinition getChildDefinition(EntityDefinition entityDefinition, int definitionIndex) {
+			try {
+				return entityDefinition.getChildDefinition(definitionIds[definitionIndex]);
+			} catch(IllegalArgumentException e) {
+				//not existing child definition
+				return null;
+			}
+		}
+
+		private void readAttribute(Attribute<?, ?> attribute) {
+			int fieldsCount = readUInt();
+			int attributeFieldsCount = attribute.getFieldCount();
+			for (int i = 0; i < fieldsCount; i++) {
+				if (i < attributeFieldsCount) {
+					readField(attribute.getField(i));
+				} else {
+					//field removed from the attribute
+					readField(null);
+				}
+			}
+			attribute.updateSummaryInfo();
+		}
+
+		private void skipAttribute() {
+			int fieldsCount = readUInt();
+			for (int i = 0; i < fieldsCount; i++) {
+				readField(null);
+			}
+		}
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		private void readField(Field field) {
+			int flags = data[position ++] & 0xFF;
+			Object value;
+			switch (flags & VALUE_TYPE_MASK) {
+			case NO_VALUE:
+				value = null;
+				break;
+			case FALSE_VALUE:
+				value = Boolean.FALSE;
+				break;
+			case TRUE_VALUE:
+				value = Boolean.TRUE;
+				break;
+			case INTEGER_VALUE:
+				value = decodeZigZag(readUInt());
+				break;
+			case LONG_VALUE:
+				value = decodeZigZag(readULong());
+				break;
+			case DOUBLE_VALUE:
+				long bits = 0;
+				for (int i = 0; i < 8; i++) {
+					bits = (bits << 8) | (data[position ++] & 0xFF);
+				}
+				value = Double.longBitsToDouble(bits);
+				break;
+			case STRING_VALUE:
+				value = strings[readUInt()];
+				break;
+			default:
+				throw new IllegalStateException("Corrupt compact data: unexpected value type");
+			}
+			String symbol = (flags & SYMBOL_FLAG) == 0 ? null : strings[readUInt()];
+			String remarks = (flags & REMARKS_FLAG) == 0 ? null : strings[readUInt()];
+			int state = (flags & STATE_FLAG) == 0 ? 0 : readUInt();
+
+			if (field != null) {
+				if (value != null) {
+					field.setValue(convertValue(value, field.valueType));
+				}
+				if (symbol != null) {
+					field.symbol = symbol.charAt(0);
+				}
+				field.remarks = remarks;
+				if (state != 0) {
+					field.state = State.parseState(state);
+				}
+			}
+		}
+
+		private Object convertValue(Object value, Class<?> valueType) {
+			if (valueType.isInstance(value)) {
+				return value;
+			} else if (value instanceof Number) {
+				Number number = (Number) value;
+				if (valueType == Integer.class) {
+					return number.intValue();
+				} else if (valueType == Long.class) {
+					return number.longValue();
+				} else if (valueType == Double.class) {
+					return number.doubleValue();
+				}
+			}
+			throw new IllegalStateException(String.format("Cannot deserialize value of type %s into %s<%s>",
+					value.getClass().getSimpleName(), Field.class.getSimpleName(), valueType.getSimpleName()));
+		}
+
+		private int readUInt() {
+			return (int) readULong();
+		}
+
+		private long readULong() {
+			long result = 0;
+			int shift = 0;
+			while (true) {
+				byte b = data[position ++];
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return result;
+				}
+				shift += 7;
+			}
+		}
+	}
+
+	private static void writeUInt(ByteArrayOutputStream out, int value) {
+		writeULong(out, value & 0xFFFFFFFFL);
+	}
+
+	private static void writeULong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static int encodeZigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static long encodeZigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static int decodeZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long decodeZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -22,6 +22,7 @@ import org.openforis.commons.collection.Visitor;
 import org.openforis.idm.metamodel.NodeDefinition;
 import org.openforis.idm.metamodel.Survey;
 import org.openforis.idm.model.expression.InvalidExpressionException;
+import org.openforis.idm.path.Path;
 
 /**
  * 
@@ -211,7 +212,7 @@ public abstract class DependencyGraph<T> {
 			if ( StringUtils.isBlank(entityPath) ) {
 				visitRelatedItems(item, nodePathPointer.getReferencedNodeDefinition(), visitor);
 			} else {
-				visitRelatedItems(item, nodePathPointer.getReferencedNodeDefinition(), entityPath, visitor);
+				visitRelatedItems(item, nodePathPointer.getReferencedNodeDefinition(), nodePathPointer.getEntityPathExpression(), visitor);
 			}
 		}
 	}
@@ -229,13 +230,13 @@ public abstract class DependencyGraph<T> {
 			String entityPath)
 			throws InvalidExpressionException {
 		Set<T> result = new HashSet<T>();
-		visitRelatedItems(item, relatedChildDef, entityPath, new ItemAddVisitor<T>(result));
+		visitRelatedItems(item, relatedChildDef, Path.parse(entityPath), new ItemAddVisitor<T>(result));
 		return result;
 	}
 	
 	protected abstract void visitRelatedItems(T item,
 			NodeDefinition relatedChildDef,
-			String entityPath, Visitor<T> visitor)
+			Path entityPath, Visitor<T> visitor)
 			throws InvalidExpressionException;
 	
 	protected List<T> extractItems(Collection<GraphNode> nodes) {
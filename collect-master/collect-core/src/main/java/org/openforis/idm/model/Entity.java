@@ -38,6 +38,7 @@ public class Entity extends Node<EntityDefinition> {
 	Map<NodeDefinition, List<Node<?>>> childrenByDefinition;
 	private ValidationState derivedStateCache;
 	Map<NodeDefinition, State> childStates;
+	transient EntityIndexes indexes;
 	
 	public Entity(EntityDefinition definition) {
 		super(definition);
@@ -215,6 +216,9 @@ public class Entity extends Node<EntityDefinition> {
 	 * Replaced by {@link #findChildEntitiesByKeys(EntityDefinition, Value...)}
 	 */
 	public List<Entity> findChildEntitiesByKeys(EntityDefinition childEntityDef, final String... keys) {
+		if ( keys != null && keys.length > 0 && keys.length == childEntityDef.getKeyAttributeDefinitions().size() ) {
+			return getIndexes().findChildEntitiesByKeys(childEntityDef, keys);
+		}
 		@SuppressWarnings("unchecked")
 		List<Entity> result = (List<Entity>) findChildren(childEntityDef, new NodePredicate() {
 			public boolean evaluate(Node<?> node) {
@@ -225,6 +229,25 @@ public class Entity extends Node<EntityDefinition> {
 		return result;
 	}
 
+	/**
+	 * Finds the descendants of this entity with the specified definition and a value equal to the specified one.
+	 * Descendants are indexed by value, so the lookup does not require to visit all of them.
+	 * 
+	 * @param descendantDef Definition of the descendant attributes
+	 * @param value Value to look for
+	 * @return Attributes with the specified value (empty list if value is null)
+	 */
+	public List<Attribute<?, ?>> findDescendantAttributesByValue(AttributeDefinition descendantDef, Value value) {
+		return getIndexes().findDescendantAttributesByValue(descendantDef, value);
+	}
+	
+	private EntityIndexes getIndexes() {
+		if ( indexes == null ) {
+			indexes = new EntityIndexes(this);
+		}
+		return indexes;
+	}
+
 	private int compareKeys(String[] keys1, String[] keys2) {
 		if ( keys1 == keys2) {
 			return 0;
@@ -409,6 +432,8 @@ public class Entity extends Node<EntityDefinition> {
 			
 			decreaseNodeIndexes(list, index);
 			
+			EntityIndexes.nodeRemoved(node);
+			
 			if( node instanceof Entity ) {
 				Entity entity = (Entity)node;
 				entity.traverse(new NodeVisitor() {
@@ -454,6 +479,8 @@ public class Entity extends Node<EntityDefinition> {
 		
 		this.children.add(child);
 		
+		EntityIndexes.nodeAdded(child);
+		
 		if ( record != null ) {
 			record.put(child);
 		}
@@ -0,0 +1,299 @@
+package org.openforis.idm.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.openforis.idm.metamodel.AttributeDefinition;
+import org.openforis.idm.metamodel.EntityDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+
+/**
+ * Indexes of the descendants of an entity, used to find child entities by their key values and
+ * descendant attributes by their value without scanning all of them.
+ *
+ * Indexes are created the first time they are used and then they are kept up to date
+ * when nodes are added to or removed from the entity (or from its descendants) and when attribute values change.
+ */
+class EntityIndexes {
+
+	private final Entity entity;
+	private Map<EntityDefinition, KeyIndex> keyIndexByChildDefinition;
+	private Map<AttributeDefinition, ValueIndex> valueIndexByDefinition;
+
+	EntityIndexes(Entity entity) {
+		this.entity = entity;
+	}
+
+	/**
+	 * Returns the child entities with the specified key values, sorted by their index
+	 */
+	List<Entity> findChildEntitiesByKeys(EntityDefinition childDef, String... keys) {
+		List<Entity> entities = getOrCreateKeyIndex(childDef).find(toKey(keys));
+		if (entities.size() > 1) {
+			Collections.sort(entities, new Comparator<Entity>() {
+				public int compare(Entity e1, Entity e2) {
+					return e1.getIndex() - e2.getIndex();
+				}
+			});
+		}
+		return entities;
+	}
+
+	List<Attribute<?, ?>> findDescendantAttributesByValue(AttributeDefinition descendantDef, Value value) {
+		if (value == null) {
+			return new ArrayList<Attribute<?,?>>();
+		}
+		return getOrCreateValueIndex(descendantDef).find(value);
+	}
+
+	private KeyIndex getOrCreateKeyIndex(EntityDefinition childDef) {
+		if (keyIndexByChildDefinition == null) {
+			keyIndexByChildDefinition = new HashMap<EntityDefinition, KeyIndex>();
+		}
+		KeyIndex index = keyIndexByChildDefinition.get(childDef);
+		if (index == null) {
+			index = new KeyIndex();
+			for (Node<?> child : entity.getChildren(childDef)) {
+				index.update((Entity) child);
+			}
+			keyIndexByChildDefinition.put(childDef, index);
+		}
+		return index;
+	}
+
+	private ValueIndex getOrCreateValueIndex(AttributeDefinition descendantDef) {
+		if (valueIndexByDefinition == null) {
+			valueIndexByDefinition = new HashMap<AttributeDefinition, ValueIndex>();
+		}
+		ValueIndex index = valueIndexByDefinition.get(descendantDef);
+		if (index == null) {
+			index = new ValueIndex();
+			for (Attribute<?, ?> attribute : collectDescendantAttributes(entity, descendantDef)) {
+				index.update(attribute);
+			}
+			valueIndexByDefinition.put(descendantDef, index);
+		}
+		return index;
+	}
+
+	static void nodeAdded(Node<?> node) {
+		Node<?> child = node;
+		Entity ancestor = node.getParent();
+		while (ancestor != null) {
+			if (ancestor.indexes != null) {
+				ancestor.indexes.updateKey(child);
+				ancestor.indexes.updateValues(node, false);
+			}
+			child = ancestor;
+			ancestor = ancestor.getParent();
+		}
+	}
+
+	/**
+	 * Removes the specified node from the indexes of its ancestors.
+	 * It must be invoked after the node has been removed from its parent but before its parent is reset.
+	 */
+	static void nodeRemoved(Node<?> node) {
+		Node<?> child = node;
+		Entity ancestor = node.getParent();
+		while (ancestor != null) {
+			if (ancestor.indexes != null) {
+				if (child == node) {
+					ancestor.indexes.removeKey(node);
+				} else {
+					ancestor.indexes.updateKey(child);
+				}
+				ancestor.indexes.updateValues(node, true);
+			}
+			child = ancestor;
+			ancestor = ancestor.getParent();
+		}
+	}
+
+	static void attributeUpdated(Attribute<?, ?> attribute) {
+		Node<?> child = attribute;
+		Entity ancestor = attribute.getParent();
+		while (ancestor != null) {
+			if (ancestor.indexes != null) {
+				ancestor.indexes.updateKey(child);
+				ancestor.indexes.updateValue(attribute);
+			}
+			child = ancestor;
+			ancestor = ancestor.getParent();
+		}
+	}
+
+	private void updateKey(Node<?> child) {
+		if (keyIndexByChildDefinition != null && child instanceof Entity) {
+			KeyIndex index = keyIndexByChildDefinition.get(child.getDefinition());
+			if (index != null) {
+				index.update((Entity) child);
+			}
+		}
+	}
+
+	private void removeKey(Node<?> child) {
+		if (keyIndexByChildDefinition != null && child instanceof Entity) {
+			KeyIndex index = keyIndexByChildDefinition.get(child.getDefinition());
+			if (index != null) {
+				index.remove((Entity) child);
+			}
+		}
+	}
+
+	private void updateValue(Attribute<?, ?> attribute) {
+		if (valueIndexByDefinition != null) {
+			ValueIndex index = valueIndexByDefinition.get(attribute.getDefinition());
+			if (index != null) {
+				index.update(attribute);
+			}
+		}
+	}
+
+	private void updateValues(Node<?> node, boolean removed) {
+		if (valueIndexByDefinition == null) {
+			return;
+		}
+		for (Entry<AttributeDefinition, ValueIndex> entry : valueIndexByDefinition.entrySet()) {
+			AttributeDefinition def = entry.getKey();
+			ValueIndex index = entry.getValue();
+			List<Attribute<?, ?>> attributes;
+			if (node instanceof Attribute && node.getDefinition() == def) {
+				attributes = Collections.<Attribute<?, ?>>singletonList((Attribute<?, ?>) node);
+			} else if (node instanceof Entity && def.isDescendantOf((EntityDefinition) node.getDefinition())) {
+				attributes = collectDescendantAttributes((Entity) node, def);
+			} else {
+				continue;
+			}
+			for (Attribute<?, ?> attribute : attributes) {
+				if (removed) {
+					index.remove(attribute);
+				} else {
+					index.update(attribute);
+				}
+			}
+		}
+	}
+
+	private static List<Attribute<?, ?>> collectDescendantAttributes(Entity entity, AttributeDefinition descendantDef) {
+		List<Attribute<?, ?>> result = new ArrayList<Attribute<?,?>>();
+		if (! descendantDef.isDescendantOf(entity.getDefinition())) {
+			return result;
+		}
+		//definitions from the child of the entity down to the attribute
+		List<NodeDefinition> defsPath = new ArrayList<NodeDefinition>();
+		NodeDefinition currentDef = descendantDef;
+		while (currentDef != entity.getDefinition()) {
+			defsPath.add(0, currentDef);
+			currentDef = currentDef.getParentDefinition();
+		}
+		collectDescendantAttributes(entity, defsPath, 0, result);
+		return result;
+	}
+
+	private static void collectDescendantAttributes(Entity entity, List<NodeDefinition> defsPath, int level, List<Attribute<?, ?>> result) {
+		NodeDefinition childDef = defsPath.get(level);
+		for (Node<?> child : entity.getChildren(childDef)) {
+			if (level == defsPath.size() - 1) {
+				result.add((Attribute<?, ?>) child);
+			} else {
+				collectDescendantAttributes((Entity) child, defsPath, level + 1, result);
+			}
+		}
+	}
+
+	private static List<String> toKey(String[] keys) {
+		List<String> result = new ArrayList<String>(keys.length);
+		for (String key : keys) {
+			result.add(StringUtils.trimToEmpty(key));
+		}
+		return result;
+	}
+
+	/**
+	 * Index of nodes by a key extracted from each node; nodes with a null key are not indexed
+	 */
+	private static abstract class NodeIndex<N extends Node<?>, K> {
+
+		private final Map<N, K> keyByNode = new IdentityHashMap<N, K>();
+		private final Map<K, List<N>> nodesByKey = new HashMap<K, List<N>>();
+
+		protected abstract K extractKey(N node);
+
+		void update(N node) {
+			K key = extractKey(node);
+			if (keyByNode.containsKey(node)) {
+				K oldKey = keyByNode.get(node);
+				if (ObjectUtils.equals(oldKey, key)) {
+					return;
+				}
+				removeFromKey(node, oldKey);
+			}
+			keyByNode.put(node, key);
+			if (key != null) {
+				List<N> nodes = nodesByKey.get(key);
+				if (nodes == null) {
+					nodes = new ArrayList<N>(1);
+					nodesByKey.put(key, nodes);
+				}
+				nodes.add(node);
+			}
+		}
+
+		void remove(N node) {
+			if (keyByNode.containsKey(node)) {
+				K oldKey = keyByNode.remove(node);
+				removeFromKey(node, oldKey);
+			}
+		}
+
+		List<N> find(K key) {
+			List<N> nodes = nodesByKey.get(key);
+			return nodes == null ? new ArrayList<N>() : new ArrayList<N>(nodes);
+		}
+
+		private void removeFromKey(N node, K key) {
+			if (key == null) {
+				return;
+			}
+			List<N> nodes = nodesByKey.get(key);
+			if (nodes != null) {
+				for (int i = 0; i < nodes.size(); i++) {
+					if (nodes.get(i) == node) {
+						nodes.remove(i);
+						break;
+					}
+				}
+				if (nodes.isEmpty()) {
+					nodesByKey.remove(key);
+				}
+			}
+		}
+	}
+
+	private static class KeyIndex extends NodeIndex<Entity, List<String>> {
+
+		@Override
+		protected List<String> extractKey(Entity entity) {
+			Value[] keyValues = entity.getKeyAttributeValues();
+			return keyValues == null ? null : toKey(Values.toStringValues(keyValues));
+		}
+	}
+
+	private static class ValueIndex extends NodeIndex<Attribute<?, ?>, Value> {
+
+		@Override
+		protected Value extractKey(Attribute<?, ?> attribute) {
+			return attribute.getValue();
+		}
+	}
+
+}
@@ -52,6 +52,9 @@ public final class Field<T> extends Node<FieldDefinition<T>> implements Serializ
 		}
 		this.value = value;
 		this.symbol = null;
+		if ( attribute != null ) {
+			EntityIndexes.attributeUpdated(attribute);
+		}
 	}
 	
 	public String getRemarks() {
@@ -139,6 +142,9 @@ public final class Field<T> extends Node<FieldDefinition<T>> implements Serializ
 		this.value = null;
 		this.remarks = null;
 		this.symbol = null;
+		if ( attribute != null ) {
+			EntityIndexes.attributeUpdated(attribute);
+		}
 	}
 	
 	public String getStringValue() {
@@ -6,6 +6,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.apache.commons.io.IOUtils;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.metamodel.NodeDefinition;
+
 import com.dyuproject.protostuff.LinkedBuffer;
 import com.dyuproject.protostuff.ProtostuffIOUtil;
 import com.dyuproject.protostuff.runtime.RuntimeSchema;
@@ -41,14 +45,40 @@ public class ModelSerializer {
 		RuntimeSchema.register(schema.typeClass(), schema);
 	}
 
-	private LinkedBuffer buffer;
+	private static final CompactEntitySerializer COMPACT_SERIALIZER = new CompactEntitySerializer();
+	
+	private final int bufferSize;
+	/**
+	 * If true, {@link #toByteArray(Entity)} uses the {@link CompactEntitySerializer compact format}.
+	 * Data is always deserialized according to the format it has been written with.
+	 */
+	private final boolean compactFormat;
+	/**
+	 * Each thread uses its own serialization buffer: the serializer can be shared between threads
+	 * without synchronization and the buffer is allocated only once per thread
+	 */
+	private final ThreadLocal<LinkedBuffer> threadBuffer;
 	
 	public ModelSerializer(int bufferSize) {
-		this.buffer = LinkedBuffer.allocate(bufferSize);
+		this(bufferSize, false);
+	}
+	
+	public ModelSerializer(int bufferSize, boolean compactFormat) {
+		this.bufferSize = bufferSize;
+		this.compactFormat = compactFormat;
+		this.threadBuffer = new ThreadLocal<LinkedBuffer>() {
+			@Override
+			protected LinkedBuffer initialValue() {
+				return LinkedBuffer.allocate(ModelSerializer.this.bufferSize);
+			}
+		};
 	}
 	
-	synchronized
 	public byte[] toByteArray(Entity entity) {
+		if (compactFormat) {
+			return COMPACT_SERIALIZER.toByteArray(entity);
+		}
+		LinkedBuffer buffer = threadBuffer.get();
 		try {
 			return ProtostuffIOUtil.toByteArray(entity, ENTITY_SCHEMA, buffer);
 		} finally {
@@ -56,8 +86,15 @@ public class ModelSerializer {
 		}
 	}
 	
-	synchronized
+	/**
+	 * Writes the entity using the same format as {@link #toByteArray(Entity)}
+	 */
 	public void writeTo(OutputStream output, Entity entity) throws IOException {
+		if (compactFormat) {
+			output.write(COMPACT_SERIALIZER.toByteArray(entity));
+			return;
+		}
+		LinkedBuffer buffer = threadBuffer.get();
 		try {
 	//		XmlIOUtil.writeTo(output, entity, ENTITY_SCHEMA);		
 			ProtostuffIOUtil.writeTo(output, entity, ENTITY_SCHEMA, buffer);
@@ -66,7 +103,6 @@ public class ModelSerializer {
 		}
 	}
 	
-	synchronized
 	public void writeTo(String filename, Entity entity) throws IOException {
 		OutputStream out = new FileOutputStream(filename);
 		try {
@@ -77,26 +113,29 @@ public class ModelSerializer {
 		}
 	}
 	
-	synchronized
 	public void mergeFrom(byte[] data, Entity entity) {
-		try {
-			//System.out.print("entity = " + entity);
+		mergeFrom(data, entity, null);
+	}
+	
+	/**
+	 * Populates the entity with the serialized data decoding only the nodes whose definition satisfies the specified filter.
+	 * The filter is applied only to data serialized using the compact format, otherwise the whole tree is decoded.
+	 */
+	public void mergeFrom(byte[] data, Entity entity, Predicate<NodeDefinition> nodeDefinitionFilter) {
+		if (CompactEntitySerializer.isCompactFormat(data)) {
+			COMPACT_SERIALIZER.mergeFrom(data, entity, nodeDefinitionFilter);
+		} else {
 			ProtostuffIOUtil.mergeFrom(data, entity, ENTITY_SCHEMA);
-		} finally {
-			buffer.clear();
 		}
 	}
 	
-	synchronized
+	/**
+	 * Populates the entity reading the whole stream; the format is detected as in {@link #mergeFrom(byte[], Entity)}
+	 */
 	public void mergeFrom(InputStream input, Entity entity) throws IOException {
-		try {
-			ProtostuffIOUtil.mergeFrom(input, entity, ENTITY_SCHEMA);
-		} finally {
-			buffer.clear();
-		}
+		mergeFrom(IOUtils.toByteArray(input), entity);
 	}
 
-	synchronized
 	public void mergeFrom(String filename, Entity entity) throws IOException {
 		InputStream in = new FileInputStream(filename);
 		try {
@@ -105,4 +144,12 @@ public class ModelSerializer {
 			in.close();
 		}
 	}
+	
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	public boolean isCompactFormat() {
+		return compactFormat;
+	}
 }
@@ -53,9 +53,9 @@ public abstract class NodeDependencyGraph extends DependencyGraph<Node<?>> {
 	}
 
 	@Override
-	protected void visitRelatedItems(Node<?> node, NodeDefinition relatedChildDef, String relatedParentEntityPath,
+	protected void visitRelatedItems(Node<?> node, NodeDefinition relatedChildDef, Path relatedParentEntityPath,
 			Visitor<Node<?>> visitor) throws InvalidExpressionException {
-		List<Node<?>> relatedParentEntities = Path.parse(relatedParentEntityPath).evaluate(node.getParent());
+		List<Node<?>> relatedParentEntities = relatedParentEntityPath.evaluate(node.getParent());
 		for (Node<?> relatedParentEntity : relatedParentEntities) {
 			visitChildren((Entity) relatedParentEntity, relatedChildDef, visitor);
 		}
@@ -5,6 +5,7 @@ import java.util.Set;
 
 import org.openforis.idm.metamodel.ModelVersion;
 import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.path.Path;
 
 /**
  * @author G. Miceli
@@ -14,6 +15,7 @@ public class NodePathPointer {
 	
 	private String entityPath;
 	private NodeDefinition referencedNodeDefinition;
+	private volatile Path entityPathExpression;
 	
 	public NodePathPointer(String entityPath, NodeDefinition childDef) {
 		this.entityPath = entityPath;
@@ -24,6 +26,19 @@ public class NodePathPointer {
 		return entityPath;
 	}
 	
+	/**
+	 * Returns the entity path parsed into a {@link Path}.
+	 * The path is parsed only the first time it is requested and then reused.
+	 */
+	public Path getEntityPathExpression() {
+		Path result = entityPathExpression;
+		if (result == null) {
+			result = Path.parse(entityPath);
+			entityPathExpression = result;
+		}
+		return result;
+	}
+	
 	public NodeDefinition getReferencedNodeDefinition() {
 		return referencedNodeDefinition;
 	}
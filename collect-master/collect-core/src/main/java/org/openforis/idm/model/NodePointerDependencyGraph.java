@@ -69,10 +69,10 @@ public abstract class NodePointerDependencyGraph extends DependencyGraph<NodePoi
 	}
 
 	@Override
-	protected void visitRelatedItems(NodePointer pointer, NodeDefinition relatedChildDef, String relatedParentEntityPath,
+	protected void visitRelatedItems(NodePointer pointer, NodeDefinition relatedChildDef, Path relatedParentEntityPath,
 			Visitor<NodePointer> visitor) throws InvalidExpressionException {
 		Entity pointerEntity = pointer.getEntity();
-		List<Node<?>> relatedParentEntities = Path.parse(relatedParentEntityPath).evaluate(pointerEntity);
+		List<Node<?>> relatedParentEntities = relatedParentEntityPath.evaluate(pointerEntity);
 		for (Node<?> relatedParentEntity : relatedParentEntities) {
 			visitor.visit(new NodePointer((Entity) relatedParentEntity, relatedChildDef));
 		}
@@ -147,6 +147,35 @@ public class Record implements DeepComparable {
 		return findNodesByPath(path);
 	}
 	
+	/**
+	 * Returns the node with the specified internal id, if it exists and it's in the specified position (path),
+	 * otherwise finds the node by its path.
+	 * Internal ids are assigned again every time a record is loaded: the path (cached in every node) is used to verify
+	 * that the internal id refers to the expected node, without having to parse and evaluate it.
+	 * If the path is not specified, only the definition of the node with the specified internal id can be verified:
+	 * a node with a different definition is not returned.
+	 * 
+	 * @param internalId Internal id of the node (can be null)
+	 * @param path Path of the node (can be null only if the internal id is specified)
+	 * @param definitionId Id of the definition of the node, used to verify the internal id if the path is not specified
+	 * @param type Expected type of the node
+	 * @return The node found, or null if it cannot be found or it's not of the expected type
+	 */
+	public <N extends Node<?>> N findNodeByInternalIdOrPath(Integer internalId, String path, int definitionId, Class<N> type) {
+		Node<?> node = null;
+		if (internalId != null) {
+			Node<?> nodeById = getNodeByInternalId(internalId);
+			if (nodeById != null && (path == null ? nodeById.getDefinition().getId() == definitionId
+					: path.equals(nodeById.getPath()))) {
+				node = nodeById;
+			}
+		}
+		if (node == null && path != null) {
+			node = findNodeByPath(path);
+		}
+		return type.isInstance(node) ? type.cast(node) : null;
+	}
+
 	public <N extends Node<?>> List<N> findNodesByPath(String path) {
 		Path p = Path.parse(path);
 		@SuppressWarnings("unchecked")
@@ -323,15 +352,13 @@ public class Record implements DeepComparable {
 		this.ignoreDuplicateRecordKeyValidationErrors = ignoreDuplicateRecordKeyValidationErrors;
 	}
 	
-	private void visitNodePointerDependencies(NodePointer nodePointer, Set<NodePathPointer> dependencies,
+	private void visitNodePointerDependencies(NodePointer nodePointer, Set<NodePathPointer> dependenciesInVersion,
 			Visitor<NodePointer> visitor) {
 		if (nodePointer.isNodesDeleted()) return;
 		
-		Set<NodePathPointer> dependenciesInVersion = NodePathPointer.filterPointersByVersion(dependencies, nodePointer.getModelVersion());
 		for (NodePathPointer nodePathPointer : dependenciesInVersion) {
 			NodePointer nodePointerToVisit;
-			String entityPath = nodePathPointer.getEntityPath();
-			List<Node<?>> entities = Path.parse(entityPath).evaluate(nodePointer.getEntity());
+			List<Node<?>> entities = nodePathPointer.getEntityPathExpression().evaluate(nodePointer.getEntity());
 			for (Node<?> entity: entities) {
 				nodePointerToVisit = new NodePointer((Entity) entity, nodePathPointer.getReferencedNodeDefinition());
 				visitor.visit(nodePointerToVisit);
@@ -348,7 +375,8 @@ public class Record implements DeepComparable {
 	}
 	
 	private void visitNodePointerDependencies(NodePointer nodePointer, DependencyType dependencyType, Visitor<NodePointer> visitor) {
-		Set<NodePathPointer> dependencies = survey.getDependencies(nodePointer.getChildDefinition(), dependencyType);
+		Set<NodePathPointer> dependencies = survey.getDependencies(nodePointer.getChildDefinition(), dependencyType, 
+				nodePointer.getModelVersion());
 		visitNodePointerDependencies(nodePointer, dependencies, visitor);
 	}
 	
@@ -388,12 +416,10 @@ public class Record implements DeepComparable {
 	}
 	
 	@SuppressWarnings("unchecked")
-	private <T extends Node<?>> void visitNodeDependencies(Node<?> node, Set<NodePathPointer> dependencies, Visitor<T> visitor) {
-		Set<NodePathPointer> dependenciesInVersion = NodePathPointer.filterPointersByVersion(dependencies, node.getModelVersion());
+	private <T extends Node<?>> void visitNodeDependencies(Node<?> node, Set<NodePathPointer> dependenciesInVersion, Visitor<T> visitor) {
 		for (NodePathPointer nodePathPointer : dependenciesInVersion) {
-			String entityPath = nodePathPointer.getEntityPath();
 			if (node.getParent() != null) {
-				List<Node<?>> entities = Path.parse(entityPath).evaluate(node.getParent());
+				List<Node<?>> entities = nodePathPointer.getEntityPathExpression().evaluate(node.getParent());
 				for (Node<?> entity: entities) {
 					List<Node<?>> children = ((Entity) entity).getChildren(nodePathPointer.getReferencedNodeDefinition());
 					for (Node<?> child: children) {
@@ -405,7 +431,7 @@ public class Record implements DeepComparable {
 	}
 	
 	private <T extends Node<?>> void visitNodeDependencies(Node<?> node, DependencyType dependencyType, Visitor<T> visitor) {
-		Set<NodePathPointer> dependencies = survey.getDependencies(node.getDefinition(), dependencyType);
+		Set<NodePathPointer> dependencies = survey.getDependencies(node.getDefinition(), dependencyType, node.getModelVersion());
 		visitNodeDependencies(node, dependencies, visitor);
 	}
 	
@@ -450,7 +476,7 @@ public class Record implements DeepComparable {
 	
 	public CodeAttribute determineParentCodeAttribute(CodeAttribute codeAttr) {
 		final List<CodeAttribute> result = new ArrayList<CodeAttribute>();
-		Set<NodePathPointer> sources = survey.getRelatedCodeSources(codeAttr.getDefinition());
+		Set<NodePathPointer> sources = survey.getRelatedCodeSources(codeAttr.getDefinition(), codeAttr.getModelVersion());
 		visitNodeDependencies(codeAttr, sources, new ItemAddVisitor<CodeAttribute>(result));
 		if (result.isEmpty()) {
 			return null;
@@ -25,9 +25,11 @@ import org.openforis.idm.metamodel.NodeDefinition;
 import org.openforis.idm.metamodel.expression.ExpressionValidator.ExpressionValidationResult;
 import org.openforis.idm.model.Node;
 import org.openforis.idm.model.NodeVisitor;
+import org.openforis.idm.model.expression.internal.DirectEvaluator;
 import org.openforis.idm.model.expression.internal.ModelJXPathCompiledExpression;
 import org.openforis.idm.model.expression.internal.ModelJXPathContext;
 import org.openforis.idm.model.expression.internal.ModelNodePointer;
+import org.openforis.idm.model.expression.internal.UnsupportedDirectEvaluationException;
 import org.openforis.idm.path.Path;
 
 /**
@@ -41,6 +43,7 @@ public abstract class AbstractExpression {
 	public static final String CONTEXT_NODE_VARIABLE_NAME = "context";
 	private ModelJXPathContext jxPathContext;
 	private ModelJXPathCompiledExpression compiledExpression;
+	private DirectEvaluator directEvaluator;
 
 	AbstractExpression(ModelJXPathCompiledExpression compiledExpression, ModelJXPathContext jxPathContext) {
 		this.compiledExpression = compiledExpression;
@@ -93,6 +96,13 @@ public abstract class AbstractExpression {
 	}
 	
 	protected Object evaluateSingle(Node<?> contextNode, Node<?> thisNode) throws InvalidExpressionException {
+		if (directEvaluator != null) {
+			try {
+				return directEvaluator.evaluate(contextNode, thisNode);
+			} catch (UnsupportedDirectEvaluationException e) {
+				//evaluate it using JXPath
+			}
+		}
 		try {
 			JXPathContext jxPathContext = createJXPathContext(contextNode, thisNode);
 			Object object = compiledExpression.getValue(jxPathContext);
@@ -234,6 +244,17 @@ public abstract class AbstractExpression {
 		return sb.toString();
 	}
 
+	DirectEvaluator getDirectEvaluator() {
+		return directEvaluator;
+	}
+
+	/**
+	 * Sets the evaluator used to evaluate the expression without JXPath, when possible
+	 */
+	void setDirectEvaluator(DirectEvaluator directEvaluator) {
+		this.directEvaluator = directEvaluator;
+	}
+
 	/**
 	 * Creates a new JXPath context in order to evaluate the expression
 	 */
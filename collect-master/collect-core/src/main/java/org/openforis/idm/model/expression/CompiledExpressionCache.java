@@ -0,0 +1,150 @@
+package org.openforis.idm.model.expression;
+
+import java.util.LinkedHashMap;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe, size bounded cache of compiled expressions.
+ * Entries are kept in access order, so when the cache is full the least recently used expression is evicted.
+ *
+ * @param <K> type of the key
+ * @param <V> type of the compiled expression
+ */
+public class CompiledExpressionCache<K, V> {
+
+	public static final int DEFAULT_MAX_SIZE = 5000;
+
+	private final LinkedHashMap<K, V> entries;
+	private volatile int maxSize;
+	private final AtomicLong hitCount;
+	private final AtomicLong missCount;
+	private final AtomicLong evictionCount;
+
+	public CompiledExpressionCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public CompiledExpressionCache(int maxSize) {
+		this.maxSize = checkMaxSize(maxSize);
+		this.hitCount = new AtomicLong();
+		this.missCount = new AtomicLong();
+		this.evictionCount = new AtomicLong();
+		this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Entry<K, V> eldest) {
+				if (size() > CompiledExpressionCache.this.maxSize) {
+					evictionCount.incrementAndGet();
+					return true;
+				} else {
+					return false;
+				}
+			}
+		};
+	}
+
+	public V get(K key) {
+		V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		if (value == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return value;
+	}
+
+	/**
+	 * Stores the compiled expression associated to the specified key, unless another thread stored it in the meantime.
+	 *
+	 * @return the value associated to the key in the cache
+	 */
+	public V put(K key, V value) {
+		synchronized (entries) {
+			V oldValue = entries.get(key);
+			if (oldValue == null) {
+				entries.put(key, value);
+				return value;
+			} else {
+				return oldValue;
+			}
+		}
+	}
+
+	public boolean contains(K key) {
+		synchronized (entries) {
+			return entries.containsKey(key);
+		}
+	}
+
+	public void clear() {
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public void resetStatistics() {
+		hitCount.set(0);
+		missCount.set(0);
+		evictionCount.set(0);
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Changes the maximum number of entries in the cache, evicting the least recently used ones if necessary
+	 */
+	public void setMaxSize(int maxSize) {
+		synchronized (entries) {
+			this.maxSize = checkMaxSize(maxSize);
+			while (entries.size() > this.maxSize) {
+				K eldestKey = entries.keySet().iterator().next();
+				entries.remove(eldestKey);
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public double getHitRate() {
+		long hits = hitCount.get();
+		long requests = hits + missCount.get();
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("size: %d/%d, hits: %d, misses: %d, evictions: %d",
+				size(), maxSize, getHitCount(), getMissCount(), getEvictionCount());
+	}
+
+	private static int checkMaxSize(int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Cache max size must be greater than 0");
+		}
+		return maxSize;
+	}
+}
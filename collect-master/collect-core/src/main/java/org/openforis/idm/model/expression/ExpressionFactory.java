@@ -9,7 +9,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -22,7 +22,18 @@ import org.apache.commons.jxpath.JXPathIntrospector;
 import org.apache.commons.jxpath.JXPathInvalidSyntaxException;
 import org.apache.commons.jxpath.ri.JXPathContextReferenceImpl;
 import org.apache.commons.lang3.StringUtils;
+import org.openforis.idm.metamodel.AttributeDefault;
+import org.openforis.idm.metamodel.AttributeDefinition;
+import org.openforis.idm.metamodel.CodeAttributeDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.metamodel.NodeDefinitionVisitor;
+import org.openforis.idm.metamodel.Survey;
+import org.openforis.idm.metamodel.validation.Check;
+import org.openforis.idm.metamodel.validation.ComparisonCheck;
+import org.openforis.idm.metamodel.validation.CustomCheck;
+import org.openforis.idm.metamodel.validation.DistanceCheck;
 import org.openforis.idm.metamodel.validation.LookupProvider;
+import org.openforis.idm.metamodel.validation.UniquenessCheck;
 import org.openforis.idm.model.Node;
 import org.openforis.idm.model.Record;
 import org.openforis.idm.model.expression.internal.CustomFunction;
@@ -66,12 +77,14 @@ public class ExpressionFactory {
 			"position", "last" // context functions
 	));
 
-	private static final ExpressionCache COMPILED_EXPRESSIONS = new ExpressionCache();
+	private static final CompiledExpressionCache<ExpressionKey, ModelJXPathCompiledExpression> COMPILED_EXPRESSIONS = 
+			new CompiledExpressionCache<ExpressionKey, ModelJXPathCompiledExpression>();
 
 	private final Map<String, CustomFunctions> customFunctionsByNamespace = new HashMap<String, CustomFunctions>();
 	private final ReferencedPathEvaluator referencedPathEvaluator;
 	private ModelJXPathContext jxPathContext;
 	private LookupProvider lookupProvider;
+	private boolean directEvaluation = false;
 
 	public ExpressionFactory() {
 		System.setProperty(JXPathContextFactory.FACTORY_NAME_PROPERTY,
@@ -79,8 +92,10 @@ public class ExpressionFactory {
 
 		JXPathContextReferenceImpl.addNodePointerFactory(new ModelNodePointerFactory());
 
-		JXPathIntrospector.registerDynamicClass(Node.class, NodePropertyHandler.class);
-		JXPathIntrospector.registerDynamicClass(Record.class, RecordPropertyHandler.class);
+		synchronized (JXPathIntrospector.class) {
+			JXPathIntrospector.registerDynamicClass(Node.class, NodePropertyHandler.class);
+			JXPathIntrospector.registerDynamicClass(Record.class, RecordPropertyHandler.class);
+		}
 
 		registerFunctions(new EnvironmentFunctions(ENVIRONMENT_PREFIX), new GeoFunctions(GEO_PREFIX), new IDMFunctions(IDM_PREFIX), new MathFunctions(MATH_PREFIX),
 				new RegExFunctions(REGEX_PREFIX), new UtilFunctions(UTIL_PREFIX));
@@ -96,12 +111,14 @@ public class ExpressionFactory {
 			throws InvalidExpressionException {
 		ModelJXPathCompiledExpression compiledExpression = compileExpression(expression, normalizeNumbers);
 		BooleanExpression expr = new BooleanExpression(compiledExpression, jxPathContext);
+		initDirectEvaluator(expr, compiledExpression);
 		return expr;
 	}
 
 	public ValueExpression createValueExpression(String expression) throws InvalidExpressionException {
 		ModelJXPathCompiledExpression compiledExpression = compileExpression(expression);
 		ValueExpression expr = new ValueExpression(compiledExpression, jxPathContext);
+		initDirectEvaluator(expr, compiledExpression);
 		return expr;
 	}
 
@@ -178,9 +195,17 @@ public class ExpressionFactory {
 			}
 			customFunctionsByNamespace.put(namespace, functions);
 		}
+		//the functions cache is built lazily and not thread safe: build it before expressions are evaluated concurrently
+		library.getUsedNamespaces();
 		jxPathContext.setFunctions(library);
 	}
 
+	private void initDirectEvaluator(AbstractExpression expr, ModelJXPathCompiledExpression compiledExpression) {
+		if (directEvaluation) {
+			expr.setDirectEvaluator(compiledExpression.getDirectEvaluator());
+		}
+	}
+
 	private ModelJXPathCompiledExpression compileExpression(String expression) throws InvalidExpressionException {
 		return compileExpression(expression, false);
 	}
@@ -193,7 +218,7 @@ public class ExpressionFactory {
 			try {
 				String normalizedExpression = Path.getNormalizedPath(expression);
 				compiled = ModelJXPathContext.compile(this, normalizedExpression, normalizeNumber);
-				COMPILED_EXPRESSIONS.put(key, compiled);
+				compiled = COMPILED_EXPRESSIONS.put(key, compiled);
 			} catch (JXPathInvalidSyntaxException e) {
 				throw new InvalidExpressionException(e.getMessage());
 			}
@@ -202,6 +227,101 @@ public class ExpressionFactory {
 		return compiled;
 	}
 
+	/**
+	 * Compiles all the expressions defined in the schema of the specified survey and stores them in the compiled expressions cache, 
+	 * so that they will be already available when records are evaluated.
+	 * Invalid expressions are ignored.
+	 * 
+	 * @return the number of expressions compiled
+	 */
+	public int precompileExpressions(Survey survey) {
+		final Set<ExpressionKey> expressions = new LinkedHashSet<ExpressionKey>();
+		survey.getSchema().traverse(new NodeDefinitionVisitor() {
+			public void visit(NodeDefinition def) {
+				addExpression(expressions, def.getRelevantExpression(), false);
+				addExpression(expressions, def.getMinCountExpression(), false);
+				addExpression(expressions, def.extractRequiredExpression(), false);
+				addExpression(expressions, def.getMaxCountExpression(), false);
+				if (def instanceof AttributeDefinition) {
+					addAttributeExpressions(expressions, (AttributeDefinition) def);
+				}
+			}
+		});
+		int count = 0;
+		for (ExpressionKey key : expressions) {
+			try {
+				compileExpression(key.expression, key.normalizeNumbers);
+				count ++;
+			} catch (InvalidExpressionException e) {
+				//ignore it, it will be reported when the expression is evaluated
+			}
+		}
+		return count;
+	}
+
+	private void addAttributeExpressions(Set<ExpressionKey> expressions, AttributeDefinition def) {
+		for (AttributeDefault attributeDefault : def.getAttributeDefaults()) {
+			addExpression(expressions, attributeDefault.getCondition(), false);
+			addExpression(expressions, attributeDefault.getExpression(), false);
+		}
+		if (def instanceof CodeAttributeDefinition) {
+			addExpression(expressions, ((CodeAttributeDefinition) def).getParentExpression(), false);
+		}
+		for (Check<?> check : def.getChecks()) {
+			addExpression(expressions, check.getCondition(), false);
+			if (check instanceof ComparisonCheck) {
+				addExpression(expressions, ((ComparisonCheck) check).getExpression(), true);
+			} else if (check instanceof CustomCheck) {
+				addExpression(expressions, ((CustomCheck) check).getExpression(), false);
+			} else if (check instanceof DistanceCheck) {
+				addExpression(expressions, ((DistanceCheck) check).getDestinationPointExpression(), false);
+				addExpression(expressions, ((DistanceCheck) check).getMaxDistanceExpression(), false);
+				addExpression(expressions, ((DistanceCheck) check).getMinDistanceExpression(), false);
+				addExpression(expressions, ((DistanceCheck) check).getSourcePointExpression(), false);
+			} else if (check instanceof UniquenessCheck) {
+				addExpression(expressions, ((UniquenessCheck) check).getExpression(), false);
+			}
+		}
+	}
+
+	private void addExpression(Set<ExpressionKey> expressions, String expression, boolean normalizeNumbers) {
+		if (StringUtils.isNotBlank(expression)) {
+			expressions.add(new ExpressionKey(expression, normalizeNumbers));
+		}
+	}
+
+	/**
+	 * Cache of compiled expressions, shared among all the expression factories
+	 */
+	public static CompiledExpressionCache<?, ?> getCompiledExpressionCache() {
+		return COMPILED_EXPRESSIONS;
+	}
+
+	public boolean isDirectEvaluation() {
+		return directEvaluation;
+	}
+
+	/**
+	 * If true, boolean and value expressions are evaluated directly on the model nodes when possible 
+	 * (see {@link org.openforis.idm.model.expression.internal.DirectExpressionCompiler}), 
+	 * otherwise they are always evaluated using JXPath
+	 */
+	public void setDirectEvaluation(boolean directEvaluation) {
+		this.directEvaluation = directEvaluation;
+	}
+
+	public static int getCompiledExpressionsCacheSize() {
+		return COMPILED_EXPRESSIONS.getMaxSize();
+	}
+
+	/**
+	 * Sets the maximum number of compiled expressions kept in the cache.
+	 * The cache is global (shared by all the expression factories in the JVM), so the size applies to all of them.
+	 */
+	public static void setCompiledExpressionsCacheSize(int size) {
+		COMPILED_EXPRESSIONS.setMaxSize(size);
+	}
+
 	public LookupProvider getLookupProvider() {
 		return lookupProvider;
 	}
@@ -251,17 +371,4 @@ public class ExpressionFactory {
 
 	}
 
-	private static class ExpressionCache extends LinkedHashMap<ExpressionKey, ModelJXPathCompiledExpression> {
-
-		private static final long serialVersionUID = 1L;
-
-		private static final int MAX_ENTRIES = 1000;
-
-		@Override
-		protected boolean removeEldestEntry(Entry<ExpressionKey, ModelJXPathCompiledExpression> eldest) {
-			return size() > MAX_ENTRIES;
-		}
-
-	}
-
 }
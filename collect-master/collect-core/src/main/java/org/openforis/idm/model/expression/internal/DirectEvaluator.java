@@ -0,0 +1,18 @@
+package org.openforis.idm.model.expression.internal;
+
+import org.openforis.idm.model.Node;
+
+/**
+ * Evaluates a compiled expression working directly on the model nodes, without using JXPath.
+ */
+public interface DirectEvaluator {
+
+	/**
+	 * Evaluates the expression returning the same value that JXPath would return.
+	 * 
+	 * @throws UnsupportedDirectEvaluationException if the expression cannot be evaluated directly 
+	 * in the specified context: in that case it must be evaluated using JXPath
+	 */
+	Object evaluate(Node<?> contextNode, Node<?> thisNode) throws UnsupportedDirectEvaluationException;
+
+}
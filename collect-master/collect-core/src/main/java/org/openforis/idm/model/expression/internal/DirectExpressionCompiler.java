@@ -0,0 +1,422 @@
+package org.openforis.idm.model.expression.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.jxpath.ri.Compiler;
+import org.apache.commons.jxpath.ri.QName;
+import org.apache.commons.jxpath.ri.compiler.Constant;
+import org.apache.commons.jxpath.ri.compiler.CoreFunction;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationAdd;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationAnd;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationDivide;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationMod;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationMultiply;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationNegate;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationOr;
+import org.apache.commons.jxpath.ri.compiler.CoreOperationSubtract;
+import org.apache.commons.jxpath.ri.compiler.Expression;
+import org.apache.commons.jxpath.ri.compiler.LocationPath;
+import org.apache.commons.jxpath.ri.compiler.NodeNameTest;
+import org.apache.commons.jxpath.ri.compiler.Step;
+import org.openforis.idm.metamodel.EntityDefinition;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.model.Attribute;
+import org.openforis.idm.model.Entity;
+import org.openforis.idm.model.Node;
+import org.openforis.idm.model.expression.ExpressionFactory;
+import org.openforis.idm.path.Path;
+
+/**
+ * Converts a JXPath expression tree into a tree of {@link DirectEvaluator} objects that work directly on
+ * entities and attributes, avoiding the creation of JXPath contexts and node pointers.
+ *
+ * Only a subset of the expressions is supported: relative paths made of child and parent steps (without predicates)
+ * used in comparisons, count() or function arguments; comparisons; boolean operators; arithmetic on numbers;
+ * true(), false(), not(), the math functions and idm:blank/idm:not-blank.
+ * The semantics of the JXPath evaluation are preserved: when a node cannot be handled at evaluation time
+ * (e.g. the path reaches an attribute field or a value is not a number) an {@link UnsupportedDirectEvaluationException} is thrown
+ * and the expression must be evaluated using JXPath.
+ */
+public class DirectExpressionCompiler {
+
+	private static final Set<String> SUPPORTED_IDM_FUNCTIONS = new HashSet<String>(Arrays.asList("blank", "not-blank"));
+
+	private final ExpressionFactory expressionFactory;
+
+	public DirectExpressionCompiler(ExpressionFactory expressionFactory) {
+		this.expressionFactory = expressionFactory;
+	}
+
+	/**
+	 * Returns the direct evaluator of the specified expression or null if the expression is not supported
+	 */
+	public DirectEvaluator compile(Expression expression) {
+		try {
+			final DirectEvaluator evaluator = compileValue(expression);
+			if (evaluator == null) {
+				return null;
+			}
+			return new DirectEvaluator() {
+				public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+					if (contextNode == null) {
+						throw UnsupportedDirectEvaluationException.INSTANCE;
+					}
+					try {
+						return evaluator.evaluate(contextNode, thisNode);
+					} catch (UnsupportedDirectEvaluationException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						//let JXPath reproduce the error
+						throw UnsupportedDirectEvaluationException.INSTANCE;
+					}
+				}
+			};
+		} catch (UnsupportedDirectEvaluationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles an expression whose value is used as it is (top level expression or operand of a boolean or arithmetic operation).
+	 * Paths are not supported here: their value depends on JXPath node pointers.
+	 */
+	private DirectEvaluator compileValue(Expression expression) {
+		if (expression instanceof Constant) {
+			final Object value = ((Constant) expression).computeValue(null);
+			return new DirectEvaluator() {
+				public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+					return value;
+				}
+			};
+		} else if (expression instanceof ModelRelationalExpression) {
+			return compileRelationalExpression((ModelRelationalExpression) expression);
+		} else if (expression instanceof CoreOperationAnd || expression instanceof CoreOperationOr) {
+			return compileBooleanOperation((org.apache.commons.jxpath.ri.compiler.Operation) expression);
+		} else if (expression instanceof CoreOperationAdd || expression instanceof CoreOperationSubtract
+				|| expression instanceof CoreOperationMultiply || expression instanceof CoreOperationDivide
+				|| expression instanceof CoreOperationMod || expression instanceof CoreOperationNegate) {
+			return compileArithmeticOperation((org.apache.commons.jxpath.ri.compiler.Operation) expression);
+		} else if (expression instanceof CoreFunction) {
+			return compileCoreFunction((CoreFunction) expression);
+		} else if (expression instanceof ModelExtensionFunction) {
+			return compileExtensionFunction((ModelExtensionFunction) expression);
+		} else {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+	}
+
+	/**
+	 * Compiles an expression whose result is used as a boolean value
+	 */
+	private DirectEvaluator compileBoolean(Expression expression) {
+		if (expression instanceof ModelRelationalExpression
+				|| expression instanceof CoreOperationAnd || expression instanceof CoreOperationOr) {
+			return compileValue(expression);
+		} else if (expression instanceof CoreFunction) {
+			int functionCode = ((CoreFunction) expression).getFunctionCode();
+			if (functionCode == Compiler.FUNCTION_NOT || functionCode == Compiler.FUNCTION_TRUE
+					|| functionCode == Compiler.FUNCTION_FALSE) {
+				return compileValue(expression);
+			}
+		} else if (expression instanceof ModelExtensionFunction
+				&& ExpressionFactory.IDM_PREFIX.equals(((ModelExtensionFunction) expression).getPrefix())) {
+			//blank and not-blank return a boolean
+			return compileValue(expression);
+		}
+		throw UnsupportedDirectEvaluationException.INSTANCE;
+	}
+
+	/**
+	 * Compiles an operand of a comparison or a function argument: paths are evaluated as node sets
+	 */
+	private DirectEvaluator compileOperand(Expression expression) {
+		if (expression instanceof LocationPath) {
+			return new PathValuesEvaluator(compilePath((LocationPath) expression));
+		} else {
+			return compileValue(expression);
+		}
+	}
+
+	private DirectEvaluator compileRelationalExpression(final ModelRelationalExpression expression) {
+		Expression[] args = expression.getArguments();
+		final DirectEvaluator left = compileOperand(args[0]);
+		final DirectEvaluator right = compileOperand(args[1]);
+		return new DirectEvaluator() {
+			public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+				Object leftValue = left.evaluate(contextNode, thisNode);
+				Object rightValue = right.evaluate(contextNode, thisNode);
+				//comparison semantics (node sets, ranges, numbers normalization) are the ones of the relational expression itself
+				return expression.compute(leftValue, rightValue);
+			}
+		};
+	}
+
+	private DirectEvaluator compileBooleanOperation(org.apache.commons.jxpath.ri.compiler.Operation operation) {
+		final boolean and = operation instanceof CoreOperationAnd;
+		final DirectEvaluator[] args = compileArguments(operation.getArguments(), true);
+		return new DirectEvaluator() {
+			public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+				for (DirectEvaluator arg : args) {
+					boolean value = toBoolean(arg.evaluate(contextNode, thisNode));
+					if (and && ! value) {
+						return Boolean.FALSE;
+					} else if (! and && value) {
+						return Boolean.TRUE;
+					}
+				}
+				return and;
+			}
+		};
+	}
+
+	private DirectEvaluator compileArithmeticOperation(final org.apache.commons.jxpath.ri.compiler.Operation operation) {
+		final DirectEvaluator[] args = compileArguments(operation.getArguments(), false);
+		return new DirectEvaluator() {
+			public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+				double left = toDouble(args[0].evaluate(contextNode, thisNode));
+				if (operation instanceof CoreOperationNegate) {
+					return -left;
+				}
+				double right = toDouble(args[1].evaluate(contextNode, thisNode));
+				if (operation instanceof CoreOperationAdd) {
+					return left + right;
+				} else if (operation instanceof CoreOperationSubtract) {
+					return left - right;
+				} else if (operation instanceof CoreOperationMultiply) {
+					return left * right;
+				} else if (operation instanceof CoreOperationDivide) {
+					return left / right;
+				} else {
+					return (double) ((long) left % (long) right);
+				}
+			}
+		};
+	}
+
+	private DirectEvaluator compileCoreFunction(CoreFunction function) {
+		if (function.getFunctionCode() == Compiler.FUNCTION_TRUE || function.getFunctionCode() == Compiler.FUNCTION_FALSE) {
+			final Boolean value = function.getFunctionCode() == Compiler.FUNCTION_TRUE;
+			return new DirectEvaluator() {
+				public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+					return value;
+				}
+			};
+		} else if (function.getFunctionCode() == Compiler.FUNCTION_NOT && function.getArgumentCount() == 1) {
+			final DirectEvaluator arg = compileBoolean(function.getArg1());
+			return new DirectEvaluator() {
+				public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+					return ! toBoolean(arg.evaluate(contextNode, thisNode));
+				}
+			};
+		} else if (function.getFunctionCode() == Compiler.FUNCTION_COUNT && function.getArgumentCount() == 1
+				&& function.getArg1() instanceof LocationPath) {
+			final PathEvaluator path = compilePath((LocationPath) function.getArg1());
+			return new DirectEvaluator() {
+				public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+					return (double) path.evaluateNodes(contextNode, true).size();
+				}
+			};
+		} else {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+	}
+
+	private DirectEvaluator compileExtensionFunction(ModelExtensionFunction function) {
+		String prefix = function.getPrefix();
+		boolean supported = ExpressionFactory.MATH_PREFIX.equals(prefix)
+				|| (ExpressionFactory.IDM_PREFIX.equals(prefix) && SUPPORTED_IDM_FUNCTIONS.contains(function.getName()));
+		final CustomFunction customFunction = supported ? expressionFactory.lookupFunction(function) : null;
+		if (customFunction == null) {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+		Expression[] arguments = function.getArguments();
+		final DirectEvaluator[] args = new DirectEvaluator[arguments == null ? 0 : arguments.length];
+		for (int i = 0; i < args.length; i++) {
+			args[i] = compileOperand(arguments[i]);
+		}
+		return new DirectEvaluator() {
+			public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+				Object[] parameters = new Object[args.length];
+				for (int i = 0; i < args.length; i++) {
+					parameters[i] = toFunctionParameter(args[i].evaluate(contextNode, thisNode));
+				}
+				//math and blank functions do not use the expression context
+				return customFunction.invoke(null, parameters);
+			}
+		};
+	}
+
+	private DirectEvaluator[] compileArguments(Expression[] arguments, boolean booleanArguments) {
+		DirectEvaluator[] result = new DirectEvaluator[arguments.length];
+		for (int i = 0; i < arguments.length; i++) {
+			result[i] = booleanArguments ? compileBoolean(arguments[i]) : compileValue(arguments[i]);
+		}
+		return result;
+	}
+
+	private PathEvaluator compilePath(LocationPath path) {
+		if (path.isAbsolute()) {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+		Step[] steps = path.getSteps();
+		String[] names = new String[steps.length];
+		for (int i = 0; i < steps.length; i++) {
+			Step step = steps[i];
+			if (step.getAxis() != Compiler.AXIS_CHILD
+					|| ! (step.getNodeTest() instanceof NodeNameTest)
+					|| (step.getPredicates() != null && step.getPredicates().length > 0)) {
+				throw UnsupportedDirectEvaluationException.INSTANCE;
+			}
+			NodeNameTest nodeTest = (NodeNameTest) step.getNodeTest();
+			QName nodeName = nodeTest.getNodeName();
+			if (nodeTest.isWildcard() || nodeName.getPrefix() != null) {
+				throw UnsupportedDirectEvaluationException.INSTANCE;
+			}
+			names[i] = nodeName.getName();
+		}
+		return new PathEvaluator(names);
+	}
+
+	/**
+	 * Same conversion applied by {@link ModelExtensionFunction} to the values of its arguments
+	 */
+	private static Object toFunctionParameter(Object value) {
+		if (value instanceof NodeValues) {
+			List<Object> values = ((NodeValues) value).values;
+			switch (values.size()) {
+			case 0:
+				return null;
+			case 1:
+				return values.get(0);
+			default:
+				return values;
+			}
+		} else {
+			return value;
+		}
+	}
+
+	private static boolean toBoolean(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value;
+		} else {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+	}
+
+	private static double toDouble(Object value) {
+		if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		} else {
+			throw UnsupportedDirectEvaluationException.INSTANCE;
+		}
+	}
+
+	/**
+	 * Evaluates a relative path returning the nodes that JXPath would return (see {@link NodePropertyHandler}):
+	 * all the child entities and only the non empty attributes
+	 */
+	private static class PathEvaluator {
+
+		private final String[] names;
+
+		PathEvaluator(String[] names) {
+			this.names = names;
+		}
+
+		List<Node<?>> evaluateNodes(Node<?> contextNode, boolean failOnMissingSingleAttribute) {
+			List<Node<?>> currentNodes = Collections.<Node<?>>singletonList(contextNode);
+			for (String name : names) {
+				List<Node<?>> nextNodes = new ArrayList<Node<?>>();
+				for (Node<?> node : currentNodes) {
+					if (Path.NORMALIZED_PARENT_FUNCTION.equals(name)) {
+						Entity parent = node.getParent();
+						if (parent == null) {
+							throw UnsupportedDirectEvaluationException.INSTANCE;
+						}
+						nextNodes.add(parent);
+					} else if (node instanceof Entity) {
+						addChildren((Entity) node, name, nextNodes, failOnMissingSingleAttribute);
+					} else {
+						//attribute field
+						throw UnsupportedDirectEvaluationException.INSTANCE;
+					}
+				}
+				currentNodes = nextNodes;
+			}
+			return currentNodes;
+		}
+
+		private void addChildren(Entity entity, String childName, List<Node<?>> result, boolean failOnMissingSingleAttribute) {
+			NodeDefinition childDef = entity.getDefinition().getChildDefinition(childName);
+			List<Node<? extends NodeDefinition>> children = entity.getChildren(childDef);
+			if (childDef instanceof EntityDefinition) {
+				result.addAll(children);
+			} else {
+				boolean found = false;
+				for (Node<?> child : children) {
+					if (! child.isEmpty()) {
+						result.add(child);
+						found = true;
+					}
+				}
+				if (! found && ! childDef.isMultiple() && failOnMissingSingleAttribute) {
+					//JXPath handles it as a null property
+					throw UnsupportedDirectEvaluationException.INSTANCE;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evaluates a path returning the values of the nodes, as extracted by {@link ModelNodePointer}
+	 */
+	private static class PathValuesEvaluator implements DirectEvaluator {
+
+		private final PathEvaluator pathEvaluator;
+
+		PathValuesEvaluator(PathEvaluator pathEvaluator) {
+			this.pathEvaluator = pathEvaluator;
+		}
+
+		public Object evaluate(Node<?> contextNode, Node<?> thisNode) {
+			List<Node<?>> nodes = pathEvaluator.evaluateNodes(contextNode, false);
+			List<Object> values = new ArrayList<Object>(nodes.size());
+			for (Node<?> node : nodes) {
+				if (node instanceof Attribute) {
+					values.add(AttributeValueUtils.extractMainFieldValue((Attribute<?, ?>) node, false));
+				} else {
+					values.add(node);
+				}
+			}
+			return new NodeValues(values);
+		}
+	}
+
+	/**
+	 * Values of the nodes returned by a path: it is a collection, so it's compared as a node set by {@link ModelRelationalExpression}
+	 */
+	private static class NodeValues extends java.util.AbstractList<Object> {
+
+		private final List<Object> values;
+
+		NodeValues(List<Object> values) {
+			this.values = values;
+		}
+
+		@Override
+		public Object get(int index) {
+			return values.get(index);
+		}
+
+		@Override
+		public int size() {
+			return values.size();
+		}
+	}
+}
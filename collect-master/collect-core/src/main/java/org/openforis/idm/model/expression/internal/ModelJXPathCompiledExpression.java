@@ -25,12 +25,27 @@ import org.openforis.idm.model.expression.ExpressionFactory;
 public class ModelJXPathCompiledExpression extends JXPathCompiledExpression {
 	
 	private ExpressionFactory expressionFactory;
+	private volatile boolean directEvaluatorCompiled;
+	private volatile DirectEvaluator directEvaluator;
 
 	public ModelJXPathCompiledExpression(ExpressionFactory expressionFactory, String xpath, Expression expression) {
 		super(xpath, expression);
 		this.expressionFactory = expressionFactory;
 	}
 
+	/**
+	 * Returns the evaluator that can be used instead of JXPath to evaluate this expression,
+	 * or null if the expression is not supported by the direct evaluation.
+	 * The evaluator is compiled the first time it is requested.
+	 */
+	public DirectEvaluator getDirectEvaluator() {
+		if (! directEvaluatorCompiled) {
+			directEvaluator = new DirectExpressionCompiler(expressionFactory).compile(getExpression());
+			directEvaluatorCompiled = true;
+		}
+		return directEvaluator;
+	}
+
 	public Set<String> getReferencedPaths() {
 		return expressionFactory.getReferencedPathEvaluator().determineReferencedPaths(getExpression());
 	}
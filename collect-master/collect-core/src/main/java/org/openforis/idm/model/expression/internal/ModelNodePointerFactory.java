@@ -5,6 +5,8 @@ package org.openforis.idm.model.expression.internal;
 
 import java.util.Collection;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.jxpath.DynamicPropertyHandler;
 import org.apache.commons.jxpath.JXPathBeanInfo;
@@ -21,6 +23,14 @@ import org.apache.commons.jxpath.util.ValueUtils;
  */
 public class ModelNodePointerFactory implements NodePointerFactory {
 
+	private static final DynamicPropertyHandler NO_PROPERTY_HANDLER = new NodePropertyHandler();
+	/**
+	 * Dynamic property handlers by bean class: the caches of JXPathIntrospector and ValueUtils are not thread safe, 
+	 * so they are accessed only once per class, while holding a lock, and expressions can be evaluated concurrently
+	 */
+	private static final ConcurrentMap<Class<?>, DynamicPropertyHandler> PROPERTY_HANDLERS_BY_CLASS = 
+			new ConcurrentHashMap<Class<?>, DynamicPropertyHandler>();
+
 	public ModelNodePointerFactory() {
 		super();
 	}
@@ -61,13 +71,16 @@ public class ModelNodePointerFactory implements NodePointerFactory {
 	}
 
 	private DynamicPropertyHandler determineDynamicPropertyHandler(Object bean) {
-		JXPathBeanInfo bi = JXPathIntrospector.getBeanInfo(bean.getClass());
-		if (bi.isDynamic()) {
-			DynamicPropertyHandler handler = ValueUtils.getDynamicPropertyHandler(bi.getDynamicPropertyHandlerClass());
-			return handler;
-		} else {
-			return null;
+		Class<?> beanClass = bean.getClass();
+		DynamicPropertyHandler handler = PROPERTY_HANDLERS_BY_CLASS.get(beanClass);
+		if (handler == null) {
+			synchronized (JXPathIntrospector.class) {
+				JXPathBeanInfo bi = JXPathIntrospector.getBeanInfo(beanClass);
+				handler = bi.isDynamic() ? ValueUtils.getDynamicPropertyHandler(bi.getDynamicPropertyHandlerClass()) : NO_PROPERTY_HANDLER;
+			}
+			PROPERTY_HANDLERS_BY_CLASS.putIfAbsent(beanClass, handler);
 		}
+		return handler == NO_PROPERTY_HANDLER ? null : handler;
 	}
 
 	private Object getHeadElement(Object bean) {
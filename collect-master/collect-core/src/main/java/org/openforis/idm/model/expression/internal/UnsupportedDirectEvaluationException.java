@@ -0,0 +1,22 @@
+package org.openforis.idm.model.expression.internal;
+
+/**
+ * Thrown when an expression cannot be evaluated by a {@link DirectEvaluator}
+ * and it must be evaluated using JXPath.
+ */
+public class UnsupportedDirectEvaluationException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	static final UnsupportedDirectEvaluationException INSTANCE = new UnsupportedDirectEvaluationException();
+
+	private UnsupportedDirectEvaluationException() {
+		super("Expression not supported by the direct evaluator");
+	}
+
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		//thrown very often during evaluation, the stack trace is not useful
+		return this;
+	}
+}
@@ -0,0 +1,117 @@
+package org.openforis.collect.command.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.SurveyBuilder.attributeDef;
+import static org.openforis.idm.testfixture.SurveyBuilder.codeList;
+import static org.openforis.idm.testfixture.SurveyBuilder.entityDef;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.command.RecordCommand;
+import org.openforis.collect.command.UpdateAttributesCommand;
+import org.openforis.collect.command.UpdateCodeAttributeCommand;
+import org.openforis.collect.command.UpdateTextAttributeCommand;
+import org.openforis.collect.command.handler.RecordCommandHandler.RecordCommandResult;
+import org.openforis.collect.event.RecordStep;
+import org.openforis.collect.manager.RecordProvider;
+import org.openforis.collect.manager.SurveyManager;
+import org.openforis.collect.model.AttributeAddChange;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectRecord.Step;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.idm.metamodel.AttributeType;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.model.Code;
+import org.openforis.idm.model.CodeAttribute;
+import org.openforis.idm.model.Node;
+import org.openforis.idm.model.TextAttribute;
+import org.openforis.idm.model.TextValue;
+import org.openforis.idm.testfixture.NodeBuilder;
+import org.openforis.idm.testfixture.SurveyBuilder;
+
+public class UpdateAttributesCommandHandlerTest {
+
+	private CollectSurvey survey;
+	private CollectRecord record;
+	private UpdateAttributesCommandHandler handler;
+
+	@Before
+	public void init() {
+		survey = new SurveyBuilder()
+				.codeLists(codeList("colors"))
+				.rootEntityDef(entityDef("root",
+						attributeDef("name"),
+						attributeDef("colors").type(AttributeType.CODE).codeList("colors").multiple()))
+				.build();
+		survey.setId(1);
+		record = NodeBuilder.record(survey, attribute("name", "a"), attribute("colors", "1"), attribute("colors", "2"));
+		record.setId(1);
+		new RecordUpdater().initializeRecord(record);
+
+		handler = new UpdateAttributesCommandHandler();
+		handler.setSurveyManager(new SurveyManager() {
+			@Override
+			public CollectSurvey getOrLoadSurveyById(int id) {
+				return survey;
+			}
+		});
+		handler.setRecordProvider(new RecordProvider() {
+			public CollectRecord provide(CollectSurvey survey, Integer recordId, Step recordStep) {
+				return record;
+			}
+		});
+	}
+
+	@Test
+	public void testTextAndMultipleCodeAttributesUpdated() {
+		UpdateTextAttributeCommand nameCommand = initCommand(new UpdateTextAttributeCommand());
+		nameCommand.setNodePath("/root/name");
+		nameCommand.setValue(new TextValue("b"));
+
+		UpdateCodeAttributeCommand colorsCommand = initCommand(new UpdateCodeAttributeCommand());
+		colorsCommand.setParentEntityPath("/root");
+		colorsCommand.setNodeDefId(survey.getSchema().getDefinitionByPath("/root/colors").getId());
+		colorsCommand.setValues(Arrays.asList(new Code("3"), new Code("4"), new Code("5")));
+
+		UpdateAttributesCommand command = initCommand(new UpdateAttributesCommand());
+		command.getCommands().add(nameCommand);
+		command.getCommands().add(colorsCommand);
+
+		RecordCommandResult result = handler.executeForResult(command);
+
+		TextAttribute name = record.getNodeByPath("/root/name");
+		assertEquals(new TextValue("b"), name.getValue());
+		List<Node<? extends NodeDefinition>> colors = record.getRootEntity().getChildren("colors");
+		assertEquals(3, colors.size());
+		assertEquals(new Code("3"), ((CodeAttribute) colors.get(0)).getValue());
+		assertEquals(new Code("5"), ((CodeAttribute) colors.get(2)).getValue());
+		for (Node<?> color : colors) {
+			assertTrue(result.getChangeSet().getChange(color) instanceof AttributeAddChange);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNodeNotFound() {
+		UpdateTextAttributeCommand nameCommand = initCommand(new UpdateTextAttributeCommand());
+		nameCommand.setNodePath("/root/name[2]");
+		nameCommand.setValue(new TextValue("b"));
+
+		UpdateAttributesCommand command = initCommand(new UpdateAttributesCommand());
+		command.getCommands().add(nameCommand);
+
+		handler.executeForResult(command);
+	}
+
+	private <C extends RecordCommand> C initCommand(C command) {
+		command.setSurveyId(1);
+		command.setRecordId(1);
+		command.setRecordStep(RecordStep.ENTRY);
+		return command;
+	}
+}
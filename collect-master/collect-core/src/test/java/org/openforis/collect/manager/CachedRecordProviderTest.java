@@ -0,0 +1,101 @@
+package org.openforis.collect.manager;
+
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.attributeDef;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectRecord.Step;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.CollectSurveyContext;
+import org.openforis.idm.testfixture.NodeBuilder;
+import org.openforis.idm.testfixture.NodeDefinitionBuilder;
+
+public class CachedRecordProviderTest {
+
+	private CollectSurvey survey;
+	private CachedRecordProvider provider;
+	private int loadCount;
+
+	@Before
+	public void init() {
+		survey = (CollectSurvey) new CollectSurveyContext().createSurvey();
+		survey.setId(1);
+		NodeDefinitionBuilder.rootEntityDef(survey, "root", attributeDef("name"), attributeDef("description"));
+		provider = new CachedRecordProvider(new RecordManager(false) {
+			@Override
+			public CollectRecord load(CollectSurvey survey, int recordId, Step step) {
+				loadCount ++;
+				CollectRecord record = NodeBuilder.record(survey, attribute("name", "record " + recordId), attribute("description", "-"));
+				record.setId(recordId);
+				return record;
+			}
+		});
+	}
+
+	@Test
+	public void testRecordLoadedOnce() {
+		CollectRecord record = provider.provide(survey, 1, Step.ENTRY);
+		Assert.assertSame(record, provider.provide(survey, 1, Step.ENTRY));
+		Assert.assertEquals(1, loadCount);
+		Assert.assertEquals(1, provider.getHitCount());
+		Assert.assertEquals(1, provider.getMissCount());
+
+		provider.provide(survey, 1, Step.CLEANSING);
+		Assert.assertEquals(2, loadCount);
+	}
+
+	@Test
+	public void testEvictionByNodeCount() {
+		int recordNodes = provider.provide(survey, 1, Step.ENTRY).countNodes();
+		provider.setMaxCachedNodes(recordNodes * 2);
+		provider.provide(survey, 2, Step.ENTRY);
+		//access record 1 so that record 2 becomes the least recently used one
+		provider.provide(survey, 1, Step.ENTRY);
+		provider.provide(survey, 3, Step.ENTRY);
+
+		Assert.assertEquals(2, provider.getSize());
+		Assert.assertEquals(recordNodes * 2, provider.getCachedNodes());
+		Assert.assertEquals(1, provider.getEvictionCount());
+
+		provider.provide(survey, 1, Step.ENTRY);
+		Assert.assertEquals(3, loadCount);
+		provider.provide(survey, 2, Step.ENTRY);
+		Assert.assertEquals(4, loadCount);
+	}
+
+	@Test
+	public void testRemoveRecord() {
+		provider.provide(survey, 1, Step.ENTRY);
+		provider.provide(survey, 1, Step.CLEANSING);
+		provider.provide(survey, 2, Step.ENTRY);
+		provider.removeRecord(1);
+
+		Assert.assertEquals(1, provider.getSize());
+		provider.provide(survey, 1, Step.ENTRY);
+		Assert.assertEquals(4, loadCount);
+	}
+
+	@Test
+	public void testCachedNodesKeptUpToDate() {
+		int recordNodes = provider.provide(survey, 1, Step.ENTRY).countNodes();
+		provider.provide(survey, 2, Step.ENTRY);
+		Assert.assertEquals(recordNodes * 2, provider.getCachedNodes());
+
+		//record modified after it has been cached
+		CollectRecord smallerRecord = NodeBuilder.record(survey, attribute("name", "record 1"));
+		smallerRecord.setId(1);
+		smallerRecord.setDataStep(Step.ENTRY);
+		provider.putRecord(smallerRecord);
+		Assert.assertEquals(2, provider.getSize());
+		Assert.assertEquals(recordNodes + smallerRecord.countNodes(), provider.getCachedNodes());
+
+		provider.removeRecord(2);
+		Assert.assertEquals(smallerRecord.countNodes(), provider.getCachedNodes());
+		provider.clearRecords(1);
+		Assert.assertEquals(0, provider.getCachedNodes());
+	}
+
+}
@@ -0,0 +1,36 @@
+package org.openforis.collect.manager;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RecordCoordinateManagerTest {
+
+	private static final double DELTA = 0.000001;
+
+	@Test
+	public void testWorldTile() {
+		double[] bbox = RecordCoordinateManager.tileToBoundingBox(0, 0, 0);
+		Assert.assertArrayEquals(new double[] {-180, -90, 180, 90}, bbox, DELTA);
+	}
+
+	@Test
+	public void testTileBoundingBox() {
+		double[] bbox = RecordCoordinateManager.tileToBoundingBox(1, 1, 0);
+		Assert.assertEquals(0, bbox[0], DELTA);
+		Assert.assertEquals(0, bbox[1], DELTA);
+		Assert.assertEquals(180, bbox[2], DELTA);
+		Assert.assertEquals(90, bbox[3], DELTA);
+
+		bbox = RecordCoordinateManager.tileToBoundingBox(2, 1, 1);
+		Assert.assertEquals(-90, bbox[0], DELTA);
+		Assert.assertEquals(0, bbox[1], DELTA);
+		Assert.assertEquals(0, bbox[2], DELTA);
+		Assert.assertEquals(66.5132604, bbox[3], DELTA);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testInvalidTile() {
+		RecordCoordinateManager.tileToBoundingBox(1, 2, 0);
+	}
+
+}
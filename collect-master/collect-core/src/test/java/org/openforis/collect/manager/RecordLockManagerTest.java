@@ -0,0 +1,115 @@
+package org.openforis.collect.manager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openforis.collect.model.RecordLock;
+import org.openforis.collect.model.User;
+
+public class RecordLockManagerTest {
+
+	private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+	private final User user1 = new User(1, "user1");
+	private final User user2 = new User(2, "user2");
+
+	@Test
+	public void testGetLocksIgnoresMissingIds() throws Exception {
+		RecordLockManager lockManager = new RecordLockManager(TIMEOUT_MILLIS);
+		lockManager.lock(1, user1, "session1");
+		lockManager.lock(3, user2, "session2");
+
+		Map<Integer, RecordLock> locks = lockManager.getLocks(Arrays.asList(3, 2, 1, 4));
+		Assert.assertEquals(new HashSet<Integer>(Arrays.asList(1, 3)), locks.keySet());
+		Assert.assertEquals(1, locks.get(1).getRecordId());
+		Assert.assertEquals("session1", locks.get(1).getSessionId());
+		Assert.assertEquals(3, locks.get(3).getRecordId());
+		Assert.assertEquals("session2", locks.get(3).getSessionId());
+
+		Assert.assertTrue(lockManager.getLocks(Arrays.asList(2, 4)).isEmpty());
+		Assert.assertTrue(lockManager.getLocks(Collections.<Integer>emptyList()).isEmpty());
+	}
+
+	@Test
+	public void testGetLocksIgnoresInactiveLocks() throws Exception {
+		RecordLockManager lockManager = new RecordLockManager(-1);
+		lockManager.lock(1, user1, "session1");
+		Assert.assertTrue(lockManager.getLocks(Arrays.asList(1)).isEmpty());
+	}
+
+	@Test
+	public void testGetLocksReflectsReleasedLocks() throws Exception {
+		RecordLockManager lockManager = new RecordLockManager(TIMEOUT_MILLIS);
+		lockManager.lock(1, user1, "session1");
+		lockManager.lock(2, user2, "session2");
+		lockManager.releaseLock(1);
+		Assert.assertEquals(Collections.singleton(2), lockManager.getLocks(Arrays.asList(1, 2)).keySet());
+	}
+
+	@Test
+	public void testConcurrentLockingWithoutDeadlock() throws Exception {
+		final RecordLockManager lockManager = new RecordLockManager(TIMEOUT_MILLIS);
+		final List<Integer> ascendingIds = new ArrayList<Integer>();
+		for (int i = 1; i <= 50; i++) {
+			ascendingIds.add(i);
+		}
+		final List<Integer> descendingIds = new ArrayList<Integer>(ascendingIds);
+		Collections.reverse(descendingIds);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			//lock and release the same records in opposite orders while reading all their locks at once
+			futures.add(executor.submit(lockingTask(lockManager, ascendingIds, user1, "session1")));
+			futures.add(executor.submit(lockingTask(lockManager, descendingIds, user2, "session2")));
+			for (int i = 0; i < 2; i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						for (int j = 0; j < 200; j++) {
+							Map<Integer, RecordLock> locks = lockManager.getLocks(descendingIds);
+							for (Map.Entry<Integer, RecordLock> entry : locks.entrySet()) {
+								Assert.assertEquals(entry.getKey().intValue(), entry.getValue().getRecordId());
+							}
+						}
+						return null;
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		Assert.assertTrue(lockManager.getLocks(ascendingIds).isEmpty());
+	}
+
+	private Callable<Void> lockingTask(final RecordLockManager lockManager, final List<Integer> recordIds,
+			final User user, final String sessionId) {
+		return new Callable<Void>() {
+			public Void call() throws Exception {
+				for (int i = 0; i < 20; i++) {
+					for (Integer recordId : recordIds) {
+						lockManager.lock(recordId, user, sessionId);
+					}
+					for (Integer recordId : recordIds) {
+						lockManager.releaseLock(recordId);
+					}
+				}
+				return null;
+			}
+		};
+	}
+
+}
@@ -0,0 +1,152 @@
+package org.openforis.collect.manager;
+
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.attributeDef;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.CollectSurveyContext;
+import org.openforis.collect.model.NodeChangeMap;
+import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.idm.testfixture.NodeBuilder;
+import org.openforis.idm.testfixture.NodeDefinitionBuilder;
+
+public class WriteBehindRecordSaverTest {
+
+	private CollectSurvey survey;
+	private WriteBehindRecordSaver saver;
+	private volatile int saveCount;
+	private volatile int saveChangesCount;
+	private volatile int failuresToSimulate;
+
+	@Before
+	public void init() {
+		survey = (CollectSurvey) new CollectSurveyContext().createSurvey();
+		survey.setId(1);
+		NodeDefinitionBuilder.rootEntityDef(survey, "root", attributeDef("name"));
+		saver = new WriteBehindRecordSaver(new RecordManager(false) {
+			@Override
+			public synchronized void save(CollectRecord record, String sessionId) {
+				if (failuresToSimulate > 0) {
+					failuresToSimulate --;
+					throw new IllegalStateException("Simulated failure");
+				}
+				saveCount ++;
+			}
+			@Override
+			public synchronized void saveChanges(CollectRecord record, NodeChangeSet changeSet) {
+				saveChangesCount ++;
+			}
+		});
+	}
+
+	@After
+	public void destroy() {
+		saver.destroy();
+	}
+
+	@Test
+	public void testSavedSynchronouslyByDefault() {
+		saver.init();
+		CollectRecord record = createRecord(1);
+		saver.save(record, new NodeChangeMap());
+		saver.save(record);
+
+		Assert.assertEquals(1, saveChangesCount);
+		Assert.assertEquals(1, saveCount);
+		Assert.assertFalse(saver.isDirty(1));
+	}
+
+	@Test
+	public void testChangesCoalesced() {
+		enableWriteBehind(60000);
+		CollectRecord record = createRecord(1);
+		saver.save(record, new NodeChangeMap());
+		saver.save(record, new NodeChangeMap());
+		saver.save(record, new NodeChangeMap());
+
+		Assert.assertTrue(saver.isDirty(1));
+		Assert.assertEquals(0, saveCount);
+
+		saver.flush(1);
+		Assert.assertEquals(1, saveCount);
+		Assert.assertEquals(0, saveChangesCount);
+		Assert.assertFalse(saver.isDirty(1));
+	}
+
+	@Test
+	public void testFlushedAfterDelay() throws InterruptedException {
+		enableWriteBehind(10);
+		saver.save(createRecord(1), new NodeChangeMap());
+		long timeout = System.currentTimeMillis() + 5000;
+		while (saveCount == 0 && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		Assert.assertFalse(saver.isDirty(1));
+		Assert.assertEquals(1, saveCount);
+	}
+
+	@Test
+	public void testFlushedOnShutdown() {
+		enableWriteBehind(60000);
+		saver.save(createRecord(1), new NodeChangeMap());
+		saver.save(createRecord(2), new NodeChangeMap());
+
+		saver.destroy();
+
+		Assert.assertEquals(2, saveCount);
+		Assert.assertFalse(saver.isDirty(1));
+		Assert.assertFalse(saver.isDirty(2));
+	}
+
+	@Test
+	public void testChangesKeptWhenSaveFails() {
+		enableWriteBehind(60000);
+		saver.save(createRecord(1), new NodeChangeMap());
+		failuresToSimulate = 1;
+		try {
+			saver.flush(1);
+			Assert.fail("Exception expected");
+		} catch (IllegalStateException e) {
+			//expected
+		}
+		Assert.assertTrue(saver.isDirty(1));
+
+		saver.flush(1);
+		Assert.assertEquals(1, saveCount);
+		Assert.assertFalse(saver.isDirty(1));
+	}
+
+	@Test
+	public void testPendingChangesDiscarded() {
+		enableWriteBehind(60000);
+		saver.save(createRecord(1), new NodeChangeMap());
+		saver.discard(1);
+		Assert.assertFalse(saver.isDirty(1));
+
+		saver.destroy();
+		Assert.assertEquals(0, saveCount);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testFlushDelayRequiredWhenWriteBehindEnabled() {
+		enableWriteBehind(0);
+	}
+
+	private void enableWriteBehind(long flushDelay) {
+		saver.setWriteBehindEnabled(true);
+		saver.setFlushDelay(flushDelay);
+		saver.init();
+	}
+
+	private CollectRecord createRecord(int id) {
+		CollectRecord record = NodeBuilder.record(survey, attribute("name", "record " + id));
+		record.setId(id);
+		return record;
+	}
+
+}
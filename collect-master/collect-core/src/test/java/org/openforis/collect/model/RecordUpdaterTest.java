@@ -14,6 +14,9 @@ import static org.openforis.idm.testfixture.NodeDefinitionBuilder.attributeDef;
 import static org.openforis.idm.testfixture.NodeDefinitionBuilder.entityDef;
 import static org.openforis.idm.testfixture.SurveyBuilder.codeList;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.junit.Test;
 import org.openforis.collect.utils.Dates;
 import org.openforis.idm.metamodel.AttributeDefinition;
@@ -34,6 +37,7 @@ import org.openforis.idm.model.RealAttribute;
 import org.openforis.idm.model.RealValue;
 import org.openforis.idm.model.TextAttribute;
 import org.openforis.idm.model.TextValue;
+import org.openforis.idm.model.Value;
 import org.openforis.idm.testfixture.NodeBuilder;
 import org.openforis.idm.testfixture.SurveyBuilder;
 
@@ -341,6 +345,41 @@ public class RecordUpdaterTest extends AbstractRecordTest {
 		assertNotNull(dbhSumChange);
 	}
 	
+	@Test
+	public void testUpdateAttributesUpdatesDependentsOnce() {
+		record(
+			rootEntityDef(
+				attributeDef("dbh_sum")
+					.calculated("sum(tree/dbh)"),
+				entityDef("tree",
+					attributeDef("dbh")
+				).multiple()
+			),
+			attribute("dbh_sum"),
+			entity("tree", 
+				attribute("dbh", "1")
+			),
+			entity("tree", 
+				attribute("dbh", "2")
+			)
+		);
+		Attribute<?, ?> dbh1 = attributeByPath("/root/tree[1]/dbh");
+		Attribute<?, ?> dbh2 = attributeByPath("/root/tree[2]/dbh");
+		Map<Attribute<?, ?>, Value> valuesByAttribute = new LinkedHashMap<Attribute<?, ?>, Value>();
+		valuesByAttribute.put(dbh1, new TextValue("3"));
+		valuesByAttribute.put(dbh2, new TextValue("4"));
+		
+		NodeChangeSet changeSet = updater.updateAttributes(valuesByAttribute);
+		
+		assertEquals(new TextValue("3"), dbh1.getValue());
+		assertEquals(new TextValue("4"), dbh2.getValue());
+		Attribute<?, ?> dbhSum = attributeByPath("/root/dbh_sum");
+		assertEquals(new TextValue("7.0"), dbhSum.getValue());
+		assertNotNull(changeSet.getChange(dbh1));
+		assertNotNull(changeSet.getChange(dbh2));
+		assertNotNull(changeSet.getChange(dbhSum));
+	}
+	
 	@Test
 	public void testRemoveEntityUpdatesCalculatedPosition() {
 		record(
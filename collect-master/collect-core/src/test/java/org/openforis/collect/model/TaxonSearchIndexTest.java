@@ -0,0 +1,112 @@
+package org.openforis.collect.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.model.TaxonSearchIndex.MatchMode;
+import org.openforis.collect.model.TaxonSearchIndex.VernacularNameEntry;
+import org.openforis.collect.model.TaxonTree.Node;
+import org.openforis.idm.model.species.Taxon;
+import org.openforis.idm.model.species.Taxon.TaxonRank;
+import org.openforis.idm.model.species.TaxonVernacularName;
+
+public class TaxonSearchIndexTest {
+
+	private TaxonSearchIndex index;
+
+	@Before
+	public void init() {
+		TaxonTree tree = new TaxonTree(null);
+		Taxon family = addTaxon(tree, null, 1, "FAB", "Fabaceae", TaxonRank.FAMILY);
+		Taxon genus = addTaxon(tree, family, 2, "ACA", "Acacia", TaxonRank.GENUS);
+		Taxon species1 = addTaxon(tree, genus, 3, "ACA/NIL", "Acacia nilotica", TaxonRank.SPECIES);
+		Taxon species2 = addTaxon(tree, genus, 4, "ACA/ALB", "Acacia albida", TaxonRank.SPECIES);
+		addVernacularName(tree, species1, "Gum arabic tree", "eng", "north");
+		addVernacularName(tree, species1, "Babul", "hin", "south");
+		addVernacularName(tree, species2, "Apple-ring acacia", "eng", "north");
+		index = new TaxonSearchIndex(tree);
+	}
+
+	@Test
+	public void testFindByCodeStartingWith() {
+		List<Node> nodes = index.findByCode("aca/", TaxonRank.FAMILY, MatchMode.STARTS_WITH, 10);
+		Assert.assertEquals(Arrays.asList("ACA/ALB", "ACA/NIL"), extractCodes(nodes));
+	}
+
+	@Test
+	public void testFindByScientificNameWithRankFilter() {
+		List<Node> nodes = index.findByScientificName("Acacia", TaxonRank.SPECIES, MatchMode.STARTS_WITH, 10);
+		Assert.assertEquals(Arrays.asList("ACA/ALB", "ACA/NIL"), extractCodes(nodes));
+
+		nodes = index.findByScientificName("Acacia", TaxonRank.GENUS, MatchMode.STARTS_WITH, 10);
+		Assert.assertEquals(Arrays.asList("ACA", "ACA/ALB", "ACA/NIL"), extractCodes(nodes));
+	}
+
+	@Test
+	public void testFindByScientificNameContaining() {
+		List<Node> nodes = index.findByScientificName("LOTIC", TaxonRank.FAMILY, MatchMode.CONTAINS, 10);
+		Assert.assertEquals(Arrays.asList("ACA/NIL"), extractCodes(nodes));
+
+		nodes = index.findByScientificName("ac", TaxonRank.FAMILY, MatchMode.CONTAINS, 10);
+		Assert.assertEquals(Arrays.asList("ACA", "ACA/ALB", "ACA/NIL", "FAB"), extractCodes(nodes));
+	}
+
+	@Test
+	public void testMaxResults() {
+		List<Node> nodes = index.findByCode("A", null, MatchMode.STARTS_WITH, 2);
+		Assert.assertEquals(Arrays.asList("ACA", "ACA/ALB"), extractCodes(nodes));
+	}
+
+	@Test
+	public void testFindByVernacularName() {
+		List<VernacularNameEntry> entries = index.findByVernacularName("aca", TaxonRank.FAMILY, null, null, MatchMode.CONTAINS, 10);
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("Apple-ring acacia", entries.get(0).getVernacularName().getVernacularName());
+		Assert.assertEquals("ACA/ALB", entries.get(0).getNode().getTaxon().getCode());
+
+		entries = index.findByVernacularName("b", TaxonRank.FAMILY, null, null, MatchMode.STARTS_WITH, 10);
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("Babul", entries.get(0).getVernacularName().getVernacularName());
+	}
+
+	@Test
+	public void testFindByVernacularNameFilters() {
+		List<VernacularNameEntry> entries = index.findByVernacularName("a", TaxonRank.FAMILY, null, "eng", MatchMode.CONTAINS, 10);
+		Assert.assertEquals(2, entries.size());
+
+		entries = index.findByVernacularName("a", TaxonRank.FAMILY, new String[] {"south"}, null, MatchMode.CONTAINS, 10);
+		Assert.assertEquals(1, entries.size());
+		Assert.assertEquals("Babul", entries.get(0).getVernacularName().getVernacularName());
+	}
+
+	private Taxon addTaxon(TaxonTree tree, Taxon parent, int taxonId, String code, String scientificName, TaxonRank rank) {
+		Taxon taxon = new Taxon();
+		taxon.setTaxonId(taxonId);
+		taxon.setCode(code);
+		taxon.setScientificName(scientificName);
+		taxon.setTaxonRank(rank);
+		tree.addNode(parent, taxon);
+		return taxon;
+	}
+
+	private void addVernacularName(TaxonTree tree, Taxon taxon, String name, String languageCode, String qualifier) {
+		TaxonVernacularName vernacularName = new TaxonVernacularName();
+		vernacularName.setVernacularName(name);
+		vernacularName.setLanguageCode(languageCode);
+		vernacularName.setQualifiers(Arrays.asList(qualifier));
+		tree.addVernacularName(taxon, vernacularName);
+	}
+
+	private List<String> extractCodes(List<Node> nodes) {
+		List<String> result = new ArrayList<String>(nodes.size());
+		for (Node node : nodes) {
+			result.add(node.getTaxon().getCode());
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,89 @@
+package org.openforis.collect.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.idm.metamodel.CodeList;
+import org.openforis.idm.metamodel.DefaultSurveyContext;
+import org.openforis.idm.metamodel.PersistedCodeListItem;
+import org.openforis.idm.metamodel.Survey;
+
+public class CodeListItemCacheTest {
+
+	private CodeList codeList;
+	private CodeListItemCache cache;
+
+	@Before
+	public void init() {
+		Survey survey = new DefaultSurveyContext().createSurvey();
+		survey.setId(1);
+		codeList = survey.createCodeList();
+		cache = new CodeListItemCache();
+	}
+
+	@Test
+	public void testGetItemByCode() {
+		cache.putItems(codeList, null, createItems(null, 1000));
+		cache.putItems(codeList, 5L, createItems(5L, 10));
+
+		PersistedCodeListItem item = cache.getItem(codeList, null, "500", null);
+		Assert.assertNotNull(item);
+		Assert.assertEquals("500", item.getCode());
+		Assert.assertNull(cache.getItem(codeList, null, "1000", null));
+		Assert.assertEquals(Long.valueOf(5), cache.getItem(codeList, 5L, "0", null).getParentId());
+		Assert.assertEquals(1000, cache.getItems(codeList, null).size());
+	}
+
+	@Test
+	public void testEvictionPerSurvey() {
+		cache.setMaxItemsPerSurvey(25);
+		cache.putItems(codeList, 1L, createItems(1L, 10));
+		cache.putItems(codeList, 2L, createItems(2L, 10));
+		//access the items of parent 1 so that the items of parent 2 become the least recently used ones
+		Assert.assertNotNull(cache.getItems(codeList, 1L));
+		cache.putItems(codeList, 3L, createItems(3L, 10));
+
+		Assert.assertTrue(cache.containsItems(codeList, 1L));
+		Assert.assertFalse(cache.containsItems(codeList, 2L));
+		Assert.assertTrue(cache.containsItems(codeList, 3L));
+		Assert.assertEquals(20, cache.getItemCount(1));
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testClearItems() {
+		cache.putItems(codeList, null, createItems(null, 10));
+		cache.putItems(codeList, 1L, createItems(1L, 10));
+		cache.clearItems(codeList, null);
+		Assert.assertFalse(cache.containsItems(codeList, null));
+		Assert.assertTrue(cache.containsItems(codeList, 1L));
+		cache.clearItemsByCodeList(codeList);
+		Assert.assertEquals(0, cache.getItemCount(1));
+	}
+
+	@Test
+	public void testStatistics() {
+		Assert.assertNull(cache.getItems(codeList, null));
+		cache.putItems(codeList, null, createItems(null, 10));
+		Assert.assertNotNull(cache.getItem(codeList, null, "1", null));
+		Assert.assertNotNull(cache.getItem(codeList, null, "2", null));
+
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(2d / 3, cache.getHitRate(), 0.0001);
+	}
+
+	private List<PersistedCodeListItem> createItems(Long parentId, int count) {
+		List<PersistedCodeListItem> items = new ArrayList<PersistedCodeListItem>(count);
+		for (int i = 0; i < count; i++) {
+			PersistedCodeListItem item = new PersistedCodeListItem(codeList, i + 1, parentId == null ? 1 : 2);
+			item.setCode(String.valueOf(i));
+			item.setParentId(parentId);
+			items.add(item);
+		}
+		return items;
+	}
+}
@@ -0,0 +1,101 @@
+package org.openforis.collect.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.NodeBuilder.entity;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.attributeDef;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.entityDef;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.openforis.collect.model.AbstractRecordTest;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.NodeChangeSet;
+import org.openforis.idm.model.Entity;
+import org.openforis.idm.model.ModelSerializer;
+import org.openforis.idm.testfixture.NodeBuilder;
+
+public class RecordDataJournalTest extends AbstractRecordTest {
+
+	private ModelSerializer serializer = new ModelSerializer(10000, true);
+	private RecordDataJournal journal = new RecordDataJournal();
+	private List<byte[]> entries = new ArrayList<byte[]>();
+
+	@Test
+	public void testEntryNotCreatedWhenStoredNodesUnknown() {
+		createTestRecord();
+		assertNull(journal.createEntry(record, updateAttribute("root/name[1]", "b")));
+	}
+
+	@Test
+	public void testAppliedEntriesReproduceRecordData() {
+		createTestRecord();
+		byte[] snapshot = serializer.toByteArray(record.getRootEntity());
+		record.setPersistedNodeIds(journal.extractStoredNodeIds(record));
+
+		append(updateAttribute("root/name[1]", "b"));
+		append(updater.addEntity(record.getRootEntity(), "tree"));
+		append(updateAttribute("root/tree[3]/dbh[1]", "3"));
+		append(updater.deleteNode(entityByPath("root/tree[1]")));
+		append(updateAttribute("root/tree[1]/dbh[1]", "2b"));
+
+		CollectRecord restored = NodeBuilder.record(survey);
+		serializer.mergeFrom(snapshot, restored.getRootEntity());
+		for (byte[] entry : entries) {
+			journal.apply(restored, entry);
+		}
+		assertArrayEquals(serializer.toByteArray(record.getRootEntity()), serializer.toByteArray(restored.getRootEntity()));
+	}
+
+	@Test
+	public void testApprovedMissingValueRestored() {
+		createTestRecord();
+		byte[] snapshot = serializer.toByteArray(record.getRootEntity());
+		record.setPersistedNodeIds(journal.extractStoredNodeIds(record));
+
+		append(updater.approveMissingValue(entityByPath("root/tree[2]"), "dbh"));
+
+		CollectRecord restored = NodeBuilder.record(survey);
+		serializer.mergeFrom(snapshot, restored.getRootEntity());
+		for (byte[] entry : entries) {
+			journal.apply(restored, entry);
+		}
+		Entity restoredTree = restored.findNodeByPath("root/tree[2]");
+		assertTrue(restoredTree.getChildState("dbh").get(CollectRecord.APPROVED_MISSING_POSITION));
+
+		//approval reset updating the attribute
+		append(updateAttribute("root/tree[2]/dbh[1]", "3"));
+		journal.apply(restored, entries.get(entries.size() - 1));
+		assertFalse(restoredTree.getChildState("dbh").get(CollectRecord.APPROVED_MISSING_POSITION));
+		assertArrayEquals(serializer.toByteArray(record.getRootEntity()), serializer.toByteArray(restored.getRootEntity()));
+	}
+
+	private void createTestRecord() {
+		record(
+			rootEntityDef(
+				attributeDef("name"),
+				entityDef("tree",
+					attributeDef("dbh")
+				).multiple()
+			),
+			attribute("name", "a"),
+			entity("tree", attribute("dbh", "1")),
+			entity("tree", attribute("dbh", "2"))
+		);
+	}
+
+	private void append(NodeChangeSet changeSet) {
+		RecordDataJournal.Entry entry = journal.createEntry(record, changeSet);
+		assertNotNull(entry);
+		if (! entry.isEmpty()) {
+			entries.add(entry.getData());
+		}
+		record.setPersistedNodeIds(entry.getStoredNodeIds());
+	}
+}
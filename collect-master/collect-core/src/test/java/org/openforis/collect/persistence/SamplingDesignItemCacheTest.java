@@ -0,0 +1,89 @@
+package org.openforis.collect.persistence;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openforis.collect.model.SamplingDesignItem;
+import org.openforis.collect.persistence.SamplingDesignItemCache.CachedItem;
+
+public class SamplingDesignItemCacheTest {
+
+	private static final int SURVEY_ID = 1;
+
+	@Test
+	public void testReadThrough() {
+		SamplingDesignItemCache cache = new SamplingDesignItemCache();
+		String[] levelCodes = new String[] {"1", "2"};
+		Assert.assertNull(cache.getItem(SURVEY_ID, levelCodes));
+
+		SamplingDesignItem item = createItem("1", "2");
+		cache.putItem(SURVEY_ID, levelCodes, item);
+		cache.putItem(SURVEY_ID, new String[] {"3"}, null);
+
+		Assert.assertSame(item, cache.getItem(SURVEY_ID, new String[] {"1", "2"}).getItem());
+		CachedItem notExistingItem = cache.getItem(SURVEY_ID, new String[] {"3"});
+		Assert.assertNotNull(notExistingItem);
+		Assert.assertNull(notExistingItem.getItem());
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+	}
+
+	@Test
+	public void testEviction() {
+		SamplingDesignItemCache cache = new SamplingDesignItemCache();
+		cache.setMaxItemsPerSurvey(2);
+		cache.putItem(SURVEY_ID, new String[] {"1"}, createItem("1"));
+		cache.putItem(SURVEY_ID, new String[] {"2"}, createItem("2"));
+		Assert.assertNotNull(cache.getItem(SURVEY_ID, new String[] {"1"}));
+		cache.putItem(SURVEY_ID, new String[] {"3"}, createItem("3"));
+
+		Assert.assertNotNull(cache.getItem(SURVEY_ID, new String[] {"1"}));
+		Assert.assertNull(cache.getItem(SURVEY_ID, new String[] {"2"}));
+		Assert.assertNotNull(cache.getItem(SURVEY_ID, new String[] {"3"}));
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testPreloadedItems() {
+		SamplingDesignItemCache cache = new SamplingDesignItemCache();
+		List<SamplingDesignItem> items = new ArrayList<SamplingDesignItem>();
+		for (int i = 1; i <= 100; i++) {
+			items.add(createItem(String.valueOf(i)));
+			for (int j = 1; j <= 10; j++) {
+				items.add(createItem(String.valueOf(i), String.valueOf(j)));
+			}
+		}
+		cache.putAllItems(SURVEY_ID, items);
+
+		Assert.assertTrue(cache.isPreloaded(SURVEY_ID));
+		SamplingDesignItem item = cache.getItem(SURVEY_ID, new String[] {"50", "7"}).getItem();
+		Assert.assertEquals("50", item.getLevelCode(1));
+		Assert.assertEquals("7", item.getLevelCode(2));
+		Assert.assertEquals(1, cache.getItem(SURVEY_ID, new String[] {"99"}).getItem().getLevel());
+		//items not preloaded do not exist
+		Assert.assertNull(cache.getItem(SURVEY_ID, new String[] {"50", "11"}).getItem());
+		Assert.assertNull(cache.getItem(SURVEY_ID, new String[] {"50", "1", "1"}).getItem());
+
+		cache.clearItemsBySurvey(SURVEY_ID);
+		Assert.assertFalse(cache.isPreloaded(SURVEY_ID));
+		Assert.assertNull(cache.getItem(SURVEY_ID, new String[] {"50", "7"}));
+	}
+
+	@Test
+	public void testNormalizeLevelCodes() {
+		Assert.assertArrayEquals(new String[] {"1", "2"}, SamplingDesignItemCache.normalizeLevelCodes("1", "2", null));
+		Assert.assertNull(SamplingDesignItemCache.normalizeLevelCodes("1", null, "3"));
+		Assert.assertNull(SamplingDesignItemCache.normalizeLevelCodes(null, null));
+	}
+
+	private SamplingDesignItem createItem(String... levelCodes) {
+		SamplingDesignItem item = new SamplingDesignItem();
+		item.setSurveyId(SURVEY_ID);
+		for (String levelCode : levelCodes) {
+			item.addLevelCode(levelCode);
+		}
+		return item;
+	}
+}
@@ -0,0 +1,160 @@
+package org.openforis.collect.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openforis.commons.collection.Visitor;
+
+public class OrderedParallelProcessorTest {
+
+	private final List<Integer> visited = Collections.synchronizedList(new ArrayList<Integer>());
+	private final Set<Thread> workerThreads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+
+	@Test
+	public void testResultsVisitedInSubmissionOrder() {
+		OrderedParallelProcessor<Integer> processor = createProcessor(4);
+		List<Integer> expected = new ArrayList<Integer>();
+		try {
+			for (int i = 0; i < 50; i++) {
+				//later tasks complete earlier
+				processor.submit(sleepingTask(i, (50 - i) % 5));
+				expected.add(i);
+			}
+			processor.finish();
+		} finally {
+			processor.close();
+		}
+		Assert.assertEquals(expected, visited);
+	}
+
+	@Test
+	public void testVisitorInvokedInSubmittingThread() {
+		final Thread submittingThread = Thread.currentThread();
+		final AtomicInteger visitedInOtherThreads = new AtomicInteger();
+		OrderedParallelProcessor<Integer> processor = new OrderedParallelProcessor<Integer>(4, new Visitor<Integer>() {
+			public void visit(Integer item) {
+				if (Thread.currentThread() != submittingThread) {
+					visitedInOtherThreads.incrementAndGet();
+				}
+			}
+		});
+		try {
+			for (int i = 0; i < 20; i++) {
+				processor.submit(sleepingTask(i, 1));
+			}
+			processor.finish();
+		} finally {
+			processor.close();
+		}
+		Assert.assertEquals(0, visitedInOtherThreads.get());
+	}
+
+	@Test
+	public void testExceptionPropagated() {
+		OrderedParallelProcessor<Integer> processor = createProcessor(4);
+		try {
+			processor.submit(sleepingTask(0, 0));
+			processor.submit(sleepingTask(1, 0));
+			processor.submit(failingTask(2));
+			processor.submit(sleepingTask(3, 0));
+			processor.finish();
+			Assert.fail("Exception expected");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("task 2 failed", e.getMessage());
+		} finally {
+			processor.close();
+		}
+		//results following the failed task are not visited
+		Assert.assertEquals(Arrays.asList(0, 1), visited);
+	}
+
+	@Test
+	public void testCheckedExceptionWrapped() {
+		OrderedParallelProcessor<Integer> processor = createProcessor(1);
+		try {
+			processor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					throw new Exception("checked");
+				}
+			});
+			Assert.fail("Exception expected");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("checked", e.getCause().getMessage());
+		} finally {
+			processor.close();
+		}
+	}
+
+	@Test
+	public void testWorkersStoppedOnCloseAfterError() throws InterruptedException {
+		final CountDownLatch blockingTaskStarted = new CountDownLatch(1);
+		final AtomicInteger interruptedTasks = new AtomicInteger();
+		OrderedParallelProcessor<Integer> processor = createProcessor(2);
+		try {
+			processor.submit(sleepingTask(0, 0));
+			processor.submit(failingTask(1));
+			processor.submit(new Callable<Integer>() {
+				public Integer call() throws Exception {
+					workerThreads.add(Thread.currentThread());
+					blockingTaskStarted.countDown();
+					try {
+						Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+					} catch (InterruptedException e) {
+						interruptedTasks.incrementAndGet();
+						throw e;
+					}
+					return 2;
+				}
+			});
+			Assert.assertTrue(blockingTaskStarted.await(5, TimeUnit.SECONDS));
+			processor.finish();
+			Assert.fail("Exception expected");
+		} catch (IllegalStateException e) {
+			//expected
+		} finally {
+			processor.close();
+		}
+		Assert.assertEquals(1, interruptedTasks.get());
+		Assert.assertFalse(workerThreads.isEmpty());
+		for (Thread thread : workerThreads) {
+			thread.join(TimeUnit.SECONDS.toMillis(5));
+			Assert.assertFalse(thread.isAlive());
+		}
+	}
+
+	private OrderedParallelProcessor<Integer> createProcessor(int threads) {
+		return new OrderedParallelProcessor<Integer>(threads, new Visitor<Integer>() {
+			public void visit(Integer item) {
+				visited.add(item);
+			}
+		});
+	}
+
+	private Callable<Integer> sleepingTask(final int value, final long sleepMillis) {
+		return new Callable<Integer>() {
+			public Integer call() throws Exception {
+				Thread.sleep(sleepMillis);
+				return value;
+			}
+		};
+	}
+
+	private Callable<Integer> failingTask(final int value) {
+		return new Callable<Integer>() {
+			public Integer call() throws Exception {
+				throw new IllegalStateException("task " + value + " failed");
+			}
+		};
+	}
+
+}
@@ -0,0 +1,47 @@
+package org.openforis.idm.metamodel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openforis.idm.AbstractTest;
+import org.openforis.idm.metamodel.Survey.DependencyType;
+import org.openforis.idm.model.NodePathPointer;
+
+public class SurveyDependenciesTest extends AbstractTest {
+
+	@Test
+	public void testVersionIndexedDependencies() {
+		final List<NodeDefinition> defs = new ArrayList<NodeDefinition>();
+		survey.getSchema().traverse(new NodeDefinitionVisitor() {
+			@Override
+			public void visit(NodeDefinition definition) {
+				defs.add(definition);
+			}
+		});
+		List<ModelVersion> versions = new ArrayList<ModelVersion>(survey.getVersions());
+		versions.add(null);
+		int pointersCount = 0;
+		for (NodeDefinition def : defs) {
+			for (DependencyType dependencyType : DependencyType.values()) {
+				Set<NodePathPointer> dependencies = survey.getDependencies(def, dependencyType);
+				pointersCount += dependencies.size();
+				for (ModelVersion version : versions) {
+					Assert.assertEquals(NodePathPointer.filterPointersByVersion(dependencies, version),
+							survey.getDependencies(def, dependencyType, version));
+				}
+			}
+		}
+		Assert.assertTrue(pointersCount > 0);
+	}
+
+	@Test
+	public void testNotRegisteredDependencies() {
+		NodeDefinition clusterDef = survey.getSchema().getRootEntityDefinition("cluster");
+		Set<NodePathPointer> dependencies = survey.getDependencies(clusterDef, DependencyType.PARENT_CODE, survey.getVersion("2.0"));
+		Assert.assertTrue(dependencies.isEmpty());
+	}
+
+}
@@ -1,7 +1,10 @@
 package org.openforis.idm.metamodel.validation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
@@ -32,6 +35,26 @@ public class EntityKeyValidationTest extends ValidationTest {
 		
 	}
 	
+	@Test
+	public void testKeyChange() {
+		Entity plot1 = EntityBuilder.addEntity(cluster, "plot");
+		CodeAttribute plotNo1 = EntityBuilder.addValue(plot1, "no", new Code("1"));
+		Entity plot2 = EntityBuilder.addEntity(cluster, "plot");
+		CodeAttribute plotNo2 = EntityBuilder.addValue(plot2, "no", new Code("1"));
+		assertTrue(containsEntityKeyValidator(validate(plotNo1).getErrors()));
+		
+		plotNo2.setValue(new Code("2"));
+		assertFalse(containsEntityKeyValidator(validate(plotNo1).getErrors()));
+		assertEquals(Arrays.asList(plot2), cluster.findChildEntitiesByKeys(plot2.getDefinition(), plot2.getKeyAttributeValues()));
+		
+		Entity plot3 = EntityBuilder.addEntity(cluster, "plot");
+		EntityBuilder.addValue(plot3, "no", new Code("2"));
+		assertEquals(Arrays.asList(plot2, plot3), cluster.findChildEntitiesByKeys(plot2.getDefinition(), plot2.getKeyAttributeValues()));
+		
+		cluster.remove(plot2.getDefinition(), plot2.getIndex());
+		assertEquals(Arrays.asList(plot3), cluster.findChildEntitiesByKeys(plot3.getDefinition(), plot3.getKeyAttributeValues()));
+	}
+	
 	private boolean containsEntityKeyValidator(List<ValidationResult> results) {
 		for (ValidationResult result : results) {
 			ValidationRule<?> validator = result.getValidator();
@@ -9,6 +9,7 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.openforis.idm.model.EntityBuilder;
 import org.openforis.idm.model.TextAttribute;
+import org.openforis.idm.model.TextValue;
 
 /**
  * @author M. Togna
@@ -59,6 +60,22 @@ public class UniquenessCheckTest extends ValidationTest {
 		Assert.assertTrue(containsUniquenessError(results.getErrors(), MAP_SHEET));
 	}
 
+	@Test
+	public void testUniquenessAfterUpdates() {
+		TextAttribute mapSheet1 = EntityBuilder.addValue(cluster, MAP_SHEET, "TomTom1");
+		TextAttribute mapSheet2 = EntityBuilder.addValue(cluster, MAP_SHEET, "TomTom1");
+		Assert.assertTrue(containsUniquenessError(validate(mapSheet1).getErrors(), MAP_SHEET));
+		
+		mapSheet2.setValue(new TextValue("TomTom2"));
+		Assert.assertFalse(containsUniquenessError(validate(mapSheet1).getErrors(), MAP_SHEET));
+		
+		TextAttribute mapSheet3 = EntityBuilder.addValue(cluster, MAP_SHEET, "TomTom2");
+		Assert.assertTrue(containsUniquenessError(validate(mapSheet2).getErrors(), MAP_SHEET));
+		
+		cluster.remove(MAP_SHEET, mapSheet3.getIndex());
+		Assert.assertFalse(containsUniquenessError(validate(mapSheet2).getErrors(), MAP_SHEET));
+	}
+
 	private boolean containsUniquenessError(List<ValidationResult> results, String name) {
 		for (ValidationResult result : results) {
 			ValidationRule<?> validator = result.getValidator();
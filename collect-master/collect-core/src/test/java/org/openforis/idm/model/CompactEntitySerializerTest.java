@@ -0,0 +1,138 @@
+package org.openforis.idm.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.commons.collection.Predicate;
+import org.openforis.idm.metamodel.DefaultSurveyContext;
+import org.openforis.idm.metamodel.NodeDefinition;
+import org.openforis.idm.metamodel.Survey;
+import org.openforis.idm.metamodel.SurveyContext;
+import org.openforis.idm.metamodel.xml.IdmlParseException;
+import org.openforis.idm.metamodel.xml.SurveyIdmlBinder;
+
+public class CompactEntitySerializerTest {
+
+	private Survey survey;
+	private Record record;
+
+	@Before
+	public void init() throws Exception {
+		survey = getTestSurvey();
+		record = createTestRecord(survey);
+	}
+
+	@Test
+	public void testRoundTrip() {
+		ModelSerializer ser = new ModelSerializer(10000, true);
+		byte[] data = ser.toByteArray(record.getRootEntity());
+		Assert.assertTrue(CompactEntitySerializer.isCompactFormat(data));
+
+		Record record2 = new Record(survey, "2.0", "cluster");
+		ser.mergeFrom(data, record2.getRootEntity());
+
+		Assert.assertTrue(record.getRootEntity().deepEquals(record2.getRootEntity()));
+		Assert.assertEquals(1, record2.getRootEntity().getChildState("accessibility").intValue());
+	}
+
+	@Test
+	public void testReadBothFormats() {
+		ModelSerializer compactSer = new ModelSerializer(10000, true);
+		ModelSerializer ser = new ModelSerializer(10000);
+		byte[] data = ser.toByteArray(record.getRootEntity());
+		Assert.assertFalse(CompactEntitySerializer.isCompactFormat(data));
+
+		Record record2 = new Record(survey, "2.0", "cluster");
+		compactSer.mergeFrom(data, record2.getRootEntity());
+		Assert.assertTrue(record.getRootEntity().deepEquals(record2.getRootEntity()));
+
+		byte[] compactData = compactSer.toByteArray(record.getRootEntity());
+		Record record3 = new Record(survey, "2.0", "cluster");
+		ser.mergeFrom(compactData, record3.getRootEntity());
+		Assert.assertTrue(record.getRootEntity().deepEquals(record3.getRootEntity()));
+	}
+
+	@Test
+	public void testStreamRoundTrip() throws IOException {
+		for (boolean compact : new boolean[] {true, false}) {
+			ModelSerializer ser = new ModelSerializer(10000, compact);
+			byte[] data = ser.toByteArray(record.getRootEntity());
+
+			Record record2 = new Record(survey, "2.0", "cluster");
+			ser.mergeFrom(new ByteArrayInputStream(data), record2.getRootEntity());
+			Assert.assertTrue(record.getRootEntity().deepEquals(record2.getRootEntity()));
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ser.writeTo(out, record.getRootEntity());
+			Assert.assertArrayEquals(data, out.toByteArray());
+
+			Record record3 = new Record(survey, "2.0", "cluster");
+			ser.mergeFrom(new ByteArrayInputStream(out.toByteArray()), record3.getRootEntity());
+			Assert.assertTrue(record.getRootEntity().deepEquals(record3.getRootEntity()));
+		}
+	}
+
+	@Test
+	public void testSkipSubtrees() {
+		ModelSerializer ser = new ModelSerializer(10000, true);
+		byte[] data = ser.toByteArray(record.getRootEntity());
+
+		Record record2 = new Record(survey, "2.0", "cluster");
+		ser.mergeFrom(data, record2.getRootEntity(), new Predicate<NodeDefinition>() {
+			public boolean evaluate(NodeDefinition def) {
+				return ! def.getName().equals("plot");
+			}
+		});
+		Entity cluster = record2.getRootEntity();
+		Assert.assertEquals(0, cluster.getCount("plot"));
+		Assert.assertEquals(2, cluster.getCount("time_study"));
+		Assert.assertEquals("123_456", ((CodeAttribute) cluster.getChild("id")).getValue().getCode());
+		Assert.assertEquals(Integer.valueOf(10), ((IntegerAttribute) cluster.getChild("crew_no")).getValue().getValue());
+	}
+
+	private Survey getTestSurvey() throws IOException, IdmlParseException {
+		URL idm = ClassLoader.getSystemResource("test.idm.xml");
+		InputStream is = idm.openStream();
+		SurveyContext<?> surveyContext = new DefaultSurveyContext();
+		SurveyIdmlBinder parser = new SurveyIdmlBinder(surveyContext);
+		return parser.unmarshal(is);
+	}
+
+	private Record createTestRecord(Survey survey) {
+		Record record = new Record(survey, "2.0", "cluster");
+		Entity cluster = record.getRootEntity();
+		EntityBuilder.addValue(cluster, "id", new Code("123_456"));
+		EntityBuilder.addValue(cluster, "gps_realtime", Boolean.TRUE);
+		CodeAttribute region = EntityBuilder.addValue(cluster, "region", new Code("001", "aqualiferxxxxxxxxxxxx"));
+		region.getCodeField().getState().set(0, true);
+		region.updateSummaryInfo();
+		EntityBuilder.addValue(cluster, "crew_no", 10);
+		EntityBuilder.addValue(cluster, "map_sheet", "value 1");
+		EntityBuilder.addValue(cluster, "map_sheet", "value 1");
+		EntityBuilder.addValue(cluster, "vehicle_location", new Coordinate((double) 12345, (double) 67890, "srs"));
+		cluster.setChildState("accessibility", 1);
+		for (int i = 0; i < 2; i++) {
+			Entity ts = EntityBuilder.addEntity(cluster, "time_study");
+			EntityBuilder.addValue(ts, "date", new Date(2011, 2, 14 + i));
+			EntityBuilder.addValue(ts, "start_time", new Time(8, 15));
+		}
+		for (int i = 1; i <= 2; i++) {
+			Entity plot = EntityBuilder.addEntity(cluster, "plot");
+			EntityBuilder.addValue(plot, "no", new Code(String.valueOf(i)));
+			Entity tree = EntityBuilder.addEntity(plot, "tree");
+			EntityBuilder.addValue(tree, "tree_no", 1);
+			EntityBuilder.addValue(tree, "dbh", 54.2);
+			RealAttribute boleHeight = EntityBuilder.addValue(tree, "bole_height", (Double) null);
+			boleHeight.getField(0).setSymbol('B');
+			boleHeight.getField(0).setRemarks("No value specified");
+			boleHeight.updateSummaryInfo();
+		}
+		return record;
+	}
+}
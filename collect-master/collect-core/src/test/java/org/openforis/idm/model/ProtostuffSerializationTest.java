@@ -4,6 +4,13 @@ package org.openforis.idm.model;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -98,6 +105,44 @@ public class ProtostuffSerializationTest  {
 		// Compare
 		Assert.assertTrue(record1.getRootEntity().deepEquals(record2.getRootEntity()));
 	}
+
+	@Test
+	public void testConcurrentRoundTrip() throws Exception {
+		final Survey survey = getTestSurvey();
+		final Record record1 = createTestRecord(survey);
+		final ModelSerializer ser = new ModelSerializer(100);
+		final byte[] expectedData = ser.toByteArray(record1.getRootEntity());
+		
+		int threads = 4;
+		ExecutorService executorService = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < threads; i++) {
+				results.add(executorService.submit(new Callable<Boolean>() {
+					public Boolean call() throws Exception {
+						for (int j = 0; j < 100; j++) {
+							byte[] data = ser.toByteArray(record1.getRootEntity());
+							if (! Arrays.equals(expectedData, data)) {
+								return false;
+							}
+							Record record2 = new Record(survey, "2.0", "cluster");
+							ser.mergeFrom(data, record2.getRootEntity());
+							if (! record1.getRootEntity().deepEquals(record2.getRootEntity())) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				Assert.assertTrue(result.get());
+			}
+		} finally {
+			executorService.shutdownNow();
+		}
+	}
+	
 	private Survey getTestSurvey() throws IOException, IdmlParseException {
 		URL idm = ClassLoader.getSystemResource("test.idm.xml");
 		InputStream is = idm.openStream();
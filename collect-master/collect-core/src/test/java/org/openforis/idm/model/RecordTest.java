@@ -1,6 +1,9 @@
 package org.openforis.idm.model;
 
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.attributeDef;
+import static org.openforis.idm.testfixture.NodeDefinitionBuilder.entityDef;
 import static org.openforis.idm.testfixture.NodeDefinitionBuilder.rootEntityDef;
 import static org.openforis.idm.testfixture.TestFixture.survey;
 
@@ -23,5 +26,49 @@ public class RecordTest {
 		assertSame(rootEntity, record.getRootEntity());
 	}
 
+	@Test
+	public void testFindNodeByInternalIdOrPath() {
+		TestFixture fixture = survey(
+				rootEntityDef("plot",
+					entityDef("tree",
+						attributeDef("dbh")
+					).multiple()
+				)
+		);
+
+		Record record = new Record(fixture.survey, null, "plot");
+		Entity tree1 = EntityBuilder.addEntity(record.getRootEntity(), "tree");
+		Entity tree2 = EntityBuilder.addEntity(record.getRootEntity(), "tree");
+		int treeDefId = tree1.getDefinition().getId();
+		assertSame(tree2, record.findNodeByInternalIdOrPath(tree2.getInternalId(), tree2.getPath(), treeDefId, Entity.class));
+		assertSame(tree2, record.findNodeByInternalIdOrPath(tree2.getInternalId(), null, treeDefId, Entity.class));
+		//internal id not matching the path: path is used
+		assertSame(tree2, record.findNodeByInternalIdOrPath(tree1.getInternalId(), tree2.getPath(), treeDefId, Entity.class));
+		assertSame(tree1, record.findNodeByInternalIdOrPath(-1, tree1.getPath(), treeDefId, Entity.class));
+		//node not of the expected type
+		assertNull(record.findNodeByInternalIdOrPath(tree2.getInternalId(), tree2.getPath(), treeDefId, Attribute.class));
+	}
+
+	@Test
+	public void testFindNodeByStaleInternalIdWithoutPath() {
+		TestFixture fixture = survey(
+				rootEntityDef("plot",
+					entityDef("tree",
+						attributeDef("dbh")
+					).multiple()
+				)
+		);
+
+		Record record = new Record(fixture.survey, null, "plot");
+		Entity tree = EntityBuilder.addEntity(record.getRootEntity(), "tree");
+		Node<?> dbh = EntityBuilder.addValue(tree, "dbh", "10");
+		int treeDefId = tree.getDefinition().getId();
+		//internal id reassigned to a node with a different definition (e.g. record reloaded)
+		assertNull(record.findNodeByInternalIdOrPath(dbh.getInternalId(), null, treeDefId, Entity.class));
+		assertNull(record.findNodeByInternalIdOrPath(dbh.getInternalId(), null, treeDefId, Node.class));
+		//unknown internal id
+		assertNull(record.findNodeByInternalIdOrPath(-1, null, treeDefId, Entity.class));
+	}
+
 
 }
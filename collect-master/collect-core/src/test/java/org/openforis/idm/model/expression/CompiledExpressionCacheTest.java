@@ -0,0 +1,56 @@
+package org.openforis.idm.model.expression;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompiledExpressionCacheTest {
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		CompiledExpressionCache<String, String> cache = new CompiledExpressionCache<String, String>(2);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		//access "a" so that "b" becomes the least recently used entry
+		Assert.assertEquals("A", cache.get("a"));
+		cache.put("c", "C");
+
+		Assert.assertEquals(2, cache.size());
+		Assert.assertTrue(cache.contains("a"));
+		Assert.assertFalse(cache.contains("b"));
+		Assert.assertTrue(cache.contains("c"));
+		Assert.assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testStatistics() {
+		CompiledExpressionCache<String, String> cache = new CompiledExpressionCache<String, String>(10);
+		Assert.assertNull(cache.get("a"));
+		cache.put("a", "A");
+		Assert.assertEquals("A", cache.get("a"));
+		Assert.assertEquals("A", cache.get("a"));
+
+		Assert.assertEquals(2, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+		Assert.assertEquals(2d / 3, cache.getHitRate(), 0.0001);
+	}
+
+	@Test
+	public void testPutKeepsExistingValue() {
+		CompiledExpressionCache<String, String> cache = new CompiledExpressionCache<String, String>(10);
+		Assert.assertEquals("A", cache.put("a", "A"));
+		Assert.assertEquals("A", cache.put("a", "A2"));
+	}
+
+	@Test
+	public void testShrink() {
+		CompiledExpressionCache<String, String> cache = new CompiledExpressionCache<String, String>(10);
+		for (int i = 0; i < 10; i++) {
+			cache.put("key" + i, "value" + i);
+		}
+		cache.setMaxSize(4);
+		Assert.assertEquals(4, cache.size());
+		Assert.assertTrue(cache.contains("key9"));
+		Assert.assertFalse(cache.contains("key0"));
+		Assert.assertEquals(6, cache.getEvictionCount());
+	}
+}
@@ -0,0 +1,117 @@
+package org.openforis.idm.model.expression;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.idm.model.Code;
+import org.openforis.idm.model.Entity;
+import org.openforis.idm.model.EntityBuilder;
+import org.openforis.idm.model.Node;
+
+/**
+ * Verifies that expressions evaluated directly on the model nodes give the same results as JXPath
+ */
+public class DirectEvaluationTest extends AbstractExpressionTest {
+
+	private static final List<String> EXPRESSIONS = Arrays.asList(
+			"crew_no = 10",
+			"crew_no != 10",
+			"crew_no > 5 and crew_no <= 10",
+			"crew_no < 5 or map_sheet = 'value 2'",
+			"not(crew_no = 10)",
+			"map_sheet = 'value 1'",
+			"map_sheet != 'value 3'",
+			"region = '001'",
+			"gps_model = 'x'",
+			"count(plot) = 2",
+			"count(map_sheet)",
+			"count(plot/tree)",
+			"plot/tree/dbh > 50",
+			"(crew_no + 2) * 3",
+			"crew_no = 2 * 5",
+			"-(4 div 2)",
+			"7 mod 3",
+			"math:pow(2, 3)",
+			"math:max(plot/tree/dbh)",
+			"idm:blank(gps_model)",
+			"idm:not-blank(region)",
+			"true() and not(false())",
+			"'text'"
+			);
+
+	private ExpressionFactory expressionFactory;
+
+	@Before
+	public void init() {
+		expressionFactory = survey.getContext().getExpressionFactory();
+
+		EntityBuilder.addValue(cluster, "id", new Code("123_456"));
+		EntityBuilder.addValue(cluster, "region", new Code("001"));
+		EntityBuilder.addValue(cluster, "crew_no", 10);
+		EntityBuilder.addValue(cluster, "map_sheet", "value 1");
+		EntityBuilder.addValue(cluster, "map_sheet", "value 2");
+		for (int i = 1; i <= 2; i++) {
+			Entity plot = EntityBuilder.addEntity(cluster, "plot");
+			EntityBuilder.addValue(plot, "no", new Code(String.valueOf(i)));
+			Entity tree = EntityBuilder.addEntity(plot, "tree");
+			EntityBuilder.addValue(tree, "tree_no", 1);
+			EntityBuilder.addValue(tree, "dbh", 40.5 * i);
+		}
+	}
+
+	@After
+	public void restore() {
+		expressionFactory.setDirectEvaluation(false);
+	}
+
+	@Test
+	public void testSameResultAsJXPath() throws InvalidExpressionException {
+		for (String expression : EXPRESSIONS) {
+			Object expected = evaluate(cluster, expression, false);
+			Object actual = evaluate(cluster, expression, true);
+			Assert.assertEquals(expression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testBooleanSameResultAsJXPath() throws InvalidExpressionException {
+		for (String expression : EXPRESSIONS) {
+			expressionFactory.setDirectEvaluation(false);
+			boolean expected = expressionFactory.createBooleanExpression(expression).evaluate(cluster, null);
+			expressionFactory.setDirectEvaluation(true);
+			boolean actual = expressionFactory.createBooleanExpression(expression).evaluate(cluster, null);
+			Assert.assertEquals(expression, expected, actual);
+		}
+	}
+
+	@Test
+	public void testUnsupportedExpressionsFallBackToJXPath() throws InvalidExpressionException {
+		Node<?> plot = cluster.getChild("plot", 0);
+		Assert.assertEquals(evaluate(plot, "parent()/crew_no", false), evaluate(plot, "parent()/crew_no", true));
+		Assert.assertEquals(evaluate(plot, "tree[1]/dbh > 10", false), evaluate(plot, "tree[1]/dbh > 10", true));
+		Assert.assertEquals(evaluate(plot, "$context/no = '1'", false), evaluate(plot, "$context/no = '1'", true));
+	}
+
+	@Test
+	public void testDirectEvaluatorCompilation() throws InvalidExpressionException {
+		expressionFactory.setDirectEvaluation(true);
+		Assert.assertNotNull(getDirectEvaluator("crew_no > 5 and region = '001'"));
+		Assert.assertNotNull(getDirectEvaluator("count(parent()/plot) > 1"));
+		Assert.assertNull(getDirectEvaluator("crew_no"));
+		Assert.assertNull(getDirectEvaluator("$this > 5"));
+		Assert.assertNull(getDirectEvaluator("idm:position(plot)"));
+	}
+
+	private Object getDirectEvaluator(String expression) throws InvalidExpressionException {
+		return expressionFactory.createValueExpression(expression).getDirectEvaluator();
+	}
+
+	private Object evaluate(Node<?> context, String expression, boolean direct) throws InvalidExpressionException {
+		expressionFactory.setDirectEvaluation(direct);
+		return expressionFactory.createValueExpression(expression).evaluate(context, null);
+	}
+}
@@ -0,0 +1,150 @@
+package org.openforis.collect.relational;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.manager.RecordManager;
+import org.openforis.collect.manager.SurveyManager;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectRecord.Step;
+import org.openforis.collect.model.RecordFilter;
+import org.openforis.collect.relational.model.RelationalSchema;
+import org.openforis.collect.relational.model.RelationalSchemaConfig;
+import org.openforis.collect.relational.model.RelationalSchemaGenerator;
+import org.openforis.collect.relational.model.Table;
+import org.openforis.commons.collection.Visitor;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * 
+ * @author S. Ricci
+ *
+ */
+public class CollectRDBPublisherTest extends CollectRelationalTest {
+
+	private static final String SCHEMA_NAME = "test";
+	private static final int RECORDS = 10;
+
+	private CollectRDBPublisher publisher;
+	private File dbFile;
+	private Connection connection;
+	private boolean failOnVisit;
+
+	@Before
+	public void init() throws Exception {
+		dbFile = File.createTempFile("collect-rdb-publisher-test", ".db");
+		SQLiteDataSource dataSource = new SQLiteDataSource();
+		dataSource.setUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+		connection = dataSource.getConnection();
+
+		SurveyManager surveyManager = mock(SurveyManager.class);
+		when(surveyManager.get(survey.getName())).thenReturn(survey);
+
+		publisher = new CollectRDBPublisher();
+		publisher.setSurveyManager(surveyManager);
+		publisher.setRecordManager(new RecordManager(false) {
+			@Override
+			public int countRecords(RecordFilter filter) {
+				return RECORDS;
+			}
+			@Override
+			public void visitRecords(RecordFilter filter, Step step, boolean validate,
+					boolean alwaysEvaluateCalculatedAttributes, Visitor<CollectRecord> visitor) {
+				for (int i = 1; i <= RECORDS; i++) {
+					if (failOnVisit && i == RECORDS) {
+						throw new IllegalStateException("error loading record " + i);
+					}
+					CollectRecord record = createTestRecord(survey, "id_" + i);
+					record.setId(i);
+					visitor.visit(record);
+				}
+			}
+		});
+	}
+
+	@After
+	public void destroy() throws SQLException {
+		connection.close();
+		dbFile.delete();
+	}
+
+	@Test
+	public void testBulkLoadCreatesPrimaryKeysAndIndexes() throws Exception {
+		assertTrue(publisher.isBulkLoad());
+		export();
+
+		RelationalSchema schema = generateSchema();
+		Set<String> indexNames = queryNames("index");
+		for (Table<?> table : schema.getTables()) {
+			//primary keys are unique indexes in SQLite
+			assertTrue(table.getName(), indexNames.contains(table.getName() + "_pk"));
+			for (int idx = 1; idx <= table.getReferentialContraints().size(); idx++) {
+				assertTrue(table.getName(), indexNames.contains(String.format("%s_%d_idx", table.getName(), idx)));
+			}
+		}
+		assertEquals(RECORDS, countRows(schema.getRootDataTable("cluster").getName()));
+	}
+
+	@Test
+	public void testSchemaDroppedOnFailure() throws Exception {
+		failOnVisit = true;
+		try {
+			export();
+			fail("Exception expected");
+		} catch (RuntimeException e) {
+			//expected
+		}
+		assertTrue(queryNames("table").isEmpty());
+		assertTrue(queryNames("view").isEmpty());
+	}
+
+	private void export() throws CollectRdbException {
+		publisher.export(survey.getName(), "cluster", Step.ENTRY, SCHEMA_NAME, connection, 
+				RelationalSchemaConfig.createDefault());
+	}
+
+	private RelationalSchema generateSchema() throws CollectRdbException {
+		return new RelationalSchemaGenerator(RelationalSchemaConfig.createDefault()).generateSchema(survey, SCHEMA_NAME);
+	}
+
+	private Set<String> queryNames(String type) throws SQLException {
+		Set<String> result = new HashSet<String>();
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(String.format("SELECT name FROM sqlite_master WHERE type = '%s'", type));
+			while (rs.next()) {
+				result.add(rs.getString(1));
+			}
+			rs.close();
+		} finally {
+			stmt.close();
+		}
+		return result;
+	}
+
+	private int countRows(String tableName) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(String.format("SELECT COUNT(*) FROM \"%s\"", tableName));
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			stmt.close();
+		}
+	}
+
+}
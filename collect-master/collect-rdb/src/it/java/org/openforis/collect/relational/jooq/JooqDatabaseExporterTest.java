@@ -0,0 +1,141 @@
+package org.openforis.collect.relational.jooq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.relational.CollectRelationalTest;
+import org.openforis.collect.relational.model.DataTable;
+import org.openforis.collect.relational.model.RelationalSchema;
+import org.openforis.collect.relational.model.RelationalSchemaGenerator;
+import org.openforis.concurrency.ProgressListener;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteDataSource;
+
+/**
+ * 
+ * @author S. Ricci
+ *
+ */
+public class JooqDatabaseExporterTest extends CollectRelationalTest {
+
+	private static final int RECORDS = 300;
+	private static final int THREADS = 4;
+
+	private RelationalSchema schema;
+	private File dbFile;
+	private SQLiteDataSource dataSource;
+	private Connection connection;
+
+	@Before
+	public void init() throws Exception {
+		schema = new RelationalSchemaGenerator().generateSchema(survey, "test");
+		dbFile = File.createTempFile("collect-rdb-test", ".db");
+		SQLiteConfig config = new SQLiteConfig();
+		//connections used to insert data in parallel wait for each other
+		config.setBusyTimeout(60000);
+		dataSource = new SQLiteDataSource(config);
+		dataSource.setUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+		connection = dataSource.getConnection();
+		connection.setAutoCommit(false);
+		new JooqRelationalSchemaCreator().createRelationalSchema(schema, connection);
+		connection.commit();
+	}
+
+	@After
+	public void destroy() throws SQLException {
+		connection.close();
+		dbFile.delete();
+	}
+
+	@Test
+	public void testParallelInsertSameRowsAsSerialInsert() throws Exception {
+		export(new JooqDatabaseExporter(schema, connection));
+		Map<String, Integer> serialRowCounts = countRows();
+		for (DataTable table : schema.getDataTables()) {
+			execute(String.format("DELETE FROM \"%s\"", table.getName()));
+		}
+		connection.commit();
+
+		export(new JooqDatabaseExporter(schema, connection, dataSource, THREADS));
+		assertEquals(serialRowCounts, countRows());
+		//one row per record in the root entity table
+		assertEquals(Integer.valueOf(RECORDS), serialRowCounts.get(schema.getRootDataTable("cluster").getName()));
+	}
+
+	@Test
+	public void testParallelInsertFailurePropagated() throws Exception {
+		DataTable lastTable = schema.getDataTables().get(schema.getDataTables().size() - 1);
+		execute(String.format("DROP TABLE \"%s\"", lastTable.getName()));
+		connection.commit();
+		try {
+			export(new JooqDatabaseExporter(schema, connection, dataSource, THREADS));
+			fail("Exception expected");
+		} catch (RuntimeException e) {
+			assertTrue(isCausedByMissingTable(e, lastTable));
+		} catch (IOException e) {
+			assertTrue(isCausedByMissingTable(e, lastTable));
+		}
+	}
+
+	private void export(JooqDatabaseExporter exporter) throws IOException, SQLException {
+		try {
+			for (int i = 1; i <= RECORDS; i++) {
+				CollectRecord record = createTestRecord(survey, "id_" + i);
+				record.setId(i);
+				exporter.insertRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
+			}
+		} finally {
+			exporter.close();
+		}
+		connection.commit();
+	}
+
+	private Map<String, Integer> countRows() throws SQLException {
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		Statement stmt = connection.createStatement();
+		try {
+			for (DataTable table : schema.getDataTables()) {
+				ResultSet rs = stmt.executeQuery(String.format("SELECT COUNT(*) FROM \"%s\"", table.getName()));
+				rs.next();
+				result.put(table.getName(), rs.getInt(1));
+				rs.close();
+			}
+		} finally {
+			stmt.close();
+		}
+		return result;
+	}
+
+	private void execute(String sql) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			stmt.execute(sql);
+		} finally {
+			stmt.close();
+		}
+	}
+
+	private boolean isCausedByMissingTable(Throwable e, DataTable table) {
+		for (Throwable t = e; t != null; t = t.getCause()) {
+			if (t.getMessage() != null && t.getMessage().contains(table.getName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+}
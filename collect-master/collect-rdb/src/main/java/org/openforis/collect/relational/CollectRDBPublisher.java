@@ -13,9 +13,9 @@ import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.manager.SurveyManager;
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.Step;
-import org.openforis.collect.model.CollectRecordSummary;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.RecordFilter;
+import org.openforis.collect.persistence.jooq.CollectDSLContext;
 import org.openforis.collect.relational.jooq.JooqDatabaseExporter;
 import org.openforis.collect.relational.jooq.JooqRelationalSchemaCreator;
 import org.openforis.collect.relational.model.RelationalSchema;
@@ -51,6 +51,20 @@ public class CollectRDBPublisher {
 	@Qualifier("rdbDataSource")
 	private DataSource rdbDataSource;
 	
+	/**
+	 * If true, constraints and indexes are added after the data has been inserted.
+	 * Since the target schema can be partially committed in this mode, if the export fails the schema is dropped.
+	 */
+	private boolean bulkLoad = true;
+	/**
+	 * Number of threads used to add primary keys in bulk load mode (1 means no parallelism)
+	 */
+	private int indexCreationThreads = 1;
+	/**
+	 * Number of threads (and connections) used to insert the records data in bulk load mode (1 means no parallelism)
+	 */
+	private int insertThreads = 1;
+	
 	public void export(String surveyName, String rootEntityName, Step step,
 			String targetSchemaName) throws CollectRdbException {
 		export(surveyName, rootEntityName, step, targetSchemaName, RelationalSchemaConfig.createDefault());
@@ -59,13 +73,13 @@ public class CollectRDBPublisher {
 	public void export(String surveyName, String rootEntityName, Step step,
 			String targetSchemaName, RelationalSchemaConfig config) throws CollectRdbException {
 		Connection targetConn = getTargetConnection();
-		export(surveyName, rootEntityName, step, targetSchemaName, targetConn, config);
+		export(surveyName, rootEntityName, step, targetSchemaName, targetConn, getTargetDataSource(), config, null);
 	}
 	
 	public void export(String surveyName, String rootEntityName, Step step,
 			String targetSchemaName, RelationalSchemaConfig config, ProgressListener progressListener) throws CollectRdbException {
 		Connection targetConn = getTargetConnection();
-		export(surveyName, rootEntityName, step, targetSchemaName, targetConn, config, progressListener);
+		export(surveyName, rootEntityName, step, targetSchemaName, targetConn, getTargetDataSource(), config, progressListener);
 	}
 
 
@@ -76,41 +90,91 @@ public class CollectRDBPublisher {
 	
 	public void export(String surveyName, String rootEntityName, Step step,
 			String targetSchemaName, Connection targetConn, RelationalSchemaConfig config, ProgressListener progressListener) throws CollectRdbException {
+		export(surveyName, rootEntityName, step, targetSchemaName, targetConn, null, config, progressListener);
+	}
+	
+	/**
+	 * The target data source, when specified, is used to insert data and add primary keys in parallel in bulk load mode.
+	 */
+	private void export(String surveyName, String rootEntityName, Step step, String targetSchemaName, 
+			Connection targetConn, DataSource targetDataSource, RelationalSchemaConfig config, ProgressListener progressListener) throws CollectRdbException {
 		try {
 			targetConn.setAutoCommit(false);
 		} catch (SQLException e) {
 		}
+		JooqRelationalSchemaCreator relationalSchemaCreator = createRelationalSchemaCreator();
+		RelationalSchema relationalSchema = null;
 		try {
 			CollectSurvey survey = surveyManager.get(surveyName);
 			
 			// Generate relational model
 			RelationalSchemaGenerator schemaGenerator = new RelationalSchemaGenerator(config);
-			RelationalSchema relationalSchema = schemaGenerator.generateSchema(survey, targetSchemaName);
+			relationalSchema = schemaGenerator.generateSchema(survey, targetSchemaName);
+			
+			long start = System.currentTimeMillis();
 			
-			RelationalSchemaCreator relationalSchemaCreator = createRelationalSchemaCreator();
 			relationalSchemaCreator.createRelationalSchema(relationalSchema, targetConn);
 
-			relationalSchemaCreator.addConstraints(relationalSchema, targetConn);
-			relationalSchemaCreator.addIndexes(relationalSchema, targetConn);
+			if (! bulkLoad) {
+				relationalSchemaCreator.addConstraints(relationalSchema, targetConn);
+				relationalSchemaCreator.addIndexes(relationalSchema, targetConn);
+			}
+			long schemaCreatedTime = System.currentTimeMillis();
+			
+			DataSource insertDataSource = null;
+			if (bulkLoad && insertThreads > 1 && targetDataSource != null && ! new CollectDSLContext(targetConn).isSQLite()) {
+				//tables must be visible to the connections used to insert data
+				targetConn.commit();
+				insertDataSource = targetDataSource;
+			}
+			insertData(survey, rootEntityName, step, targetConn, insertDataSource, relationalSchema, progressListener);
 			
-			insertData(survey, rootEntityName, step, targetConn, relationalSchema, progressListener);
+			long dataInsertedTime = System.currentTimeMillis();
 			
+			if (bulkLoad) {
+				if ( LOG.isInfoEnabled() ) {
+					LOG.info("Adding constraints and indexes...");
+				}
+				addConstraintsAndIndexes(relationalSchemaCreator, relationalSchema, targetConn, targetDataSource);
+			}
 			targetConn.commit();
 			
 			if ( LOG.isInfoEnabled() ) {
-				LOG.info("RDB generation completed");
+				long end = System.currentTimeMillis();
+				LOG.info(String.format("RDB generation completed in %d ms (schema creation: %d ms, data insert: %d ms, constraints and indexes: %d ms)", 
+						end - start, schemaCreatedTime - start, dataInsertedTime - schemaCreatedTime, end - dataInsertedTime));
 			}
 		} catch (Exception e) {
 			try {
 				targetConn.rollback();
 			} catch (SQLException e1) {
 			}
+			if (relationalSchema != null) {
+				dropRelationalSchema(relationalSchemaCreator, relationalSchema, targetConn);
+			}
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Drops the tables committed before the export failed (intermediate commits are done in bulk load mode)
+	 */
+	private void dropRelationalSchema(JooqRelationalSchemaCreator relationalSchemaCreator, RelationalSchema relationalSchema, 
+			Connection targetConn) {
+		try {
+			relationalSchemaCreator.dropRelationalSchema(relationalSchema, targetConn);
+			targetConn.commit();
+		} catch (Exception e) {
+			LOG.error("Error dropping schema " + relationalSchema.getName() + " after export failure: " + e.getMessage(), e);
+			try {
+				targetConn.rollback();
+			} catch (SQLException e1) {
+			}
+		}
+	}
+
 	private void insertData(final CollectSurvey survey, String rootEntityName, final Step step, Connection targetConn,
-			RelationalSchema relationalSchema, ProgressListener progressListener) throws IOException {
+			DataSource insertDataSource, RelationalSchema relationalSchema, ProgressListener progressListener) throws IOException {
 		// Insert data
 		RecordFilter recordFilter = new RecordFilter(survey);
 		recordFilter.setRootEntityId(survey.getSchema().getRootEntityDefinition(rootEntityName).getId());
@@ -120,48 +184,103 @@ public class CollectRDBPublisher {
 		if ( LOG.isInfoEnabled() ) {
 			LOG.info("Total records: " + total);
 		}
-		final DatabaseExporter databaseExporter = createDatabaseExporter(relationalSchema, targetConn);
-		
-		ProcessProgressListener totalProgressListener = new ProcessProgressListener(2);
-		
-		databaseExporter.insertReferenceData(new ProcessStepProgressListener(totalProgressListener, progressListener));
-		
-		final ProcessStepProgressListener insertRecordsProgressListener = new ProcessStepProgressListener(totalProgressListener, progressListener);
-		
-		final AtomicInteger count = new AtomicInteger();
-		recordManager.visitSummaries(recordFilter, null, new Visitor<CollectRecordSummary>() {
-			public void visit(CollectRecordSummary summary) {
-				try {
-					CollectRecord record = recordManager.load(survey, summary.getId(), step, false);
-					databaseExporter.insertRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
-				} catch (CollectRdbException e) {
-					LOG.error( e.getMessage(), e);
+		final DatabaseExporter databaseExporter = createDatabaseExporter(relationalSchema, targetConn, insertDataSource);
+		try {
+			ProcessProgressListener totalProgressListener = new ProcessProgressListener(2);
+			
+			databaseExporter.insertReferenceData(new ProcessStepProgressListener(totalProgressListener, progressListener));
+			
+			final ProcessStepProgressListener insertRecordsProgressListener = new ProcessStepProgressListener(totalProgressListener, progressListener);
+			
+			final AtomicInteger count = new AtomicInteger();
+			recordManager.visitRecords(recordFilter, step, false, false, new Visitor<CollectRecord>() {
+				public void visit(CollectRecord record) {
+					try {
+						databaseExporter.insertRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
+					} catch (CollectRdbException e) {
+						LOG.error( e.getMessage(), e);
+					}
+					insertRecordsProgressListener.progressMade(new Progress(count.addAndGet(1), total));			
 				}
-				insertRecordsProgressListener.progressMade(new Progress(count.addAndGet(1), total));			
-			}
-		});
-		
-		databaseExporter.close();
+			});
+		} finally {
+			//stops the insert threads even when the export fails
+			databaseExporter.close();
+		}
 		
 		if ( LOG.isInfoEnabled() ) {
 			LOG.info("All records exported");
-			LOG.info("Adding constraints and indexes...");
+		}
+	}
+
+	private void addConstraintsAndIndexes(JooqRelationalSchemaCreator relationalSchemaCreator, RelationalSchema relationalSchema, 
+			Connection targetConn, DataSource targetDataSource) throws SQLException {
+		CollectDSLContext dsl = new CollectDSLContext(targetConn);
+		if (indexCreationThreads > 1 && targetDataSource != null && ! dsl.isSQLite()) {
+			//tables must be visible to the connections used to add the primary keys
+			targetConn.commit();
+			relationalSchemaCreator.addPKConstraints(relationalSchema, targetDataSource, indexCreationThreads);
+			//foreign keys lock the referenced tables too: add them sequentially
+			relationalSchemaCreator.addForeignKeys(relationalSchema, targetConn);
+			relationalSchemaCreator.addIndexes(relationalSchema, targetConn);
+		} else {
+			relationalSchemaCreator.addConstraints(relationalSchema, targetConn);
+			relationalSchemaCreator.addIndexes(relationalSchema, targetConn);
 		}
 	}
 
 	private Connection getTargetConnection() {
-		// dO NOT REMOVE THIS, IT IS NECESSARY FOR sAIKU IN cOLLECT eARTH!
-		DataSource targetDataSource = rdbDataSource == null ? dataSource: rdbDataSource;
-		Connection targetConn = DataSourceUtils.getConnection(targetDataSource);
+		Connection targetConn = DataSourceUtils.getConnection(getTargetDataSource());
 		return targetConn;
 	}
+
+	private DataSource getTargetDataSource() {
+		// dO NOT REMOVE THIS, IT IS NECESSARY FOR sAIKU IN cOLLECT eARTH!
+		return rdbDataSource == null ? dataSource: rdbDataSource;
+	}
 	
 	private JooqRelationalSchemaCreator createRelationalSchemaCreator() {
 		return new JooqRelationalSchemaCreator();
 	}
 	
-	private DatabaseExporter createDatabaseExporter(RelationalSchema schema, Connection targetConn) {
-		return new JooqDatabaseExporter(schema, targetConn);
+	private DatabaseExporter createDatabaseExporter(RelationalSchema schema, Connection targetConn, DataSource insertDataSource) {
+		if (insertDataSource == null) {
+			return new JooqDatabaseExporter(schema, targetConn);
+		} else {
+			return new JooqDatabaseExporter(schema, targetConn, insertDataSource, insertThreads);
+		}
+	}
+	
+	public void setSurveyManager(SurveyManager surveyManager) {
+		this.surveyManager = surveyManager;
+	}
+	
+	public void setRecordManager(RecordManager recordManager) {
+		this.recordManager = recordManager;
+	}
+	
+	public boolean isBulkLoad() {
+		return bulkLoad;
+	}
+	
+	public void setBulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+	}
+	
+	public int getIndexCreationThreads() {
+		return indexCreationThreads;
+	}
+	
+	public void setIndexCreationThreads(int indexCreationThreads) {
+		this.indexCreationThreads = indexCreationThreads;
+	}
+	
+	public int getInsertThreads() {
+		return insertThreads;
+	}
+	
+	public void setInsertThreads(int insertThreads) {
+		this.insertThreads = insertThreads;
 	}
 	
 }
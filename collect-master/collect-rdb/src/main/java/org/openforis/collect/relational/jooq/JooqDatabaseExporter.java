@@ -13,11 +13,20 @@ import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import javax.sql.DataSource;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jooq.BatchBindStep;
@@ -56,6 +65,12 @@ import org.openforis.idm.metamodel.EntityDefinition;
 import org.openforis.idm.metamodel.NodeDefinition;
 
 /**
+ * 
+ * Rows extracted from the records are grouped by target table and inserted using a single prepared statement
+ * per table and batch, instead of one statement per row.
+ * 
+ * Optionally (see {@link #JooqDatabaseExporter(RelationalSchema, Connection, DataSource, int)}) the batches of rows 
+ * are inserted in parallel using several connections: in that case the export is not atomic.
  * 
  * @author G. Miceli
  * @author S. Ricci
@@ -68,11 +83,28 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 	private CollectDSLContext dsl;
 	private RelationalSchema schema;
 	private BatchQueryExecutor batchExecutor;
+	private ParallelInsertExecutor parallelInsertExecutor;
 	
 	public JooqDatabaseExporter(RelationalSchema schema, Connection connection) {
 		this(schema, new CollectDSLContext(connection));
 	}
 
+	/**
+	 * Creates an exporter that inserts the rows of the records in parallel, using up to the specified number of connections
+	 * obtained from the data source (reference data is inserted using the specified connection).
+	 * Every batch of rows is committed independently, so the target tables must be visible to the connections
+	 * of the data source (their creation must have been committed before) and they must not have foreign key
+	 * constraints yet (bulk load).
+	 * The export is NOT atomic: rolling back the specified connection doesn't remove the rows already inserted 
+	 * in parallel, so if the export fails the target schema must be dropped (or cleaned up) by the caller.
+	 */
+	public JooqDatabaseExporter(RelationalSchema schema, Connection connection, DataSource dataSource, int threads) {
+		this(schema, new CollectDSLContext(connection));
+		if (threads > 1) {
+			this.parallelInsertExecutor = new ParallelInsertExecutor(dataSource, threads);
+		}
+	}
+
 	public JooqDatabaseExporter(RelationalSchema schema, Configuration conf) {
 		this(schema, new CollectDSLContext(conf));
 	}
@@ -234,7 +266,24 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 	
 	@Override
 	public void close() throws IOException {
-		IOUtils.closeQuietly(batchExecutor);
+		try {
+			batchExecutor.close();
+		} finally {
+			if (parallelInsertExecutor != null) {
+				parallelInsertExecutor.close();
+			}
+		}
+	}
+
+	private void executeInsertBatch(CollectDSLContext dsl, Table<?> table, List<Object[]> rows) {
+		QueryCreator queryCreator = new QueryCreator(dsl, schema.getName());
+		Object[] valuesPlaceholders = new Object[table.getColumns().size()];
+		InsertValuesStepN<Record> insertQuery = queryCreator.createInsertQuery(table).values(valuesPlaceholders);
+		BatchBindStep batch = dsl.batch(insertQuery);
+		for (Object[] values : rows) {
+			batch.bind(values);
+		}
+		batch.execute();
 	}
 	
 	private class BatchQueryExecutor implements Closeable {
@@ -242,6 +291,8 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 		private static final int BATCH_MAX_SIZE = 500;
 		
 		private List<Query> queries;
+		//rows to be inserted, grouped by table (parent tables first)
+		private Map<Table<?>, List<Object[]>> insertRowsByTable;
 		private QueryCreator queryCreator;
 		private ProgressListener progressListener;
 		private long processedQueries;
@@ -249,6 +300,7 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 		public BatchQueryExecutor(RelationalSchema schema, ProgressListener progressListener) {
 			this.progressListener = progressListener;
 			this.queries = new ArrayList<Query>();
+			this.insertRowsByTable = new LinkedHashMap<Table<?>, List<Object[]>>();
 			this.queryCreator = new QueryCreator(dsl, schema.getName());
 		}
 
@@ -260,19 +312,34 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 		}
 		
 		public void executeInserts(DataExtractor extractor) {
-			Table<?> table = extractor.getTable();
-			Object[] valuesPlaceholders = new Object[table.getColumns().size()];
-			InsertValuesStepN<Record> insertQuery = queryCreator.createInsertQuery(table).values(valuesPlaceholders);
-			BatchBindStep batch = dsl.batch(insertQuery);
+			List<Object[]> rows = new ArrayList<Object[]>();
 			while(extractor.hasNext()) {
-				Row row = extractor.next();
-				batch.bind(row.getValues().toArray(new Object[row.getValues().size()]));
+				rows.add(toValuesArray(extractor.next()));
 			}
-			batch.execute();
+			executeInsertBatch(dsl, extractor.getTable(), rows);
 		}
 
+		/**
+		 * Rows are kept in memory until the rows to be inserted into the same table reach the batch size:
+		 * then all the pending rows are inserted, one batch per table (parent tables first)
+		 */
 		public void addInsert(Row row) {
-			addQuery(queryCreator.createInsertQuery(row));
+			//queries must be executed in the same order as they have been added
+			flushQueries();
+			List<Object[]> rows = insertRowsByTable.get(row.getTable());
+			if (rows == null) {
+				rows = new ArrayList<Object[]>();
+				insertRowsByTable.put(row.getTable(), rows);
+			}
+			rows.add(toValuesArray(row));
+			if (rows.size() == BATCH_MAX_SIZE) {
+				flushInserts();
+			}
+		}
+
+		private Object[] toValuesArray(Row row) {
+			List<Object> values = row.getValues();
+			return values.toArray(new Object[values.size()]);
 		}
 
 		public void addUpdate(DataTable table, BigInteger pkValue, List<ColumnValuePair<DataColumn, ?>> columnValuePairs) {
@@ -291,17 +358,49 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 		}
 
 		private void addQuery(Query query) {
+			//pending inserts must be executed before
+			flushInserts();
 			queries.add(query);
 			if ( queries.size() == BATCH_MAX_SIZE ) {
-				flush();
+				flushQueries();
 			}
 		}
 
 		public void flush() {
+			flushInserts();
+			flushQueries();
+		}
+
+		private void flushInserts() {
+			if ( insertRowsByTable.isEmpty() ) {
+				return;
+			}
+			try {
+				for (Entry<Table<?>, List<Object[]>> entry : insertRowsByTable.entrySet()) {
+					List<Object[]> rows = entry.getValue();
+					if (parallelInsertExecutor == null) {
+						executeInsertBatch(dsl, entry.getKey(), rows);
+					} else {
+						parallelInsertExecutor.submit(entry.getKey(), rows);
+					}
+					processedQueries += rows.size();
+				}
+				insertRowsByTable.clear();
+				notifyProgressListener();
+			} catch(Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private void flushQueries() {
 			if ( queries.isEmpty() ) {
 				return;
 			}
 			try {
+				if (parallelInsertExecutor != null) {
+					//rows being inserted in parallel could be affected by the queries
+					parallelInsertExecutor.awaitCompletion();
+				}
 				dsl.batch(queries).execute();
 				processedQueries += queries.size();
 				queries.clear();
@@ -323,6 +422,96 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 		}
 	}
 	
+	/**
+	 * Inserts batches of rows in parallel, each one using a different connection obtained from a data source.
+	 * The number of batches waiting to be inserted is limited, so that the rows kept in memory are bounded.
+	 * Every batch is committed independently: the rows inserted before an error occurred are not rolled back.
+	 */
+	private class ParallelInsertExecutor implements Closeable {
+
+		private final DataSource dataSource;
+		private final ExecutorService executor;
+		private final Semaphore availableSlots;
+		private final List<Future<Void>> futures;
+
+		public ParallelInsertExecutor(DataSource dataSource, int threads) {
+			this.dataSource = dataSource;
+			this.executor = Executors.newFixedThreadPool(threads);
+			this.availableSlots = new Semaphore(threads * 2);
+			this.futures = new ArrayList<Future<Void>>();
+		}
+
+		public void submit(final Table<?> table, final List<Object[]> rows) throws InterruptedException, ExecutionException {
+			removeCompletedBatches();
+			availableSlots.acquire();
+			try {
+				futures.add(executor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						try {
+							Connection conn = dataSource.getConnection();
+							try {
+								executeInsertBatch(new CollectDSLContext(conn), table, rows);
+								if (! conn.getAutoCommit()) {
+									conn.commit();
+								}
+							} finally {
+								conn.close();
+							}
+							return null;
+						} finally {
+							availableSlots.release();
+						}
+					}
+				}));
+			} catch (RuntimeException e) {
+				availableSlots.release();
+				throw e;
+			}
+		}
+
+		/**
+		 * Stops tracking the batches already inserted; throws the first error occurred, if any
+		 * (the failed batch is kept, so that the error is thrown again when closing the executor)
+		 */
+		private void removeCompletedBatches() throws InterruptedException, ExecutionException {
+			Iterator<Future<Void>> it = futures.iterator();
+			while (it.hasNext()) {
+				Future<Void> future = it.next();
+				if (future.isDone()) {
+					future.get();
+					it.remove();
+				}
+			}
+		}
+
+		/**
+		 * Waits for all the submitted batches to be inserted; throws the first error occurred, if any
+		 */
+		public void awaitCompletion() throws InterruptedException, ExecutionException {
+			try {
+				for (Future<Void> future : futures) {
+					future.get();
+				}
+			} finally {
+				futures.clear();
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				awaitCompletion();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				throw new IOException("Error inserting data into RDB", e.getCause());
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
 	private class QueryCreator {
 		
 		private final CollectDSLContext dsl;
@@ -334,14 +523,6 @@ public class JooqDatabaseExporter implements RDBUpdater, DatabaseExporter, Close
 			this.schemaName = schemaName;
 		}
 
-		public InsertValuesStepN<Record> createInsertQuery(Row row) {
-			Table<?> table = row.getTable();
-			InsertValuesStepN<Record> insert = createInsertQuery(table);
-			List<Object> values = row.getValues();
-			insert.values(values);
-			return insert;
-		}
-		
 		public InsertValuesStepN<Record> createInsertQuery(Table<?> table) {
 			List<Field<?>> fields = toFields(table.getColumns());
 			InsertValuesStepN<Record> insert = dsl.insertInto(getJooqTable(table), fields);
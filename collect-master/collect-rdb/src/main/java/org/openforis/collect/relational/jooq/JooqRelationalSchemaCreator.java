@@ -7,7 +7,11 @@ import static org.jooq.impl.DSL.table;
 
 import java.sql.Connection;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.sql.DataSource;
 
 import org.jooq.CollectCreateIndexStep;
 import org.jooq.Condition;
@@ -32,6 +36,8 @@ import org.openforis.collect.relational.model.PrimaryKeyConstraint;
 import org.openforis.collect.relational.model.ReferentialConstraint;
 import org.openforis.collect.relational.model.RelationalSchema;
 import org.openforis.collect.relational.model.Table;
+import org.openforis.collect.utils.OrderedParallelProcessor;
+import org.openforis.commons.collection.Visitor;
 
 /**
  * 
@@ -64,6 +70,24 @@ public class JooqRelationalSchemaCreator implements RelationalSchemaCreator {
 		createDataTableViews(schema, conn);
 	}
 	
+	/**
+	 * Drops the views and the tables created by {@link #createRelationalSchema(RelationalSchema, Connection)}, 
+	 * if they exist (referencing tables are dropped before the referenced ones)
+	 */
+	public void dropRelationalSchema(RelationalSchema schema, Connection conn) {
+		CollectDSLContext dsl = new CollectDSLContext(conn);
+		List<DataTable> dataTables = new ArrayList<DataTable>(schema.getDataTables());
+		for (DataTable dataTable : dataTables) {
+			dsl.dropViewIfExists(table(dataTableViewName(schema, dataTable, dsl))).execute();
+		}
+		List<Table<?>> tables = new ArrayList<Table<?>>(dataTables);
+		tables.addAll(schema.getCodeListTables());
+		Collections.reverse(tables);
+		for (Table<?> table : tables) {
+			dsl.dropTableIfExists(jooqTable(schema, table, ! dsl.isSchemaLess())).execute();
+		}
+	}
+	
 	@Override
 	public void addConstraints(RelationalSchema schema, Connection conn) {
 		CollectDSLContext dsl = new CollectDSLContext(conn);
@@ -78,6 +102,52 @@ public class JooqRelationalSchemaCreator implements RelationalSchemaCreator {
 		}
 	}
 
+	/**
+	 * Adds the primary key constraints to the tables in parallel, using a different connection for each table.
+	 * The tables must be visible to the connections obtained from the specified data source,
+	 * so their creation must have been committed before.
+	 * Has no effect if the database doesn't support adding primary keys after table creation (SQLite).
+	 */
+	public void addPKConstraints(final RelationalSchema schema, final DataSource dataSource, int threads) {
+		OrderedParallelProcessor<Void> processor = new OrderedParallelProcessor<Void>(threads, new Visitor<Void>() {
+			public void visit(Void result) {}
+		});
+		try {
+			for (final Table<?> table : schema.getTables()) {
+				processor.submit(new Callable<Void>() {
+					public Void call() throws Exception {
+						Connection conn = dataSource.getConnection();
+						try {
+							CollectDSLContext dsl = new CollectDSLContext(conn);
+							if (! dsl.isSQLite()) {
+								addPKConstraint(schema, table, dsl);
+							}
+							if (! conn.getAutoCommit()) {
+								conn.commit();
+							}
+						} finally {
+							conn.close();
+						}
+						return null;
+					}
+				});
+			}
+			processor.finish();
+		} finally {
+			processor.close();
+		}
+	}
+	
+	/**
+	 * Adds only the foreign key constraints, if supported by the database
+	 */
+	public void addForeignKeys(RelationalSchema schema, Connection conn) {
+		CollectDSLContext dsl = new CollectDSLContext(conn);
+		if (dsl.isForeignKeySupported()) {
+			createForeignKeys(schema, dsl);
+		}
+	}
+
 	@Override
 	public void addIndexes(RelationalSchema schema, Connection conn) {
 		CollectDSLContext dsl = new CollectDSLContext(conn);
@@ -123,17 +193,20 @@ public class JooqRelationalSchemaCreator implements RelationalSchemaCreator {
 			currentTable = parentTable;
 		}
 		Select<?> select = dsl.select(fields).from(tables).where(conditions);
-		Name name;
-		if (dsl.isSchemaLess()) {
-			name = name(dataTable.getName() + "_view");
-		} else {
-			name = name(schema.getName(), dataTable.getName() + "_view");
-		}
+		Name name = dataTableViewName(schema, dataTable, dsl);
 		dsl.createView(DSL.table(name), 
 				fields.toArray(new Field[fields.size()]))
 			.as(select)
 			.execute();
 	}
+
+	private Name dataTableViewName(RelationalSchema schema, DataTable dataTable, CollectDSLContext dsl) {
+		if (dsl.isSchemaLess()) {
+			return name(dataTable.getName() + "_view");
+		} else {
+			return name(schema.getName(), dataTable.getName() + "_view");
+		}
+	}
 	
 	private void addCodeListsCodeIndexes(RelationalSchema schema, CollectDSLContext dsl) {
 		for (Table<?> table : schema.getTables()) {
@@ -155,17 +228,21 @@ public class JooqRelationalSchemaCreator implements RelationalSchemaCreator {
 
 	private void addPKConstraints(RelationalSchema schema, CollectDSLContext dsl) {
 		for (Table<?> table : schema.getTables()) {
-			org.jooq.Table<Record> jooqTable = jooqTable(schema, table, ! dsl.isSchemaLess());
-			PrimaryKeyConstraint pkConstraint = table.getPrimaryKeyConstraint();
-			String pkColumnName = pkConstraint.getPrimaryKeyColumn().getName();
-			String pkConstraintName = table.getName() + "_pk";
-		
-			dsl.alterTable(jooqTable)
-				.add(constraint(pkConstraintName)
-					.primaryKey(pkColumnName))
-				.execute();
+			addPKConstraint(schema, table, dsl);
 		}
 	}
+
+	private void addPKConstraint(RelationalSchema schema, Table<?> table, CollectDSLContext dsl) {
+		org.jooq.Table<Record> jooqTable = jooqTable(schema, table, ! dsl.isSchemaLess());
+		PrimaryKeyConstraint pkConstraint = table.getPrimaryKeyConstraint();
+		String pkColumnName = pkConstraint.getPrimaryKeyColumn().getName();
+		String pkConstraintName = table.getName() + "_pk";
+	
+		dsl.alterTable(jooqTable)
+			.add(constraint(pkConstraintName)
+				.primaryKey(pkColumnName))
+			.execute();
+	}
 	
 	private void addPKIndexes(RelationalSchema schema, CollectDSLContext dsl) {
 		for (Table<?> table : schema.getTables()) {
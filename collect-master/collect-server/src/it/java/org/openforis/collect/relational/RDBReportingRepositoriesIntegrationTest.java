@@ -0,0 +1,187 @@
+package org.openforis.collect.relational;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.openforis.idm.testfixture.NodeBuilder.attribute;
+import static org.openforis.idm.testfixture.RecordBuilder.record;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openforis.collect.CollectIntegrationTest;
+import org.openforis.collect.event.RecordStep;
+import org.openforis.collect.manager.RecordManager;
+import org.openforis.collect.manager.UserManager;
+import org.openforis.collect.model.CollectRecord;
+import org.openforis.collect.model.CollectSurvey;
+import org.openforis.collect.model.RecordUpdater;
+import org.openforis.collect.model.User;
+import org.openforis.collect.relational.model.DataTable;
+import org.openforis.collect.relational.model.RelationalSchema;
+import org.openforis.collect.relational.model.RelationalSchemaConfig;
+import org.openforis.collect.relational.model.RelationalSchemaGenerator;
+import org.openforis.concurrency.ProgressListener;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * @author S. Ricci
+ */
+public class RDBReportingRepositoriesIntegrationTest extends CollectIntegrationTest {
+
+	private static final String MARKER_TABLE = "test_marker";
+
+	@Autowired
+	private RDBReportingRepositories reportingRepositories;
+	@Autowired
+	private RecordManager recordManager;
+	@Autowired
+	private UserManager userManager;
+
+	private CollectSurvey survey;
+	private String rootTableName;
+	private Date firstRecordModifiedDate;
+
+	@Before
+	public void init() throws Exception {
+		survey = importModel();
+		RelationalSchema schema = new RelationalSchemaGenerator(RelationalSchemaConfig.createDefault())
+				.generateSchema(survey, survey.getName());
+		DataTable rootTable = schema.getRootDataTable("cluster");
+		rootTableName = rootTable.getName();
+
+		firstRecordModifiedDate = secondsAgo(60);
+		saveRecord("10_111", firstRecordModifiedDate);
+		reportingRepositories.createRepositories(survey.getName(), null, ProgressListener.NULL_PROGRESS_LISTENER);
+		//rows in this table are kept by incremental updates only
+		execute("CREATE TABLE " + MARKER_TABLE + " (id INTEGER)");
+	}
+
+	@After
+	public void destroy() {
+		reportingRepositories.deleteRepositories(survey.getName());
+	}
+
+	@Test
+	public void testUnchangedSchemaUpdatesIncrementally() throws Exception {
+		saveRecord("10_112", secondsAgo(0));
+		reportingRepositories.updateRepositories(survey.getName(), null, ProgressListener.NULL_PROGRESS_LISTENER);
+
+		assertTrue(tableExists(MARKER_TABLE));
+		assertEquals(2, countRows(rootTableName));
+	}
+
+	@Test
+	public void testChangedSchemaRebuildsRepository() throws Exception {
+		RDBReportingRepositoryInfo info = readInfo();
+		String signature = info.getSchemaSignature();
+		writeInfo(new RDBReportingRepositoryInfo("changed", info.getLastModified()));
+
+		saveRecord("10_112", secondsAgo(0));
+		reportingRepositories.updateRepositories(survey.getName(), null, ProgressListener.NULL_PROGRESS_LISTENER);
+
+		assertFalse(tableExists(MARKER_TABLE));
+		assertEquals(2, countRows(rootTableName));
+		assertEquals(signature, readInfo().getSchemaSignature());
+	}
+
+	@Test
+	public void testLastModifiedMovesForward() throws Exception {
+		assertEquals(firstRecordModifiedDate, readInfo().getLastModified());
+
+		Date secondRecordModifiedDate = secondsAgo(0);
+		saveRecord("10_112", secondRecordModifiedDate);
+		reportingRepositories.updateRepositories(survey.getName(), null, ProgressListener.NULL_PROGRESS_LISTENER);
+
+		assertEquals(secondRecordModifiedDate, readInfo().getLastModified());
+		assertEquals(secondRecordModifiedDate, reportingRepositories.getInfo(survey.getName()).getLastUpdate());
+	}
+
+	/**
+	 * Dates are truncated to seconds: they are stored in the database with different precisions
+	 */
+	private static Date secondsAgo(int seconds) {
+		return new Date((System.currentTimeMillis() / 1000 - seconds) * 1000);
+	}
+
+	private void saveRecord(String id, Date modifiedDate) throws Exception {
+		CollectRecord record = (CollectRecord) record(
+				attribute("id", id),
+				attribute("region", "001"),
+				attribute("district", "002")
+			).build(survey, "cluster", "2.0");
+		new RecordUpdater().initializeNewRecord(record);
+		User user = userManager.loadAdminUser();
+		record.setCreatedBy(user);
+		record.setModifiedBy(user);
+		record.setModifiedDate(modifiedDate);
+		recordManager.save(record, user, null, false);
+	}
+
+	private RDBReportingRepositoryInfo readInfo() throws SQLException {
+		Connection connection = openConnection();
+		try {
+			RDBReportingRepositoryInfo info = RDBReportingRepositoryInfo.read(connection);
+			assertNotNull(info);
+			return info;
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void writeInfo(RDBReportingRepositoryInfo info) throws SQLException {
+		Connection connection = openConnection();
+		try {
+			connection.setAutoCommit(false);
+			info.write(connection);
+			connection.commit();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private boolean tableExists(String name) throws SQLException {
+		Connection connection = openConnection();
+		try {
+			ResultSet rs = connection.getMetaData().getTables(null, null, name, null);
+			return rs.next();
+		} finally {
+			connection.close();
+		}
+	}
+
+	private int countRows(String tableName) throws SQLException {
+		Connection connection = openConnection();
+		try {
+			Statement stmt = connection.createStatement();
+			ResultSet rs = stmt.executeQuery(String.format("SELECT COUNT(*) FROM \"%s\"", tableName));
+			rs.next();
+			return rs.getInt(1);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private void execute(String sql) throws SQLException {
+		Connection connection = openConnection();
+		try {
+			connection.createStatement().execute(sql);
+		} finally {
+			connection.close();
+		}
+	}
+
+	private Connection openConnection() throws SQLException {
+		String path = reportingRepositories.getRepositoryPath(survey.getName(), RecordStep.ENTRY);
+		return DriverManager.getConnection("jdbc:sqlite:" + path);
+	}
+
+}
@@ -8,12 +8,14 @@ import org.openforis.collect.command.handler.DeleteNodeCommandHandler;
 import org.openforis.collect.command.handler.DeleteRecordHandler;
 import org.openforis.collect.command.handler.RecordCommandHandler;
 import org.openforis.collect.command.handler.UpdateAttributeCommandHandler;
+import org.openforis.collect.command.handler.UpdateAttributesCommandHandler;
 import org.openforis.collect.command.handler.UpdateMultipleAttributeCommandHandler;
 import org.openforis.collect.manager.MessageSource;
 import org.openforis.collect.manager.RecordFileManager;
 import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.manager.SurveyManager;
 import org.openforis.collect.manager.UserManager;
+import org.openforis.collect.manager.WriteBehindRecordSaver;
 import org.openforis.collect.web.manager.SessionRecordProvider;
 import org.openforis.concurrency.JobManager;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +39,8 @@ public class SpringCommandDispatcher extends RegistryCommandDispatcher {
 	private MessageSource messageSource;
 	@Autowired
 	private SessionRecordProvider sessionRecordProvider;
+	@Autowired(required=false)
+	private WriteBehindRecordSaver recordSaver;
 
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	public void init() {
@@ -62,6 +66,7 @@ public class SpringCommandDispatcher extends RegistryCommandDispatcher {
 		register(UpdateTaxonAttributeCommand.class, updateAttributeCommandHandler);
 		register(UpdateTextAttributeCommand.class, updateAttributeCommandHandler);
 		register(UpdateTimeAttributeCommand.class, updateAttributeCommandHandler);
+		register(UpdateAttributesCommand.class, new UpdateAttributesCommandHandler());
 
 		DeleteNodeCommandHandler deleteNodeCommandHandler = new DeleteNodeCommandHandler();
 		deleteNodeCommandHandler.setRecordFileManager(recordFileManager);
@@ -78,6 +83,7 @@ public class SpringCommandDispatcher extends RegistryCommandDispatcher {
 			recordCommandHandler.setRecordProvider(sessionRecordProvider);
 			recordCommandHandler.setUserManager(userManager);
 			recordCommandHandler.setMessageSource(messageSource);
+			recordCommandHandler.setRecordSaver(recordSaver);
 		}
 		return handler;
 	}
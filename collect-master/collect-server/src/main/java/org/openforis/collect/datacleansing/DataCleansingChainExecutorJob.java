@@ -204,7 +204,8 @@ public class DataCleansingChainExecutorJob extends SurveyLockingJob {
 		
 		private void appendRecordUpdateQuery(CollectRecord record, Step step, int dataSequenceNumber) {
 			record.updateSummaryFields();
-			queryBuffer.append(recordManager.createDataUpdateQuery(record, record.getId(), step, dataSequenceNumber));
+			queryBuffer.appendAll(recordManager.createDataUpdateQueries(record, record.getId(), step, dataSequenceNumber));
+			recordManager.updateCoordinates(record);
 		}
 	}
 
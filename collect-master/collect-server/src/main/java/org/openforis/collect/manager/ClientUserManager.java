@@ -3,6 +3,8 @@ package org.openforis.collect.manager;
 import static org.openforis.collect.config.CollectConfiguration.getUsersRestfulApiUrl;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -20,6 +22,18 @@ public class ClientUserManager extends AbstractClient implements UserManager  {
 		return user;
 	}
 
+	@Override
+	public Map<Integer, User> loadByIds(Collection<Integer> ids) {
+		Map<Integer, User> result = new HashMap<Integer, User>(ids.size());
+		for (Integer id : ids) {
+			User user = loadById(id);
+			if (user != null) {
+				result.put(id, user);
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
 	@Override
 	public User loadByUserName(String userName) {
 		List<User> list = getList(String.format(getUsersRestfulApiUrl() + "/user?username=%s", userName), User.class);
@@ -21,6 +21,7 @@ public class CollectLocalRDBStorageManager extends BaseStorageManager implements
 	private static final long serialVersionUID = 1L;
 	
 	private static final String DEFAULT_STORAGE_SUBFOLDER = "rdb";
+	private static final String[] RDB_AUXILIARY_FILE_SUFFIXES = new String[] {"-journal", "-wal", "-shm"};
 	
 	public CollectLocalRDBStorageManager() {
 		super(DEFAULT_STORAGE_SUBFOLDER);
@@ -57,18 +58,20 @@ public class CollectLocalRDBStorageManager extends BaseStorageManager implements
 		return new File(storageDirectory, getRDBFileName(surveyName, step));
 	}
 	
+	/**
+	 * Deletes the database file together with its rollback journal and its write-ahead log files (if any): 
+	 * a leftover write-ahead log would be applied to a new database file with the same name
+	 */
 	public boolean deleteRDBFile(String surveyName, RecordStep step) {
 		File rdbFile = getRDBFile(surveyName, step);
-		File rdbJournalFile = new File(getRDBJournalFileName(surveyName, step));
-		rdbJournalFile.delete(); //don't care if it exists or not
+		for (String suffix : RDB_AUXILIARY_FILE_SUFFIXES) {
+			//don't care if they exist or not
+			new File(rdbFile.getPath() + suffix).delete();
+		}
 		return rdbFile.delete();
 	}
 
 	private String getRDBFileName(String surveyName, RecordStep step) {
 		return String.format("%s_%s.db", surveyName, step.nameLowerCase());
 	}
-
-	private String getRDBJournalFileName(String surveyName, RecordStep step) {
-		return String.format("%s_%s.db-journal", surveyName, step.nameLowerCase());
-	}
 }
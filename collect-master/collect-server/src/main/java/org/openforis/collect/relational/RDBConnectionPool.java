@@ -0,0 +1,135 @@
+package org.openforis.collect.relational;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openforis.collect.event.RecordStep;
+
+/**
+ * Keeps one long-lived connection open to every SQLite reporting repository (one per survey and record step),
+ * so that record events can be applied without opening and closing the database file every time.
+ *
+ * Connections are opened in WAL journal mode: readers (e.g. Saiku) are not blocked while events are being applied
+ * and commits don't require a full sync of the database file.
+ *
+ * Connections must be used only while holding the lock returned by {@link #getLock(String, RecordStep)}
+ * and must be closed (see {@link #close(String, RecordStep)}) before deleting or regenerating a repository file.
+ */
+public class RDBConnectionPool {
+
+	private static final Logger LOG = LogManager.getLogger(RDBConnectionPool.class);
+	private static final String SQLITE_DRIVER_CLASS_NAME = "org.sqlite.JDBC";
+
+	private final CollectLocalRDBStorageManager localRDBStorageManager;
+	private final Map<String, Connection> connectionByKey = new ConcurrentHashMap<String, Connection>();
+	private final Map<String, Object> lockByKey = new ConcurrentHashMap<String, Object>();
+
+	public RDBConnectionPool(CollectLocalRDBStorageManager localRDBStorageManager) {
+		this.localRDBStorageManager = localRDBStorageManager;
+	}
+
+	/**
+	 * Returns the lock to be held while using (or closing) the connection to the specified repository
+	 */
+	public Object getLock(String surveyName, RecordStep step) {
+		String key = getKey(surveyName, step);
+		Object lock = lockByKey.get(key);
+		if (lock == null) {
+			synchronized (lockByKey) {
+				lock = lockByKey.get(key);
+				if (lock == null) {
+					lock = new Object();
+					lockByKey.put(key, lock);
+				}
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * Returns the open connection to the specified repository, opening a new one if needed.
+	 * Auto commit is disabled on the returned connection.
+	 */
+	public Connection getConnection(String surveyName, RecordStep step) throws CollectRdbException {
+		String key = getKey(surveyName, step);
+		Connection connection = connectionByKey.get(key);
+		try {
+			if (connection == null || connection.isClosed()) {
+				connection = openConnection(surveyName, step, true);
+				connectionByKey.put(key, connection);
+			}
+			return connection;
+		} catch (SQLException e) {
+			throw new CollectRdbException(String.format("Error creating connection to RDB for survey %s", surveyName), e);
+		}
+	}
+
+	/**
+	 * Opens a new connection to the specified repository, not managed by the pool
+	 */
+	public Connection openConnection(String surveyName, RecordStep step, boolean walJournalMode) throws CollectRdbException {
+		try {
+			File rdbFile = localRDBStorageManager.getRDBFile(surveyName, step);
+			Class.forName(SQLITE_DRIVER_CLASS_NAME);
+			Connection connection = DriverManager.getConnection("jdbc:sqlite:" + rdbFile.getAbsolutePath());
+			if (walJournalMode) {
+				Statement stmt = connection.createStatement();
+				try {
+					stmt.execute("PRAGMA journal_mode=WAL");
+					stmt.execute("PRAGMA synchronous=NORMAL");
+				} finally {
+					stmt.close();
+				}
+			}
+			connection.setAutoCommit(false);
+			return connection;
+		} catch (Exception e) {
+			throw new CollectRdbException(String.format("Error creating connection to RDB for survey %s", surveyName), e);
+		}
+	}
+
+	/**
+	 * Closes the connection to the specified repository, if any
+	 */
+	public void close(String surveyName, RecordStep step) {
+		synchronized (getLock(surveyName, step)) {
+			closeQuietly(connectionByKey.remove(getKey(surveyName, step)));
+		}
+	}
+
+	public void close(String surveyName) {
+		for (RecordStep step : RecordStep.values()) {
+			close(surveyName, step);
+		}
+	}
+
+	public void closeAll() {
+		List<String> keys = new ArrayList<String>(connectionByKey.keySet());
+		for (String key : keys) {
+			closeQuietly(connectionByKey.remove(key));
+		}
+	}
+
+	private void closeQuietly(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				LOG.warn("Error closing RDB connection: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private String getKey(String surveyName, RecordStep step) {
+		return surveyName + "_" + step.name();
+	}
+}
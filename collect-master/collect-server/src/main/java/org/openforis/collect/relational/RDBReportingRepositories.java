@@ -4,14 +4,24 @@ import java.io.File;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -57,6 +67,7 @@ import org.openforis.collect.reporting.MondrianSchemaStorageManager;
 import org.openforis.collect.reporting.ReportingRepositories;
 import org.openforis.collect.reporting.ReportingRepositoryInfo;
 import org.openforis.collect.reporting.SaikuDatasourceStorageManager;
+import org.openforis.commons.collection.Visitor;
 import org.openforis.commons.io.OpenForisIOUtils;
 import org.openforis.concurrency.ProcessProgressListener;
 import org.openforis.concurrency.ProcessStepProgressListener;
@@ -81,6 +92,14 @@ import org.openforis.idm.model.TextValue;
 import org.openforis.idm.model.Time;
 
 /**
+ * 
+ * Repositories store the signature of the relational schema and the highest modified date of the records
+ * they have been generated with (see {@link RDBReportingRepositoryInfo}): when updated, only the records modified
+ * or deleted in the meantime are processed, unless the relational schema has changed.
+ * 
+ * Record transactions are not applied to the repositories immediately: the ones received within a short time window
+ * (see {@link #setEventsCoalescingDelay(long)}) are applied together in a single SQLite transaction, 
+ * using a long-lived connection to the repository (see {@link RDBConnectionPool}).
  * 
  * @author S. Ricci
  *
@@ -88,7 +107,8 @@ import org.openforis.idm.model.Time;
 public class RDBReportingRepositories implements ReportingRepositories {
 
 	private static final Logger LOG = LogManager.getLogger(RDBReportingRepositories.class);
-	private static final String SQLITE_DRIVER_CLASS_NAME = "org.sqlite.JDBC";
+	private static final long DEFAULT_EVENTS_COALESCING_DELAY = 500;
+	private static final int UPDATE_RECORDS_BATCH_SIZE = 500;
 
 	private SurveyManager surveyManager;
 	private RecordManager recordManager;
@@ -99,6 +119,10 @@ public class RDBReportingRepositories implements ReportingRepositories {
 	private RelationalSchemaConfig rdbConfig = RelationalSchemaConfig.createDefault();
 	private Map<String, RelationalSchema> relationalSchemaDefinitionBySurvey;
 	private Map<String, String> mondrianSchemaDefinitionBySurvey;
+	private RDBConnectionPool connectionPool;
+	private long eventsCoalescingDelay = DEFAULT_EVENTS_COALESCING_DELAY;
+	private Map<String, List<RecordTransaction>> pendingTransactionsByRepository = new HashMap<String, List<RecordTransaction>>();
+	private ScheduledExecutorService pendingTransactionsExecutor;
 
 	public RDBReportingRepositories(SurveyManager surveyManager, RecordManager recordManager,
 			CollectLocalRDBStorageManager localRDBStorageManager,
@@ -111,10 +135,24 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		this.saikuDatasourceStorageManager = saikuDatasourceStorageManager;
 		this.relationalSchemaDefinitionBySurvey = new HashMap<String, RelationalSchema>();
 		this.mondrianSchemaDefinitionBySurvey = new HashMap<String, String>();
+		this.connectionPool = new RDBConnectionPool(localRDBStorageManager);
 	}
 
 	public void init() {
 		initializeSchemaDefinitions();
+		pendingTransactionsExecutor = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	public void destroy() {
+		if (pendingTransactionsExecutor != null) {
+			pendingTransactionsExecutor.shutdown();
+			try {
+				pendingTransactionsExecutor.awaitTermination(eventsCoalescingDelay + 10000, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		connectionPool.closeAll();
 	}
 
 	private void initializeSchemaDefinitions() {
@@ -145,25 +183,93 @@ public class RDBReportingRepositories implements ReportingRepositories {
 	@Override
 	public void createRepository(final String surveyName, final RecordStep recordStep, final String preferredLanguage,
 			final ProgressListener progressListener) {
-		localRDBStorageManager.deleteRDBFile(surveyName, recordStep);
+		synchronized (connectionPool.getLock(surveyName, recordStep)) {
+			//pending transactions are already included in the records stored in the database
+			discardPendingTransactions(surveyName, recordStep);
+			connectionPool.close(surveyName, recordStep);
+			localRDBStorageManager.deleteRDBFile(surveyName, recordStep);
+	
+			updateMondrianSchemaFile(surveyName, preferredLanguage);
+	
+			if (saikuDatasourceStorageManager.isSaikuAvailable()) {
+				writeSaikuDatasource(surveyName, recordStep);
+			}
+	
+			final RelationalSchema relationalSchema = getOrInitializeRelationalSchemaDefinition(surveyName);
+
+			withNewConnection(surveyName, recordStep, new Callback() {
+				public void execute(Connection connection) {
+					RelationalSchemaCreator relationalSchemaCreator = new JooqRelationalSchemaCreator();
+					relationalSchemaCreator.createRelationalSchema(relationalSchema, connection);
+					Date lastModified = insertRecords(surveyName, recordStep, relationalSchema, connection, progressListener);
+					relationalSchemaCreator.addConstraints(relationalSchema, connection);
+					relationalSchemaCreator.addIndexes(relationalSchema, connection);
+					writeRepositoryInfo(connection, new RDBReportingRepositoryInfo(
+							RDBReportingRepositoryInfo.calculateSchemaSignature(relationalSchema), lastModified));
+				}
+			});
+		}
+	}
 
-		updateMondrianSchemaFile(surveyName, preferredLanguage);
+	/**
+	 * Updates the repository replacing only the data of the records modified since it has been generated (or last updated)
+	 * and removing the data of the records deleted in the meantime.
+	 * The repository is generated from scratch if it doesn't exist yet or if the relational schema has changed.
+	 */
+	private void updateRepository(String surveyName, RecordStep recordStep, String preferredLanguage,
+			ProgressListener progressListener) {
+		synchronized (connectionPool.getLock(surveyName, recordStep)) {
+			RelationalSchema relationalSchema = getOrInitializeRelationalSchemaDefinition(surveyName);
+			String schemaSignature = RDBReportingRepositoryInfo.calculateSchemaSignature(relationalSchema);
+			RDBReportingRepositoryInfo info = readRepositoryInfo(surveyName, recordStep);
+			if (info == null || ! schemaSignature.equals(info.getSchemaSignature())) {
+				createRepository(surveyName, recordStep, preferredLanguage, progressListener);
+				return;
+			}
+			//pending transactions are related to records modified after the last update: they will be replaced
+			discardPendingTransactions(surveyName, recordStep);
 
-		if (saikuDatasourceStorageManager.isSaikuAvailable()) {
-			writeSaikuDatasource(surveyName, recordStep);
+			Connection connection = null;
+			try {
+				connection = connectionPool.getConnection(surveyName, recordStep);
+				Date lastModified = updateRecords(surveyName, recordStep, relationalSchema, info.getLastModified(),
+						connection, progressListener);
+				writeRepositoryInfo(connection, new RDBReportingRepositoryInfo(schemaSignature, lastModified));
+				connection.commit();
+			} catch (Exception e) {
+				LOG.error(String.format("Error updating reporting repository for survey %s (step %s)", surveyName, recordStep), e);
+				if (connection != null) {
+					try {
+						connection.rollback();
+					} catch (SQLException e1) {
+						LOG.error("Rollback failed: " + e1.getMessage(), e1);
+					}
+				}
+				connectionPool.close(surveyName, recordStep);
+				throw new CollectRdbException(String.format("Error updating reporting repository for survey %s", surveyName), e);
+			}
 		}
+	}
 
-		final RelationalSchema relationalSchema = getOrInitializeRelationalSchemaDefinition(surveyName);
+	private RDBReportingRepositoryInfo readRepositoryInfo(String surveyName, RecordStep recordStep) {
+		if (! localRDBStorageManager.getRDBFile(surveyName, recordStep).exists()) {
+			return null;
+		}
+		try {
+			return RDBReportingRepositoryInfo.read(connectionPool.getConnection(surveyName, recordStep));
+		} catch (SQLException e) {
+			LOG.warn(String.format("Error reading info of reporting repository for survey %s (step %s): %s",
+					surveyName, recordStep, e.getMessage()));
+			return null;
+		}
+	}
 
-		withConnection(surveyName, recordStep, new Callback() {
-			public void execute(Connection connection) {
-				RelationalSchemaCreator relationalSchemaCreator = new JooqRelationalSchemaCreator();
-				relationalSchemaCreator.createRelationalSchema(relationalSchema, connection);
-				insertRecords(surveyName, recordStep, relationalSchema, connection, progressListener);
-				relationalSchemaCreator.addConstraints(relationalSchema, connection);
-				relationalSchemaCreator.addIndexes(relationalSchema, connection);
-			}
-		});
+	private void writeRepositoryInfo(Connection connection, RDBReportingRepositoryInfo info) {
+		try {
+			info.write(connection);
+		} catch (SQLException e) {
+			throw new CollectRdbException("Error writing reporting repository info", e);
+		}
 	}
 
 	private void updateMondrianSchemaFile(String surveyName, String preferredLanguage) {
@@ -203,11 +309,14 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		}
 	}
 
-	private void insertRecords(String surveyName, RecordStep recordStep, RelationalSchema targetSchema,
+	/**
+	 * Inserts reference data and records into the repository, returning the highest modified date of the inserted records
+	 */
+	private Date insertRecords(String surveyName, RecordStep recordStep, RelationalSchema targetSchema,
 			Connection targetConn, ProgressListener progressListener) throws CollectRdbException {
 		ProcessProgressListener processProgressListener = new ProcessProgressListener(2);
 		CollectSurvey survey = surveyManager.get(surveyName);
-		DatabaseExporter databaseUpdater = createRDBUpdater(targetSchema, targetConn);
+		final DatabaseExporter databaseUpdater = createRDBUpdater(targetSchema, targetConn);
 
 		databaseUpdater.insertReferenceData(new ProcessStepProgressListener(processProgressListener, progressListener));
 		processProgressListener.stepCompleted();
@@ -215,32 +324,146 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		RecordFilter recordFilter = new RecordFilter(survey);
 		Step step = Step.fromRecordStep(recordStep);
 		recordFilter.setStepGreaterOrEqual(step);
-		List<CollectRecordSummary> summaries = recordManager.loadSummaries(recordFilter);
+		final int totalRecords = recordManager.countRecords(recordFilter);
 
-		ProcessStepProgressListener recordInsertProcessListener = new ProcessStepProgressListener(
+		final ProcessStepProgressListener recordInsertProcessListener = new ProcessStepProgressListener(
 				processProgressListener, progressListener);
-		recordInsertProcessListener.progressMade(new Progress(0, summaries.size()));
-
-		long processedRecords = 0;
-		for (CollectRecordSummary summary : summaries) {
-			CollectRecord record = recordManager.load(survey, summary.getId(), step, false);
-			databaseUpdater.insertRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
-			processedRecords++;
-			recordInsertProcessListener.progressMade(new Progress(processedRecords, summaries.size()));
-		}
+		recordInsertProcessListener.progressMade(new Progress(0, totalRecords));
+
+		final AtomicLong processedRecords = new AtomicLong(0);
+		final Date[] lastModified = new Date[1];
+		recordManager.visitRecords(recordFilter, step, false, false, new Visitor<CollectRecord>() {
+			public void visit(CollectRecord record) {
+				databaseUpdater.insertRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
+				lastModified[0] = max(lastModified[0], record.getModifiedDate());
+				recordInsertProcessListener.progressMade(new Progress(processedRecords.incrementAndGet(), totalRecords));
+			}
+		});
 		IOUtils.closeQuietly(databaseUpdater);
 		processProgressListener.stepCompleted();
+		return lastModified[0];
+	}
+
+	/**
+	 * Replaces the data of the records modified since the specified date (high-water mark) 
+	 * and of the records not stored in the repository yet (e.g. promoted to the repository step),
+	 * and deletes the data of the records deleted or not matching the repository step anymore.
+	 * Returns the new high-water mark (the highest modified date of the records in the repository).
+	 */
+	private Date updateRecords(String surveyName, RecordStep recordStep, RelationalSchema targetSchema, Date lastModified,
+			Connection targetConn, final ProgressListener progressListener) throws SQLException {
+		CollectSurvey survey = surveyManager.get(surveyName);
+		Step step = Step.fromRecordStep(recordStep);
+		RecordFilter recordFilter = new RecordFilter(survey);
+		recordFilter.setStepGreaterOrEqual(step);
+
+		final Map<Integer, CollectRecordSummary> summaryById = new HashMap<Integer, CollectRecordSummary>();
+		recordManager.visitSummaries(recordFilter, new Visitor<CollectRecordSummary>() {
+			public void visit(CollectRecordSummary summary) {
+				summaryById.put(summary.getId(), summary);
+			}
+		});
+		Map<Integer, Integer> rootEntityDefIdByStoredRecordId = loadStoredRecordIds(targetSchema, targetConn);
+
+		Date newLastModified = lastModified;
+		Set<Integer> recordIdsToReplace = new TreeSet<Integer>();
+		for (CollectRecordSummary summary : summaryById.values()) {
+			Date modifiedDate = summary.getModifiedDate();
+			if (lastModified == null || modifiedDate == null || ! modifiedDate.before(lastModified)
+					|| ! rootEntityDefIdByStoredRecordId.containsKey(summary.getId())) {
+				recordIdsToReplace.add(summary.getId());
+			}
+			newLastModified = max(newLastModified, modifiedDate);
+		}
+		final JooqDatabaseExporter databaseUpdater = createRDBUpdater(targetSchema, targetConn);
+		try {
+			int deletedRecords = 0;
+			for (Entry<Integer, Integer> entry : rootEntityDefIdByStoredRecordId.entrySet()) {
+				if (! summaryById.containsKey(entry.getKey())) {
+					databaseUpdater.deleteRecordData(entry.getKey(), entry.getValue());
+					deletedRecords ++;
+				}
+			}
+			final int totalRecords = recordIdsToReplace.size();
+			final AtomicLong processedRecords = new AtomicLong(0);
+			progressListener.progressMade(new Progress(0, totalRecords));
+			List<Integer> recordIdsToReplaceList = new ArrayList<Integer>(recordIdsToReplace);
+			for (int from = 0; from < totalRecords; from += UPDATE_RECORDS_BATCH_SIZE) {
+				RecordFilter batchFilter = new RecordFilter(survey);
+				batchFilter.setRecordIds(new HashSet<Integer>(recordIdsToReplaceList.subList(from, 
+						Math.min(from + UPDATE_RECORDS_BATCH_SIZE, totalRecords))));
+				recordManager.visitRecords(batchFilter, step, false, false, new Visitor<CollectRecord>() {
+					public void visit(CollectRecord record) {
+						databaseUpdater.replaceRecordData(record, ProgressListener.NULL_PROGRESS_LISTENER);
+						progressListener.progressMade(new Progress(processedRecords.incrementAndGet(), totalRecords));
+					}
+				});
+			}
+			LOG.info(String.format("Reporting repository for survey %s (step %s) updated: %d records replaced, %d deleted",
+					surveyName, recordStep, totalRecords, deletedRecords));
+		} finally {
+			IOUtils.closeQuietly(databaseUpdater);
+		}
+		return newLastModified;
+	}
+
+	/**
+	 * Returns the ids of the records stored in the repository (primary keys of the root entity tables), 
+	 * associated to the id of the root entity definition
+	 */
+	private Map<Integer, Integer> loadStoredRecordIds(RelationalSchema schema, Connection connection) throws SQLException {
+		Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+		for (DataTable rootDataTable : schema.getRootDataTables()) {
+			int rootEntityDefId = rootDataTable.getNodeDefinition().getId();
+			Statement stmt = connection.createStatement();
+			try {
+				ResultSet rs = stmt.executeQuery(String.format("SELECT \"%s\" FROM \"%s\"",
+						rootDataTable.getPrimaryKeyColumn().getName(), rootDataTable.getName()));
+				while (rs.next()) {
+					result.put(rs.getInt(1), rootEntityDefId);
+				}
+			} finally {
+				stmt.close();
+			}
+		}
+		return result;
+	}
+
+	private static Date max(Date date1, Date date2) {
+		if (date1 == null) {
+			return date2;
+		} else if (date2 == null || date2.before(date1)) {
+			return date1;
+		} else {
+			return date2;
+		}
 	}
 
 	@Override
 	public void updateRepositories(String surveyName, String preferredLanguage, ProgressListener progressListener) {
-		createRepositories(surveyName, preferredLanguage, progressListener);
+		initializeRelationalSchemaDefinition(surveyName);
+		ProcessProgressListener processProgressListener = new ProcessProgressListener(RecordStep.values().length);
+		for (RecordStep step : RecordStep.values()) {
+			try {
+				updateRepository(surveyName, step, preferredLanguage,
+						new ProcessStepProgressListener(processProgressListener, progressListener));
+				processProgressListener.stepCompleted();
+			} catch (CollectRdbException e) {
+				LOG.error("Error updating RDB for survey " + surveyName, e);
+			}
+		}
+		updateMondrianSchemaFile(surveyName, preferredLanguage);
+		writeSaikuDatasources(surveyName);
 	}
 
 	@Override
 	public void deleteRepositories(String surveyName) {
 		for (RecordStep step : RecordStep.values()) {
-			localRDBStorageManager.deleteRDBFile(surveyName, step);
+			synchronized (connectionPool.getLock(surveyName, step)) {
+				discardPendingTransactions(surveyName, step);
+				connectionPool.close(surveyName, step);
+				localRDBStorageManager.deleteRDBFile(surveyName, step);
+			}
 		}
 		relationalSchemaDefinitionBySurvey.remove(surveyName);
 		mondrianSchemaStorageManager.deleteSchemaFile(surveyName);
@@ -249,24 +472,99 @@ public class RDBReportingRepositories implements ReportingRepositories {
 
 	@Override
 	public void process(final RecordTransaction recordTransaction) {
-		final RelationalSchema rdbSchema = getRelatedRelationalSchema(recordTransaction);
+		final String surveyName = recordTransaction.getSurveyName();
+		final RecordStep step = recordTransaction.getRecordStep();
+		if (eventsCoalescingDelay <= 0 || pendingTransactionsExecutor == null) {
+			applyTransactions(surveyName, step, Collections.singletonList(recordTransaction));
+			return;
+		}
+		String repositoryKey = getRepositoryKey(surveyName, step);
+		synchronized (pendingTransactionsByRepository) {
+			List<RecordTransaction> pendingTransactions = pendingTransactionsByRepository.get(repositoryKey);
+			if (pendingTransactions == null) {
+				pendingTransactions = new ArrayList<RecordTransaction>();
+				pendingTransactionsByRepository.put(repositoryKey, pendingTransactions);
+				pendingTransactionsExecutor.schedule(new Runnable() {
+					public void run() {
+						applyPendingTransactions(surveyName, step);
+					}
+				}, eventsCoalescingDelay, TimeUnit.MILLISECONDS);
+			}
+			pendingTransactions.add(recordTransaction);
+		}
+	}
+
+	private void applyPendingTransactions(String surveyName, RecordStep step) {
+		synchronized (connectionPool.getLock(surveyName, step)) {
+			List<RecordTransaction> transactions = discardPendingTransactions(surveyName, step);
+			if (transactions.isEmpty()) {
+				return;
+			}
+			try {
+				applyTransactions(surveyName, step, transactions);
+			} catch (Exception e) {
+				LOG.error(String.format("Error applying %d record transactions to the reporting repository of survey %s (step %s): "
+						+ "regenerating it", transactions.size(), surveyName, step), e);
+				try {
+					createRepository(surveyName, step, null, ProgressListener.NULL_PROGRESS_LISTENER);
+				} catch (Exception e1) {
+					LOG.error(String.format("Error regenerating reporting repository for survey %s (step %s)", surveyName, step), e1);
+				}
+			}
+		}
+	}
+
+	private List<RecordTransaction> discardPendingTransactions(String surveyName, RecordStep step) {
+		synchronized (pendingTransactionsByRepository) {
+			List<RecordTransaction> transactions = pendingTransactionsByRepository.remove(getRepositoryKey(surveyName, step));
+			return transactions == null ? Collections.<RecordTransaction>emptyList() : transactions;
+		}
+	}
+
+	/**
+	 * Applies the events in the specified transactions to the repository, in a single SQLite transaction
+	 */
+	private void applyTransactions(String surveyName, RecordStep step, List<RecordTransaction> transactions) {
+		final RelationalSchema rdbSchema = relationalSchemaDefinitionBySurvey.get(surveyName);
+		if (rdbSchema == null) {
+			return;
+		}
 		final CollectSurvey survey = (CollectSurvey) rdbSchema.getSurvey();
-		RecordStep step = recordTransaction.getRecordStep();
+		final List<RecordEvent> events = RecordTransaction.coalesceEvents(transactions);
 
-		withConnection(survey.getName(), step, new Callback() {
-			public void execute(Connection connection) {
+		synchronized (connectionPool.getLock(surveyName, step)) {
+			Connection connection = null;
+			try {
+				connection = connectionPool.getConnection(surveyName, step);
 				RDBUpdater rdbUpdater = null;
 				try {
 					rdbUpdater = createRDBUpdater(rdbSchema, connection);
-					for (RecordEvent recordEvent : recordTransaction.getEvents()) {
+					for (RecordEvent recordEvent : events) {
 						EventHandler handler = new EventHandler(recordEvent, rdbSchema, survey, rdbUpdater);
 						handler.handle();
 					}
 				} finally {
 					IOUtils.closeQuietly(rdbUpdater);
 				}
+				connection.commit();
+			} catch (Exception e) {
+				LOG.error("Error processing record events: " + e.getMessage(), e);
+				if (connection != null) {
+					try {
+						connection.rollback();
+					} catch (SQLException e1) {
+						LOG.error("Rollback failed: " + e1.getMessage(), e1);
+					}
+				}
+				//connection could be in an inconsistent state
+				connectionPool.close(surveyName, step);
+				throw new RuntimeException("Error processing RDB generation events", e);
 			}
-		});
+		}
+	}
+
+	private String getRepositoryKey(String surveyName, RecordStep step) {
+		return surveyName + "_" + step.name();
 	}
 
 	@Override
@@ -291,15 +589,28 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		if (rdbFileDate == null) {
 			return null;
 		} else {
+			Date lastUpdate = getLastModified(surveyName, RecordStep.ENTRY, rdbFileDate);
 			ReportingRepositoryInfo info = new ReportingRepositoryInfo();
-			info.setLastUpdate(rdbFileDate);
+			info.setLastUpdate(lastUpdate);
 			RecordFilter filter = new RecordFilter(surveyManager.get(surveyName));
-			filter.setModifiedSince(rdbFileDate);
+			filter.setModifiedSince(lastUpdate);
 			info.setUpdatedRecordsSinceLastUpdate(recordManager.countRecords(filter));
 			return info;
 		}
 	}
 
+	/**
+	 * Returns the modification date of the most recent record stored in the repository.
+	 * The date of the database file is not reliable (changes are written into the WAL file first)
+	 * and it's used only when the repository info is not available (e.g. empty repository).
+	 */
+	private Date getLastModified(String surveyName, RecordStep recordStep, Date defaultDate) {
+		synchronized (connectionPool.getLock(surveyName, recordStep)) {
+			RDBReportingRepositoryInfo info = readRepositoryInfo(surveyName, recordStep);
+			return info == null || info.getLastModified() == null ? defaultDate : info.getLastModified();
+		}
+	}
+
 	private RelationalSchema getOrInitializeRelationalSchemaDefinition(final String surveyName) {
 		if (!relationalSchemaDefinitionBySurvey.containsKey(surveyName)) {
 			initializeRelationalSchemaDefinition(surveyName);
@@ -307,11 +618,10 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		return relationalSchemaDefinitionBySurvey.get(surveyName);
 	}
 
-	private void withConnection(String surveyName, RecordStep recordStep, Callback job) {
+	private void withNewConnection(String surveyName, RecordStep recordStep, Callback job) {
 		Connection connection = null;
 		try {
-			connection = createTargetConnection(surveyName, recordStep);
-			connection.setAutoCommit(false);
+			connection = connectionPool.openConnection(surveyName, recordStep, false);
 			job.execute(connection);
 			connection.commit();
 		} catch (Exception e) {
@@ -332,25 +642,6 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		}
 	}
 
-	private Connection createTargetConnection(String surveyName, RecordStep step) throws CollectRdbException {
-		try {
-			String pathToDbFile = getRepositoryPath(surveyName, step);
-			String connectionUrl = "jdbc:sqlite:" + pathToDbFile;
-			Class.forName(SQLITE_DRIVER_CLASS_NAME);
-			Connection c = DriverManager.getConnection(connectionUrl);
-			return c;
-		} catch (Exception e) {
-			throw new CollectRdbException(String.format("Error creating connection to RDB for survey %s", surveyName),
-					e);
-		}
-	}
-
-	private RelationalSchema getRelatedRelationalSchema(RecordTransaction recordTransaction) {
-		String surveyName = recordTransaction.getSurveyName();
-		CollectSurvey survey = surveyManager.get(surveyName);
-		return survey == null ? null : relationalSchemaDefinitionBySurvey.get(survey.getName());
-	}
-
 	private void initializeRelationalSchemaDefinition(String surveyName) {
 		initializeRelationalSchemaDefinition(surveyManager.get(surveyName));
 	}
@@ -382,6 +673,10 @@ public class RDBReportingRepositories implements ReportingRepositories {
 		return new JooqDatabaseExporter(schema, targetConn);
 	}
 
+	public void setEventsCoalescingDelay(long eventsCoalescingDelay) {
+		this.eventsCoalescingDelay = eventsCoalescingDelay;
+	}
+
 	private interface Callback {
 
 		void execute(Connection connection);
@@ -0,0 +1,154 @@
+package org.openforis.collect.relational;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Hex;
+import org.openforis.collect.relational.data.DataExtractor;
+import org.openforis.collect.relational.data.DataExtractorFactory;
+import org.openforis.collect.relational.data.Row;
+import org.openforis.collect.relational.model.CodeTable;
+import org.openforis.collect.relational.model.Column;
+import org.openforis.collect.relational.model.RelationalSchema;
+import org.openforis.collect.relational.model.Table;
+
+/**
+ * Information stored inside a reporting repository (in the {@value #TABLE_NAME} table)
+ * used to update it incrementally:
+ * the signature of the relational schema (tables, columns and code list data) the repository has been generated with
+ * and the highest modified date of the records it contains (high-water mark).
+ */
+public class RDBReportingRepositoryInfo {
+
+	static final String TABLE_NAME = "ofc_reporting_info";
+	private static final String SCHEMA_SIGNATURE_KEY = "schema_signature";
+	private static final String LAST_MODIFIED_KEY = "last_modified";
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final String schemaSignature;
+	private final Date lastModified;
+
+	public RDBReportingRepositoryInfo(String schemaSignature, Date lastModified) {
+		this.schemaSignature = schemaSignature;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Reads the info stored in the repository, or returns null if the repository has been generated
+	 * without storing it (or it's incomplete)
+	 */
+	public static RDBReportingRepositoryInfo read(Connection connection) throws SQLException {
+		if (! tableExists(connection)) {
+			return null;
+		}
+		Map<String, String> valueByName = new HashMap<String, String>();
+		Statement stmt = connection.createStatement();
+		try {
+			ResultSet rs = stmt.executeQuery(String.format("SELECT name, value FROM %s", TABLE_NAME));
+			while (rs.next()) {
+				valueByName.put(rs.getString(1), rs.getString(2));
+			}
+		} finally {
+			stmt.close();
+		}
+		String signature = valueByName.get(SCHEMA_SIGNATURE_KEY);
+		if (signature == null) {
+			return null;
+		}
+		String lastModifiedValue = valueByName.get(LAST_MODIFIED_KEY);
+		Date lastModified = lastModifiedValue == null ? null : new Date(Long.parseLong(lastModifiedValue));
+		return new RDBReportingRepositoryInfo(signature, lastModified);
+	}
+
+	/**
+	 * Writes this info into the repository, replacing the existing one.
+	 * The statements are executed in the current transaction of the connection.
+	 */
+	public void write(Connection connection) throws SQLException {
+		Statement stmt = connection.createStatement();
+		try {
+			stmt.execute(String.format("CREATE TABLE IF NOT EXISTS %s (name VARCHAR(50) PRIMARY KEY, value VARCHAR(255))", TABLE_NAME));
+			stmt.execute(String.format("DELETE FROM %s", TABLE_NAME));
+		} finally {
+			stmt.close();
+		}
+		PreparedStatement insert = connection.prepareStatement(String.format("INSERT INTO %s (name, value) VALUES (?, ?)", TABLE_NAME));
+		try {
+			insert.setString(1, SCHEMA_SIGNATURE_KEY);
+			insert.setString(2, schemaSignature);
+			insert.addBatch();
+			if (lastModified != null) {
+				insert.setString(1, LAST_MODIFIED_KEY);
+				insert.setString(2, String.valueOf(lastModified.getTime()));
+				insert.addBatch();
+			}
+			insert.executeBatch();
+		} finally {
+			insert.close();
+		}
+	}
+
+	/**
+	 * Calculates a hash of the tables and columns in the specified schema and of the data in the code list tables:
+	 * if it changes, the repository must be regenerated
+	 */
+	public static String calculateSchemaSignature(RelationalSchema schema) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		for (Table<?> table : schema.getTables()) {
+			update(digest, "table", table.getName());
+			for (Column<?> column : table.getColumns()) {
+				update(digest, "column", column.getName(), column.getType(), column.getLength(), column.isNullable());
+			}
+		}
+		for (CodeTable codeTable : schema.getCodeListTables()) {
+			DataExtractor extractor = DataExtractorFactory.getExtractor(codeTable);
+			while (extractor.hasNext()) {
+				Row row = extractor.next();
+				update(digest, "row", codeTable.getName());
+				update(digest, row.getValues().toArray());
+			}
+		}
+		return Hex.encodeHexString(digest.digest());
+	}
+
+	private static void update(MessageDigest digest, Object... values) {
+		for (Object value : values) {
+			digest.update(String.valueOf(value).getBytes(UTF_8));
+			//separator
+			digest.update((byte) 0);
+		}
+	}
+
+	private static boolean tableExists(Connection connection) throws SQLException {
+		PreparedStatement stmt = connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?");
+		try {
+			stmt.setString(1, TABLE_NAME);
+			return stmt.executeQuery().next();
+		} finally {
+			stmt.close();
+		}
+	}
+
+	public String getSchemaSignature() {
+		return schemaSignature;
+	}
+
+	public Date getLastModified() {
+		return lastModified;
+	}
+
+}
@@ -20,8 +20,10 @@ import org.openforis.collect.command.CreateRecordPreviewCommand;
 import org.openforis.collect.command.DeleteAttributeCommand;
 import org.openforis.collect.command.DeleteEntityCommand;
 import org.openforis.collect.command.DeleteRecordCommand;
+import org.openforis.collect.command.NodeCommand;
 import org.openforis.collect.command.RecordCommand;
 import org.openforis.collect.command.UpdateAttributeCommand;
+import org.openforis.collect.command.UpdateAttributesCommand;
 import org.openforis.collect.command.UpdateBooleanAttributeCommand;
 import org.openforis.collect.command.UpdateCodeAttributeCommand;
 import org.openforis.collect.command.UpdateCoordinateAttributeCommand;
@@ -134,16 +136,18 @@ public class CommandController {
 	}
 
 	@RequestMapping(value = "record/attributes", method = POST, consumes = APPLICATION_JSON_VALUE)
-	public @ResponseBody Response addOrUpdateAttributes(@RequestBody UpdateAttributesCommandWrapper commandsWrapper) {
+	public @ResponseBody List<RecordEventView> addOrUpdateAttributes(
+			@RequestBody UpdateAttributesCommandWrapper commandsWrapper) throws Exception {
 		List<UpdateAttributeCommandWrapper> commands = commandsWrapper.getCommands();
-		if (!commands.isEmpty()) {
-			final CollectSurvey survey = getSurvey(commands.get(0));
-			commands.forEach(c -> {
-				UpdateAttributeCommand<?> command = c.toCommand(survey);
-				submitCommand(command);
-			});
+		if (commands.isEmpty()) {
+			return Collections.emptyList();
 		}
-		return new Response();
+		// all the attributes are updated by a single command: record validated and saved only once
+		final CollectSurvey survey = getSurvey(commands.get(0));
+		UpdateAttributesCommand command = new UpdateAttributesCommand();
+		BeanUtils.copyProperties(commands.get(0), command);
+		commands.forEach(c -> command.getCommands().add(c.toCommand(survey)));
+		return submitCommandSync(command);
 	}
 
 	@RequestMapping(value = "record/attribute", method = POST, consumes = APPLICATION_JSON_VALUE)
@@ -164,7 +168,7 @@ public class CommandController {
 		FileAttributeDefinition attrDef = survey.getSchema().getDefinitionById(command.getNodeDefId());
 		if (multipartFile.getSize() <= attrDef.getMaxSize()) {
 			CollectRecord record = provideRecord(command);
-			FileAttribute fileAttr = record.findNodeByPath(command.getNodePath());
+			FileAttribute fileAttr = findFileAttribute(record, command);
 			File value;
 			if (record.isPreview()) {
 				java.io.File tempFile = sessionRecordFileManager.saveToTempFile(multipartFile.getInputStream(),
@@ -187,7 +191,7 @@ public class CommandController {
 	@RequestMapping(value = "record/attribute/file/delete", method = POST, consumes = APPLICATION_JSON_VALUE)
 	public @ResponseBody Object deleteAttributeFile(@RequestBody DeleteAttributeCommand command) throws Exception {
 		CollectRecord record = provideRecord(command);
-		FileAttribute fileAttr = record.findNodeByPath(command.getNodePath());
+		FileAttribute fileAttr = findFileAttribute(record, command);
 		if (record.isPreview()) {
 			sessionRecordFileManager.deleteTempFile(record, fileAttr.getInternalId());
 		} else {
@@ -250,6 +254,16 @@ public class CommandController {
 				Step.fromRecordStep(command.getRecordStep()));
 	}
 
+	private FileAttribute findFileAttribute(CollectRecord record, NodeCommand command) {
+		FileAttribute fileAttr = record.findNodeByInternalIdOrPath(command.getNodeId(), command.getNodePath(),
+				command.getNodeDefId(), FileAttribute.class);
+		if (fileAttr == null) {
+			throw new IllegalArgumentException(String.format("File attribute not found: id %d path %s",
+					command.getNodeId(), command.getNodePath()));
+		}
+		return fileAttr;
+	}
+
 	static class RecordEventView {
 
 		private RecordEvent event;
@@ -275,6 +289,18 @@ public class CommandController {
 			return event;
 		}
 
+		/**
+		 * Internal id of the node the event refers to: it can be used to address the node in the next commands
+		 * (see {@link org.openforis.collect.command.NodeCommand#getNodeId()})
+		 */
+		public Integer getNodeId() {
+			return event.getNodeId() == null ? null : Integer.valueOf(event.getNodeId());
+		}
+
+		public Integer getParentEntityId() {
+			return event.getParentEntityId();
+		}
+
 		public Integer getRecordErrorsInvalidValues() {
 			return recordErrorsInvalidValues;
 		}
@@ -8,6 +8,7 @@ import java.util.List;
 import javax.servlet.http.HttpServletResponse;
 
 import org.openforis.collect.concurrency.CollectJobManager;
+import org.openforis.collect.manager.RecordCoordinateManager;
 import org.openforis.collect.manager.RecordManager;
 import org.openforis.collect.manager.SurveyManager;
 import org.openforis.collect.metamodel.CollectAnnotations;
@@ -16,6 +17,8 @@ import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectRecordSummary;
 import org.openforis.collect.model.CollectSurvey;
 import org.openforis.collect.model.NodeProcessor;
+import org.openforis.collect.model.RecordCoordinate;
+import org.openforis.collect.model.RecordCoordinateCluster;
 import org.openforis.collect.model.RecordCoordinatesKmlGeneratorJob;
 import org.openforis.collect.model.RecordFilter;
 import org.openforis.collect.utils.MediaTypes;
@@ -51,6 +54,8 @@ public class GeoDataController {
 	@Autowired
 	private RecordManager recordManager;
 	@Autowired
+	private RecordCoordinateManager recordCoordinateManager;
+	@Autowired
 	private CollectJobManager jobManager;
 	@Autowired
 	private CoordinateOperations coordinateOperations;
@@ -86,6 +91,49 @@ public class GeoDataController {
 		return result;
 	}
 
+	/**
+	 * Returns the coordinates (in WGS84) of the specified attribute falling into the specified bounding box, 
+	 * without loading the records
+	 */
+	@RequestMapping(value = "survey/{surveyId}/data/coordinates/bbox.json", method=GET)
+	public @ResponseBody List<RecordCoordinate> loadCoordinatesInBoundingBox(
+			@PathVariable int surveyId, 
+			@RequestParam int coordinateAttributeId,
+			@RequestParam double minX, 
+			@RequestParam double minY, 
+			@RequestParam double maxX, 
+			@RequestParam double maxY, 
+			@RequestParam(required=false, defaultValue="1000") int maxNumberOfCoordinates) {
+		CollectSurvey survey = surveyManager.getById(surveyId);
+		return recordCoordinateManager.loadCoordinates(survey, coordinateAttributeId, minX, minY, maxX, maxY, 
+				maxNumberOfCoordinates);
+	}
+	
+	@RequestMapping(value = "survey/{surveyId}/data/coordinates/clusters.json", method=GET)
+	public @ResponseBody List<RecordCoordinateCluster> loadCoordinateClustersInBoundingBox(
+			@PathVariable int surveyId, 
+			@RequestParam int coordinateAttributeId,
+			@RequestParam double minX, 
+			@RequestParam double minY, 
+			@RequestParam double maxX, 
+			@RequestParam double maxY, 
+			@RequestParam(required=false, defaultValue="" + RecordCoordinateManager.DEFAULT_GRID_SIZE) int gridSize) {
+		CollectSurvey survey = surveyManager.getById(surveyId);
+		return recordCoordinateManager.loadClusters(survey, coordinateAttributeId, minX, minY, maxX, maxY, gridSize);
+	}
+	
+	@RequestMapping(value = "survey/{surveyId}/data/coordinates/tile/{z}/{x}/{y}.json", method=GET)
+	public @ResponseBody List<RecordCoordinateCluster> loadCoordinateClustersInTile(
+			@PathVariable int surveyId, 
+			@PathVariable int z, 
+			@PathVariable int x, 
+			@PathVariable int y, 
+			@RequestParam int coordinateAttributeId,
+			@RequestParam(required=false, defaultValue="" + RecordCoordinateManager.DEFAULT_GRID_SIZE) int gridSize) {
+		CollectSurvey survey = surveyManager.getById(surveyId);
+		return recordCoordinateManager.loadTileClusters(survey, coordinateAttributeId, z, x, y, gridSize);
+	}
+
 	@RequestMapping(value = "survey/{surveyId}/data/geometries.json", method=GET)
 	public @ResponseBody List<GeometryNodeInfo> loadGeometryValues(
 			@PathVariable int surveyId, 
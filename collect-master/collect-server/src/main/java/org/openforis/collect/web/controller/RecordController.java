@@ -74,6 +74,7 @@ import org.openforis.collect.manager.UserManager;
 import org.openforis.collect.manager.ValidationReportJob;
 import org.openforis.collect.manager.ValidationReportJob.Input;
 import org.openforis.collect.manager.ValidationReportJob.ReportType;
+import org.openforis.collect.manager.WriteBehindRecordSaver;
 import org.openforis.collect.model.CollectRecord;
 import org.openforis.collect.model.CollectRecord.Step;
 import org.openforis.collect.model.CollectRecordSummary;
@@ -104,6 +105,7 @@ import org.openforis.collect.web.controller.RecordStatsGenerator.RecordsStats;
 import org.openforis.collect.web.manager.SessionRecordProvider;
 import org.openforis.collect.web.session.SessionState;
 import org.openforis.collect.web.ws.AppWS;
+import org.openforis.commons.collection.Visitor;
 import org.openforis.commons.web.HttpResponses;
 import org.openforis.commons.web.Response;
 import org.openforis.concurrency.Job;
@@ -124,6 +126,9 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.multipart.MultipartFile;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import jakarta.validation.Valid;
 
 /**
@@ -137,6 +142,7 @@ import jakarta.validation.Valid;
 public class RecordController extends BasicController implements Serializable {
 
 	private static final long serialVersionUID = 1L;
+	private static final int SUMMARIES_STREAM_BATCH_SIZE = 100;
 
 	// private static Logger LOG = Logger.getLogger(DataController.class);
 
@@ -170,6 +176,8 @@ public class RecordController extends BasicController implements Serializable {
 	private transient EventQueue eventQueue;
 	@Autowired
 	private AppWS appWS;
+	@Autowired(required=false)
+	private WriteBehindRecordSaver recordSaver;
 
 	private CSVDataExportJob csvDataExportJob;
 	private SurveyBackupJob fullBackupJob;
@@ -182,6 +190,7 @@ public class RecordController extends BasicController implements Serializable {
 			@PathVariable("recordId") int recordId, @RequestParam(value = "step") Integer stepNumber) throws Exception {
 		stepNumber = getStepNumberOrDefault(stepNumber);
 		CollectSurvey survey = surveyManager.getById(surveyId);
+		flushPendingChanges(recordId);
 		byte[] data = recordManager.loadBinaryData(survey, recordId, Step.valueOf(stepNumber));
 		byte[] encoded = Base64.encodeBase64(data);
 		String result = new String(encoded);
@@ -213,24 +222,9 @@ public class RecordController extends BasicController implements Serializable {
 		User user = loadUser(params.getUserId(), params.getUsername());
 
 		Map<String, Object> result = new HashMap<String, Object>();
-		Schema schema = survey.getSchema();
-		EntityDefinition rootEntityDefinition = params.getRootEntityName() == null
-				? schema.getFirstRootEntityDefinition()
-				: schema.getRootEntityDefinition(params.getRootEntityName());
-
-		RecordFilter filter = createRecordFilter(survey, user, userGroupManager, rootEntityDefinition.getId(), false);
-
-		filter.setKeyValues(params.getKeyValues());
-		filter.setCaseSensitiveKeyValues(params.isCaseSensitiveKeyValues());
+		EntityDefinition rootEntityDefinition = getRootEntityDefinition(survey, params);
 
-		if (CollectionUtils.isEmpty(filter.getQualifiers())) {
-			// filter by qualifiers only if not already done by user group qualifiers
-			filter.setQualifiers(params.getQualifierValues());
-		}
-		filter.setSummaryValues(params.getSummaryValues());
-		if (filter.getOwnerIds() == null && params.getOwnerIds() != null && params.getOwnerIds().length > 0) {
-			filter.setOwnerIds(Arrays.asList(params.getOwnerIds()));
-		}
+		RecordFilter filter = createRecordSummariesFilter(survey, user, rootEntityDefinition, params);
 		filter.setOffset(params.getOffset());
 		filter.setMaxNumberOfRecords(params.getMaxNumberOfRows());
 
@@ -254,6 +248,73 @@ public class RecordController extends BasicController implements Serializable {
 		return result;
 	}
 
+	/**
+	 * Writes the summaries of the records matching the specified parameters as a JSON array, 
+	 * while reading them from the database, without loading all of them in memory.
+	 * Offset is ignored: pages can be requested specifying the id of the last record of the previous page (afterRecordId).
+	 */
+	@RequestMapping(value = "survey/{surveyId}/data/records/summary/stream.json", method = GET)
+	public void streamRecordSummaries(@PathVariable("surveyId") int surveyId,
+			@Valid RecordSummarySearchParameters params, HttpServletResponse response) throws IOException {
+		CollectSurvey survey = surveyManager.getOrLoadSurveyById(surveyId);
+		User user = loadUser(params.getUserId(), params.getUsername());
+		EntityDefinition rootEntityDefinition = getRootEntityDefinition(survey, params);
+
+		RecordFilter filter = createRecordSummariesFilter(survey, user, rootEntityDefinition, params);
+		if (params.getMaxNumberOfRows() > 0) {
+			filter.setMaxNumberOfRecords(params.getMaxNumberOfRows());
+		}
+		response.setContentType(APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding("UTF-8");
+
+		final ObjectMapper objectMapper = new ObjectMapper();
+		final JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(response.getOutputStream());
+		final ProxyContext context = new ProxyContext(sessionManager.getSessionState().getLocale(), messageSource,
+				surveyContext);
+		try {
+			jsonGenerator.writeStartArray();
+			recordManager.visitSummariesWithUsers(filter, params.getSortFields(), SUMMARIES_STREAM_BATCH_SIZE,
+					new Visitor<CollectRecordSummary>() {
+						public void visit(CollectRecordSummary summary) {
+							try {
+								objectMapper.writeValue(jsonGenerator, new RecordSummaryProxy(summary, context));
+							} catch (IOException e) {
+								throw new RuntimeException("Error writing record summary: " + e.getMessage(), e);
+							}
+						}
+					});
+			jsonGenerator.writeEndArray();
+		} finally {
+			jsonGenerator.close();
+		}
+	}
+
+	private EntityDefinition getRootEntityDefinition(CollectSurvey survey, RecordSummarySearchParameters params) {
+		Schema schema = survey.getSchema();
+		return params.getRootEntityName() == null
+				? schema.getFirstRootEntityDefinition()
+				: schema.getRootEntityDefinition(params.getRootEntityName());
+	}
+
+	private RecordFilter createRecordSummariesFilter(CollectSurvey survey, User user,
+			EntityDefinition rootEntityDefinition, RecordSummarySearchParameters params) {
+		RecordFilter filter = createRecordFilter(survey, user, userGroupManager, rootEntityDefinition.getId(), false);
+
+		filter.setKeyValues(params.getKeyValues());
+		filter.setCaseSensitiveKeyValues(params.isCaseSensitiveKeyValues());
+
+		if (CollectionUtils.isEmpty(filter.getQualifiers())) {
+			// filter by qualifiers only if not already done by user group qualifiers
+			filter.setQualifiers(params.getQualifierValues());
+		}
+		filter.setSummaryValues(params.getSummaryValues());
+		if (filter.getOwnerIds() == null && params.getOwnerIds() != null && params.getOwnerIds().length > 0) {
+			filter.setOwnerIds(Arrays.asList(params.getOwnerIds()));
+		}
+		filter.setAfterRecordId(params.getAfterRecordId());
+		return filter;
+	}
+
 	@RequestMapping(value = "survey/{surveyId}/data/records/{recordId}", method = GET, produces = APPLICATION_JSON_VALUE)
 	public @ResponseBody RecordProxy loadRecord(@PathVariable("surveyId") int surveyId,
 			@PathVariable("recordId") int recordId, @RequestParam(value = "step", required = false) Integer stepNumber,
@@ -275,6 +336,7 @@ public class RecordController extends BasicController implements Serializable {
 					String.format("User '%s' (entry_limited) cannot access record with ID %d: he doesn't own it.",
 							user.getUsername(), recordId));
 		}
+		flushPendingChanges(recordId);
 		CollectRecord record = lock
 				? recordManager.checkout(survey, user, recordId, step, sessionManager.getSessionState().getSessionId(),
 						true)
@@ -291,6 +353,7 @@ public class RecordController extends BasicController implements Serializable {
 		Integer ownerId = ownerIdStr == null ? null : Integer.parseInt(ownerIdStr);
 		CollectSurvey survey = surveyManager.getById(surveyId);
 		SessionState sessionState = sessionManager.getSessionState();
+		flushPendingChanges(recordId);
 		recordManager.assignOwner(survey, recordId, ownerId, sessionState.getUser(), sessionState.getSessionId());
 		return new Response();
 	}
@@ -299,6 +362,7 @@ public class RecordController extends BasicController implements Serializable {
 	public @ResponseBody Response promoteRecord(@PathVariable("surveyId") int surveyId,
 			@PathVariable("recordId") int recordId) throws MissingRecordKeyException, RecordPromoteException {
 		CollectSurvey survey = surveyManager.getById(surveyId);
+		flushPendingChanges(recordId);
 		CollectRecord record = recordManager.load(survey, recordId);
 		recordManager.promote(record, sessionManager.getLoggedUser(), true);
 		return new Response();
@@ -308,6 +372,7 @@ public class RecordController extends BasicController implements Serializable {
 	public @ResponseBody Response demoteRecord(@PathVariable("surveyId") int surveyId,
 			@PathVariable("recordId") int recordId) throws RecordPersistenceException {
 		CollectSurvey survey = surveyManager.getById(surveyId);
+		flushPendingChanges(recordId);
 		recordManager.demote(survey, recordId, sessionManager.getLoggedUser());
 		return new Response();
 	}
@@ -374,6 +439,9 @@ public class RecordController extends BasicController implements Serializable {
 		if (canDeleteRecords(surveyId, Sets.newHashSet(params.getRecordIds()))) {
 			CollectSurvey survey = surveyManager.getById(surveyId);
 			for (Integer recordId : params.getRecordIds()) {
+				if (recordSaver != null) {
+					recordSaver.discard(recordId);
+				}
 				CollectRecord record = recordManager.load(survey, recordId);
 				recordFileManager.deleteAllFiles(record);
 				recordManager.delete(recordId);
@@ -506,6 +574,7 @@ public class RecordController extends BasicController implements Serializable {
 	public void exportRecord(int surveyId, int recordId, int stepNumber, OutputFormat outputFormat,
 			HttpServletResponse response) throws RecordPersistenceException, IOException {
 		CollectSurvey survey = surveyManager.getById(surveyId);
+		flushPendingChanges(recordId);
 		CollectRecord record = recordManager.load(survey, recordId);
 		RecordAccessControlManager accessControlManager = new RecordAccessControlManager();
 		if (accessControlManager.canEdit(sessionManager.getLoggedUser(), record)) {
@@ -711,6 +780,7 @@ public class RecordController extends BasicController implements Serializable {
 		CollectRecord activeRecord = sessionManager.getActiveRecord();
 		Response res = new Response();
 		if (activeRecord != null && activeRecord.getId() != null && activeRecord.getId().equals(recordId)) {
+			flushPendingChanges(recordId);
 			recordManager.releaseLock(recordId);
 			sessionManager.clearActiveRecord();
 			appWS.sendMessage(new AppWS.RecordUnlockedMessage(recordId));
@@ -777,6 +847,16 @@ public class RecordController extends BasicController implements Serializable {
 		return new RecordSummaryProxy(summary, context);
 	}
 
+	/**
+	 * Saves the changes made to the specified record and not saved yet (see {@link WriteBehindRecordSaver}), if any,
+	 * before reading the record from the database or changing its state
+	 */
+	private void flushPendingChanges(int recordId) {
+		if (recordSaver != null) {
+			recordSaver.flush(recordId);
+		}
+	}
+
 	private void publishRecordPromotedEvents(CollectRecord record, String userName) {
 		if (!eventQueue.isEnabled()) {
 			return;
@@ -857,6 +937,7 @@ public class RecordController extends BasicController implements Serializable {
 		private String[] qualifierValues;
 		private String[] summaryValues;
 		private Integer[] ownerIds;
+		private Integer afterRecordId;
 		private boolean fullSummary = false;
 		private boolean includeOwners = false;
 
@@ -940,6 +1021,14 @@ public class RecordController extends BasicController implements Serializable {
 			this.ownerIds = ownerIds;
 		}
 
+		public Integer getAfterRecordId() {
+			return afterRecordId;
+		}
+
+		public void setAfterRecordId(Integer afterRecordId) {
+			this.afterRecordId = afterRecordId;
+		}
+
 		public boolean isIncludeOwners() {
 			return includeOwners;
 		}
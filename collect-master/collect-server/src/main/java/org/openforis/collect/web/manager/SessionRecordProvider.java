@@ -1,7 +1,8 @@
 package org.openforis.collect.web.manager;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
 
 import org.openforis.collect.manager.CachedRecordProvider;
 import org.openforis.collect.model.CollectRecord;
@@ -11,7 +12,7 @@ import org.openforis.collect.model.CollectSurvey;
 public class SessionRecordProvider extends CachedRecordProvider {
 
 	private CachedRecordProvider delegate;
-	private Map<Integer, CollectRecord> recordsPreviewBySurvey = new HashMap<Integer, CollectRecord>();
+	private Map<Integer, CollectRecord> recordsPreviewBySurvey = new ConcurrentHashMap<Integer, CollectRecord>();
 
 	public SessionRecordProvider(CachedRecordProvider cachedRecordProvider) {
 		super(null);
@@ -28,6 +29,12 @@ public class SessionRecordProvider extends CachedRecordProvider {
 		}
 	}
 
+	@Override
+	public Lock getLock(Integer recordId) {
+		return delegate.getLock(recordId);
+	}
+
+	@Override
 	public void putRecord(CollectRecord record) {
 		if (record.isPreview()) {
 			this.recordsPreviewBySurvey.put(record.getSurvey().getId(), record);
@@ -36,6 +43,11 @@ public class SessionRecordProvider extends CachedRecordProvider {
 		}
 	}
 
+	@Override
+	public void removeRecord(int recordId) {
+		delegate.removeRecord(recordId);
+	}
+
 	@Override
 	public void clearRecords(int surveyId) {
 		delegate.clearRecords(surveyId);
@@ -2,6 +2,8 @@ package org.openforis.collect.event;
 
 import static org.junit.Assert.assertEquals;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -84,9 +86,74 @@ public class RepositoryEventHandlerTest {
 		assertEquals(1, repositories.processCalls);
 	}
 
+	@Test
+	public void testRecordTransactionsProcessedInOrder() {
+		RecordTransaction transaction1 = recordTransaction("test", 1);
+		RecordTransaction transaction2 = recordTransaction("test", 2);
+		RecordTransaction transaction3 = recordTransaction("test", 1);
+		handle(transaction1);
+		handle(transaction2);
+		handle(transaction3);
+		assertEquals(Arrays.asList(transaction1, transaction2, transaction3), repositories.processedTransactions);
+	}
+
+	@Test
+	public void testOverwrittenAttributeUpdatesMerged() {
+		RecordEvent update1 = attributeUpdated(1, "10");
+		RecordEvent update2 = attributeUpdated(1, "11");
+		RecordEvent update3 = attributeUpdated(1, "10");
+		List<RecordEvent> events = RecordTransaction.coalesceEvents(Arrays.asList(
+				recordTransaction("test", 1, update1, update2),
+				recordTransaction("test", 1, update3)));
+		assertEquals(Arrays.asList(update2, update3), events);
+	}
+
+	@Test
+	public void testAttributeUpdatesNotMergedAcrossNodeCreation() {
+		RecordEvent update1 = attributeUpdated(1, "10");
+		RecordEvent entityCreated = entityCreated(1, "12");
+		RecordEvent update2 = attributeUpdated(1, "10");
+		List<RecordEvent> events = RecordTransaction.coalesceEvents(Arrays.asList(
+				recordTransaction("test", 1, update1),
+				recordTransaction("test", 1, entityCreated, update2)));
+		assertEquals(Arrays.asList(update1, entityCreated, update2), events);
+	}
+
+	@Test
+	public void testAttributeUpdatesOfDifferentRecordsNotMerged() {
+		RecordEvent update1 = attributeUpdated(1, "10");
+		RecordEvent update2 = attributeUpdated(2, "10");
+		RecordEvent entityCreated = entityCreated(2, "12");
+		RecordEvent update3 = attributeUpdated(1, "10");
+		List<RecordEvent> events = RecordTransaction.coalesceEvents(Arrays.asList(
+				recordTransaction("test", 1, update1),
+				recordTransaction("test", 2, update2, entityCreated),
+				recordTransaction("test", 1, update3)));
+		//node creation in record 2 doesn't prevent merging the updates of record 1
+		assertEquals(Arrays.asList(update2, entityCreated, update3), events);
+	}
+
 	private RecordTransaction recordTransaction(String surveyName) {
 		return new RecordTransaction(surveyName, -1, RecordStep.ENTRY, Collections.<RecordEvent>emptyList());
 	}
+
+	private RecordTransaction recordTransaction(String surveyName, int recordId, RecordEvent... events) {
+		return new RecordTransaction(surveyName, recordId, RecordStep.ENTRY, Arrays.asList(events));
+	}
+
+	private RecordEvent attributeUpdated(int recordId, String nodeId) {
+		TextAttributeUpdatedEvent event = new TextAttributeUpdatedEvent();
+		event.setRecordId(recordId);
+		event.setNodeId(nodeId);
+		return event;
+	}
+
+	private RecordEvent entityCreated(int recordId, String nodeId) {
+		EntityCreatedEvent event = new EntityCreatedEvent();
+		event.setRecordId(recordId);
+		event.setNodeId(nodeId);
+		return event;
+	}
 	
 	private void handle(SurveyEvent event) {
 		handler.handle(event, new KeepAlive() {
@@ -114,6 +181,7 @@ public class RepositoryEventHandlerTest {
 		int getRepositoryPathCalls;
 		int getRepositoryPathsCalls;
 		int getInfoFails;
+		List<RecordTransaction> processedTransactions = new ArrayList<RecordTransaction>();
 		
 		@Override
 		public void createRepository(String surveyName, RecordStep recordStep, String preferredLanguage, ProgressListener progressListener) {
@@ -158,6 +226,7 @@ public class RepositoryEventHandlerTest {
 				processFails --;
 				throw new RuntimeException("Process failed");
 			}
+			processedTransactions.add(recordTransaction);
 		}
 		
 		@Override
@@ -207,6 +276,7 @@ public class RepositoryEventHandlerTest {
 			deleteRepositoriesFails = 0;
 			updateRepositoriesFails = 0;
 			getInfoFails = 0;
+			processedTransactions.clear();
 		}
 
 	}